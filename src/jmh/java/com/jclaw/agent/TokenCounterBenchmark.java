@@ -0,0 +1,91 @@
+package com.jclaw.agent;
+
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.EncodingRegistry;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Token counting throughput: BPE encodings vs the old length/4 heuristic, over prose,
+ * source code and CJK text. The {@code bytes} counter is reported per second, i.e. it
+ * reads directly as chars/s.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class TokenCounterBenchmark {
+
+    @Param({"prose", "code", "cjk"})
+    String kind;
+
+    @Param({"2000"})
+    int length;
+
+    private String content;
+    private Tokenizer o200k;
+    private Tokenizer cl100k;
+    private Tokenizer estimate;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() { bytes = 0; }
+    }
+
+    @Setup
+    public void setUp() {
+        String[] words = switch (kind) {
+            case "code" -> new String[]{"public", "void", "return", "if", "(", ")", "{", "}", ";",
+                    "session.getId()", "List<String>", "=", "null", "\n    ", "for", "int i = 0"};
+            case "cjk" -> new String[]{"今日", "は", "天気", "が",
+                    "良い", "です", "。", "会議", "の",
+                    "予定", "회의", "일정"};
+            default -> new String[]{"the", "weather", "report", "for", "you", "are", "looking",
+                    "at", "a", "new", "forecast", "with", "some", "rain", "expected", "today."};
+        };
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(length + 16);
+        while (sb.length() < length) {
+            sb.append(words[random.nextInt(words.length)]).append(' ');
+        }
+        content = sb.substring(0, length);
+
+        EncodingRegistry registry = Encodings.newLazyEncodingRegistry();
+        o200k = Tokenizer.bpe(registry.getEncoding(EncodingType.O200K_BASE), true);
+        cl100k = Tokenizer.bpe(registry.getEncoding(EncodingType.CL100K_BASE), false);
+        estimate = Tokenizer.charEstimate();
+    }
+
+    @Benchmark
+    public int o200k(Bytes counter) {
+        counter.bytes += content.length();
+        return o200k.count(content);
+    }
+
+    @Benchmark
+    public int cl100k(Bytes counter) {
+        counter.bytes += content.length();
+        return cl100k.count(content);
+    }
+
+    @Benchmark
+    public int lengthOverFour(Bytes counter) {
+        counter.bytes += content.length();
+        return estimate.count(content);
+    }
+}
@@ -0,0 +1,93 @@
+package com.jclaw.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Primary key insert cost of random (v4) vs time-ordered (v7) UUIDs against a real Postgres
+ * (Testcontainers, so Docker is required). The table is preloaded with {@code preload} rows
+ * keyed the same way, and shared_buffers is kept small so the index does not fit in cache,
+ * as on a long-lived production table. The score is the latency of one batched insert;
+ * the primary key size and leaf density are printed at the end of each trial.
+ */
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@State(Scope.Benchmark)
+public class UuidInsertBenchmark {
+
+    static final int BATCH = 100;
+
+    @Param({"random", "v7"})
+    String ids;
+
+    @Param({"2000000"})
+    int preload;
+
+    private PostgreSQLContainer<?> postgres;
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private Supplier<UUID> generator;
+    private String payload;
+
+    @Setup
+    public void setUp() {
+        postgres = new PostgreSQLContainer<>("postgres:16-alpine")
+                .withCommand("postgres", "-c", "shared_buffers=16MB", "-c", "fsync=off");
+        postgres.start();
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(postgres.getJdbcUrl() + "&reWriteBatchedInserts=true");
+        dataSource.setUsername(postgres.getUsername());
+        dataSource.setPassword(postgres.getPassword());
+        // For jclaw_uuid_v7() (V13), used to preload
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.execute("CREATE EXTENSION IF NOT EXISTS pgstattuple");
+        jdbcTemplate.execute("CREATE TABLE bench_ids (id UUID PRIMARY KEY, created_at TIMESTAMPTZ NOT NULL DEFAULT now(), payload TEXT NOT NULL)");
+        String preloadId = "v7".equals(ids) ? "jclaw_uuid_v7()" : "gen_random_uuid()";
+        jdbcTemplate.execute("INSERT INTO bench_ids (id, payload) SELECT " + preloadId
+                + ", repeat('x', 200) FROM generate_series(1, " + preload + ")");
+        jdbcTemplate.execute("VACUUM ANALYZE bench_ids");
+
+        generator = "v7".equals(ids) ? UuidV7::next : UUID::randomUUID;
+        payload = "x".repeat(200);
+    }
+
+    @TearDown
+    public void tearDown() {
+        Map<String, Object> stats = jdbcTemplate.queryForMap("""
+                SELECT pg_size_pretty(pg_relation_size('bench_ids_pkey')) AS pkey_size,
+                       (pgstatindex('bench_ids_pkey')).avg_leaf_density AS leaf_density,
+                       (pgstatindex('bench_ids_pkey')).leaf_fragmentation AS leaf_fragmentation
+                """);
+        System.out.printf("%n[%s ids] primary key %s, avg leaf density %s%%, leaf fragmentation %s%%%n",
+                ids, stats.get("pkey_size"), stats.get("leaf_density"), stats.get("leaf_fragmentation"));
+        dataSource.close();
+        postgres.stop();
+    }
+
+    @Benchmark
+    public int[] insertBatch() {
+        List<Object[]> rows = new ArrayList<>(BATCH);
+        for (int i = 0; i < BATCH; i++) rows.add(new Object[]{generator.get(), payload});
+        return jdbcTemplate.batchUpdate("INSERT INTO bench_ids (id, payload) VALUES (?, ?)", rows);
+    }
+}
@@ -0,0 +1,84 @@
+package com.jclaw.content;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Inbound detector throughput: legacy per-pattern loop vs the single-pass matcher.
+ * The {@code bytes} counter is reported per second, i.e. it reads directly as bytes/s
+ * (divide by 1e6 for MB/s).
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class ContentFilterBenchmark {
+
+    @Param({"1000", "50000"})
+    int length;
+
+    private String content;
+    private List<PatternRule> allRules;
+    private MultiPatternMatcher matcher;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Bytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() { bytes = 0; }
+    }
+
+    @Setup
+    public void setUp() {
+        // Benign prose: keywords like "you", "are", "new" appear, full matches do not
+        String[] words = {"the", "weather", "report", "for", "you", "are", "looking", "at", "a", "new",
+                "forecast", "with", "some", "rain", "expected", "later", "today", "and", "tomorrow"};
+        Random random = new Random(42);
+        StringBuilder sb = new StringBuilder(length + 16);
+        while (sb.length() < length) {
+            sb.append(words[random.nextInt(words.length)]).append(random.nextInt(12) == 0 ? ".\n" : " ");
+        }
+        content = sb.substring(0, length);
+
+        List<PatternRuleSet> ruleSets = List.of(new PatternDetector(), new InstructionDetector(), new EgressGuard());
+        allRules = new ArrayList<>();
+        Map<String, List<PatternRule>> byFilter = new LinkedHashMap<>();
+        for (PatternRuleSet ruleSet : ruleSets) {
+            allRules.addAll(ruleSet.rules());
+            byFilter.put(ruleSet.getClass().getSimpleName(), ruleSet.rules());
+        }
+        matcher = new MultiPatternMatcher(byFilter);
+    }
+
+    @Benchmark
+    public boolean perPatternLoop(Bytes counter) {
+        counter.bytes += content.length();
+        boolean matched = false;
+        for (PatternRule rule : allRules) {
+            matched |= rule.pattern().matcher(content).find();
+        }
+        return matched;
+    }
+
+    @Benchmark
+    public boolean singlePass(Bytes counter) {
+        counter.bytes += content.length();
+        return !matcher.scan(content, filterName -> true).isEmpty();
+    }
+}
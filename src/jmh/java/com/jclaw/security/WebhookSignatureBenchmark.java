@@ -0,0 +1,140 @@
+package com.jclaw.security;
+
+import com.jclaw.config.SecretsConfig;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.EdECPoint;
+import java.security.spec.EdECPublicKeySpec;
+import java.security.spec.NamedParameterSpec;
+import java.util.Arrays;
+import java.util.HexFormat;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Webhook signature verifications per second: the previous per-request implementation
+ * (new Mac / KeyFactory / Signature, body copied into a String, key re-decoded) vs
+ * {@link WebhookSignatureVerifier}. Runs on one thread, so the score reads as
+ * verifications per second per core.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+@Threads(1)
+public class WebhookSignatureBenchmark {
+
+    private static final String TIMESTAMP = "1700000000";
+    private static final String SLACK_SECRET = "8f742231b10e8888abcd99yyyzzz85a5";
+
+    @Param({"1024", "16384"})
+    int bodyBytes;
+
+    private byte[] body;
+    private String slackSignature;
+    private String discordPublicKeyHex;
+    private String discordSignature;
+    private WebhookSignatureVerifier verifier;
+
+    @Setup
+    public void setUp() throws Exception {
+        body = new byte[bodyBytes];
+        Random random = new Random(42);
+        for (int i = 0; i < body.length; i++) body[i] = (byte) ('a' + random.nextInt(26));
+
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SLACK_SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        mac.update(("v0:" + TIMESTAMP + ":").getBytes(StandardCharsets.UTF_8));
+        slackSignature = "v0=" + HexFormat.of().formatHex(mac.doFinal(body));
+
+        KeyPair keys = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        byte[] encoded = keys.getPublic().getEncoded();
+        discordPublicKeyHex = HexFormat.of().formatHex(Arrays.copyOfRange(encoded, encoded.length - 32, encoded.length));
+        Signature signer = Signature.getInstance("Ed25519");
+        signer.initSign(keys.getPrivate());
+        signer.update(TIMESTAMP.getBytes(StandardCharsets.UTF_8));
+        signer.update(body);
+        discordSignature = HexFormat.of().formatHex(signer.sign());
+
+        verifier = new WebhookSignatureVerifier(new FixedSecrets(SLACK_SECRET, discordPublicKeyHex));
+        if (!slackLegacy() || !slackPrecomputed() || !discordLegacy() || !discordPrecomputed()) {
+            throw new IllegalStateException("Benchmark signatures do not verify");
+        }
+    }
+
+    @Benchmark
+    public boolean slackLegacy() throws Exception {
+        String baseString = "v0:" + TIMESTAMP + ":" + new String(body, StandardCharsets.UTF_8);
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(SLACK_SECRET.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        String computed = "v0=" + HexFormat.of().formatHex(mac.doFinal(baseString.getBytes(StandardCharsets.UTF_8)));
+        return MessageDigest.isEqual(computed.getBytes(StandardCharsets.UTF_8),
+                slackSignature.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Benchmark
+    public boolean slackPrecomputed() {
+        return verifier.verifySlack(TIMESTAMP, body, slackSignature);
+    }
+
+    @Benchmark
+    public boolean discordLegacy() throws Exception {
+        byte[] publicKeyBytes = HexFormat.of().parseHex(discordPublicKeyHex);
+        byte[] timestampBytes = TIMESTAMP.getBytes(StandardCharsets.UTF_8);
+        byte[] message = new byte[timestampBytes.length + body.length];
+        System.arraycopy(timestampBytes, 0, message, 0, timestampBytes.length);
+        System.arraycopy(body, 0, message, timestampBytes.length, body.length);
+
+        boolean xOdd = (publicKeyBytes[31] & 0x80) != 0;
+        byte[] yBytes = publicKeyBytes.clone();
+        yBytes[31] &= 0x7F;
+        byte[] reversed = new byte[yBytes.length];
+        for (int i = 0; i < yBytes.length; i++) reversed[i] = yBytes[yBytes.length - 1 - i];
+        EdECPublicKeySpec keySpec = new EdECPublicKeySpec(NamedParameterSpec.ED25519,
+                new EdECPoint(xOdd, new BigInteger(1, reversed)));
+        PublicKey publicKey = KeyFactory.getInstance("EdDSA").generatePublic(keySpec);
+
+        Signature signature = Signature.getInstance("Ed25519");
+        signature.initVerify(publicKey);
+        signature.update(message);
+        return signature.verify(HexFormat.of().parseHex(discordSignature));
+    }
+
+    @Benchmark
+    public boolean discordPrecomputed() {
+        return verifier.verifyDiscord(TIMESTAMP, body, discordSignature);
+    }
+
+    private static final class FixedSecrets extends SecretsConfig {
+        private final String slackSecret;
+        private final String discordPublicKey;
+
+        FixedSecrets(String slackSecret, String discordPublicKey) {
+            this.slackSecret = slackSecret;
+            this.discordPublicKey = discordPublicKey;
+        }
+
+        @Override
+        public String getSlackSigningSecret() { return slackSecret; }
+
+        @Override
+        public String getDiscordPublicKey() { return discordPublicKey; }
+    }
+}
@@ -0,0 +1,145 @@
+package com.jclaw.session;
+
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.flywaydb.core.Flyway;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.testcontainers.containers.PostgreSQLContainer;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Message write throughput against a real Postgres (Testcontainers, so Docker is required):
+ * the previous entity path (insert, select the session, full-row update), the atomic
+ * counter UPDATE, and write-behind batches. Scores are messages/s; every path uses plain
+ * JDBC so the comparison is about statements and round trips, not ORM overhead.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Benchmark)
+public class SessionWriteBenchmark {
+
+    static final int MESSAGES = 64;
+
+    private static final String INSERT_SQL = """
+            INSERT INTO session_messages (id, session_id, role, content, token_count, created_at)
+            VALUES (?, ?, 'USER', ?, ?, ?)
+            """;
+
+    @Param({"1", "16"})
+    int sessions;
+
+    private PostgreSQLContainer<?> postgres;
+    private HikariDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private TransactionTemplate transactionTemplate;
+    private SessionMessageWriter directWriter;
+    private SessionMessageWriter batchWriter;
+    private UUID[] sessionIds;
+    private String content;
+
+    @Setup
+    public void setUp() {
+        postgres = new PostgreSQLContainer<>("postgres:16-alpine");
+        postgres.start();
+        dataSource = new HikariDataSource();
+        dataSource.setJdbcUrl(postgres.getJdbcUrl() + "&stringtype=unspecified");
+        dataSource.setUsername(postgres.getUsername());
+        dataSource.setPassword(postgres.getPassword());
+        Flyway.configure().dataSource(dataSource).locations("classpath:db/migration").load().migrate();
+
+        jdbcTemplate = new JdbcTemplate(dataSource);
+        DataSourceTransactionManager transactionManager = new DataSourceTransactionManager(dataSource);
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        JclawMetrics metrics = new JclawMetrics(new SimpleMeterRegistry());
+
+        JclawProperties properties = new JclawProperties();
+        directWriter = new SessionMessageWriter(jdbcTemplate, transactionManager, properties, metrics);
+        properties.getSession().setWriteBehind(true);
+        // Batches are flushed explicitly per invocation
+        properties.getSession().setWriteFlushIntervalMs(3_600_000);
+        batchWriter = new SessionMessageWriter(jdbcTemplate, transactionManager, properties, metrics);
+        batchWriter.start();
+
+        sessionIds = new UUID[sessions];
+        for (int i = 0; i < sessions; i++) {
+            sessionIds[i] = UUID.randomUUID();
+            jdbcTemplate.update("INSERT INTO sessions (id, agent_id, channel_type, principal) VALUES (?, 'bench', 'bench', ?)",
+                    sessionIds[i], "user" + i + "@bench");
+        }
+        content = "x".repeat(400);
+    }
+
+    @TearDown
+    public void tearDown() {
+        batchWriter.stop();
+        dataSource.close();
+        postgres.stop();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void entityPath() {
+        for (int i = 0; i < MESSAGES; i++) {
+            UUID sessionId = sessionIds[i % sessions];
+            transactionTemplate.executeWithoutResult(status -> {
+                insert(sessionId);
+                Map<String, Object> row = jdbcTemplate.queryForMap("SELECT * FROM sessions WHERE id = ?", sessionId);
+                jdbcTemplate.update("""
+                                UPDATE sessions SET agent_id = ?, channel_type = ?, channel_conversation_id = ?,
+                                    principal = ?, scope = ?, metadata = ?, last_active_at = ?, message_count = ?,
+                                    total_tokens = ?, status = ? WHERE id = ?
+                                """,
+                        row.get("agent_id"), row.get("channel_type"), row.get("channel_conversation_id"),
+                        row.get("principal"), row.get("scope"), String.valueOf(row.get("metadata")),
+                        Timestamp.from(Instant.now()), (Integer) row.get("message_count") + 1,
+                        (Integer) row.get("total_tokens") + 100, row.get("status"), sessionId);
+            });
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void atomicCounters() {
+        for (int i = 0; i < MESSAGES; i++) {
+            UUID sessionId = sessionIds[i % sessions];
+            transactionTemplate.executeWithoutResult(status -> {
+                insert(sessionId);
+                directWriter.addCounters(sessionId, 1, 100, Instant.now());
+            });
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(MESSAGES)
+    public void writeBehind() {
+        for (int i = 0; i < MESSAGES; i++) {
+            SessionMessage msg = new SessionMessage(sessionIds[i % sessions], MessageRole.USER, content);
+            msg.setTokenCount(100);
+            batchWriter.submit(msg);
+        }
+        batchWriter.flush(sessionIds[0]);
+    }
+
+    private void insert(UUID sessionId) {
+        jdbcTemplate.update(INSERT_SQL, UUID.randomUUID(), sessionId, content, 100, Timestamp.from(Instant.now()));
+    }
+}
@@ -20,6 +20,10 @@ public class AgentConfig {
     @Column(length = 128)
     private String model;
 
+    // Model used for compaction summaries; null falls back to the global default, then model
+    @Column(name = "summary_model", length = 128)
+    private String summaryModel;
+
     @Enumerated(EnumType.STRING)
     @Column(name = "trust_level", nullable = false, length = 16)
     private AgentTrustLevel trustLevel = AgentTrustLevel.STANDARD;
@@ -82,6 +86,9 @@ public class AgentConfig {
     public String getModel() { return model; }
     public void setModel(String model) { this.model = model; }
 
+    public String getSummaryModel() { return summaryModel; }
+    public void setSummaryModel(String summaryModel) { this.summaryModel = summaryModel; }
+
     public AgentTrustLevel getTrustLevel() { return trustLevel; }
     public void setTrustLevel(AgentTrustLevel trustLevel) { this.trustLevel = trustLevel; }
 
@@ -122,4 +129,27 @@ public class AgentConfig {
         if (allowedTools == null || allowedTools.isEmpty()) return true;
         return allowedTools.contains(toolName);
     }
+
+    /**
+     * Detached copy for the in-process config cache. Tool and egress sets are
+     * unmodifiable; callers must treat the snapshot as read-only.
+     */
+    public AgentConfig snapshot() {
+        AgentConfig copy = new AgentConfig(agentId, displayName);
+        copy.model = model;
+        copy.summaryModel = summaryModel;
+        copy.trustLevel = trustLevel;
+        copy.systemPrompt = systemPrompt;
+        copy.allowedTools = allowedTools != null ? Set.copyOf(allowedTools) : Set.of();
+        copy.deniedTools = deniedTools != null ? Set.copyOf(deniedTools) : Set.of();
+        copy.egressAllowlist = egressAllowlist != null ? Set.copyOf(egressAllowlist) : Set.of();
+        copy.maxTokensPerRequest = maxTokensPerRequest;
+        copy.maxToolCallsPerRequest = maxToolCallsPerRequest;
+        copy.maxHistoryTokens = maxHistoryTokens;
+        copy.contentFilterPolicy = contentFilterPolicy != null ? contentFilterPolicy.copy() : null;
+        copy.configJson = configJson;
+        copy.createdAt = createdAt;
+        copy.updatedAt = updatedAt;
+        return copy;
+    }
 }
@@ -20,11 +20,14 @@ public class AgentConfigSeeder {
 
     private final JclawProperties properties;
     private final AgentConfigRepository agentConfigRepository;
+    private final AgentConfigService agentConfigService;
 
     public AgentConfigSeeder(JclawProperties properties,
-                            AgentConfigRepository agentConfigRepository) {
+                            AgentConfigRepository agentConfigRepository,
+                            AgentConfigService agentConfigService) {
         this.properties = properties;
         this.agentConfigRepository = agentConfigRepository;
+        this.agentConfigService = agentConfigService;
     }
 
     @PostConstruct
@@ -53,6 +56,9 @@ public class AgentConfigSeeder {
             if (agentProps.getModel() != null) {
                 config.setModel(agentProps.getModel());
             }
+            if (agentProps.getSummaryModel() != null) {
+                config.setSummaryModel(agentProps.getSummaryModel());
+            }
             if (agentProps.getTrustLevel() != null) {
                 config.setTrustLevel(AgentTrustLevel.valueOf(agentProps.getTrustLevel()));
             }
@@ -67,6 +73,8 @@ public class AgentConfigSeeder {
             }
 
             agentConfigRepository.save(config);
+            // Drop negative cache entries other instances may hold for this agent
+            agentConfigService.evict(config.getAgentId());
             seeded++;
             log.info("Seeded agent config from YAML: id={} displayName={} model={}",
                     agentProps.getId(), config.getDisplayName(), config.getModel());
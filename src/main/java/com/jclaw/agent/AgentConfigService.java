@@ -1,6 +1,9 @@
 package com.jclaw.agent;
 
 import com.jclaw.audit.AuditService;
+import com.jclaw.config.CacheInvalidationBus;
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,51 +14,118 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class AgentConfigService {
 
     private static final Logger log = LoggerFactory.getLogger(AgentConfigService.class);
+    static final String CACHE_NAME = "agent-config";
+
+    /** Cached snapshot; {@code config == null} records a known-missing agent. */
+    private record CachedConfig(AgentConfig config, long loadedAtMillis) {}
 
     private final AgentConfigRepository agentConfigRepository;
     private final AuditService auditService;
     private final ObjectMapper objectMapper;
+    private final CacheInvalidationBus invalidationBus;
+    private final JclawMetrics metrics;
+    private final long cacheTtlMillis;
+    private final Map<String, CachedConfig> configCache = new ConcurrentHashMap<>();
+    // Bumped on every eviction so a load that raced with an update is not cached
+    private final AtomicLong cacheEpoch = new AtomicLong();
 
     public AgentConfigService(AgentConfigRepository agentConfigRepository,
                              AuditService auditService,
-                             ObjectMapper objectMapper) {
+                             ObjectMapper objectMapper,
+                             CacheInvalidationBus invalidationBus,
+                             JclawMetrics metrics,
+                             JclawProperties properties) {
         this.agentConfigRepository = agentConfigRepository;
         this.auditService = auditService;
         this.objectMapper = objectMapper;
+        this.invalidationBus = invalidationBus;
+        this.metrics = metrics;
+        this.cacheTtlMillis = properties.getCache().getAgentConfigTtlSeconds() * 1000L;
+        invalidationBus.register(CACHE_NAME, this::evictLocal, this::evictAllLocal);
     }
 
     /**
      * Internal read method — no @PreAuthorize because this is called from agent runtime
      * threads (boundedElastic) where Spring Security context is unavailable.
      * HTTP-layer security is enforced at the controller level.
+     *
+     * <p>Served from the in-process snapshot cache; the returned config is shared and
+     * must not be modified.
      */
     public AgentConfig getAgentConfig(String agentId) {
-        return agentConfigRepository.findById(agentId).orElse(null);
+        CachedConfig cached = configCache.get(agentId);
+        if (cached != null && System.currentTimeMillis() - cached.loadedAtMillis() < cacheTtlMillis) {
+            metrics.recordCacheAccess(CACHE_NAME, true);
+            return cached.config();
+        }
+        metrics.recordCacheAccess(CACHE_NAME, false);
+
+        long epoch = cacheEpoch.get();
+        AgentConfig snapshot = agentConfigRepository.findById(agentId)
+                .map(AgentConfig::snapshot)
+                .orElse(null);
+        cacheIfCurrent(agentId, snapshot, epoch);
+        return snapshot;
     }
 
     /**
      * Internal read/create method — no @PreAuthorize for the same reason as getAgentConfig.
+     * Not transactional itself: cache hits must not open a transaction, and a concurrent
+     * create is resolved by re-reading after the failed insert.
      */
-    @Transactional
     public AgentConfig getOrCreateDefault(String agentId) {
-        return agentConfigRepository.findById(agentId)
-                .orElseGet(() -> {
-                    try {
-                        AgentConfig config = new AgentConfig(agentId, agentId);
-                        return agentConfigRepository.save(config);
-                    } catch (org.springframework.dao.DataIntegrityViolationException e) {
-                        // Concurrent creation race — re-fetch the row created by the other transaction
-                        return agentConfigRepository.findById(agentId)
-                                .orElseThrow(() -> new IllegalStateException(
-                                        "Agent config disappeared after concurrent create for: " + agentId));
-                    }
-                });
+        AgentConfig existing = getAgentConfig(agentId);
+        if (existing != null) return existing;
+
+        AgentConfig created;
+        try {
+            created = agentConfigRepository.save(new AgentConfig(agentId, agentId));
+        } catch (org.springframework.dao.DataIntegrityViolationException e) {
+            // Concurrent creation race — re-fetch the row created by the other transaction
+            created = agentConfigRepository.findById(agentId)
+                    .orElseThrow(() -> new IllegalStateException(
+                            "Agent config disappeared after concurrent create for: " + agentId));
+        }
+        // Other instances (and this one) may hold a negative entry for this agent
+        invalidationBus.publish(CACHE_NAME, agentId);
+        AgentConfig snapshot = created.snapshot();
+        cacheIfCurrent(agentId, snapshot, cacheEpoch.get());
+        return snapshot;
+    }
+
+    /**
+     * Drops the cached config for an agent on every instance (after commit when
+     * called inside a transaction).
+     */
+    public void evict(String agentId) {
+        invalidationBus.publish(CACHE_NAME, agentId);
+    }
+
+    private void cacheIfCurrent(String agentId, AgentConfig snapshot, long epoch) {
+        configCache.put(agentId, new CachedConfig(snapshot, System.currentTimeMillis()));
+        if (cacheEpoch.get() != epoch) {
+            // An eviction happened while we were loading; our copy may be stale
+            configCache.remove(agentId);
+        }
+    }
+
+    private void evictLocal(String agentId) {
+        cacheEpoch.incrementAndGet();
+        configCache.remove(agentId);
+    }
+
+    private void evictAllLocal() {
+        cacheEpoch.incrementAndGet();
+        configCache.clear();
     }
 
     @PreAuthorize("hasAnyAuthority('SCOPE_jclaw.operator', 'SCOPE_jclaw.admin')")
@@ -91,6 +161,7 @@ public class AgentConfigService {
         AgentConfig saved = agentConfigRepository.save(config);
         auditService.logConfigChange(principal, agentId, "AGENT_CONFIG_UPDATE",
                 serializeConfigDetails(agentId, config));
+        evict(agentId);
         return saved;
     }
 
@@ -101,6 +172,7 @@ public class AgentConfigService {
         agentConfigRepository.deleteById(agentId);
         auditService.logConfigChange(principal, agentId, "AGENT_CONFIG_DELETE",
                 serializeSafe(java.util.Map.of("agentId", agentId)));
+        evict(agentId);
     }
 
     private String getCurrentPrincipal() {
@@ -120,7 +192,8 @@ public class AgentConfigService {
         return serializeSafe(java.util.Map.of(
                 "agentId", agentId,
                 "trustLevel", config.getTrustLevel().name(),
-                "model", Optional.ofNullable(config.getModel()).orElse("default")
+                "model", Optional.ofNullable(config.getModel()).orElse("default"),
+                "summaryModel", Optional.ofNullable(config.getSummaryModel()).orElse("default")
         ));
     }
 }
@@ -0,0 +1,42 @@
+package com.jclaw.agent;
+
+import com.jclaw.tool.ToolRegistry;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.openai.OpenAiChatOptions;
+
+import java.util.List;
+
+/**
+ * Compiled, read-only view of everything a turn needs for one agent: the model client,
+ * default request options, the tools its policy permits and the resolved system prompt.
+ * Built by {@link AgentProfileService}; only the per-request {@link AgentContext} is bound
+ * at call time.
+ *
+ * @param modelName configured model, or null when the router default is used
+ */
+public record AgentProfile(
+        String agentId,
+        AgentConfig config,
+        String modelName,
+        ChatClient chatClient,
+        OpenAiChatOptions defaultOptions,
+        List<ToolRegistry.ToolEntry> tools,
+        String systemPrompt,
+        int systemPromptTokens,
+        long toolRegistryVersion,
+        long builtAtMillis
+) {
+
+    /**
+     * Fresh copy of the default options. Spring AI writes the request's tool callbacks
+     * into the options it is given, so the shared instance must never be passed directly.
+     */
+    public OpenAiChatOptions options() {
+        return defaultOptions.copy();
+    }
+
+    /** Model name for metrics and logs. */
+    public String modelLabel() {
+        return modelName != null ? modelName : "default";
+    }
+}
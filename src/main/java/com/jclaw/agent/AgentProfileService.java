@@ -0,0 +1,154 @@
+package com.jclaw.agent;
+
+import com.jclaw.config.CacheInvalidationBus;
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import com.jclaw.tool.ToolRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.openai.OpenAiChatOptions;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Builds and caches one {@link AgentProfile} per agent so a turn does not re-resolve the
+ * model, rebuild the ChatClient, re-filter tools or re-scan prompt config.
+ *
+ * <p>Profiles are derived from the agent config, so they register under the same
+ * invalidation name and are dropped whenever the config is evicted on any instance. A
+ * profile is also rebuilt when the tool registry changes or the config cache TTL passes.
+ */
+@Service
+public class AgentProfileService {
+
+    private static final Logger log = LoggerFactory.getLogger(AgentProfileService.class);
+    static final String CACHE_NAME = "agent-profile";
+
+    private final AgentConfigService agentConfigService;
+    private final ModelRouter modelRouter;
+    private final ToolRegistry toolRegistry;
+    private final PromptTemplateService promptService;
+    private final TokenCounter tokenCounter;
+    private final JclawMetrics metrics;
+    private final ChatClient defaultClient;
+    private final long ttlMillis;
+    private final Map<String, AgentProfile> profiles = new ConcurrentHashMap<>();
+    // ChatClient is immutable and thread-safe; one per model is enough
+    private final Map<ChatModel, ChatClient> clientsByModel = new ConcurrentHashMap<>();
+    // Bumped on every eviction so a build that raced with a config update is not cached
+    private final AtomicLong cacheEpoch = new AtomicLong();
+
+    public AgentProfileService(AgentConfigService agentConfigService,
+                               ModelRouter modelRouter,
+                               ToolRegistry toolRegistry,
+                               PromptTemplateService promptService,
+                               TokenCounter tokenCounter,
+                               CacheInvalidationBus invalidationBus,
+                               JclawMetrics metrics,
+                               JclawProperties properties,
+                               ChatClient.Builder chatClientBuilder) {
+        this.agentConfigService = agentConfigService;
+        this.modelRouter = modelRouter;
+        this.toolRegistry = toolRegistry;
+        this.promptService = promptService;
+        this.tokenCounter = tokenCounter;
+        this.metrics = metrics;
+        this.defaultClient = chatClientBuilder.build();
+        this.ttlMillis = properties.getCache().getAgentConfigTtlSeconds() * 1000L;
+        invalidationBus.register(AgentConfigService.CACHE_NAME, this::evictLocal, this::evictAllLocal);
+    }
+
+    /**
+     * Returns the compiled profile for the agent, creating the default config if needed.
+     */
+    public AgentProfile getProfile(String agentId) {
+        AgentProfile cached = profiles.get(agentId);
+        if (cached != null && isFresh(cached)) {
+            metrics.recordCacheAccess(CACHE_NAME, true);
+            return cached;
+        }
+        metrics.recordCacheAccess(CACHE_NAME, false);
+
+        long epoch = cacheEpoch.get();
+        AgentProfile profile = build(agentId);
+        profiles.put(agentId, profile);
+        if (cacheEpoch.get() != epoch) {
+            // Config was evicted while we were building; don't keep a possibly stale profile
+            profiles.remove(agentId);
+        }
+        return profile;
+    }
+
+    /**
+     * Profile with a per-request model override applied. The result is not cached;
+     * the override's ChatClient is.
+     */
+    public AgentProfile getProfile(String agentId, String modelOverride) {
+        AgentProfile profile = getProfile(agentId);
+        if (modelOverride == null || modelOverride.isBlank()
+                || modelOverride.equals(profile.modelName())) {
+            return profile;
+        }
+        AgentConfig overrideConfig = new AgentConfig();
+        overrideConfig.setModel(modelOverride);
+        return new AgentProfile(agentId, profile.config(), modelOverride,
+                clientFor(modelRouter.resolveModel(agentId, overrideConfig)),
+                defaultOptions(profile.config(), modelOverride),
+                profile.tools(), profile.systemPrompt(),
+                tokenCounter.count(profile.systemPrompt(), modelOverride),
+                profile.toolRegistryVersion(), profile.builtAtMillis());
+    }
+
+    private AgentProfile build(String agentId) {
+        long toolsVersion = toolRegistry.version();
+        AgentConfig config = agentConfigService.getOrCreateDefault(agentId);
+        String modelName = config.getModel();
+        List<ToolRegistry.ToolEntry> tools = toolRegistry.allowedTools(config);
+        String systemPrompt = promptService.resolveSystemPrompt(agentId, config);
+        AgentProfile profile = new AgentProfile(agentId, config, modelName,
+                clientFor(modelRouter.resolveModel(agentId, config)),
+                defaultOptions(config, modelName),
+                tools, systemPrompt, tokenCounter.count(systemPrompt, modelName),
+                toolsVersion, System.currentTimeMillis());
+        log.debug("Compiled profile for agent={} model={} tools={}",
+                agentId, profile.modelLabel(), tools.size());
+        return profile;
+    }
+
+    private boolean isFresh(AgentProfile profile) {
+        return profile.toolRegistryVersion() == toolRegistry.version()
+                && System.currentTimeMillis() - profile.builtAtMillis() < ttlMillis;
+    }
+
+    private ChatClient clientFor(ChatModel model) {
+        if (model == modelRouter.getDefaultModel()) {
+            return defaultClient;
+        }
+        return clientsByModel.computeIfAbsent(model, m -> ChatClient.builder(m).build());
+    }
+
+    private static OpenAiChatOptions defaultOptions(AgentConfig config, String modelName) {
+        OpenAiChatOptions.Builder builder = OpenAiChatOptions.builder()
+                .maxTokens(config.getMaxTokensPerRequest());
+        if (modelName != null) {
+            builder.model(modelName);
+        }
+        return builder.build();
+    }
+
+    private void evictLocal(String agentId) {
+        cacheEpoch.incrementAndGet();
+        profiles.remove(agentId);
+    }
+
+    private void evictAllLocal() {
+        cacheEpoch.incrementAndGet();
+        profiles.clear();
+    }
+}
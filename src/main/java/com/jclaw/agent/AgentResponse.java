@@ -7,7 +7,21 @@ public record AgentResponse(
         String finishReason,
         Map<String, Object> metadata
 ) {
+    /**
+     * Finish reason of a terminal element that replaces the reply rather than extending
+     * it: the stream failed, and {@code content} is the message to show instead.
+     */
+    public static final String FINISH_ERROR = "error";
+
     public AgentResponse(String content) {
         this(content, "stop", Map.of());
     }
+
+    public static AgentResponse error(String message) {
+        return new AgentResponse(message, FINISH_ERROR, Map.of());
+    }
+
+    public boolean isError() {
+        return FINISH_ERROR.equals(finishReason);
+    }
 }
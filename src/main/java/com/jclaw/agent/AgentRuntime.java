@@ -12,9 +12,7 @@ import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.slf4j.MDC;
-import org.springframework.ai.openai.OpenAiChatOptions;
 import org.springframework.ai.chat.client.ChatClient;
-import org.springframework.ai.chat.model.ChatModel;
 import org.springframework.ai.chat.model.ChatResponse;
 import org.springframework.ai.chat.prompt.Prompt;
 import org.springframework.ai.tool.ToolCallback;
@@ -27,40 +25,38 @@ import reactor.core.scheduler.Schedulers;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 @Service
 public class AgentRuntime {
 
     private static final Logger log = LoggerFactory.getLogger(AgentRuntime.class);
 
-    private final ModelRouter modelRouter;
+    private final AgentProfileService profileService;
     private final ToolRegistry toolRegistry;
     private final SessionManager sessionManager;
     private final PromptTemplateService promptService;
     private final ContentFilterChain contentFilterChain;
-    private final AgentConfigService agentConfigService;
     private final AuditService auditService;
+    private final TokenCounter tokenCounter;
     private final JclawMetrics metrics;
-    private final ChatClient.Builder chatClientBuilder;
 
-    public AgentRuntime(ModelRouter modelRouter,
+    public AgentRuntime(AgentProfileService profileService,
                        ToolRegistry toolRegistry,
                        SessionManager sessionManager,
                        PromptTemplateService promptService,
                        ContentFilterChain contentFilterChain,
-                       AgentConfigService agentConfigService,
                        AuditService auditService,
-                       JclawMetrics metrics,
-                       ChatClient.Builder chatClientBuilder) {
-        this.modelRouter = modelRouter;
+                       TokenCounter tokenCounter,
+                       JclawMetrics metrics) {
+        this.profileService = profileService;
         this.toolRegistry = toolRegistry;
         this.sessionManager = sessionManager;
         this.promptService = promptService;
         this.contentFilterChain = contentFilterChain;
-        this.agentConfigService = agentConfigService;
         this.auditService = auditService;
+        this.tokenCounter = tokenCounter;
         this.metrics = metrics;
-        this.chatClientBuilder = chatClientBuilder;
     }
 
     /**
@@ -88,45 +84,27 @@ public class AgentRuntime {
             Session session = sessionManager.resolveSession(context, filtered);
             MDC.put("sessionId", session.getId().toString());
 
-            AgentConfig config = agentConfigService.getOrCreateDefault(context.agentId());
+            AgentProfile profile = profileService.getProfile(context.agentId(), modelOverride);
 
             sessionManager.addMessage(session.getId(), MessageRole.USER,
-                    filtered.content(), estimateTokens(filtered.content()));
+                    filtered.content(), tokenCounter.count(filtered.content(), profile.modelName()));
 
-            Prompt prompt = promptService.buildPrompt(context, session, filtered);
-            List<ToolCallback> tools = toolRegistry.resolveTools(context);
+            Prompt prompt = promptService.buildPrompt(profile, session, filtered);
+            List<ToolCallback> tools = toolRegistry.bindTools(profile.tools(), context);
 
-            return new LlmCallContext(session, prompt, tools, config, modelOverride);
+            return new LlmCallContext(session, prompt, tools, profile);
         })
         .subscribeOn(Schedulers.boundedElastic())
         .flatMap(ctx -> Mono.fromCallable(() -> {
             Timer.Sample sample = metrics.startLlmTimer();
 
-            // Use effectiveModel() to respect modelOverride if provided
-            String effectiveModel = ctx.effectiveModel();
-            AgentConfig resolveConfig = ctx.config();
-            if (effectiveModel != null && !effectiveModel.equals(resolveConfig.getModel())) {
-                // Create a transient config copy with the overridden model for resolution
-                AgentConfig overrideConfig = new AgentConfig();
-                overrideConfig.setModel(effectiveModel);
-                resolveConfig = overrideConfig;
-            }
-
-            ChatModel resolvedModel = modelRouter.resolveModel(context.agentId(), resolveConfig);
-            String modelName = effectiveModel != null ? effectiveModel : "default";
+            // Profile already carries any modelOverride for this request
+            AgentProfile profile = ctx.profile();
+            String modelName = profile.modelLabel();
             metrics.recordLlmRequest(modelName, context.agentId());
 
-            ChatClient chatClient = (resolvedModel != modelRouter.getDefaultModel())
-                    ? ChatClient.builder(resolvedModel).build()
-                    : chatClientBuilder.build();
-
-            OpenAiChatOptions.Builder optionsBuilder = OpenAiChatOptions.builder()
-                    .maxTokens(ctx.config().getMaxTokensPerRequest());
-            if (effectiveModel != null) {
-                optionsBuilder.model(effectiveModel);
-            }
-            ChatClient.ChatClientRequestSpec spec = chatClient.prompt(ctx.prompt())
-                    .options(optionsBuilder.build());
+            ChatClient.ChatClientRequestSpec spec = profile.chatClient().prompt(ctx.prompt())
+                    .options(profile.options());
             if (!ctx.tools().isEmpty()) {
                 spec = spec.tools(ctx.tools());
             }
@@ -135,7 +113,7 @@ public class AgentRuntime {
             ChatResponse chatResponse = spec.call().chatResponse();
 
             metrics.stopLlmTimer(sample, modelName, context.agentId());
-            extractAndRecordTokenUsage(chatResponse, modelName, context.agentId());
+            long completionTokens = extractAndRecordTokenUsage(chatResponse, modelName, context.agentId());
 
             String text = chatResponse.getResult() != null
                     && chatResponse.getResult().getOutput() != null
@@ -150,7 +128,11 @@ public class AgentRuntime {
             // Store assistant response
             if (!text.isEmpty()) {
                 sessionManager.addMessage(ctx.session().getId(), MessageRole.ASSISTANT,
-                        text, estimateTokens(text));
+                        text, tokenCounter.count(text, profile.modelName()));
+                // With tools bound, usage may cover intermediate tool-call rounds too
+                if (ctx.tools().isEmpty()) {
+                    tokenCounter.observe(profile.modelName(), text, completionTokens);
+                }
             }
 
             metrics.recordMessageProcessed(context.channelType(), context.agentId(), "success");
@@ -193,68 +175,62 @@ public class AgentRuntime {
             Session session = sessionManager.resolveSession(context, filtered);
             MDC.put("sessionId", session.getId().toString());
 
-            // 3. Resolve agent config (needed for content filter policy and prompt)
-            AgentConfig config = agentConfigService.getOrCreateDefault(context.agentId());
+            // 3. Resolve compiled agent profile (config, model client, tools, system prompt)
+            AgentProfile profile = profileService.getProfile(context.agentId());
 
             // 4. Store user message (use sanitized content)
             sessionManager.addMessage(session.getId(), MessageRole.USER,
-                    filtered.content(), estimateTokens(filtered.content()));
+                    filtered.content(), tokenCounter.count(filtered.content(), profile.modelName()));
 
             // 5. Build prompt (use sanitized message — config is already resolved)
-            Prompt prompt = promptService.buildPrompt(context, session, filtered);
+            Prompt prompt = promptService.buildPrompt(profile, session, filtered);
 
-            // 6. Resolve tools for this agent
-            List<ToolCallback> tools = toolRegistry.resolveTools(context);
+            // 6. Bind the profile's permitted tools to this request's context
+            List<ToolCallback> tools = toolRegistry.bindTools(profile.tools(), context);
 
-            return new LlmCallContext(session, prompt, tools, config);
+            return new LlmCallContext(session, prompt, tools, profile);
         })
         .subscribeOn(Schedulers.boundedElastic())
         .flatMapMany(ctx -> {
             Timer.Sample sample = metrics.startLlmTimer();
 
-            // 6. Resolve model through ModelRouter (validates model exists in registry)
-            ChatModel resolvedModel = modelRouter.resolveModel(context.agentId(), ctx.config());
-            String modelName = ctx.config().getModel() != null ? ctx.config().getModel() : "default";
+            // 7. Model client and default options come precompiled from the profile
+            AgentProfile profile = ctx.profile();
+            String modelName = profile.modelLabel();
 
             // Record LLM request metric
             metrics.recordLlmRequest(modelName, context.agentId());
 
-            // 7. Build ChatClient — use resolved model if different from default
-            ChatClient chatClient = (resolvedModel != modelRouter.getDefaultModel())
-                    ? ChatClient.builder(resolvedModel).build()
-                    : chatClientBuilder.build();
-
-            // 8. Configure request with maxTokens and model from agent config
-            OpenAiChatOptions.Builder optionsBuilder = OpenAiChatOptions.builder()
-                    .maxTokens(ctx.config().getMaxTokensPerRequest());
-            if (ctx.config().getModel() != null) {
-                optionsBuilder.model(ctx.config().getModel());
-            }
-            ChatClient.ChatClientRequestSpec spec = chatClient.prompt(ctx.prompt())
-                    .options(optionsBuilder.build());
+            // 8. Options are copied per request; the profile's defaults stay untouched
+            ChatClient.ChatClientRequestSpec spec = profile.chatClient().prompt(ctx.prompt())
+                    .options(profile.options());
             if (!ctx.tools().isEmpty()) {
                 spec = spec.tools(ctx.tools());
             }
 
             // Track tool calls and accumulated response
             AtomicInteger toolCallCount = new AtomicInteger(0);
-            int maxToolCalls = ctx.config().getMaxToolCallsPerRequest();
+            // Providers report usage on the final chunk only; keep the largest seen
+            AtomicLong completionTokens = new AtomicLong();
+            int maxToolCalls = profile.config().getMaxToolCallsPerRequest();
             StringBuffer responseAccumulator = new StringBuffer(); // thread-safe: publishOn may switch threads
 
             // Resolve egress policy once per request (avoids per-chunk DB lookup)
             var egressPolicy = contentFilterChain.resolvePolicy(context.agentId());
+            // Incremental scanner: each chunk re-checks only a bounded window, not the whole response
+            var egressScanner = contentFilterChain.newOutboundScanner(context, egressPolicy);
 
             return spec.stream().chatResponse()
                 .map(chatResponse -> toAgentResponse(
                         chatResponse, modelName, context.agentId(),
-                        toolCallCount, maxToolCalls, responseAccumulator))
+                        toolCallCount, maxToolCalls, responseAccumulator, completionTokens))
                 .filter(response -> response.content() != null && !response.content().isEmpty())
-                .publishOn(Schedulers.boundedElastic()) // filterOutbound does JPA lookup; move off Netty I/O thread
+                .publishOn(Schedulers.boundedElastic()) // egress violations write audit via JPA; move off Netty I/O thread
                 .doOnNext(response -> {
-                    // EgressGuard: check accumulated response inline to halt stream on violation (§5.4)
+                    // EgressGuard: check streamed text inline to halt stream on violation (§5.4)
                     // Running per-chunk ensures ContentFilterException stops delivery mid-stream
                     // rather than firing post-delivery in doOnComplete where it would be inert
-                    contentFilterChain.filterOutbound(responseAccumulator.toString(), context, egressPolicy);
+                    egressScanner.append(response.content());
                 })
                 .doOnComplete(() -> {
                     metrics.stopLlmTimer(sample, modelName, context.agentId());
@@ -263,7 +239,10 @@ public class AgentRuntime {
                     String fullResponse = responseAccumulator.toString();
                     if (!fullResponse.isEmpty()) {
                         sessionManager.addMessage(ctx.session().getId(), MessageRole.ASSISTANT,
-                                fullResponse, estimateTokens(fullResponse));
+                                fullResponse, tokenCounter.count(fullResponse, profile.modelName()));
+                        if (toolCallCount.get() == 0) {
+                            tokenCounter.observe(profile.modelName(), fullResponse, completionTokens.get());
+                        }
                     } else if (toolCallCount.get() > 0) {
                         log.debug("Tool-only response with {} tool calls, egress guard applied via tool audit",
                                 toolCallCount.get());
@@ -285,7 +264,8 @@ public class AgentRuntime {
                                 // Use request-start policy snapshot to prevent TOCTOU bypass
                                 contentFilterChain.filterOutbound(partial, context, egressPolicy);
                                 sessionManager.addMessage(ctx.session().getId(),
-                                        MessageRole.ASSISTANT, partial, estimateTokens(partial));
+                                        MessageRole.ASSISTANT, partial,
+                                        tokenCounter.count(partial, profile.modelName()));
                                 log.debug("Stored partial response ({} chars) for cancelled stream",
                                         partial.length());
                             } catch (ContentFilterChain.ContentFilterException e) {
@@ -305,7 +285,7 @@ public class AgentRuntime {
                     context.agentId(), context.principal(), e.getMessage());
             metrics.recordMessageProcessed(context.channelType(), context.agentId(), "filtered");
             MDC.clear();
-            return Flux.just(new AgentResponse(
+            return Flux.just(AgentResponse.error(
                     "Your message could not be processed."));
         })
         .onErrorResume(MaxToolCallsExceededException.class, e -> {
@@ -315,7 +295,7 @@ public class AgentRuntime {
                     context.agentId(), null, e.getMessage());
             metrics.recordMessageProcessed(context.channelType(), context.agentId(), "tool_limit");
             MDC.clear();
-            return Flux.just(new AgentResponse(
+            return Flux.just(AgentResponse.error(
                     "I've reached the maximum number of tool operations for this request. Please try a simpler request."));
         })
         .onErrorResume(e -> {
@@ -323,15 +303,17 @@ public class AgentRuntime {
                     context.agentId(), context.principal(), e);
             metrics.recordMessageProcessed(context.channelType(), context.agentId(), "error");
             MDC.clear();
-            return Flux.just(new AgentResponse(
+            return Flux.just(AgentResponse.error(
                     "I encountered an error processing your request. Please try again."));
         });
     }
 
     private AgentResponse toAgentResponse(ChatResponse chatResponse, String modelName,
                                           String agentId, AtomicInteger toolCallCount,
-                                          int maxToolCalls, StringBuffer responseAccumulator) {
-        extractAndRecordTokenUsage(chatResponse, modelName, agentId);
+                                          int maxToolCalls, StringBuffer responseAccumulator,
+                                          AtomicLong completionTokens) {
+        long outputTokens = extractAndRecordTokenUsage(chatResponse, modelName, agentId);
+        completionTokens.accumulateAndGet(outputTokens, Math::max);
 
         // Count tool calls and enforce limit
         if (chatResponse.getResult() != null
@@ -365,10 +347,11 @@ public class AgentRuntime {
         return new AgentResponse(text != null ? text : "", finishReason, Map.of());
     }
 
-    private void extractAndRecordTokenUsage(ChatResponse chatResponse, String model, String agent) {
-        if (chatResponse == null || chatResponse.getMetadata() == null) return;
+    /** Records provider-reported usage and returns the completion token count (0 if absent). */
+    private long extractAndRecordTokenUsage(ChatResponse chatResponse, String model, String agent) {
+        if (chatResponse == null || chatResponse.getMetadata() == null) return 0;
         var usage = chatResponse.getMetadata().getUsage();
-        if (usage == null) return;
+        if (usage == null) return 0;
 
         long inputTokens = usage.getPromptTokens();
         long outputTokens = usage.getCompletionTokens();
@@ -379,10 +362,7 @@ public class AgentRuntime {
         if (outputTokens > 0) {
             metrics.recordLlmTokensOutput(model, agent, outputTokens);
         }
-    }
-
-    private int estimateTokens(String text) {
-        return text != null ? text.length() / 4 : 0;
+        return Math.max(outputTokens, 0);
     }
 
     public static class MaxToolCallsExceededException extends RuntimeException {
@@ -395,16 +375,6 @@ public class AgentRuntime {
             Session session,
             Prompt prompt,
             List<ToolCallback> tools,
-            AgentConfig config,
-            String modelOverride
-    ) {
-        LlmCallContext(Session session, Prompt prompt, List<ToolCallback> tools, AgentConfig config) {
-            this(session, prompt, tools, config, null);
-        }
-
-        String effectiveModel() {
-            if (modelOverride != null && !modelOverride.isBlank()) return modelOverride;
-            return config.getModel();
-        }
-    }
+            AgentProfile profile
+    ) {}
 }
@@ -28,6 +28,7 @@ public class ModelRouter {
     private final ChatModel defaultModel;
     private final Map<String, ChatModel> modelRegistry = new ConcurrentHashMap<>();
     private final ApplicationContext applicationContext;
+    private volatile String defaultSummaryModel;
 
     public ModelRouter(ChatModel defaultModel, ApplicationContext applicationContext) {
         this.defaultModel = defaultModel;
@@ -78,6 +79,25 @@ public class ModelRouter {
         return modelRegistry.getOrDefault(config.getModel(), defaultModel);
     }
 
+    /**
+     * Model for compaction summaries: the agent's summary model, else the global
+     * {@code jclaw.session.summary-model}, else the agent's chat model. A name that is not
+     * registered falls through to the next choice.
+     */
+    public ChatModel resolveSummaryModel(String agentId, AgentConfig config) {
+        for (String name : new String[]{config != null ? config.getSummaryModel() : null, defaultSummaryModel}) {
+            if (name == null || name.isBlank()) continue;
+            ChatModel model = modelRegistry.get(name);
+            if (model != null) return model;
+            log.warn("Summary model '{}' for agent {} is not registered, falling back", name, agentId);
+        }
+        return resolveModel(agentId, config);
+    }
+
+    public void setDefaultSummaryModel(String defaultSummaryModel) {
+        this.defaultSummaryModel = defaultSummaryModel;
+    }
+
     private String extractModelId(ChatModel chatModel) {
         if (chatModel instanceof AnthropicChatModel anthropicModel) {
             try {
@@ -0,0 +1,231 @@
+package com.jclaw.agent;
+
+import com.jclaw.config.CacheInvalidationBus;
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import com.jclaw.session.MessageRole;
+import com.jclaw.session.SessionManager;
+import com.jclaw.session.SessionManager.HistoryVersion;
+import com.jclaw.session.SessionMessage;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.messages.SystemMessage;
+import org.springframework.ai.chat.messages.UserMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.LongSupplier;
+
+/**
+ * In-process LRU of the prompt history already built for active sessions.
+ *
+ * <p>Each entry is tagged with the session's history version from
+ * {@link SessionManager#getHistoryDelta}. On a turn only the messages appended since that
+ * version are fetched and converted, and the oldest messages fall off the front as the
+ * window slides past the token budget. When the version says history was rewritten
+ * (compaction, a dropped cache list) or too much was appended, the entry is rebuilt from
+ * the Redis/DB path. The cache is bounded by the total tokens it holds, and an entry is
+ * rebuilt once it is {@link #ENTRY_TTL} old however often it is hit. A session is evicted
+ * when {@link SessionManager} fails to append to its history list, since the version
+ * would then no longer count every message.
+ */
+@Component
+public class PromptHistoryCache {
+
+    private static final String CACHE_NAME = "prompt-history";
+    // Beyond this many new messages, rebuilding costs about as much as the delta
+    static final int MAX_DELTA = 64;
+    // Well inside the TTL of the Redis version counter, so a restarted counter can't match
+    static final Duration ENTRY_TTL = Duration.ofMinutes(30);
+
+    /** A history message ready for a prompt; {@code message} is null for TOOL messages. */
+    public record Item(UUID id, MessageRole role, Message message, int tokens) {}
+
+    private record Entry(long resets, long appends, int budget, List<Item> items,
+                         long tokens, long createdAtMillis) {}
+
+    private final SessionManager sessionManager;
+    private final TokenCounter tokenCounter;
+    private final JclawMetrics metrics;
+    private final long maxTokens;
+    private final LongSupplier clock;
+    private final LinkedHashMap<UUID, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedTokens;
+
+    @Autowired
+    public PromptHistoryCache(SessionManager sessionManager,
+                              TokenCounter tokenCounter,
+                              JclawProperties properties,
+                              JclawMetrics metrics,
+                              CacheInvalidationBus invalidationBus) {
+        this(sessionManager, tokenCounter, properties, metrics, invalidationBus, System::currentTimeMillis);
+    }
+
+    PromptHistoryCache(SessionManager sessionManager,
+                       TokenCounter tokenCounter,
+                       JclawProperties properties,
+                       JclawMetrics metrics,
+                       CacheInvalidationBus invalidationBus,
+                       LongSupplier clock) {
+        this.sessionManager = sessionManager;
+        this.tokenCounter = tokenCounter;
+        this.metrics = metrics;
+        this.maxTokens = properties.getSession().getPromptCacheMaxTokens();
+        this.clock = clock;
+        invalidationBus.register(SessionManager.HISTORY_CACHE_NAME,
+                key -> evict(UUID.fromString(key)), this::evictAll);
+    }
+
+    /**
+     * Newest live messages of a session, oldest first, whose tokens fit {@code budget}.
+     * The newest message is always included, so the just-stored current message is last.
+     */
+    public List<Item> history(UUID sessionId, int budget, String model) {
+        if (maxTokens <= 0) {
+            return window(toItems(sessionManager.getRecentHistory(sessionId, budget), model), budget);
+        }
+
+        HistoryVersion version = null;
+        Entry entry = current(sessionId, budget);
+        if (entry != null) {
+            version = sessionManager.getHistoryDelta(sessionId, entry.appends(), MAX_DELTA);
+            if (version != null && version.resets() == entry.resets()) {
+                long delta = version.appends() - entry.appends();
+                if (delta == 0) {
+                    metrics.recordCacheAccess(CACHE_NAME, true);
+                    store(sessionId, entry);
+                    return entry.items();
+                }
+                if (delta > 0 && version.appended().size() == delta) {
+                    Entry extended = extend(entry, version, model);
+                    metrics.recordCacheAccess(CACHE_NAME, true);
+                    store(sessionId, extended);
+                    return extended.items();
+                }
+            }
+        }
+        metrics.recordCacheAccess(CACHE_NAME, false);
+
+        // The version is read before the history: a message appended in between is in both,
+        // and is de-duplicated by id when the next delta replays it
+        if (version == null) version = sessionManager.getHistoryDelta(sessionId, Long.MAX_VALUE, 0);
+        List<Item> items = window(toItems(sessionManager.getRecentHistory(sessionId, budget), model), budget);
+        if (version != null) {
+            store(sessionId, new Entry(version.resets(), version.appends(), budget, items,
+                    sum(items), clock.getAsLong()));
+        } else {
+            evict(sessionId);
+        }
+        return items;
+    }
+
+    synchronized long cachedTokens() {
+        return cachedTokens;
+    }
+
+    private Entry extend(Entry entry, HistoryVersion version, String model) {
+        List<Item> previous = entry.items();
+        Set<UUID> known = new HashSet<>();
+        for (int i = Math.max(0, previous.size() - MAX_DELTA); i < previous.size(); i++) {
+            known.add(previous.get(i).id());
+        }
+        List<Item> items = new ArrayList<>(previous.size() + version.appended().size());
+        items.addAll(previous);
+        for (SessionMessage m : version.appended()) {
+            if (m.getId() == null || !known.contains(m.getId())) items.add(toItem(m, model));
+        }
+        List<Item> window = window(items, entry.budget());
+        return new Entry(entry.resets(), version.appends(), entry.budget(), window,
+                sum(window), entry.createdAtMillis());
+    }
+
+    private synchronized Entry current(UUID sessionId, int budget) {
+        Entry entry = entries.get(sessionId);
+        if (entry == null) return null;
+        if (entry.budget() != budget
+                || clock.getAsLong() - entry.createdAtMillis() > ENTRY_TTL.toMillis()) {
+            remove(sessionId);
+            return null;
+        }
+        return entry;
+    }
+
+    private synchronized void store(UUID sessionId, Entry entry) {
+        remove(sessionId);
+        if (entry.tokens() > maxTokens) return;
+        entries.put(sessionId, entry);
+        cachedTokens += entry.tokens();
+
+        // Access order: the eldest entries are the least recently used sessions
+        Iterator<Map.Entry<UUID, Entry>> eldest = entries.entrySet().iterator();
+        while (cachedTokens > maxTokens && eldest.hasNext()) {
+            Map.Entry<UUID, Entry> e = eldest.next();
+            if (e.getKey().equals(sessionId)) continue;
+            cachedTokens -= e.getValue().tokens();
+            eldest.remove();
+        }
+    }
+
+    private synchronized void evict(UUID sessionId) {
+        remove(sessionId);
+    }
+
+    private synchronized void evictAll() {
+        entries.clear();
+        cachedTokens = 0;
+    }
+
+    private void remove(UUID sessionId) {
+        Entry removed = entries.remove(sessionId);
+        if (removed != null) cachedTokens -= removed.tokens();
+    }
+
+    /** Drops the oldest items until the rest fit the budget, always keeping the newest. */
+    private static List<Item> window(List<Item> items, int budget) {
+        int start = items.size();
+        long tokens = 0;
+        while (start > 0) {
+            int itemTokens = items.get(start - 1).tokens();
+            if (start < items.size() && tokens + itemTokens > budget) break;
+            tokens += itemTokens;
+            start--;
+        }
+        return List.copyOf(items.subList(start, items.size()));
+    }
+
+    private List<Item> toItems(List<SessionMessage> history, String model) {
+        List<Item> items = new ArrayList<>(history.size());
+        for (SessionMessage m : history) {
+            items.add(toItem(m, model));
+        }
+        return items;
+    }
+
+    private Item toItem(SessionMessage m, String model) {
+        int tokens = m.getTokenCount() != null ? m.getTokenCount() : tokenCounter.count(m.getContent(), model);
+        Message message = switch (m.getRole()) {
+            case USER -> new UserMessage(m.getContent());
+            case ASSISTANT -> new AssistantMessage(m.getContent());
+            case SYSTEM -> new SystemMessage(m.getContent());
+            default -> null; // TOOL messages handled via tool call metadata
+        };
+        return new Item(m.getId(), m.getRole(), message, tokens);
+    }
+
+    private static long sum(List<Item> items) {
+        long tokens = 0;
+        for (Item item : items) {
+            tokens += item.tokens();
+        }
+        return tokens;
+    }
+}
@@ -2,9 +2,8 @@ package com.jclaw.agent;
 
 import com.jclaw.channel.InboundMessage;
 import com.jclaw.config.JclawProperties;
+import com.jclaw.session.MessageRole;
 import com.jclaw.session.Session;
-import com.jclaw.session.SessionManager;
-import com.jclaw.session.SessionMessage;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.ai.chat.messages.*;
@@ -24,71 +23,62 @@ public class PromptTemplateService {
 
     private static final Logger log = LoggerFactory.getLogger(PromptTemplateService.class);
 
-    private final SessionManager sessionManager;
-    private final AgentConfigService agentConfigService;
+    private final PromptHistoryCache historyCache;
+    private final TokenCounter tokenCounter;
     private final JclawProperties properties;
     private final Map<String, String> promptCache = new ConcurrentHashMap<>();
 
-    public PromptTemplateService(SessionManager sessionManager,
-                                AgentConfigService agentConfigService,
+    public PromptTemplateService(PromptHistoryCache historyCache,
+                                TokenCounter tokenCounter,
                                 JclawProperties properties) {
-        this.sessionManager = sessionManager;
-        this.agentConfigService = agentConfigService;
+        this.historyCache = historyCache;
+        this.tokenCounter = tokenCounter;
         this.properties = properties;
     }
 
-    public Prompt buildPrompt(AgentContext context, Session session, InboundMessage message) {
+    public Prompt buildPrompt(AgentProfile profile, Session session, InboundMessage message) {
         List<Message> messages = new ArrayList<>();
 
-        // System prompt: DB config > YAML classpath ref > default
-        String systemPrompt = resolveSystemPrompt(context.agentId());
+        // System prompt was resolved when the profile was compiled
+        String systemPrompt = profile.systemPrompt();
         messages.add(new SystemMessage(systemPrompt));
 
         // Resolve maxHistoryTokens from agent config or global default
         int maxHistoryTokens = properties.getSession().getMaxHistoryTokens();
-        AgentConfig config = agentConfigService.getAgentConfig(context.agentId());
+        AgentConfig config = profile.config();
         if (config != null && config.getMaxHistoryTokens() > 0) {
             maxHistoryTokens = config.getMaxHistoryTokens();
         }
 
-        // Session history — enforce maxHistoryTokens by trimming oldest messages
-        List<SessionMessage> history = sessionManager.getHistory(session.getId());
+        int currentUserTokens = tokenCounter.count(message.content(), profile.modelName());
+        int tokenBudget = maxHistoryTokens - currentUserTokens - profile.systemPromptTokens();
+
+        // Session history — the newest messages within maxHistoryTokens, kept built in-process
+        // across turns; it includes the just-stored current message
+        List<PromptHistoryCache.Item> history = historyCache.history(session.getId(),
+                maxHistoryTokens, profile.modelName());
 
         // Exclude the just-stored current user message from history to avoid double-injection
         // (AgentRuntime stores the user message to DB before calling buildPrompt, so history
         // already contains the current message — we add it explicitly below)
         // Match by role only: we just stored a USER message, so the last entry must be it.
         // Content comparison is fragile when sanitizers modify the stored text.
-        if (!history.isEmpty()) {
-            SessionMessage last = history.get(history.size() - 1);
-            if (last.getRole() == com.jclaw.session.MessageRole.USER) {
-                history = new ArrayList<>(history.subList(0, history.size() - 1));
-            }
+        int end = history.size();
+        if (end > 0 && history.get(end - 1).role() == MessageRole.USER) {
+            end--;
         }
 
-        int tokenBudget = maxHistoryTokens;
-        int currentUserTokens = estimateTokens(message.content());
-        tokenBudget -= currentUserTokens;
-        tokenBudget -= estimateTokens(systemPrompt);
-
-        // Walk history from newest to oldest, accumulating tokens
-        List<SessionMessage> trimmedHistory = new ArrayList<>();
-        for (int i = history.size() - 1; i >= 0; i--) {
-            SessionMessage histMsg = history.get(i);
-            int msgTokens = histMsg.getTokenCount() != null ? histMsg.getTokenCount()
-                    : estimateTokens(histMsg.getContent());
+        // Walk history from newest to oldest to find the oldest message that still fits
+        int start = end;
+        while (start > 0) {
+            int msgTokens = history.get(start - 1).tokens();
             if (tokenBudget - msgTokens < 0) break;
             tokenBudget -= msgTokens;
-            trimmedHistory.add(0, histMsg);
+            start--;
         }
 
-        for (SessionMessage histMsg : trimmedHistory) {
-            switch (histMsg.getRole()) {
-                case USER -> messages.add(new UserMessage(histMsg.getContent()));
-                case ASSISTANT -> messages.add(new AssistantMessage(histMsg.getContent()));
-                case SYSTEM -> messages.add(new SystemMessage(histMsg.getContent()));
-                default -> {} // TOOL messages handled via tool call metadata
-            }
+        for (PromptHistoryCache.Item item : history.subList(start, end)) {
+            if (item.message() != null) messages.add(item.message());
         }
 
         // Current message
@@ -97,13 +87,12 @@ public class PromptTemplateService {
         return new Prompt(messages);
     }
 
-    private int estimateTokens(String text) {
-        return text != null ? text.length() / 4 : 0;
-    }
-
-    private String resolveSystemPrompt(String agentId) {
+    /**
+     * System prompt precedence: DB config > YAML classpath ref > default.
+     * Called when an {@link AgentProfile} is compiled, not per turn.
+     */
+    String resolveSystemPrompt(String agentId, AgentConfig config) {
         // 1. Check DB config
-        AgentConfig config = agentConfigService.getAgentConfig(agentId);
         if (config != null && config.getSystemPrompt() != null && !config.getSystemPrompt().isBlank()) {
             return config.getSystemPrompt();
         }
@@ -0,0 +1,158 @@
+package com.jclaw.agent;
+
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import com.knuddels.jtokkit.Encodings;
+import com.knuddels.jtokkit.api.EncodingRegistry;
+import com.knuddels.jtokkit.api.EncodingType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Token accounting for prompts, history and compaction.
+ *
+ * <p>OpenAI models are counted exactly with their BPE encoding. Other models (Anthropic,
+ * open-weight models behind the GenAI tile) are approximated with cl100k, and the count is
+ * scaled by a per-model correction factor learned from the {@code Usage} the provider
+ * reports: an exponentially weighted average of actual / counted completion tokens.
+ */
+@Component
+public class TokenCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(TokenCounter.class);
+
+    static final double EWMA_ALPHA = 0.1;
+    // Short replies give noisy ratios; tool-call turns can report usage unrelated to the text
+    static final int MIN_SAMPLE_TOKENS = 16;
+    static final double MIN_RATIO = 0.5;
+    static final double MAX_RATIO = 3.0;
+
+    // Families jtokkit's prefix lookup gets wrong or does not know
+    private static final List<String> O200K_PREFIXES = List.of(
+            "gpt-4o", "chatgpt-4o", "gpt-4.1", "gpt-4.5", "gpt-5", "o1", "o3", "o4");
+
+    private record Registration(String modelPrefix, Tokenizer tokenizer) {}
+
+    /** Tokenizer plus learned correction for one model name. */
+    static final class ModelCounter {
+        final Tokenizer tokenizer;
+        private volatile double correction = 1.0;
+
+        ModelCounter(Tokenizer tokenizer) {
+            this.tokenizer = tokenizer;
+        }
+
+        int count(String text) {
+            int raw = tokenizer.count(text);
+            return tokenizer.exact() || raw == 0 ? raw : (int) Math.ceil(raw * correction);
+        }
+
+        synchronized void observe(double ratio) {
+            correction = correction + EWMA_ALPHA * (ratio - correction);
+        }
+
+        double correction() {
+            return correction;
+        }
+    }
+
+    private final EncodingRegistry registry = Encodings.newLazyEncodingRegistry();
+    private final String defaultModel;
+    private final JclawMetrics metrics;
+    private final Map<String, ModelCounter> counters = new ConcurrentHashMap<>();
+    private final List<Registration> registrations = new CopyOnWriteArrayList<>();
+
+    public TokenCounter(JclawProperties properties, JclawMetrics metrics) {
+        this.defaultModel = properties.getGenai().getModel();
+        this.metrics = metrics;
+    }
+
+    /** Tokens in {@code text} for the default model. */
+    public int count(String text) {
+        return count(text, null);
+    }
+
+    /** Tokens in {@code text} for the given model; null means the default model. */
+    public int count(String text, String model) {
+        if (text == null || text.isEmpty()) return 0;
+        return counterFor(model).count(text);
+    }
+
+    /**
+     * Feeds back the provider-reported token count for a text that was counted with
+     * this component (typically the completion of a turn without tool calls).
+     */
+    public void observe(String model, String text, long actualTokens) {
+        if (text == null || actualTokens <= 0) return;
+        ModelCounter counter = counterFor(model);
+        if (counter.tokenizer.exact()) return;
+        int raw = counter.tokenizer.count(text);
+        if (raw < MIN_SAMPLE_TOKENS) return;
+        double ratio = (double) actualTokens / raw;
+        if (ratio < MIN_RATIO || ratio > MAX_RATIO) {
+            log.debug("Ignoring token usage outlier for model={}: actual={} counted={}",
+                    model, actualTokens, raw);
+            return;
+        }
+        counter.observe(ratio);
+        metrics.recordTokenEstimateRatio(modelName(model), ratio);
+    }
+
+    /**
+     * Plugs in a tokenizer for every model whose name starts with {@code modelPrefix}.
+     * Later registrations take precedence.
+     */
+    public void register(String modelPrefix, Tokenizer tokenizer) {
+        registrations.add(0, new Registration(modelPrefix.toLowerCase(Locale.ROOT), tokenizer));
+        counters.clear();
+    }
+
+    double correction(String model) {
+        return counterFor(model).correction();
+    }
+
+    Tokenizer tokenizer(String model) {
+        return counterFor(model).tokenizer;
+    }
+
+    private ModelCounter counterFor(String model) {
+        return counters.computeIfAbsent(modelName(model), name -> {
+            Tokenizer tokenizer = resolveTokenizer(name);
+            log.info("Token counting for model={} uses {} ({})", name, tokenizer.name(),
+                    tokenizer.exact() ? "exact" : "corrected estimate");
+            return new ModelCounter(tokenizer);
+        });
+    }
+
+    private String modelName(String model) {
+        String name = model != null && !model.isBlank() ? model : defaultModel;
+        return name != null ? name.toLowerCase(Locale.ROOT) : "default";
+    }
+
+    private Tokenizer resolveTokenizer(String model) {
+        for (Registration registration : registrations) {
+            if (model.startsWith(registration.modelPrefix())) return registration.tokenizer();
+        }
+        try {
+            if (O200K_PREFIXES.stream().anyMatch(model::startsWith)) {
+                return Tokenizer.bpe(registry.getEncoding(EncodingType.O200K_BASE), true);
+            }
+            Optional<Tokenizer> known = registry.getEncodingForModel(model)
+                    .map(encoding -> Tokenizer.bpe(encoding, true));
+            if (known.isPresent()) return known.get();
+            return Tokenizer.bpe(registry.getEncoding(EncodingType.CL100K_BASE), false);
+        } catch (RuntimeException e) {
+            log.warn("BPE encoding unavailable for model={}, falling back to estimate: {}",
+                    model, e.getMessage());
+            return Tokenizer.charEstimate();
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.jclaw.agent;
+
+import com.knuddels.jtokkit.api.Encoding;
+
+/**
+ * Counts tokens for one model family. Implementations must be thread-safe.
+ */
+public interface Tokenizer {
+
+    String name();
+
+    int count(String text);
+
+    /**
+     * True if counts match what the provider bills; approximate tokenizers are
+     * corrected by {@link TokenCounter} from observed usage.
+     */
+    boolean exact();
+
+    /** Byte-pair encoding backed by jtokkit. */
+    static Tokenizer bpe(Encoding encoding, boolean exact) {
+        return new Tokenizer() {
+            @Override
+            public String name() { return encoding.getName(); }
+
+            @Override
+            public int count(String text) {
+                // Ordinary: special-token text in user content is counted as plain text, never rejected
+                return text == null || text.isEmpty() ? 0 : encoding.countTokensOrdinary(text);
+            }
+
+            @Override
+            public boolean exact() { return exact; }
+        };
+    }
+
+    /** Characters-per-token heuristic; used only when no encoding is available. */
+    static Tokenizer charEstimate() {
+        return new Tokenizer() {
+            @Override
+            public String name() { return "chars/4"; }
+
+            @Override
+            public int count(String text) {
+                return text != null ? (text.length() + 3) / 4 : 0;
+            }
+
+            @Override
+            public boolean exact() { return false; }
+        };
+    }
+}
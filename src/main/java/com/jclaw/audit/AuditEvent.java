@@ -1,5 +1,6 @@
 package com.jclaw.audit;
 
+import com.jclaw.config.UuidV7Id;
 import jakarta.persistence.*;
 import java.time.Instant;
 import java.util.UUID;
@@ -14,13 +15,14 @@ public class AuditEvent {
     public static final String TYPE_TOOL_CALL = "TOOL_CALL";
     public static final String TYPE_SESSION_CREATE = "SESSION_CREATE";
     public static final String TYPE_SESSION_ARCHIVE = "SESSION_ARCHIVE";
+    public static final String TYPE_SESSION_PURGE = "SESSION_PURGE";
     public static final String TYPE_CONFIG_CHANGE = "CONFIG_CHANGE";
     public static final String TYPE_CONTENT_FILTER = "CONTENT_FILTER";
     public static final String TYPE_MESSAGE_ROUTED = "MESSAGE_ROUTED";
     public static final String TYPE_DELIVERY_FAILED = "DELIVERY_FAILED";
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7Id
     private UUID id;
 
     @Column(nullable = false)
@@ -3,6 +3,8 @@ package com.jclaw.audit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
@@ -20,7 +22,13 @@ public interface AuditRepository extends JpaRepository<AuditEvent, UUID> {
 
     List<AuditEvent> findByTimestampBefore(Instant cutoff);
 
-    long deleteByTimestampBefore(Instant cutoff);
+    // Bulk DELETEs rather than derived load-then-remove; only the partition spanning the cutoff
+    // is left for row-level deletion once PartitionManager has dropped the older ones
+    @Modifying
+    @Query("DELETE FROM AuditEvent a WHERE a.timestamp < ?1")
+    int deleteByTimestampBefore(Instant cutoff);
 
-    long deleteByEventTypeAndTimestampBefore(String eventType, Instant cutoff);
+    @Modifying
+    @Query("DELETE FROM AuditEvent a WHERE a.eventType = ?1 AND a.timestamp < ?2")
+    int deleteByEventTypeAndTimestampBefore(String eventType, Instant cutoff);
 }
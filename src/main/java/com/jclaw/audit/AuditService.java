@@ -5,7 +5,6 @@ import org.slf4j.LoggerFactory;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.util.UUID;
 
@@ -15,19 +14,30 @@ public class AuditService {
     private static final Logger log = LoggerFactory.getLogger(AuditService.class);
 
     private final AuditRepository auditRepository;
+    private final AuditWriter auditWriter;
 
-    public AuditService(AuditRepository auditRepository) {
+    public AuditService(AuditRepository auditRepository, AuditWriter auditWriter) {
         this.auditRepository = auditRepository;
+        this.auditWriter = auditWriter;
     }
 
-    @Transactional
     public AuditEvent log(String eventType, String action) {
         return log(AuditEvent.of(eventType, action));
     }
 
-    @Transactional
+    /**
+     * Records an audit event. With jclaw.audit.async (default) the event is handed to
+     * the batched {@link AuditWriter} and persisted shortly after; otherwise it is saved
+     * synchronously.
+     */
     public AuditEvent log(AuditEvent event) {
-        AuditEvent saved = auditRepository.save(event);
+        AuditEvent saved;
+        if (auditWriter.isEnabled()) {
+            auditWriter.submit(event);
+            saved = event;
+        } else {
+            saved = auditRepository.save(event);
+        }
         log.info("audit event={} action={} principal={} outcome={}",
                 saved.getEventType(), saved.getAction(),
                 saved.getPrincipal(), saved.getOutcome());
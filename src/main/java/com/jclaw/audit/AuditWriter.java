@@ -0,0 +1,335 @@
+package com.jclaw.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jclaw.config.JclawProperties;
+import com.jclaw.config.UuidV7;
+import com.jclaw.observability.JclawMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Background writer for audit events.
+ *
+ * <p>Events go into a bounded queue and a single drainer thread writes them to
+ * {@code audit_log} with JDBC batch inserts, so request threads never wait on the
+ * database. When the queue is full, or a batch fails, events are appended to a local
+ * JSON-lines spill file instead of blocking; the spill file is replayed on startup
+ * and whenever the writer is idle. A failed batch is retried row by row first: rows the
+ * database rejects outright (a value too long for its column, say) go to a dead-letter
+ * file next to the spill file and are never retried, so they cannot hold back the rest.
+ */
+@Component
+public class AuditWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(AuditWriter.class);
+
+    private static final String INSERT_SQL = """
+            INSERT INTO audit_log (id, timestamp, event_type, principal, agent_id, session_id,
+                channel_type, action, resource_type, resource_id, details, source_ip, outcome)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)
+            """;
+    private static final long SPILL_REPLAY_INTERVAL_MS = 30_000;
+
+    /** Flat, serializable copy of an {@link AuditEvent} with an application-assigned id. */
+    public record AuditRecord(UUID id, Instant timestamp, String eventType, String principal,
+                              String agentId, UUID sessionId, String channelType, String action,
+                              String resourceType, String resourceId, String details,
+                              String sourceIp, String outcome) {
+
+        static AuditRecord from(AuditEvent event) {
+            return new AuditRecord(
+                    event.getId() != null ? event.getId() : UuidV7.next(),
+                    event.getTimestamp() != null ? event.getTimestamp() : Instant.now(),
+                    event.getEventType(), event.getPrincipal(), event.getAgentId(),
+                    event.getSessionId(), event.getChannelType(), event.getAction(),
+                    event.getResourceType(), event.getResourceId(), event.getDetails(),
+                    event.getSourceIp(), event.getOutcome());
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+    private final JclawMetrics metrics;
+    private final JclawProperties.AuditProperties properties;
+    private final BlockingQueue<AuditRecord> queue;
+    private final Path spillFile;
+    private final Path deadLetterFile;
+    private final Object spillLock = new Object();
+
+    private volatile boolean running;
+    private Thread drainer;
+    private long lastReplayAttempt;
+
+    public AuditWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                       ObjectMapper objectMapper, JclawMetrics metrics, JclawProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+        this.properties = properties.getAudit();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, this.properties.getQueueCapacity()));
+        this.spillFile = Path.of(this.properties.getSpillFile());
+        this.deadLetterFile = spillFile.resolveSibling(spillFile.getFileName() + ".dead");
+        metrics.registerAuditQueue(queue);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!properties.isAsync()) return;
+        running = true;
+        drainer = new Thread(this::drainLoop, "audit-writer");
+        drainer.setDaemon(true);
+        drainer.start();
+        log.info("Audit writer started: capacity={} batchSize={} flushIntervalMs={}",
+                properties.getQueueCapacity(), properties.getBatchSize(), properties.getFlushIntervalMs());
+    }
+
+    @PreDestroy
+    void stop() {
+        if (!running) return;
+        running = false;
+        try {
+            // Drainer flushes whatever is still queued before exiting
+            drainer.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        List<AuditRecord> leftover = new ArrayList<>();
+        queue.drainTo(leftover);
+        if (!leftover.isEmpty()) {
+            spill(leftover);
+        }
+    }
+
+    public boolean isEnabled() {
+        return properties.isAsync();
+    }
+
+    /**
+     * Enqueues an event without blocking. Falls back to the spill file when the
+     * queue is full or the writer is shutting down.
+     */
+    public void submit(AuditEvent event) {
+        AuditRecord record = AuditRecord.from(event);
+        if (!running || !queue.offer(record)) {
+            spill(List.of(record));
+        }
+    }
+
+    private void drainLoop() {
+        lastReplayAttempt = 0; // replay anything left over from a previous run first
+        List<AuditRecord> batch = new ArrayList<>(properties.getBatchSize());
+        while (running || !queue.isEmpty()) {
+            try {
+                AuditRecord first = queue.poll(properties.getFlushIntervalMs(), TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    replaySpillIfDue();
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, properties.getBatchSize() - 1);
+                List<AuditRecord> retry = write(batch);
+                if (!retry.isEmpty()) {
+                    spill(retry);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Audit writer loop failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes a batch, falling back to one row at a time if the batch fails. Returns the
+     * records to spill for a later retry; rows the database rejects are dead-lettered.
+     */
+    private List<AuditRecord> write(List<AuditRecord> batch) {
+        long start = System.nanoTime();
+        try {
+            insert(batch);
+            metrics.recordAuditBatch(batch.size(), System.nanoTime() - start, "success");
+            return List.of();
+        } catch (Exception e) {
+            metrics.recordAuditBatch(batch.size(), System.nanoTime() - start, "failure");
+            log.warn("Audit batch insert of {} events failed, retrying per event: {}", batch.size(), e.getMessage());
+        }
+
+        List<AuditRecord> rejected = new ArrayList<>();
+        for (int i = 0; i < batch.size(); i++) {
+            AuditRecord record = batch.get(i);
+            long rowStart = System.nanoTime();
+            try {
+                insert(List.of(record));
+                metrics.recordAuditBatch(1, System.nanoTime() - rowStart, "success");
+            } catch (DuplicateKeyException e) {
+                // Already written, e.g. by a replay that was interrupted after its commit
+            } catch (DataIntegrityViolationException e) {
+                log.warn("Audit event {} rejected by the database: {}", record.id(), e.getMessage());
+                rejected.add(record);
+            } catch (Exception e) {
+                // Not the row's fault (database unavailable): keep this and the rest for retry
+                log.warn("Audit insert failed, spilling {} events to {}: {}",
+                        batch.size() - i, spillFile, e.getMessage());
+                deadLetter(rejected);
+                return List.copyOf(batch.subList(i, batch.size()));
+            }
+        }
+        deadLetter(rejected);
+        return List.of();
+    }
+
+    private void insert(List<AuditRecord> batch) {
+        // One transaction per batch: a failed batch is retried, so it must not half-commit
+        transactionTemplate.executeWithoutResult(status ->
+                jdbcTemplate.batchUpdate(INSERT_SQL, batch, batch.size(), (ps, r) -> {
+                    ps.setObject(1, r.id());
+                    ps.setTimestamp(2, Timestamp.from(r.timestamp()));
+                    ps.setString(3, r.eventType());
+                    ps.setString(4, r.principal());
+                    ps.setString(5, r.agentId());
+                    ps.setObject(6, r.sessionId());
+                    ps.setString(7, r.channelType());
+                    ps.setString(8, r.action());
+                    ps.setString(9, r.resourceType());
+                    ps.setString(10, r.resourceId());
+                    // jsonb from text relies on stringtype=unspecified, same as the JPA mapping
+                    ps.setString(11, r.details() != null ? r.details() : "{}");
+                    ps.setString(12, r.sourceIp());
+                    ps.setString(13, r.outcome() != null ? r.outcome() : "SUCCESS");
+                }));
+    }
+
+    private void deadLetter(List<AuditRecord> records) {
+        if (records.isEmpty()) return;
+        metrics.recordAuditEventsDropped(records.size());
+        synchronized (spillLock) {
+            try {
+                append(deadLetterFile, records);
+                log.error("Moved {} audit events the database rejects to {}", records.size(), deadLetterFile);
+            } catch (IOException e) {
+                log.error("Failed to dead-letter {} audit events to {}; events dropped",
+                        records.size(), deadLetterFile, e);
+            }
+        }
+    }
+
+    private void spill(List<AuditRecord> records) {
+        synchronized (spillLock) {
+            try {
+                append(spillFile, records);
+                metrics.recordAuditEventsSpilled(records.size());
+            } catch (IOException e) {
+                metrics.recordAuditEventsDropped(records.size());
+                log.error("Failed to spill {} audit events to {}; events dropped", records.size(), spillFile, e);
+            }
+        }
+    }
+
+    /** Appends records as JSON lines. Caller holds spillLock. */
+    private void append(Path file, List<AuditRecord> records) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND)) {
+            for (AuditRecord record : records) {
+                writer.write(objectMapper.writeValueAsString(record));
+                writer.newLine();
+            }
+        }
+    }
+
+    private void replaySpillIfDue() {
+        long now = System.currentTimeMillis();
+        if (now - lastReplayAttempt < SPILL_REPLAY_INTERVAL_MS) return;
+        lastReplayAttempt = now;
+
+        Path replayFile = spillFile.resolveSibling(spillFile.getFileName() + ".replay");
+        synchronized (spillLock) {
+            try {
+                // A leftover .replay file means a previous replay was interrupted; finish it first
+                if (!Files.exists(replayFile)) {
+                    if (!Files.exists(spillFile) || Files.size(spillFile) == 0) return;
+                    Files.move(spillFile, replayFile, StandardCopyOption.ATOMIC_MOVE);
+                }
+            } catch (IOException e) {
+                log.warn("Could not prepare audit spill file for replay: {}", e.getMessage());
+                return;
+            }
+        }
+
+        int replayed = 0;
+        List<AuditRecord> batch = new ArrayList<>(properties.getBatchSize());
+        List<AuditRecord> failed = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(replayFile, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank()) continue;
+                try {
+                    batch.add(objectMapper.readValue(line, AuditRecord.class));
+                } catch (IOException e) {
+                    log.warn("Skipping unreadable audit spill line: {}", e.getMessage());
+                    metrics.recordAuditEventsDropped(1);
+                }
+                if (batch.size() >= properties.getBatchSize()) {
+                    replayed += replayBatch(batch, failed);
+                }
+            }
+            replayed += replayBatch(batch, failed);
+        } catch (IOException e) {
+            log.warn("Failed to read audit spill file {}: {}", replayFile, e.getMessage());
+            return;
+        }
+
+        if (!failed.isEmpty()) {
+            spill(failed);
+        }
+        try {
+            Files.deleteIfExists(replayFile);
+        } catch (IOException e) {
+            log.warn("Could not delete replayed audit spill file {}: {}", replayFile, e.getMessage());
+        }
+        if (replayed > 0) {
+            log.info("Replayed {} spilled audit events ({} re-spilled)", replayed, failed.size());
+        }
+    }
+
+    private int replayBatch(List<AuditRecord> batch, List<AuditRecord> failed) {
+        if (batch.isEmpty()) return 0;
+        List<AuditRecord> retry = write(batch);
+        failed.addAll(retry);
+        int done = batch.size() - retry.size();
+        batch.clear();
+        return done;
+    }
+}
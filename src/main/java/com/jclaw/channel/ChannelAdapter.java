@@ -1,8 +1,11 @@
 package com.jclaw.channel;
 
+import com.jclaw.agent.AgentResponse;
 import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+
 public interface ChannelAdapter {
 
     String channelType();
@@ -28,4 +31,53 @@ public interface ChannelAdapter {
      * Used by ChannelHealthIndicator.
      */
     default boolean isConnected() { return true; }
+
+    /**
+     * Returns true if posted messages can be edited in place, which enables
+     * progressive streaming replies via {@link #postMessage} and {@link #editMessage}.
+     */
+    default boolean supportsMessageEdits() { return false; }
+
+    /**
+     * Sends a message and emits the platform id needed to edit it later.
+     * Completes empty if the id is unavailable.
+     */
+    default Mono<String> postMessage(OutboundMessage msg) {
+        return sendMessage(msg).then(Mono.empty());
+    }
+
+    /**
+     * Replaces the content of a message previously sent with {@link #postMessage}.
+     */
+    default Mono<Void> editMessage(OutboundMessage msg, String messageId) {
+        return Mono.error(new UnsupportedOperationException(
+                channelType() + " does not support message edits"));
+    }
+
+    /**
+     * Minimum spacing between edits of one message, per the platform's rate limits.
+     */
+    default Duration minEditInterval() { return Duration.ofSeconds(1); }
+
+    /**
+     * Returns true if the channel can push partial output to the client as it is
+     * generated, via {@link #streamReply}.
+     */
+    default boolean supportsTokenStreaming() { return false; }
+
+    /**
+     * Returns true if replies go out over a client connection held by this instance, so
+     * inbound messages must be handled here rather than on whichever instance reads the
+     * shared inbound queue.
+     */
+    default boolean isConnectionBound() { return supportsTokenStreaming(); }
+
+    /**
+     * Forwards a streamed agent reply for the conversation of {@code origin}.
+     * Completes when the reply stream does.
+     */
+    default Mono<Void> streamReply(InboundMessage origin, Flux<AgentResponse> responses) {
+        return Mono.error(new UnsupportedOperationException(
+                channelType() + " does not support token streaming"));
+    }
 }
@@ -8,9 +8,9 @@ import com.jclaw.observability.JclawMetrics;
 import com.jclaw.security.IdentityMappingService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
-import reactor.core.scheduler.Schedulers;
 import reactor.util.retry.Retry;
 
 import jakarta.annotation.PostConstruct;
@@ -31,13 +31,19 @@ public class ChannelRouter {
     private final AuditService auditService;
     private final JclawProperties properties;
     private final JclawMetrics metrics;
+    private final ConversationDispatcher dispatcher;
+    private final StreamingReplyDelivery streamingDelivery;
+    private final ObjectProvider<RedisInboundQueue> inboundQueue;
 
     public ChannelRouter(List<ChannelAdapter> adapterList,
                         AgentRuntime agentRuntime,
                         IdentityMappingService identityMappingService,
                         AuditService auditService,
                         JclawProperties properties,
-                        JclawMetrics metrics) {
+                        JclawMetrics metrics,
+                        ConversationDispatcher dispatcher,
+                        StreamingReplyDelivery streamingDelivery,
+                        ObjectProvider<RedisInboundQueue> inboundQueue) {
         this.adapters = adapterList.stream()
                 .collect(Collectors.toMap(ChannelAdapter::channelType, Function.identity()));
         this.agentRuntime = agentRuntime;
@@ -45,27 +51,65 @@ public class ChannelRouter {
         this.auditService = auditService;
         this.properties = properties;
         this.metrics = metrics;
+        this.dispatcher = dispatcher;
+        this.streamingDelivery = streamingDelivery;
+        this.inboundQueue = inboundQueue;
     }
 
     @PostConstruct
     public void startRouting() {
+        RedisInboundQueue queue = inboundQueue.getIfAvailable();
+        if (queue != null) {
+            queue.start(this::routeSafely);
+        }
+
+        // The dispatcher keeps each conversation in order, bounds parallelism across
+        // conversations and bounds the backlog per adapter
         adapters.values().forEach(adapter ->
             adapter.receiveMessages()
-                .publishOn(Schedulers.boundedElastic())
-                .flatMap(msg -> routeMessage(msg)
-                    .onErrorResume(e -> {
-                        log.error("Error routing message from channel={} user={}",
-                                msg.channelType(), msg.channelUserId(), e);
-                        return Mono.empty();
-                    }))
+                // Replies of connection-bound channels can only be written by this instance
+                .concatMap(msg -> accept(adapter.isConnectionBound() ? null : queue, msg))
                 .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(5))
                         .maxBackoff(Duration.ofMinutes(1)))
                 .subscribe(
-                    result -> log.debug("Message routed: {}", result),
+                    msg -> log.debug("Message dispatched: channel={} conversation={}",
+                            msg.channelType(), msg.conversationId()),
                     error -> log.error("Fatal error in routing for adapter={}", adapter.channelType(), error)
                 )
         );
-        log.info("Channel routing started for {} adapters", adapters.size());
+        log.info("Channel routing started for {} adapters{}", adapters.size(),
+                queue != null ? " via the Redis inbound queue" : "");
+    }
+
+    /** Hands a message to the shared queue when enabled, otherwise straight to the dispatcher. */
+    private Mono<InboundMessage> accept(RedisInboundQueue queue, InboundMessage msg) {
+        if (queue == null) {
+            dispatchLocally(msg);
+            return Mono.just(msg);
+        }
+        return queue.append(msg)
+                .thenReturn(msg)
+                .onErrorResume(e -> {
+                    // Redis unavailable: handle it here rather than lose it
+                    log.warn("Inbound queue append failed for channel={}, routing locally: {}",
+                            msg.channelType(), e.getMessage());
+                    dispatchLocally(msg);
+                    return Mono.just(msg);
+                });
+    }
+
+    private void dispatchLocally(InboundMessage msg) {
+        dispatcher.submit(msg.channelType(), ConversationDispatcher.conversationKey(msg),
+                () -> routeSafely(msg));
+    }
+
+    private Mono<Void> routeSafely(InboundMessage msg) {
+        return routeMessage(msg)
+                .onErrorResume(e -> {
+                    log.error("Error routing message from channel={} user={}",
+                            msg.channelType(), msg.channelUserId(), e);
+                    return Mono.empty();
+                });
     }
 
     private Mono<Void> routeMessage(InboundMessage message) {
@@ -109,30 +153,38 @@ public class ChannelRouter {
                             .onErrorResume(e -> Mono.empty())
                         : Mono.empty();
 
+                // Channels with a live client connection get tokens as they are generated
+                if (adapter != null && adapter.supportsTokenStreaming()
+                        && properties.getChannel().isStreamTokens()) {
+                    return typingIndicator.then(adapter.streamReply(message,
+                            agentRuntime.processMessage(context, message)));
+                }
+
+                // Channels that can edit messages get the reply progressively
+                if (adapter != null && adapter.supportsMessageEdits()
+                        && properties.getChannel().isStreamReplies()) {
+                    return typingIndicator.then(streamingDelivery.deliver(adapter, message,
+                            agentRuntime.processMessage(context, message),
+                            text -> deliverFull(adapter, message, text)));
+                }
+
                 return typingIndicator.then(
                     agentRuntime.callMessage(context, message)
                         .flatMap(response -> {
                             String combined = response.content();
                             if (combined == null || combined.isEmpty()) return Mono.empty();
                             if (adapter == null) return Mono.empty();
-
-                            // Chunk messages for channels with size limits
-                            int maxLen = adapter.maxMessageLength();
-                            if (maxLen > 0 && combined.length() > maxLen) {
-                                return sendChunked(adapter, message, combined, maxLen);
-                            }
-
-                            // Propagate threadId and metadata from inbound to outbound
-                            return deliverWithRetry(adapter, new OutboundMessage(
-                                    message.channelType(),
-                                    message.conversationId(),
-                                    message.threadId(),
-                                    combined,
-                                    message.metadata() != null ? message.metadata() : Map.of()));
+                            return deliverFull(adapter, message, combined);
                         })
                 );
             })
             .onErrorResume(IdentityMappingService.UnmappedIdentityException.class, e -> {
+                if (e.isQueued()) {
+                    // Already awaiting approval; nothing to insert or audit again
+                    log.debug("Unmapped identity already queued: channel={} user={}",
+                            message.channelType(), message.channelUserId());
+                    return Mono.empty();
+                }
                 log.warn("Unmapped identity: channel={} user={}", message.channelType(),
                         message.channelUserId());
 
@@ -148,6 +200,7 @@ public class ChannelRouter {
                     log.debug("Identity mapping already queued for channel={} user={}",
                             message.channelType(), message.channelUserId());
                 }
+                identityMappingService.markQueued(message.channelType(), message.channelUserId());
 
                 auditService.logSessionEvent("UNMAPPED_IDENTITY_QUEUED", message.channelUserId(),
                         null, null, "Unmapped identity queued for approval: "
@@ -214,6 +267,22 @@ public class ChannelRouter {
                 .orElse(true);
     }
 
+    private Mono<Void> deliverFull(ChannelAdapter adapter, InboundMessage message, String content) {
+        // Chunk messages for channels with size limits
+        int maxLen = adapter.maxMessageLength();
+        if (maxLen > 0 && content.length() > maxLen) {
+            return sendChunked(adapter, message, content, maxLen);
+        }
+
+        // Propagate threadId and metadata from inbound to outbound
+        return deliverWithRetry(adapter, new OutboundMessage(
+                message.channelType(),
+                message.conversationId(),
+                message.threadId(),
+                content,
+                message.metadata() != null ? message.metadata() : Map.of()));
+    }
+
     /**
      * Splits a long message into chunks at word boundaries and sends them sequentially.
      */
@@ -222,13 +291,8 @@ public class ChannelRouter {
         List<String> chunks = new java.util.ArrayList<>();
         int start = 0;
         while (start < content.length()) {
-            int end = Math.min(start + maxLen, content.length());
-            if (end < content.length()) {
-                // Try to break at a newline or space
-                int breakAt = content.lastIndexOf('\n', end);
-                if (breakAt <= start) breakAt = content.lastIndexOf(' ', end);
-                if (breakAt > start) end = breakAt + 1;
-            }
+            // Break at a newline or space where possible
+            int end = StreamingReplyDelivery.chunkEnd(content, start, maxLen);
             chunks.add(content.substring(start, end));
             start = end;
         }
@@ -0,0 +1,219 @@
+package com.jclaw.channel;
+
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Runs inbound work in order per conversation and in parallel across conversations.
+ *
+ * <p>Each conversation key has a lane; a lane runs at most one task at a time, so replies
+ * in one conversation cannot overtake each other. Lanes with pending work take turns for
+ * one of {@code maxConcurrency} global slots. Waiting tasks are bounded per channel;
+ * when a channel's buffer is full the configured {@link OverflowPolicy} decides which
+ * message is dropped.
+ */
+@Component
+public class ConversationDispatcher {
+
+    private static final Logger log = LoggerFactory.getLogger(ConversationDispatcher.class);
+
+    public enum OverflowPolicy { DROP_OLDEST, DROP_NEWEST }
+
+    private static final class Lane {
+        final String key;
+        final ArrayDeque<Task> pending = new ArrayDeque<>();
+        boolean running;
+
+        Lane(String key) {
+            this.key = key;
+        }
+    }
+
+    private static final class Task {
+        final String channel;
+        final Lane lane;
+        final Supplier<Mono<Void>> work;
+        final Runnable onDropped;
+        final long enqueuedNanos = System.nanoTime();
+
+        Task(String channel, Lane lane, Supplier<Mono<Void>> work, Runnable onDropped) {
+            this.channel = channel;
+            this.lane = lane;
+            this.work = work;
+            this.onDropped = onDropped;
+        }
+    }
+
+    private final JclawMetrics metrics;
+    private final Scheduler scheduler;
+    private final int maxConcurrency;
+    private final int queueCapacity;
+    private final OverflowPolicy overflowPolicy;
+
+    // All state below is guarded by lock; tasks are started and completed outside it
+    private final Object lock = new Object();
+    private final Map<String, Lane> lanes = new HashMap<>();
+    private final ArrayDeque<Lane> ready = new ArrayDeque<>();
+    private final Map<String, ArrayDeque<Task>> pendingByChannel = new HashMap<>();
+    private int active;
+    private volatile boolean shutdown;
+
+    @Autowired
+    public ConversationDispatcher(JclawProperties properties, JclawMetrics metrics) {
+        this(properties.getChannel().getDispatch(), metrics, Schedulers.boundedElastic());
+    }
+
+    ConversationDispatcher(JclawProperties.DispatchProperties properties, JclawMetrics metrics,
+                           Scheduler scheduler) {
+        this.metrics = metrics;
+        this.scheduler = scheduler;
+        this.maxConcurrency = Math.max(1, properties.getMaxConcurrency());
+        this.queueCapacity = Math.max(1, properties.getQueueCapacity());
+        this.overflowPolicy = OverflowPolicy.valueOf(
+                properties.getOverflowPolicy().trim().toUpperCase(Locale.ROOT));
+        metrics.registerDispatchActive(this::activeCount);
+    }
+
+    @PreDestroy
+    void stop() {
+        shutdown = true;
+    }
+
+    /**
+     * Conversation key for ordering: channel plus conversation, or the channel user when
+     * the adapter has no conversation id.
+     */
+    public static String conversationKey(InboundMessage message) {
+        String conversation = message.conversationId() != null
+                ? message.conversationId() : "user:" + message.channelUserId();
+        return message.channelType() + ":" + conversation;
+    }
+
+    /**
+     * Queues work for a conversation. The supplier is invoked when the task starts, on a
+     * worker thread. Returns false if the task was rejected by the overflow policy.
+     */
+    public boolean submit(String channel, String conversationKey, Supplier<Mono<Void>> work) {
+        return submit(channel, conversationKey, work, () -> { });
+    }
+
+    /**
+     * Like {@link #submit(String, String, Supplier)}; {@code onDropped} runs if the task is
+     * later discarded by {@link OverflowPolicy#DROP_OLDEST} before it starts.
+     */
+    public boolean submit(String channel, String conversationKey, Supplier<Mono<Void>> work,
+                          Runnable onDropped) {
+        if (shutdown) return false;
+        List<Task> toStart;
+        Task dropped = null;
+        synchronized (lock) {
+            ArrayDeque<Task> channelQueue = pendingByChannel.get(channel);
+            if (channelQueue == null) {
+                channelQueue = new ArrayDeque<>();
+                pendingByChannel.put(channel, channelQueue);
+                metrics.registerDispatchQueue(channel, () -> queueDepth(channel));
+            }
+            if (channelQueue.size() >= queueCapacity) {
+                metrics.recordDispatchDropped(channel, overflowPolicy.name().toLowerCase(Locale.ROOT));
+                if (overflowPolicy == OverflowPolicy.DROP_NEWEST) {
+                    log.warn("Dispatch queue full for channel={}, rejecting message for {}",
+                            channel, conversationKey);
+                    return false;
+                }
+                dropped = channelQueue.poll();
+                removePending(dropped);
+                log.warn("Dispatch queue full for channel={}, dropped oldest message for {}",
+                        channel, dropped.lane.key);
+            }
+
+            Lane lane = lanes.computeIfAbsent(conversationKey, Lane::new);
+            Task task = new Task(channel, lane, work, onDropped);
+            lane.pending.add(task);
+            channelQueue.add(task);
+            if (!lane.running && lane.pending.size() == 1) {
+                ready.add(lane);
+            }
+            toStart = pollStartable();
+        }
+        if (dropped != null) dropped.onDropped.run();
+        toStart.forEach(this::start);
+        return true;
+    }
+
+    int activeCount() {
+        synchronized (lock) {
+            return active;
+        }
+    }
+
+    int queueDepth(String channel) {
+        synchronized (lock) {
+            ArrayDeque<Task> queue = pendingByChannel.get(channel);
+            return queue != null ? queue.size() : 0;
+        }
+    }
+
+    private void start(Task task) {
+        metrics.recordDispatchWait(task.channel, System.nanoTime() - task.enqueuedNanos);
+        Mono.defer(task.work)
+                .subscribeOn(scheduler)
+                .doFinally(signal -> complete(task.lane))
+                .subscribe(v -> { },
+                        e -> log.error("Dispatched task failed for {}", task.lane.key, e));
+    }
+
+    private void complete(Lane lane) {
+        List<Task> toStart;
+        synchronized (lock) {
+            active--;
+            lane.running = false;
+            if (lane.pending.isEmpty()) {
+                lanes.remove(lane.key);
+            } else {
+                ready.add(lane);
+            }
+            toStart = pollStartable();
+        }
+        toStart.forEach(this::start);
+    }
+
+    /** Claims free slots for ready lanes, round-robin. Caller holds the lock. */
+    private List<Task> pollStartable() {
+        List<Task> toStart = new ArrayList<>();
+        while (active < maxConcurrency && !ready.isEmpty()) {
+            Lane lane = ready.poll();
+            Task task = lane.pending.poll();
+            lane.running = true;
+            pendingByChannel.get(task.channel).remove(task);
+            active++;
+            toStart.add(task);
+        }
+        return toStart;
+    }
+
+    /** Removes a dropped task from its lane. Caller holds the lock. */
+    private void removePending(Task task) {
+        Lane lane = task.lane;
+        lane.pending.remove(task);
+        if (lane.pending.isEmpty() && !lane.running) {
+            ready.remove(lane);
+            lanes.remove(lane.key);
+        }
+    }
+}
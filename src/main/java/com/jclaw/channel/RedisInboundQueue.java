@@ -0,0 +1,337 @@
+package com.jclaw.channel;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.ReactiveRedisConnectionFactory;
+import org.springframework.data.redis.connection.RedisStreamCommands.XClaimOptions;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.PendingMessage;
+import org.springframework.data.redis.connection.stream.PendingMessagesSummary;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStreamOperations;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.stream.StreamReceiver;
+import org.springframework.stereotype.Component;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.net.InetAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Durable inbound queue shared by all instances: a Redis stream read through a consumer group.
+ *
+ * <p>Adapters' messages are appended with XADD, and any instance reads them with XREADGROUP
+ * and hands them to the {@link ConversationDispatcher}. An entry is acknowledged only after
+ * it has been routed, so delivery is at-least-once. While an entry is queued or running
+ * here it is re-claimed to this consumer every third of {@code claimIdleMs}, which resets
+ * its idle time, so however long the turn takes no other instance claims it. Entries left
+ * pending longer than {@code claimIdleMs} (their consumer died, or the local dispatcher
+ * dropped them) are claimed and redelivered; after {@code maxDeliveries} attempts they
+ * are acknowledged and dropped. Once the stream is longer than {@code maxLength}, the
+ * entries the group is done with are trimmed. An entry not yet delivered or still pending
+ * is never trimmed, so a backlog can grow past the cap.
+ *
+ * <p>Order within a conversation is kept per instance only: two instances may handle
+ * messages of the same conversation at the same time. Channels whose replies go over a
+ * connection held by one instance ({@link ChannelAdapter#isConnectionBound()}) bypass the
+ * queue.
+ */
+@Component
+@ConditionalOnProperty(name = "jclaw.channel.queue.enabled", havingValue = "true")
+public class RedisInboundQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisInboundQueue.class);
+
+    static final String PAYLOAD_FIELD = "payload";
+
+    // XTRIM MINID (Redis 6.2+) is not exposed by the template's trim(), which only does MAXLEN
+    private static final String TRIM_SCRIPT = "return redis.call('XTRIM', KEYS[1], 'MINID', ARGV[1])";
+
+    private final ReactiveStreamOperations<String, String, String> streams;
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final StreamReceiver<String, MapRecord<String, String, String>> receiver;
+    private final ConversationDispatcher dispatcher;
+    private final ObjectMapper objectMapper;
+    private final JclawMetrics metrics;
+    private final JclawProperties.InboundQueueProperties properties;
+    private final String consumerName;
+    private final DefaultRedisScript<Long> trimScript = new DefaultRedisScript<>(TRIM_SCRIPT, Long.class);
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // Entries queued or running in the dispatcher; kept claimed by the heartbeat
+    private final Set<RecordId> dispatched = ConcurrentHashMap.newKeySet();
+    // Claimed entries join the same bounded pipeline as new ones
+    private final Sinks.Many<MapRecord<String, String, String>> reclaimed =
+            Sinks.many().unicast().onBackpressureBuffer();
+    private final List<Disposable> subscriptions = new ArrayList<>();
+
+    public RedisInboundQueue(ReactiveRedisConnectionFactory connectionFactory,
+                             ReactiveRedisTemplate<String, String> redisTemplate,
+                             ConversationDispatcher dispatcher,
+                             ObjectMapper objectMapper,
+                             JclawMetrics metrics,
+                             JclawProperties properties) {
+        this.redisTemplate = redisTemplate;
+        this.streams = redisTemplate.opsForStream();
+        this.dispatcher = dispatcher;
+        this.objectMapper = objectMapper;
+        this.metrics = metrics;
+        this.properties = properties.getChannel().getQueue();
+        this.receiver = StreamReceiver.create(connectionFactory,
+                StreamReceiver.StreamReceiverOptions.builder()
+                        .pollTimeout(Duration.ofSeconds(2))
+                        .batchSize(Math.max(1, this.properties.getBatchSize()))
+                        .build());
+        this.consumerName = this.properties.getConsumerName() != null && !this.properties.getConsumerName().isBlank()
+                ? this.properties.getConsumerName() : consumerName();
+        metrics.registerInboundQueueInFlight(inFlight::get);
+    }
+
+    /** Appends a message; completes once Redis has stored it. */
+    public Mono<RecordId> append(InboundMessage message) {
+        return Mono.fromCallable(() -> objectMapper.writeValueAsString(message))
+                .flatMap(json -> streams.add(StreamRecords.newRecord()
+                        .in(properties.getStreamKey())
+                        .ofMap(Map.of(PAYLOAD_FIELD, json))))
+                .doOnNext(id -> metrics.recordInboundQueue("appended", 1))
+                .doOnError(e -> metrics.recordInboundQueue("append_failed", 1));
+    }
+
+    /**
+     * Starts consuming: each entry is routed by {@code router} through the dispatcher and
+     * acknowledged when the returned Mono completes.
+     */
+    public void start(Function<InboundMessage, Mono<Void>> router) {
+        String key = properties.getStreamKey();
+        int maxInFlight = Math.max(1, properties.getMaxInFlight());
+
+        Flux<MapRecord<String, String, String>> fresh = ensureGroup()
+                .thenMany(Flux.defer(() -> receiver.receive(
+                        Consumer.from(properties.getConsumerGroup(), consumerName),
+                        StreamOffset.create(key, ReadOffset.lastConsumed()))))
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30))
+                        .doBeforeRetry(s -> log.warn("Inbound queue read failed, retrying: {}",
+                                s.failure().getMessage())));
+
+        subscriptions.add(Flux.merge(fresh, reclaimed.asFlux())
+                .flatMap(record -> handle(record, router), maxInFlight)
+                .subscribe(v -> { }, e -> log.error("Inbound queue consumer stopped", e)));
+
+        long heartbeat = Math.max(100, properties.getClaimIdleMs() / 3);
+        subscriptions.add(Flux.interval(Duration.ofMillis(heartbeat), Duration.ofMillis(heartbeat))
+                .onBackpressureDrop()
+                .concatMap(tick -> heartbeat()
+                        .onErrorResume(e -> {
+                            log.warn("Inbound queue heartbeat failed: {}", e.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe());
+
+        long interval = Math.max(1000, properties.getReclaimIntervalMs());
+        subscriptions.add(Flux.interval(Duration.ofMillis(interval), Duration.ofMillis(interval))
+                .onBackpressureDrop()
+                .concatMap(tick -> maintain()
+                        .onErrorResume(e -> {
+                            log.warn("Inbound queue maintenance failed: {}", e.getMessage());
+                            return Mono.empty();
+                        }))
+                .subscribe());
+        log.info("Inbound queue consumer {} started on stream={} group={}",
+                consumerName, key, properties.getConsumerGroup());
+    }
+
+    @PreDestroy
+    void stop() {
+        subscriptions.forEach(Disposable::dispose);
+        reclaimed.tryEmitComplete();
+    }
+
+    int inFlight() {
+        return inFlight.get();
+    }
+
+    /** Routes one entry; completes when it has been processed (or handed back for reclaim). */
+    private Mono<Void> handle(MapRecord<String, String, String> record,
+                              Function<InboundMessage, Mono<Void>> router) {
+        InboundMessage message;
+        try {
+            message = objectMapper.readValue(record.getValue().get(PAYLOAD_FIELD), InboundMessage.class);
+        } catch (Exception e) {
+            log.warn("Dropping unreadable inbound queue entry {}: {}", record.getId(), e.getMessage());
+            metrics.recordInboundQueue("dead_lettered", 1);
+            return acknowledge(record.getId());
+        }
+
+        RecordId id = record.getId();
+        if (!dispatched.add(id)) {
+            // Already queued or running here (claimed while still in the dispatcher)
+            return Mono.empty();
+        }
+        inFlight.incrementAndGet();
+        Sinks.Empty<Void> done = Sinks.empty();
+        // Once released the heartbeat stops, so an entry that was not acknowledged becomes
+        // idle and is claimed again
+        Runnable release = () -> {
+            dispatched.remove(id);
+            done.tryEmitEmpty();
+        };
+        boolean accepted = dispatcher.submit(message.channelType(),
+                ConversationDispatcher.conversationKey(message),
+                () -> Mono.defer(() -> router.apply(message))
+                        .then(acknowledge(id))
+                        .doFinally(signal -> release.run()),
+                release);
+        if (!accepted) release.run();
+        return done.asMono()
+                .doFinally(signal -> inFlight.decrementAndGet());
+    }
+
+    private Mono<Void> acknowledge(RecordId... ids) {
+        return streams.acknowledge(properties.getStreamKey(), properties.getConsumerGroup(), ids)
+                .doOnNext(count -> metrics.recordInboundQueue("acked", count.intValue()))
+                .onErrorResume(e -> {
+                    // Redelivered after claimIdleMs
+                    log.warn("Failed to acknowledge inbound queue entries: {}", e.getMessage());
+                    return Mono.empty();
+                })
+                .then();
+    }
+
+    /**
+     * Re-claims every entry queued or running here to this consumer. XCLAIM resets the idle
+     * time, and JUSTID leaves the delivery count alone, so a slow turn is neither claimed by
+     * another instance nor counted towards {@code maxDeliveries}.
+     */
+    Mono<Void> heartbeat() {
+        if (dispatched.isEmpty()) return Mono.empty();
+        RecordId[] ids = dispatched.toArray(RecordId[]::new);
+        ByteBuffer key = ByteBuffer.wrap(properties.getStreamKey().getBytes(StandardCharsets.UTF_8));
+        return redisTemplate.execute(connection -> connection.streamCommands()
+                        .xClaimJustId(key, properties.getConsumerGroup(), consumerName,
+                                XClaimOptions.minIdle(Duration.ZERO).ids(ids)))
+                .then();
+    }
+
+    /** One maintenance round: claim idle pending entries, drop poison ones, trim. */
+    Mono<Void> maintain() {
+        String key = properties.getStreamKey();
+        String group = properties.getConsumerGroup();
+        Duration minIdle = Duration.ofMillis(properties.getClaimIdleMs());
+        int capacity = Math.max(0, properties.getMaxInFlight() - inFlight.get());
+
+        Mono<Void> reclaim = capacity == 0 ? Mono.empty() : streams
+                .pending(key, group, Range.unbounded(), capacity)
+                .flatMap(pending -> {
+                    List<RecordId> claim = new ArrayList<>();
+                    List<RecordId> poison = new ArrayList<>();
+                    for (PendingMessage p : pending) {
+                        if (p.getElapsedTimeSinceLastDelivery().compareTo(minIdle) < 0) continue;
+                        // Still in this instance's dispatcher; the heartbeat keeps it claimed
+                        if (dispatched.contains(p.getId())) continue;
+                        if (p.getTotalDeliveryCount() >= properties.getMaxDeliveries()) {
+                            poison.add(p.getId());
+                        } else {
+                            claim.add(p.getId());
+                        }
+                    }
+                    Mono<Void> drop = Mono.empty();
+                    if (!poison.isEmpty()) {
+                        log.warn("Dropping {} inbound queue entries after {} deliveries: {}",
+                                poison.size(), properties.getMaxDeliveries(), poison);
+                        metrics.recordInboundQueue("dead_lettered", poison.size());
+                        drop = acknowledge(poison.toArray(RecordId[]::new));
+                    }
+                    if (claim.isEmpty()) return drop;
+                    return drop.thenMany(streams.claim(key, group, consumerName, minIdle,
+                                    claim.toArray(RecordId[]::new)))
+                            .doOnNext(record -> {
+                                metrics.recordInboundQueue("reclaimed", 1);
+                                reclaimed.tryEmitNext(record);
+                            })
+                            .then();
+                });
+
+        return reclaim.then(trim(key, group));
+    }
+
+    /**
+     * Past {@code maxLength}, drops the entries before the group's oldest pending entry, or
+     * before its last-delivered entry when nothing is pending. Everything older has been
+     * acknowledged; whatever still exceeds the cap is logged, never trimmed.
+     */
+    private Mono<Void> trim(String key, String group) {
+        long maxLength = Math.max(1, properties.getMaxLength());
+        return streams.size(key)
+                .filter(size -> size > maxLength)
+                .flatMap(size -> Mono.zip(
+                                streams.groups(key)
+                                        .filter(g -> group.equals(g.groupName()))
+                                        .next()
+                                        .map(g -> g.lastDeliveredId()),
+                                streams.pending(key, group))
+                        .flatMap(state -> {
+                            PendingMessagesSummary pending = state.getT2();
+                            String floor = pending.getTotalPendingMessages() > 0
+                                    ? pending.minMessageId() : state.getT1();
+                            return redisTemplate.execute(trimScript, List.of(key), List.of(floor)).next();
+                        })
+                        .doOnNext(trimmed -> {
+                            metrics.recordInboundQueue("trimmed", trimmed.intValue());
+                            long remaining = size - trimmed;
+                            if (remaining > maxLength) {
+                                log.warn("Inbound queue holds {} entries, over max-length {}; "
+                                        + "entries not yet acknowledged are kept", remaining, maxLength);
+                            }
+                        }))
+                .then();
+    }
+
+    /** Creates the stream and group if missing; new groups start from the first entry. */
+    private Mono<Void> ensureGroup() {
+        ByteBuffer key = ByteBuffer.wrap(properties.getStreamKey().getBytes(StandardCharsets.UTF_8));
+        return redisTemplate.execute(connection -> connection.streamCommands()
+                        .xGroupCreate(key, properties.getConsumerGroup(), ReadOffset.from("0"), true))
+                .onErrorResume(e -> String.valueOf(NestedExceptionUtils.getMostSpecificCause(e).getMessage())
+                        .contains("BUSYGROUP") ? Mono.empty() : Mono.error(e))
+                .then();
+    }
+
+    /**
+     * Stable across restarts, so a restarted instance does not leave an ever-growing list of
+     * consumers in the group; its old pending entries are reclaimed like anyone else's.
+     */
+    private static String consumerName() {
+        String index = System.getenv("CF_INSTANCE_INDEX");
+        if (index != null && !index.isBlank()) return "instance-" + index;
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            return "instance-" + ProcessHandle.current().pid();
+        }
+    }
+}
@@ -0,0 +1,205 @@
+package com.jclaw.channel;
+
+import com.jclaw.agent.AgentResponse;
+import com.jclaw.observability.JclawMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Delivers a streamed agent reply by posting a placeholder and editing it in place as
+ * tokens arrive.
+ *
+ * <p>Edits are leading-edge throttled to {@link ChannelAdapter#minEditInterval()}: the
+ * first token is shown immediately, later tokens are coalesced into one edit per
+ * interval. When the text outgrows {@link ChannelAdapter#maxMessageLength()} the current
+ * message is sealed at a word boundary and the rest continues in a new message. An
+ * {@linkplain AgentResponse#isError() error} element replaces the text of the message
+ * being edited instead of being appended to it.
+ */
+@Component
+public class StreamingReplyDelivery {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamingReplyDelivery.class);
+    static final String PLACEHOLDER = "\u2026";
+    static final String EMPTY_REPLY = "(no response)";
+
+    private final JclawMetrics metrics;
+
+    public StreamingReplyDelivery(JclawMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * @param fallback used for whatever could not be delivered by edits, e.g. when the
+     *                 placeholder post returned no message id
+     */
+    public Mono<Void> deliver(ChannelAdapter adapter, InboundMessage origin, Flux<AgentResponse> responses,
+                              Function<String, Mono<Void>> fallback) {
+        ReplyState state = new ReplyState(adapter.maxMessageLength(), System.nanoTime());
+        Duration interval = adapter.minEditInterval();
+        // Cuts the pause after the last edit short so the final text goes out at once
+        Sinks.Empty<Void> ended = Sinks.empty();
+
+        return adapter.postMessage(outbound(origin, PLACEHOLDER))
+                .doOnNext(state::continueIn)
+                .onErrorResume(e -> {
+                    log.warn("Placeholder post failed for channel={}: {}", origin.channelType(), e.getMessage());
+                    return Mono.empty();
+                })
+                .then(Mono.defer(() -> responses
+                        .doOnNext(state::accept)
+                        .doOnTerminate(ended::tryEmitEmpty)
+                        .onBackpressureLatest()
+                        // One edit, then a pause; tokens arriving meanwhile are folded into the next edit
+                        .concatMap(response -> flush(adapter, origin, state, false)
+                                .then(Mono.delay(interval).then().or(ended.asMono())), 1)
+                        .onErrorResume(e -> {
+                            log.error("Reply stream failed for channel={}", origin.channelType(), e);
+                            return Mono.empty();
+                        })
+                        .then(Mono.defer(() -> flush(adapter, origin, state, true)))
+                        .then(Mono.defer(() -> {
+                            String undelivered = state.takeUndelivered();
+                            return undelivered.isEmpty() ? Mono.<Void>empty() : fallback.apply(undelivered);
+                        }))));
+    }
+
+    private Mono<Void> flush(ChannelAdapter adapter, InboundMessage origin, ReplyState state, boolean last) {
+        return Mono.defer(() -> {
+            Edit edit = state.nextEdit(last);
+            if (edit == null) return Mono.empty();
+
+            Mono<Void> apply = applyEdit(adapter, origin, edit, last || edit.sealed())
+                    .doOnSuccess(v -> state.recordFirstEdit(metrics, origin.channelType()));
+            if (!edit.sealed()) return apply;
+
+            // Current message is full: continue in a new one, then flush what remains
+            return apply
+                    .then(adapter.postMessage(outbound(origin, PLACEHOLDER))
+                            .onErrorResume(e -> Mono.empty())
+                            .defaultIfEmpty(""))
+                    .doOnNext(state::continueIn)
+                    .then(flush(adapter, origin, state, last));
+        });
+    }
+
+    private Mono<Void> applyEdit(ChannelAdapter adapter, InboundMessage origin, Edit edit, boolean mustLand) {
+        Mono<Void> call = adapter.editMessage(outbound(origin, edit.content()), edit.messageId());
+        if (!mustLand) {
+            // An intermediate edit that fails is superseded by the next one
+            return call.onErrorResume(e -> {
+                log.debug("Intermediate edit failed for channel={}: {}", origin.channelType(), e.getMessage());
+                return Mono.empty();
+            });
+        }
+        return call
+                .retryWhen(Retry.backoff(3, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(10)))
+                .onErrorResume(e -> {
+                    log.error("Final edit failed after retries for channel={}: {}",
+                            origin.channelType(), e.getMessage());
+                    metrics.recordDeliveryFailed(origin.channelType());
+                    return Mono.empty();
+                });
+    }
+
+    private static OutboundMessage outbound(InboundMessage origin, String content) {
+        return new OutboundMessage(origin.channelType(), origin.conversationId(), origin.threadId(),
+                content, origin.metadata() != null ? origin.metadata() : Map.of());
+    }
+
+    /**
+     * Index just past where a chunk starting at {@code start} should end: the last
+     * newline, else the last space, within {@code maxLen} chars; a hard cut otherwise.
+     */
+    static int chunkEnd(CharSequence content, int start, int maxLen) {
+        int end = Math.min(start + maxLen, content.length());
+        if (end >= content.length()) return end;
+        String window = content.subSequence(start, end).toString();
+        int breakAt = window.lastIndexOf('\n');
+        if (breakAt <= 0) breakAt = window.lastIndexOf(' ');
+        return breakAt > 0 ? start + breakAt + 1 : end;
+    }
+
+    record Edit(String messageId, String content, boolean sealed) {}
+
+    /** Text of the message being edited; shared by the token and edit threads. */
+    static final class ReplyState {
+        private final int maxLen;
+        private final long startNanos;
+        private final StringBuilder current = new StringBuilder();
+        private String messageId;
+        private String lastSent;
+        private boolean anySent;
+        private boolean firstEditRecorded;
+        private boolean failed;
+
+        ReplyState(int maxLen, long startNanos) {
+            this.maxLen = maxLen;
+            this.startNanos = startNanos;
+        }
+
+        synchronized void accept(AgentResponse response) {
+            if (failed) return;
+            if (response.isError()) {
+                // Whatever was streamed so far is superseded by the error text
+                failed = true;
+                current.setLength(0);
+            }
+            if (response.content() != null) current.append(response.content());
+        }
+
+        /** Switches to a newly posted message; an empty id means edits are no longer possible. */
+        synchronized void continueIn(String id) {
+            messageId = id == null || id.isEmpty() ? null : id;
+            lastSent = PLACEHOLDER;
+        }
+
+        /**
+         * Next edit to send, or null if nothing changed. A sealed edit carries the final
+         * content of a full message and removes it from the buffer.
+         */
+        synchronized Edit nextEdit(boolean last) {
+            if (messageId == null) return null;
+            if (maxLen > 0 && current.length() > maxLen) {
+                int end = chunkEnd(current, 0, maxLen);
+                String head = current.substring(0, end);
+                current.delete(0, end);
+                anySent = true;
+                return new Edit(messageId, head, true);
+            }
+            String content = current.toString();
+            if (content.isEmpty()) {
+                if (!last || anySent) return null;
+                content = EMPTY_REPLY;
+            }
+            if (content.equals(lastSent)) return null;
+            lastSent = content;
+            anySent = true;
+            return new Edit(messageId, content, false);
+        }
+
+        /** Text that never reached an editable message (all of it if none was posted). */
+        synchronized String takeUndelivered() {
+            if (messageId != null) return "";
+            String rest = current.toString();
+            current.setLength(0);
+            return rest;
+        }
+
+        synchronized void recordFirstEdit(JclawMetrics metrics, String channel) {
+            if (firstEditRecorded) return;
+            firstEditRecorded = true;
+            metrics.recordStreamingFirstEdit(channel, System.nanoTime() - startNanos);
+        }
+    }
+}
@@ -6,6 +6,7 @@ import com.jclaw.channel.OutboundMessage;
 import com.jclaw.config.SecretsConfig;
 import net.dv8tion.jda.api.JDA;
 import net.dv8tion.jda.api.JDABuilder;
+import net.dv8tion.jda.api.entities.Message;
 import net.dv8tion.jda.api.entities.channel.middleman.MessageChannel;
 import net.dv8tion.jda.api.events.message.MessageReceivedEvent;
 import net.dv8tion.jda.api.hooks.ListenerAdapter;
@@ -20,6 +21,7 @@ import reactor.core.publisher.Sinks;
 
 import jakarta.annotation.PostConstruct;
 import jakarta.annotation.PreDestroy;
+import java.time.Duration;
 import java.util.Map;
 
 @Component
@@ -106,25 +108,46 @@ public class DiscordChannelAdapter extends ListenerAdapter implements ChannelAda
     @Override
     public Mono<Void> sendMessage(OutboundMessage msg) {
         return Mono.fromRunnable(() -> {
-            if (jda == null) return;
-            // If threadId is present, send to the thread channel
-            if (msg.threadId() != null) {
-                MessageChannel thread = jda.getThreadChannelById(msg.threadId());
-                if (thread != null) {
-                    thread.sendMessage(msg.content()).queue();
-                    return;
-                }
-            }
-            MessageChannel channel = jda.getTextChannelById(msg.conversationId());
-            if (channel == null) {
-                channel = jda.getPrivateChannelById(msg.conversationId());
-            }
+            MessageChannel channel = resolveChannel(msg);
             if (channel != null) {
                 channel.sendMessage(msg.content()).queue();
             }
         });
     }
 
+    @Override
+    public Mono<String> postMessage(OutboundMessage msg) {
+        return Mono.defer(() -> {
+            MessageChannel channel = resolveChannel(msg);
+            if (channel == null) return Mono.empty();
+            return Mono.fromFuture(channel.sendMessage(msg.content()).submit())
+                    .map(Message::getId);
+        });
+    }
+
+    @Override
+    public Mono<Void> editMessage(OutboundMessage msg, String messageId) {
+        return Mono.defer(() -> {
+            MessageChannel channel = resolveChannel(msg);
+            if (channel == null) return Mono.empty();
+            return Mono.fromFuture(channel.editMessageById(messageId, msg.content()).submit()).then();
+        });
+    }
+
+    /** Thread channel if the message belongs to one, else the text or private channel. */
+    private MessageChannel resolveChannel(OutboundMessage msg) {
+        if (jda == null) return null;
+        if (msg.threadId() != null) {
+            MessageChannel thread = jda.getThreadChannelById(msg.threadId());
+            if (thread != null) return thread;
+        }
+        MessageChannel channel = jda.getTextChannelById(msg.conversationId());
+        if (channel == null) {
+            channel = jda.getPrivateChannelById(msg.conversationId());
+        }
+        return channel;
+    }
+
     @Override
     public Mono<Void> sendTypingIndicator(String conversationId) {
         return Mono.fromRunnable(() -> {
@@ -149,6 +172,13 @@ public class DiscordChannelAdapter extends ListenerAdapter implements ChannelAda
     @Override
     public int maxMessageLength() { return 2000; }
 
+    @Override
+    public boolean supportsMessageEdits() { return true; }
+
+    // Discord allows 5 message edits per 5 seconds per channel; leave headroom
+    @Override
+    public Duration minEditInterval() { return Duration.ofMillis(1200); }
+
     @Override
     public boolean isConnected() {
         return jda != null && jda.getStatus() != JDA.Status.SHUTDOWN
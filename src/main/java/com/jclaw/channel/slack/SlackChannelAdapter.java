@@ -150,11 +150,48 @@ public class SlackChannelAdapter implements ChannelAdapter {
         }).subscribeOn(reactor.core.scheduler.Schedulers.boundedElastic());
     }
 
+    @Override
+    public Mono<String> postMessage(OutboundMessage msg) {
+        return Mono.fromCallable(() -> {
+            if (slackApp == null) return null;
+            var response = slackApp.client().chatPostMessage(r -> r
+                    .channel(msg.conversationId())
+                    .text(msg.content())
+                    .threadTs(msg.threadId())
+            );
+            if (!response.isOk()) {
+                log.error("Failed to post Slack message: {}", response.getError());
+                return null;
+            }
+            return response.getTs();
+        }).subscribeOn(reactor.core.scheduler.Schedulers.boundedElastic());
+    }
+
+    @Override
+    public Mono<Void> editMessage(OutboundMessage msg, String messageId) {
+        return Mono.<Void>fromCallable(() -> {
+            if (slackApp == null) return null;
+            var response = slackApp.client().chatUpdate(r -> r
+                    .channel(msg.conversationId())
+                    .ts(messageId)
+                    .text(msg.content())
+            );
+            if (!response.isOk()) {
+                // Surface as an error so the caller can retry (e.g. "ratelimited")
+                throw new IOException("Slack chat.update failed: " + response.getError());
+            }
+            return null;
+        }).subscribeOn(reactor.core.scheduler.Schedulers.boundedElastic());
+    }
+
     @Override
     public Mono<Void> sendTypingIndicator(String conversationId) {
         return Mono.empty(); // Slack doesn't support typing indicators for bots
     }
 
+    @Override
+    public boolean supportsMessageEdits() { return true; }
+
     @Override
     public boolean supportsThreading() { return true; }
 
@@ -62,15 +62,13 @@ public class TeamsChannelAdapter implements ChannelAdapter {
 
     @Override
     public Mono<Void> sendMessage(OutboundMessage msg) {
-        String serviceUrl = msg.metadata() != null
-                ? (String) msg.metadata().getOrDefault("serviceUrl", BOT_FRAMEWORK_API)
-                : BOT_FRAMEWORK_API;
+        return postMessage(msg).then();
+    }
 
-        // Validate serviceUrl against Bot Framework domain allowlist (prevent SSRF)
-        if (!isAllowedServiceUrl(serviceUrl)) {
-            log.warn("Teams serviceUrl rejected (not in allowlist): {}", serviceUrl);
-            return Mono.empty();
-        }
+    @Override
+    public Mono<String> postMessage(OutboundMessage msg) {
+        String serviceUrl = resolveServiceUrl(msg);
+        if (serviceUrl == null) return Mono.empty();
 
         Map<String, Object> activity = Map.of(
                 "type", "message",
@@ -78,6 +76,7 @@ public class TeamsChannelAdapter implements ChannelAdapter {
                 "conversation", Map.of("id", msg.conversationId())
         );
 
+        // Bot Framework replies with a ResourceResponse carrying the new activity id
         return getAccessToken()
                 .flatMap(token -> webClient.post()
                         .uri(serviceUrl + "/v3/conversations/{conversationId}/activities",
@@ -85,13 +84,50 @@ public class TeamsChannelAdapter implements ChannelAdapter {
                         .header("Authorization", "Bearer " + token)
                         .bodyValue(activity)
                         .retrieve()
-                        .bodyToMono(Void.class))
-                .doOnSuccess(v -> log.debug("Teams message sent to {}", msg.conversationId()))
+                        .bodyToMono(Map.class))
+                .flatMap(response -> Mono.justOrEmpty((String) response.get("id")))
+                .doOnSuccess(id -> log.debug("Teams message sent to {}", msg.conversationId()))
                 .doOnError(e -> log.error("Failed to send Teams message to {}: {}",
                         msg.conversationId(), e.getMessage()))
                 .onErrorResume(e -> Mono.empty());
     }
 
+    @Override
+    public Mono<Void> editMessage(OutboundMessage msg, String messageId) {
+        String serviceUrl = resolveServiceUrl(msg);
+        if (serviceUrl == null) return Mono.empty();
+
+        Map<String, Object> activity = Map.of(
+                "type", "message",
+                "id", messageId,
+                "text", msg.content(),
+                "conversation", Map.of("id", msg.conversationId())
+        );
+
+        return getAccessToken()
+                .flatMap(token -> webClient.put()
+                        .uri(serviceUrl + "/v3/conversations/{conversationId}/activities/{activityId}",
+                                msg.conversationId(), messageId)
+                        .header("Authorization", "Bearer " + token)
+                        .bodyValue(activity)
+                        .retrieve()
+                        .bodyToMono(Void.class));
+    }
+
+    /** serviceUrl from message metadata, or null if it fails the allowlist check. */
+    private String resolveServiceUrl(OutboundMessage msg) {
+        String serviceUrl = msg.metadata() != null
+                ? (String) msg.metadata().getOrDefault("serviceUrl", BOT_FRAMEWORK_API)
+                : BOT_FRAMEWORK_API;
+
+        // Validate serviceUrl against Bot Framework domain allowlist (prevent SSRF)
+        if (!isAllowedServiceUrl(serviceUrl)) {
+            log.warn("Teams serviceUrl rejected (not in allowlist): {}", serviceUrl);
+            return null;
+        }
+        return serviceUrl;
+    }
+
     @Override
     public Mono<Void> sendTypingIndicator(String conversationId) {
         // serviceUrl will be provided via the outbound message's metadata for actual sends;
@@ -121,6 +157,13 @@ public class TeamsChannelAdapter implements ChannelAdapter {
     @Override
     public int maxMessageLength() { return 28000; }
 
+    @Override
+    public boolean supportsMessageEdits() { return true; }
+
+    // Teams throttles bursts per conversation; activity updates count against the same budget
+    @Override
+    public Duration minEditInterval() { return Duration.ofMillis(1500); }
+
     @Override
     public boolean isConnected() { return appId != null && !appId.isEmpty(); }
 
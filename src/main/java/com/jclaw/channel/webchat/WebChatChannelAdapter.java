@@ -1,5 +1,6 @@
 package com.jclaw.channel.webchat;
 
+import com.jclaw.agent.AgentResponse;
 import com.jclaw.channel.ChannelAdapter;
 import com.jclaw.channel.InboundMessage;
 import com.jclaw.channel.OutboundMessage;
@@ -10,7 +11,9 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.publisher.Sinks;
 
+import java.time.Duration;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.concurrent.ConcurrentHashMap;
 
 @Component
@@ -18,6 +21,9 @@ public class WebChatChannelAdapter implements ChannelAdapter {
 
     private static final Logger log = LoggerFactory.getLogger(WebChatChannelAdapter.class);
     private static final int MAX_CLIENT_SINKS = 10_000;
+    // Streamed chunks are coalesced into one delta event per window or per this many chunks
+    private static final Duration DELTA_WINDOW = Duration.ofMillis(40);
+    private static final int DELTA_MAX_CHUNKS = 32;
 
     private final Sinks.Many<InboundMessage> messageSink =
             Sinks.many().multicast().onBackpressureBuffer();
@@ -54,6 +60,48 @@ public class WebChatChannelAdapter implements ChannelAdapter {
         });
     }
 
+    /**
+     * Emits the reply as {@code delta} events, each carrying the text generated since the
+     * previous one, followed by a {@code done} event whose content is the finish reason.
+     * A failed reply ends with a {@code message} event carrying the error text, which
+     * replaces the deltas, and a {@code done} event with finish reason {@code error}.
+     */
+    @Override
+    public Mono<Void> streamReply(InboundMessage origin, Flux<AgentResponse> responses) {
+        String conversationId = origin.conversationId();
+        AtomicReference<String> finishReason = new AtomicReference<>("stop");
+        AtomicReference<String> failure = new AtomicReference<>();
+        return responses
+                .doOnNext(r -> {
+                    if (r.finishReason() != null) finishReason.set(r.finishReason());
+                    if (r.isError()) failure.set(r.content());
+                })
+                .filter(r -> !r.isError())
+                .map(AgentResponse::content)
+                .filter(text -> text != null && !text.isEmpty())
+                .bufferTimeout(DELTA_MAX_CHUNKS, DELTA_WINDOW)
+                .doOnNext(chunks -> emit(conversationId, String.join("", chunks), "delta"))
+                .then(Mono.fromRunnable(() -> {
+                    if (failure.get() != null) emit(conversationId, failure.get(), "message");
+                    emit(conversationId, finishReason.get(), "done");
+                }));
+    }
+
+    private void emit(String conversationId, String content, String type) {
+        Sinks.Many<OutboundMessage> clientSink = clientSinks.get(conversationId);
+        if (clientSink != null) {
+            clientSink.tryEmitNext(new OutboundMessage("webchat", conversationId,
+                    null, content, Map.of("type", type)));
+        }
+    }
+
+    @Override
+    public boolean supportsTokenStreaming() { return true; }
+
+    /** Replies go to the SSE connection, which only exists on the instance the browser is connected to. */
+    @Override
+    public boolean isConnectionBound() { return true; }
+
     @Override
     public boolean supportsThreading() { return false; }
 
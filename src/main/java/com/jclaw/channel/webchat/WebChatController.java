@@ -11,6 +11,7 @@ import org.springframework.web.bind.annotation.*;
 import reactor.core.publisher.Flux;
 
 import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
 
@@ -31,6 +32,7 @@ public class WebChatController {
     private static final int MAX_MESSAGE_LENGTH = 10_000;
     private static final int MAX_CONVERSATION_OWNERS = 10_000;
     private final Map<String, String> conversationOwners = new ConcurrentHashMap<>();
+    private static final Set<String> STREAM_EVENT_TYPES = Set.of("typing", "delta", "done");
 
     public WebChatController(WebChatChannelAdapter webChatAdapter, AuditService auditService) {
         this.webChatAdapter = webChatAdapter;
@@ -80,8 +82,13 @@ public class WebChatController {
         return Map.of("conversationId", conversationId, "status", "sent");
     }
 
+    /**
+     * {@code message} and {@code typing} events carry plain text. {@code delta} and
+     * {@code done} carry JSON ({@code {"text": ...}}, {@code {"finishReason": ...}}) so
+     * leading spaces and newlines in streamed tokens survive SSE framing.
+     */
     @GetMapping(value = "/stream/{conversationId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
-    public Flux<ServerSentEvent<String>> streamMessages(
+    public Flux<ServerSentEvent<Object>> streamMessages(
             @PathVariable String conversationId,
             Authentication auth) {
         // Verify the requesting user owns this conversationId — deny by default when unknown
@@ -99,12 +106,18 @@ public class WebChatController {
 
         return webChatAdapter.subscribeClient(conversationId)
                 .map(msg -> {
-                    String eventType = msg.metadata() != null
-                            && "typing".equals(msg.metadata().get("type"))
-                            ? "typing" : "message";
-                    return ServerSentEvent.<String>builder()
+                    // typing, delta and done are tagged by the adapter; anything else is a full message
+                    Object type = msg.metadata() != null ? msg.metadata().get("type") : null;
+                    String eventType = type instanceof String t && STREAM_EVENT_TYPES.contains(t)
+                            ? t : "message";
+                    Object data = switch (eventType) {
+                        case "delta" -> Map.of("text", msg.content());
+                        case "done" -> Map.of("finishReason", msg.content());
+                        default -> msg.content();
+                    };
+                    return ServerSentEvent.<Object>builder()
                             .event(eventType)
-                            .data(msg.content())
+                            .data(data)
                             .build();
                 });
     }
@@ -0,0 +1,124 @@
+package com.jclaw.config;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import reactor.core.Disposable;
+import reactor.util.retry.Retry;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Cluster-wide invalidation for in-process caches over Redis pub/sub.
+ *
+ * <p>Messages on {@value #CHANNEL} have the form {@code origin|cacheName|key}. The publisher
+ * evicts locally right away and ignores its own echo; every other instance evicts the key
+ * when the message arrives. Pub/sub is fire-and-forget, so whenever the subscription drops
+ * all registered caches are cleared; caches should also keep a TTL as a safety net.
+ */
+@Component
+public class CacheInvalidationBus {
+
+    private static final Logger log = LoggerFactory.getLogger(CacheInvalidationBus.class);
+    static final String CHANNEL = "jclaw:cache:invalidate";
+    private static final String SEPARATOR = "|";
+
+    private record Registration(Consumer<String> evictKey, Runnable evictAll) {}
+
+    private final ReactiveRedisTemplate<String, String> redisTemplate;
+    private final Map<String, List<Registration>> caches = new ConcurrentHashMap<>();
+    private final String instanceId = UUID.randomUUID().toString();
+    private Disposable subscription;
+
+    public CacheInvalidationBus(ReactiveRedisTemplate<String, String> redisTemplate) {
+        this.redisTemplate = redisTemplate;
+    }
+
+    @PostConstruct
+    void listen() {
+        subscription = redisTemplate.listenToChannel(CHANNEL)
+                .doOnError(e -> {
+                    // Invalidations may have been missed while disconnected
+                    log.debug("Cache invalidation subscription lost, clearing local caches: {}", e.getMessage());
+                    caches.values().forEach(list -> list.forEach(r -> r.evictAll().run()));
+                })
+                .retryWhen(Retry.backoff(Long.MAX_VALUE, Duration.ofSeconds(1))
+                        .maxBackoff(Duration.ofSeconds(30)))
+                .subscribe(message -> onMessage(message.getMessage()),
+                        e -> log.warn("Cache invalidation listener stopped", e));
+    }
+
+    @PreDestroy
+    void stop() {
+        if (subscription != null) subscription.dispose();
+    }
+
+    /**
+     * Registers a local cache. {@code cacheName} must not contain '|'. Caches derived from
+     * the same source may register under the same name; all of them are evicted together.
+     */
+    public void register(String cacheName, Consumer<String> evictKey, Runnable evictAll) {
+        caches.computeIfAbsent(cacheName, name -> new CopyOnWriteArrayList<>())
+                .add(new Registration(evictKey, evictAll));
+    }
+
+    /**
+     * Evicts the key locally and on every other instance. Inside a transaction the
+     * eviction is deferred until after commit so readers cannot reload the old row.
+     */
+    public void publish(String cacheName, String key) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    doPublish(cacheName, key);
+                }
+            });
+        } else {
+            doPublish(cacheName, key);
+        }
+    }
+
+    private void doPublish(String cacheName, String key) {
+        evictLocally(cacheName, key);
+        try {
+            redisTemplate.convertAndSend(CHANNEL, instanceId + SEPARATOR + cacheName + SEPARATOR + key)
+                    .subscribe(receivers -> { },
+                            e -> log.warn("Failed to publish cache invalidation {}|{}: {}",
+                                    cacheName, key, e.getMessage()));
+        } catch (Exception e) {
+            log.warn("Failed to publish cache invalidation {}|{}: {}", cacheName, key, e.getMessage());
+        }
+    }
+
+    void onMessage(String payload) {
+        int originEnd = payload.indexOf(SEPARATOR);
+        int cacheEnd = originEnd > 0 ? payload.indexOf(SEPARATOR, originEnd + 1) : -1;
+        if (cacheEnd <= originEnd + 1) {
+            log.debug("Ignoring malformed cache invalidation message: {}", payload);
+            return;
+        }
+        if (payload.startsWith(instanceId + SEPARATOR)) {
+            return; // our own publish, already applied locally
+        }
+        evictLocally(payload.substring(originEnd + 1, cacheEnd), payload.substring(cacheEnd + 1));
+    }
+
+    private void evictLocally(String cacheName, String key) {
+        List<Registration> registrations = caches.get(cacheName);
+        if (registrations != null) {
+            registrations.forEach(r -> r.evictKey().accept(key));
+        }
+    }
+}
@@ -84,8 +84,11 @@ public class GenAiConfig {
     // === Model Router ===
 
     @Bean
-    public ModelRouter modelRouter(ChatModel defaultModel, ApplicationContext applicationContext) {
-        return new ModelRouter(defaultModel, applicationContext);
+    public ModelRouter modelRouter(ChatModel defaultModel, ApplicationContext applicationContext,
+                                   JclawProperties properties) {
+        ModelRouter router = new ModelRouter(defaultModel, applicationContext);
+        router.setDefaultSummaryModel(properties.getSession().getSummaryModel());
+        return router;
     }
 
     // === Cloud Model Access ===
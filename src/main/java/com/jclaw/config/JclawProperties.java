@@ -14,6 +14,9 @@ public class JclawProperties {
     private SecurityProperties security = new SecurityProperties();
     private GenAiProperties genai = new GenAiProperties();
     private DashboardProperties dashboard = new DashboardProperties();
+    private AuditProperties audit = new AuditProperties();
+    private CacheProperties cache = new CacheProperties();
+    private ChannelProperties channel = new ChannelProperties();
     private List<AgentProperties> agents = new ArrayList<>();
 
     public SessionProperties getSession() { return session; }
@@ -28,6 +31,15 @@ public class JclawProperties {
     public DashboardProperties getDashboard() { return dashboard; }
     public void setDashboard(DashboardProperties dashboard) { this.dashboard = dashboard; }
 
+    public AuditProperties getAudit() { return audit; }
+    public void setAudit(AuditProperties audit) { this.audit = audit; }
+
+    public CacheProperties getCache() { return cache; }
+    public void setCache(CacheProperties cache) { this.cache = cache; }
+
+    public ChannelProperties getChannel() { return channel; }
+    public void setChannel(ChannelProperties channel) { this.channel = channel; }
+
     public List<AgentProperties> getAgents() { return agents; }
     public void setAgents(List<AgentProperties> agents) { this.agents = agents; }
 
@@ -36,7 +48,25 @@ public class JclawProperties {
         private String groupScope = "GROUP";
         private int maxHistoryTokens = 128000;
         private int compactionThresholdTokens = 96000;
+        private int compactionWorkers = 2;
+        private int compactionQueueCapacity = 1000;
+        private int compactionBackoffSeconds = 30;
+        private int compactionMaxBackoffSeconds = 3600;
+        private String summaryModel;
+        private long promptCacheMaxTokens = 10_000_000;
+        /**
+         * Queue message inserts and counter updates for a background batch writer. Pending
+         * messages are only visible to reads on the same instance, so this can't be combined
+         * with the shared inbound queue ({@code jclaw.channel.queue.enabled}).
+         */
+        private boolean writeBehind = false;
+        private int writeBatchSize = 200;
+        private long writeFlushIntervalMs = 20;
+        private int writeQueueCapacity = 10_000;
         private int idleTimeoutMinutes = 1440;
+        /** Sessions archived or purged per transaction by the retention jobs. */
+        private int retentionChunkSize = 500;
+        private long retentionChunkPauseMs = 50;
 
         public String getDefaultScope() { return defaultScope; }
         public void setDefaultScope(String defaultScope) { this.defaultScope = defaultScope; }
@@ -46,8 +76,32 @@ public class JclawProperties {
         public void setMaxHistoryTokens(int maxHistoryTokens) { this.maxHistoryTokens = maxHistoryTokens; }
         public int getCompactionThresholdTokens() { return compactionThresholdTokens; }
         public void setCompactionThresholdTokens(int t) { this.compactionThresholdTokens = t; }
+        public int getCompactionWorkers() { return compactionWorkers; }
+        public void setCompactionWorkers(int compactionWorkers) { this.compactionWorkers = compactionWorkers; }
+        public int getCompactionQueueCapacity() { return compactionQueueCapacity; }
+        public void setCompactionQueueCapacity(int c) { this.compactionQueueCapacity = c; }
+        public int getCompactionBackoffSeconds() { return compactionBackoffSeconds; }
+        public void setCompactionBackoffSeconds(int s) { this.compactionBackoffSeconds = s; }
+        public int getCompactionMaxBackoffSeconds() { return compactionMaxBackoffSeconds; }
+        public void setCompactionMaxBackoffSeconds(int s) { this.compactionMaxBackoffSeconds = s; }
+        public String getSummaryModel() { return summaryModel; }
+        public void setSummaryModel(String summaryModel) { this.summaryModel = summaryModel; }
+        public long getPromptCacheMaxTokens() { return promptCacheMaxTokens; }
+        public void setPromptCacheMaxTokens(long t) { this.promptCacheMaxTokens = t; }
+        public boolean isWriteBehind() { return writeBehind; }
+        public void setWriteBehind(boolean writeBehind) { this.writeBehind = writeBehind; }
+        public int getWriteBatchSize() { return writeBatchSize; }
+        public void setWriteBatchSize(int writeBatchSize) { this.writeBatchSize = writeBatchSize; }
+        public long getWriteFlushIntervalMs() { return writeFlushIntervalMs; }
+        public void setWriteFlushIntervalMs(long ms) { this.writeFlushIntervalMs = ms; }
+        public int getWriteQueueCapacity() { return writeQueueCapacity; }
+        public void setWriteQueueCapacity(int c) { this.writeQueueCapacity = c; }
         public int getIdleTimeoutMinutes() { return idleTimeoutMinutes; }
         public void setIdleTimeoutMinutes(int idleTimeoutMinutes) { this.idleTimeoutMinutes = idleTimeoutMinutes; }
+        public int getRetentionChunkSize() { return retentionChunkSize; }
+        public void setRetentionChunkSize(int s) { this.retentionChunkSize = s; }
+        public long getRetentionChunkPauseMs() { return retentionChunkPauseMs; }
+        public void setRetentionChunkPauseMs(long ms) { this.retentionChunkPauseMs = ms; }
     }
 
     public static class SecurityProperties {
@@ -71,6 +125,14 @@ public class JclawProperties {
         private int userPerHour = 200;
         private int servicePerMinute = 60;
         private int servicePerHour = 1000;
+        /** Local buckets are reconciled with the shared Redis buckets this often. */
+        private long syncIntervalMs = 500;
+        /** Principals reconciled per Redis round; the rest wait for the next interval. */
+        private int syncBatchSize = 200;
+        /** Requests a principal may take locally before an immediate reconcile is queued. */
+        private int maxUnsyncedRequests = 10;
+        private int breakerFailureThreshold = 5;
+        private int breakerOpenSeconds = 30;
 
         public int getUserPerMinute() { return userPerMinute; }
         public void setUserPerMinute(int v) { this.userPerMinute = v; }
@@ -80,6 +142,16 @@ public class JclawProperties {
         public void setServicePerMinute(int v) { this.servicePerMinute = v; }
         public int getServicePerHour() { return servicePerHour; }
         public void setServicePerHour(int v) { this.servicePerHour = v; }
+        public long getSyncIntervalMs() { return syncIntervalMs; }
+        public void setSyncIntervalMs(long v) { this.syncIntervalMs = v; }
+        public int getSyncBatchSize() { return syncBatchSize; }
+        public void setSyncBatchSize(int v) { this.syncBatchSize = v; }
+        public int getMaxUnsyncedRequests() { return maxUnsyncedRequests; }
+        public void setMaxUnsyncedRequests(int v) { this.maxUnsyncedRequests = v; }
+        public int getBreakerFailureThreshold() { return breakerFailureThreshold; }
+        public void setBreakerFailureThreshold(int v) { this.breakerFailureThreshold = v; }
+        public int getBreakerOpenSeconds() { return breakerOpenSeconds; }
+        public void setBreakerOpenSeconds(int v) { this.breakerOpenSeconds = v; }
     }
 
     public static class DataResidencyProperties {
@@ -93,6 +165,8 @@ public class JclawProperties {
         private int sessionTranscriptsDays = 90;
         private int auditLogDays = 365;
         private int contentFilterEventsDays = 30;
+        /** Monthly partitions of session_messages and audit_log created beyond the current month. */
+        private int partitionMonthsAhead = 3;
 
         public int getSessionTranscriptsDays() { return sessionTranscriptsDays; }
         public void setSessionTranscriptsDays(int d) { this.sessionTranscriptsDays = d; }
@@ -100,6 +174,8 @@ public class JclawProperties {
         public void setAuditLogDays(int d) { this.auditLogDays = d; }
         public int getContentFilterEventsDays() { return contentFilterEventsDays; }
         public void setContentFilterEventsDays(int d) { this.contentFilterEventsDays = d; }
+        public int getPartitionMonthsAhead() { return partitionMonthsAhead; }
+        public void setPartitionMonthsAhead(int m) { this.partitionMonthsAhead = m; }
     }
 
     public static class PiiProperties {
@@ -138,10 +214,141 @@ public class JclawProperties {
         }
     }
 
+    public static class AuditProperties {
+        /** Write audit events through the batched background writer instead of one save per event. */
+        private boolean async = true;
+        private int queueCapacity = 10_000;
+        private int batchSize = 200;
+        private long flushIntervalMs = 500;
+        /**
+         * Append-only JSON-lines file used when the queue is full or the database is unavailable.
+         * Events the database rejects are moved to a sibling file with a {@code .dead} suffix.
+         */
+        private String spillFile = System.getProperty("java.io.tmpdir") + "/jclaw-audit-spill.jsonl";
+
+        public boolean isAsync() { return async; }
+        public void setAsync(boolean async) { this.async = async; }
+        public int getQueueCapacity() { return queueCapacity; }
+        public void setQueueCapacity(int queueCapacity) { this.queueCapacity = queueCapacity; }
+        public int getBatchSize() { return batchSize; }
+        public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+        public long getFlushIntervalMs() { return flushIntervalMs; }
+        public void setFlushIntervalMs(long flushIntervalMs) { this.flushIntervalMs = flushIntervalMs; }
+        public String getSpillFile() { return spillFile; }
+        public void setSpillFile(String spillFile) { this.spillFile = spillFile; }
+    }
+
+    public static class CacheProperties {
+        /** Upper bound on how long a cached agent config may be served without a reload. */
+        private int agentConfigTtlSeconds = 300;
+        /** How long a resolved session may be reused for the same routing identity; 0 disables. */
+        private int sessionRouteTtlSeconds = 60;
+        /** Upper bound on how long an approved identity mapping is served from memory; 0 disables. */
+        private int identityTtlSeconds = 300;
+        /** How long a lookup that found no approved mapping is remembered; 0 disables. */
+        private int unmappedIdentityTtlSeconds = 10;
+        /** How often collected identity last-seen times are written. */
+        private long identityLastSeenFlushMs = 30000;
+
+        public int getAgentConfigTtlSeconds() { return agentConfigTtlSeconds; }
+        public void setAgentConfigTtlSeconds(int s) { this.agentConfigTtlSeconds = s; }
+        public int getSessionRouteTtlSeconds() { return sessionRouteTtlSeconds; }
+        public void setSessionRouteTtlSeconds(int s) { this.sessionRouteTtlSeconds = s; }
+        public int getIdentityTtlSeconds() { return identityTtlSeconds; }
+        public void setIdentityTtlSeconds(int s) { this.identityTtlSeconds = s; }
+        public int getUnmappedIdentityTtlSeconds() { return unmappedIdentityTtlSeconds; }
+        public void setUnmappedIdentityTtlSeconds(int s) { this.unmappedIdentityTtlSeconds = s; }
+        public long getIdentityLastSeenFlushMs() { return identityLastSeenFlushMs; }
+        public void setIdentityLastSeenFlushMs(long ms) { this.identityLastSeenFlushMs = ms; }
+    }
+
+    public static class ChannelProperties {
+        private DispatchProperties dispatch = new DispatchProperties();
+        private InboundQueueProperties queue = new InboundQueueProperties();
+        /** Stream replies into an edited message on channels that support edits. */
+        private boolean streamReplies = true;
+        /**
+         * Stream replies token by token on channels that support it (WebChat delta/done
+         * events instead of one message event). Off by default: clients must handle the
+         * new events.
+         */
+        private boolean streamTokens = false;
+
+        public DispatchProperties getDispatch() { return dispatch; }
+        public void setDispatch(DispatchProperties dispatch) { this.dispatch = dispatch; }
+        public InboundQueueProperties getQueue() { return queue; }
+        public void setQueue(InboundQueueProperties queue) { this.queue = queue; }
+        public boolean isStreamReplies() { return streamReplies; }
+        public void setStreamReplies(boolean streamReplies) { this.streamReplies = streamReplies; }
+        public boolean isStreamTokens() { return streamTokens; }
+        public void setStreamTokens(boolean streamTokens) { this.streamTokens = streamTokens; }
+    }
+
+    public static class InboundQueueProperties {
+        /** Route inbound messages through a Redis stream shared by all instances. */
+        private boolean enabled = false;
+        private String streamKey = "jclaw:inbound";
+        private String consumerGroup = "jclaw-router";
+        /** This instance's consumer in the group; defaults to the CF instance index or hostname. */
+        private String consumerName;
+        /** Stream length past which acknowledged entries are trimmed; unacknowledged ones are kept. */
+        private long maxLength = 100_000;
+        /** Entries read per poll. */
+        private int batchSize = 32;
+        /** Entries read but not yet acknowledged by this instance. */
+        private int maxInFlight = 256;
+        /**
+         * Pending entries idle this long are claimed from their (presumably dead) consumer.
+         * Entries still being handled are re-claimed by their instance every third of it.
+         */
+        private long claimIdleMs = 300_000;
+        private long reclaimIntervalMs = 15_000;
+        /** Entries delivered this many times are acknowledged and dropped. */
+        private int maxDeliveries = 5;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+        public String getStreamKey() { return streamKey; }
+        public void setStreamKey(String streamKey) { this.streamKey = streamKey; }
+        public String getConsumerGroup() { return consumerGroup; }
+        public void setConsumerGroup(String consumerGroup) { this.consumerGroup = consumerGroup; }
+        public String getConsumerName() { return consumerName; }
+        public void setConsumerName(String consumerName) { this.consumerName = consumerName; }
+        public long getMaxLength() { return maxLength; }
+        public void setMaxLength(long maxLength) { this.maxLength = maxLength; }
+        public int getBatchSize() { return batchSize; }
+        public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+        public int getMaxInFlight() { return maxInFlight; }
+        public void setMaxInFlight(int maxInFlight) { this.maxInFlight = maxInFlight; }
+        public long getClaimIdleMs() { return claimIdleMs; }
+        public void setClaimIdleMs(long claimIdleMs) { this.claimIdleMs = claimIdleMs; }
+        public long getReclaimIntervalMs() { return reclaimIntervalMs; }
+        public void setReclaimIntervalMs(long reclaimIntervalMs) { this.reclaimIntervalMs = reclaimIntervalMs; }
+        public int getMaxDeliveries() { return maxDeliveries; }
+        public void setMaxDeliveries(int maxDeliveries) { this.maxDeliveries = maxDeliveries; }
+    }
+
+    public static class DispatchProperties {
+        /** Conversations processed in parallel across all adapters. */
+        private int maxConcurrency = 32;
+        /** Messages waiting per adapter before the overflow policy applies. */
+        private int queueCapacity = 1000;
+        /** DROP_OLDEST discards the longest-waiting message; DROP_NEWEST rejects the incoming one. */
+        private String overflowPolicy = "DROP_OLDEST";
+
+        public int getMaxConcurrency() { return maxConcurrency; }
+        public void setMaxConcurrency(int n) { this.maxConcurrency = n; }
+        public int getQueueCapacity() { return queueCapacity; }
+        public void setQueueCapacity(int n) { this.queueCapacity = n; }
+        public String getOverflowPolicy() { return overflowPolicy; }
+        public void setOverflowPolicy(String overflowPolicy) { this.overflowPolicy = overflowPolicy; }
+    }
+
     public static class AgentProperties {
         private String id;
         private String displayName;
         private String model;
+        private String summaryModel;
         private String trustLevel = "STANDARD";
         private String systemPromptRef;
         private List<String> allowedTools = new ArrayList<>();
@@ -155,6 +362,8 @@ public class JclawProperties {
         public void setDisplayName(String displayName) { this.displayName = displayName; }
         public String getModel() { return model; }
         public void setModel(String model) { this.model = model; }
+        public String getSummaryModel() { return summaryModel; }
+        public void setSummaryModel(String summaryModel) { this.summaryModel = summaryModel; }
         public String getTrustLevel() { return trustLevel; }
         public void setTrustLevel(String trustLevel) { this.trustLevel = trustLevel; }
         public String getSystemPromptRef() { return systemPromptRef; }
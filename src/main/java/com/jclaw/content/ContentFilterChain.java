@@ -10,7 +10,10 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Component;
 
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 
 @Component
 public class ContentFilterChain {
@@ -21,6 +24,8 @@ public class ContentFilterChain {
     private final AuditService auditService;
     private final JclawMetrics metrics;
     private final AgentConfigService agentConfigService;
+    // All inbound regex rules in filter order, so a message is scanned once for every detector
+    private final MultiPatternMatcher inboundMatcher;
 
     public ContentFilterChain(List<ContentFilter> filters, AuditService auditService,
                              JclawMetrics metrics, AgentConfigService agentConfigService) {
@@ -28,6 +33,14 @@ public class ContentFilterChain {
         this.auditService = auditService;
         this.metrics = metrics;
         this.agentConfigService = agentConfigService;
+
+        Map<String, List<PatternRule>> inboundRules = new LinkedHashMap<>();
+        for (ContentFilter filter : filters) {
+            if (filter instanceof PatternRuleSet ruleSet && !"EgressGuard".equals(filter.name())) {
+                inboundRules.put(filter.name(), ruleSet.rules());
+            }
+        }
+        this.inboundMatcher = new MultiPatternMatcher(inboundRules);
     }
 
     public InboundMessage filterInbound(InboundMessage message, AgentContext context) {
@@ -35,17 +48,35 @@ public class ContentFilterChain {
         ContentFilterPolicy policy = resolvePolicy(context.agentId());
 
         InboundMessage current = message;
+        MultiPatternMatcher.ScanResult scan = null;
+        String scannedContent = null;
         for (ContentFilter filter : filters) {
             // EgressGuard only applies to outbound content, skip on inbound
             if ("EgressGuard".equals(filter.name())) continue;
 
             // Skip filters disabled by per-agent policy
-            if (!isFilterEnabled(filter, policy)) {
+            if (!isFilterEnabled(filter.name(), policy)) {
                 log.debug("Filter {} disabled by policy for agent={}", filter.name(), context.agentId());
                 continue;
             }
 
-            ContentFilter.FilterResult result = filter.filter(current, context, policy);
+            ContentFilter.FilterResult result;
+            if (filter instanceof PatternRuleSet ruleSet) {
+                // One combined pass serves every regex detector; rescan only if content changed
+                if (scan == null || !Objects.equals(current.content(), scannedContent)) {
+                    scannedContent = current.content();
+                    scan = inboundMatcher.scan(scannedContent, name -> isFilterEnabled(name, policy));
+                }
+                MultiPatternMatcher.Match match = scan.match(filter.name());
+                if (match != null) {
+                    log.debug("Filter {} matched rule {}", filter.name(), match.ruleId());
+                }
+                result = match == null
+                        ? ContentFilter.FilterResult.pass()
+                        : ContentFilter.FilterResult.reject(ruleSet.rejectReason());
+            } else {
+                result = filter.filter(current, context, policy);
+            }
             if (!result.passed()) {
                 metrics.recordContentFilterTriggered(filter.name(), "REJECTED");
                 auditService.logContentFilter(filter.name(), "REJECTED",
@@ -93,19 +124,45 @@ public class ContentFilterChain {
             if ("EgressGuard".equals(filter.name())) {
                 ContentFilter.FilterResult result = filter.filter(synthetic, context, policy);
                 if (!result.passed()) {
-                    metrics.recordContentFilterTriggered("EgressGuard", "BLOCKED_OUTBOUND");
-                    auditService.logContentFilter("EgressGuard", "BLOCKED_OUTBOUND",
-                            context.principal(), context.channelType(), "FILTERED");
-                    log.warn("Egress guard blocked outbound content for agent={}: {}",
-                            context.agentId(), result.reason());
-                    throw new ContentFilterException("EgressGuard", result.reason());
+                    rejectOutbound(context, result.reason());
                 }
             }
         }
     }
 
-    private boolean isFilterEnabled(ContentFilter filter, ContentFilterPolicy policy) {
-        return switch (filter.name()) {
+    /**
+     * Creates an incremental EgressGuard scanner for a streamed response. Each chunk is
+     * checked against a bounded window instead of the whole accumulated text; a violation
+     * is recorded like {@link #filterOutbound} and surfaces as a ContentFilterException
+     * from {@link StreamingEgressScanner#append}.
+     */
+    public StreamingEgressScanner newOutboundScanner(AgentContext context, ContentFilterPolicy policy) {
+        if (!policy.isEnableEgressGuard()) return StreamingEgressScanner.disabled();
+
+        EgressGuard egressGuard = null;
+        for (ContentFilter filter : filters) {
+            if (filter instanceof EgressGuard guard) {
+                egressGuard = guard;
+                break;
+            }
+        }
+        if (egressGuard == null) return StreamingEgressScanner.disabled();
+
+        return new StreamingEgressScanner(egressGuard::containsExfiltration,
+                window -> rejectOutbound(context, EgressGuard.REJECT_REASON));
+    }
+
+    private void rejectOutbound(AgentContext context, String reason) {
+        metrics.recordContentFilterTriggered("EgressGuard", "BLOCKED_OUTBOUND");
+        auditService.logContentFilter("EgressGuard", "BLOCKED_OUTBOUND",
+                context.principal(), context.channelType(), "FILTERED");
+        log.warn("Egress guard blocked outbound content for agent={}: {}",
+                context.agentId(), reason);
+        throw new ContentFilterException("EgressGuard", reason);
+    }
+
+    private boolean isFilterEnabled(String filterName, ContentFilterPolicy policy) {
+        return switch (filterName) {
             case "PatternDetector" -> policy.isEnablePatternDetection();
             case "InstructionDetector" -> policy.isEnableInstructionDetection();
             case "EgressGuard" -> policy.isEnableEgressGuard();
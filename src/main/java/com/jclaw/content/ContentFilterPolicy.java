@@ -31,4 +31,13 @@ public class ContentFilterPolicy {
 
     public boolean isEnableEgressGuard() { return enableEgressGuard; }
     public void setEnableEgressGuard(boolean enableEgressGuard) { this.enableEgressGuard = enableEgressGuard; }
+
+    public ContentFilterPolicy copy() {
+        ContentFilterPolicy copy = new ContentFilterPolicy();
+        copy.maxMessageLength = maxMessageLength;
+        copy.enablePatternDetection = enablePatternDetection;
+        copy.enableInstructionDetection = enableInstructionDetection;
+        copy.enableEgressGuard = enableEgressGuard;
+        return copy;
+    }
 }
@@ -6,7 +6,6 @@ import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
-import java.util.regex.Pattern;
 
 /**
  * Detects potential data exfiltration attempts in tool outputs.
@@ -14,17 +13,31 @@ import java.util.regex.Pattern;
  */
 @Component
 @Order(5)
-public class EgressGuard implements ContentFilter {
+public class EgressGuard implements ContentFilter, PatternRuleSet {
 
-    private static final List<Pattern> EXFIL_PATTERNS = List.of(
-            Pattern.compile("(?i)\\bsend\\s+(this|the|all|my)\\b.*\\bto\\b.*\\b(email|webhook|url|http)\\b"),
-            Pattern.compile("(?i)\\bexfiltrate\\b"),
-            Pattern.compile("(?i)\\bupload\\s+(this|the|all|my)\\b.*\\bto\\b")
+    static final String REJECT_REASON = "Potential data exfiltration attempt detected";
+
+    // Keyword groups after the regex are literals every match must contain (prefilter)
+    private static final List<PatternRule> EXFIL_PATTERNS = List.of(
+            PatternRule.of("send-to-endpoint",
+                    "(?i)\\bsend\\s+(this|the|all|my)\\b.*\\bto\\b.*\\b(email|webhook|url|http)\\b",
+                    "send", "email|webhook|url|http"),
+            PatternRule.of("exfiltrate", "(?i)\\bexfiltrate\\b", "exfiltrate"),
+            PatternRule.of("upload-to", "(?i)\\bupload\\s+(this|the|all|my)\\b.*\\bto\\b", "upload")
     );
 
+    private static final MultiPatternMatcher MATCHER =
+            MultiPatternMatcher.forRules("EgressGuard", EXFIL_PATTERNS);
+
     @Override
     public String name() { return "EgressGuard"; }
 
+    @Override
+    public List<PatternRule> rules() { return EXFIL_PATTERNS; }
+
+    @Override
+    public String rejectReason() { return REJECT_REASON; }
+
     @Override
     public FilterResult filter(InboundMessage message, AgentContext context) {
         return filter(message, context, null);
@@ -37,11 +50,17 @@ public class EgressGuard implements ContentFilter {
         // Check URL patterns against egress allowlist if this is outbound content
         // The allowlist is passed via policy's parent AgentConfig, but since ContentFilterChain
         // resolves the policy, we check patterns here on all content
-        for (Pattern pattern : EXFIL_PATTERNS) {
-            if (pattern.matcher(content).find()) {
-                return FilterResult.reject("Potential data exfiltration attempt detected");
-            }
+        if (containsExfiltration(content)) {
+            return FilterResult.reject(REJECT_REASON);
         }
         return FilterResult.pass();
     }
+
+    /**
+     * Raw pattern check shared with {@link StreamingEgressScanner}. None of the patterns
+     * use DOTALL, so a match can only cross a line break through a whitespace run.
+     */
+    public boolean containsExfiltration(CharSequence content) {
+        return MATCHER.findFirst(content) != null;
+    }
 }
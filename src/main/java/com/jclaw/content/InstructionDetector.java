@@ -6,31 +6,40 @@ import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
-import java.util.regex.Pattern;
 
 @Component
 @Order(4)
-public class InstructionDetector implements ContentFilter {
-
-    private static final List<Pattern> INSTRUCTION_PATTERNS = List.of(
-            Pattern.compile("(?i)\\bforget\\s+(everything|what|all)\\b"),
-            Pattern.compile("(?i)\\breset\\s+your\\s+(context|memory|instructions)\\b"),
-            Pattern.compile("(?i)\\bpretend\\s+(you|that|to)\\b"),
-            Pattern.compile("(?i)\\byour\\s+new\\s+(role|instructions|task)\\b"),
-            Pattern.compile("(?i)\\bfrom\\s+now\\s+on\\b.*\\b(you\\s+are|act\\s+as)\\b"),
-            Pattern.compile("(?i)\\bdisregard\\b.*\\b(above|previous|prior|earlier)\\b")
+public class InstructionDetector implements ContentFilter, PatternRuleSet {
+
+    // Keyword groups after the regex are literals every match must contain (prefilter)
+    private static final List<PatternRule> INSTRUCTION_PATTERNS = List.of(
+            PatternRule.of("forget-everything", "(?i)\\bforget\\s+(everything|what|all)\\b", "forget"),
+            PatternRule.of("reset-context",
+                    "(?i)\\breset\\s+your\\s+(context|memory|instructions)\\b", "reset", "your"),
+            PatternRule.of("pretend", "(?i)\\bpretend\\s+(you|that|to)\\b", "pretend"),
+            PatternRule.of("new-role", "(?i)\\byour\\s+new\\s+(role|instructions|task)\\b", "your", "new"),
+            PatternRule.of("from-now-on",
+                    "(?i)\\bfrom\\s+now\\s+on\\b.*\\b(you\\s+are|act\\s+as)\\b", "from", "now", "are|act"),
+            PatternRule.of("disregard-previous",
+                    "(?i)\\bdisregard\\b.*\\b(above|previous|prior|earlier)\\b", "disregard")
     );
 
+    private static final MultiPatternMatcher MATCHER =
+            MultiPatternMatcher.forRules("InstructionDetector", INSTRUCTION_PATTERNS);
+
     @Override
     public String name() { return "InstructionDetector"; }
 
+    @Override
+    public List<PatternRule> rules() { return INSTRUCTION_PATTERNS; }
+
+    @Override
+    public String rejectReason() { return "Instruction manipulation attempt detected"; }
+
     @Override
     public FilterResult filter(InboundMessage message, AgentContext context) {
-        String content = message.content();
-        for (Pattern pattern : INSTRUCTION_PATTERNS) {
-            if (pattern.matcher(content).find()) {
-                return FilterResult.reject("Instruction manipulation attempt detected");
-            }
+        if (MATCHER.findFirst(message.content()) != null) {
+            return FilterResult.reject(rejectReason());
         }
         return FilterResult.pass();
     }
@@ -0,0 +1,204 @@
+package com.jclaw.content;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Single-pass matcher for a set of {@link PatternRule}s grouped by filter.
+ *
+ * <p>All rule keywords are compiled into one Aho-Corasick automaton (ASCII, case-folded),
+ * so the content is walked exactly once regardless of how many rules exist. Only rules
+ * whose keyword groups were all seen are confirmed with their regex; for benign text
+ * that is usually none. Immutable and thread-safe once built.
+ */
+public class MultiPatternMatcher {
+
+    public record Match(String filterName, String ruleId) {}
+
+    private static final int ALPHABET = 128;
+    private static final int[] NO_OUTPUT = new int[0];
+
+    private record CompiledRule(String filterName, PatternRule rule, int[][] keywordGroups) {}
+
+    private final List<CompiledRule> rules = new ArrayList<>();
+    private final int keywordCount;
+    private final int[] transitions;   // state * ALPHABET + char -> next state
+    private final int[][] outputs;     // state -> keyword ids recognised on entering it
+
+    /**
+     * @param rulesByFilter rules keyed by filter name, in evaluation order
+     */
+    public MultiPatternMatcher(Map<String, List<PatternRule>> rulesByFilter) {
+        Map<String, Integer> keywordIds = new HashMap<>();
+        List<String> keywords = new ArrayList<>();
+        rulesByFilter.forEach((filterName, filterRules) -> {
+            for (PatternRule rule : filterRules) {
+                int[][] groups = new int[rule.requiredKeywords().size()][];
+                for (int g = 0; g < groups.length; g++) {
+                    groups[g] = rule.requiredKeywords().get(g).stream()
+                            .mapToInt(keyword -> keywordIds.computeIfAbsent(keyword, k -> {
+                                keywords.add(k);
+                                return keywords.size() - 1;
+                            }))
+                            .toArray();
+                }
+                rules.add(new CompiledRule(filterName, rule, groups));
+            }
+        });
+        this.keywordCount = keywords.size();
+
+        // Build the keyword trie
+        List<int[]> gotoTable = new ArrayList<>();
+        List<List<Integer>> nodeOutputs = new ArrayList<>();
+        gotoTable.add(newNode());
+        nodeOutputs.add(new ArrayList<>());
+        for (int id = 0; id < keywords.size(); id++) {
+            String keyword = keywords.get(id);
+            if (keyword.isEmpty() || !keyword.chars().allMatch(ch -> ch < ALPHABET)) {
+                throw new IllegalArgumentException("Keywords must be non-empty ASCII: " + keyword);
+            }
+            int state = 0;
+            for (int i = 0; i < keyword.length(); i++) {
+                char c = keyword.charAt(i);
+                if (gotoTable.get(state)[c] < 0) {
+                    gotoTable.get(state)[c] = gotoTable.size();
+                    gotoTable.add(newNode());
+                    nodeOutputs.add(new ArrayList<>());
+                }
+                state = gotoTable.get(state)[c];
+            }
+            nodeOutputs.get(state).add(id);
+        }
+
+        // Breadth-first pass turns the trie into a full DFA using failure links
+        int stateCount = gotoTable.size();
+        this.transitions = new int[stateCount * ALPHABET];
+        this.outputs = new int[stateCount][];
+        int[] failure = new int[stateCount];
+        ArrayDeque<Integer> queue = new ArrayDeque<>();
+        for (int c = 0; c < ALPHABET; c++) {
+            int next = gotoTable.get(0)[c];
+            if (next < 0) {
+                transitions[c] = 0;
+            } else {
+                transitions[c] = next;
+                failure[next] = 0;
+                queue.add(next);
+            }
+        }
+        while (!queue.isEmpty()) {
+            int state = queue.poll();
+            nodeOutputs.get(state).addAll(nodeOutputs.get(failure[state]));
+            for (int c = 0; c < ALPHABET; c++) {
+                int next = gotoTable.get(state)[c];
+                if (next < 0) {
+                    transitions[state * ALPHABET + c] = transitions[failure[state] * ALPHABET + c];
+                } else {
+                    transitions[state * ALPHABET + c] = next;
+                    failure[next] = transitions[failure[state] * ALPHABET + c];
+                    queue.add(next);
+                }
+            }
+        }
+        for (int state = 0; state < stateCount; state++) {
+            List<Integer> out = nodeOutputs.get(state);
+            outputs[state] = out.isEmpty() ? NO_OUTPUT
+                    : out.stream().distinct().mapToInt(Integer::intValue).toArray();
+        }
+    }
+
+    public static MultiPatternMatcher forRules(String filterName, List<PatternRule> rules) {
+        return new MultiPatternMatcher(Map.of(filterName, rules));
+    }
+
+    /**
+     * Scans the content once and confirms candidate rules of enabled filters.
+     * At most one match (the first rule in order) is reported per filter.
+     */
+    public ScanResult scan(CharSequence content, Predicate<String> filterEnabled) {
+        if (content == null || content.isEmpty()) return ScanResult.EMPTY;
+
+        boolean[] seen = new boolean[keywordCount];
+        int state = 0;
+        for (int i = 0, len = content.length(); i < len; i++) {
+            char c = content.charAt(i);
+            if (c >= ALPHABET) {
+                state = 0; // keywords are ASCII; any other char breaks a partial match
+                continue;
+            }
+            if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+            state = transitions[state * ALPHABET + c];
+            for (int keyword : outputs[state]) {
+                seen[keyword] = true;
+            }
+        }
+
+        Map<String, Match> matches = null;
+        for (CompiledRule compiled : rules) {
+            if (matches != null && matches.containsKey(compiled.filterName())) continue;
+            if (!filterEnabled.test(compiled.filterName())) continue;
+            if (!allGroupsSeen(compiled.keywordGroups(), seen)) continue;
+            if (compiled.rule().pattern().matcher(content).find()) {
+                if (matches == null) matches = new LinkedHashMap<>();
+                matches.put(compiled.filterName(), new Match(compiled.filterName(), compiled.rule().id()));
+            }
+        }
+        return matches == null ? ScanResult.EMPTY : new ScanResult(matches);
+    }
+
+    /** First match across all filters, or null. */
+    public Match findFirst(CharSequence content) {
+        return scan(content, filterName -> true).first();
+    }
+
+    private static boolean allGroupsSeen(int[][] groups, boolean[] seen) {
+        for (int[] group : groups) {
+            boolean any = false;
+            for (int keyword : group) {
+                if (seen[keyword]) {
+                    any = true;
+                    break;
+                }
+            }
+            if (!any) return false;
+        }
+        return true;
+    }
+
+    private static int[] newNode() {
+        int[] node = new int[ALPHABET];
+        Arrays.fill(node, -1);
+        return node;
+    }
+
+    public static final class ScanResult {
+
+        static final ScanResult EMPTY = new ScanResult(Collections.emptyMap());
+
+        private final Map<String, Match> matchesByFilter;
+
+        private ScanResult(Map<String, Match> matchesByFilter) {
+            this.matchesByFilter = matchesByFilter;
+        }
+
+        /** First matching rule of the given filter, or null. */
+        public Match match(String filterName) {
+            return matchesByFilter.get(filterName);
+        }
+
+        public Match first() {
+            return matchesByFilter.isEmpty() ? null : matchesByFilter.values().iterator().next();
+        }
+
+        public boolean isEmpty() {
+            return matchesByFilter.isEmpty();
+        }
+    }
+}
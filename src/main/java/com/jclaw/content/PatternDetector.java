@@ -6,33 +6,42 @@ import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Component;
 
 import java.util.List;
-import java.util.regex.Pattern;
 
 @Component
 @Order(2)
-public class PatternDetector implements ContentFilter {
-
-    private static final List<Pattern> SUSPICIOUS_PATTERNS = List.of(
-            Pattern.compile("(?i)\\bignore\\s+(all\\s+)?previous\\s+instructions\\b"),
-            Pattern.compile("(?i)\\byou\\s+are\\s+now\\b"),
-            Pattern.compile("(?i)\\bnew\\s+system\\s+prompt\\b"),
-            Pattern.compile("(?i)\\boverride\\s+(system|safety)\\b"),
-            Pattern.compile("(?i)\\b(jailbreak|DAN|do\\s+anything\\s+now)\\b"),
-            Pattern.compile("(?i)<\\s*system\\s*>"),
-            Pattern.compile("(?i)\\[INST\\]"),
-            Pattern.compile("(?i)\\bact\\s+as\\s+if\\s+you\\s+have\\s+no\\s+restrictions\\b")
+public class PatternDetector implements ContentFilter, PatternRuleSet {
+
+    // Keyword groups after the regex are literals every match must contain (prefilter)
+    private static final List<PatternRule> SUSPICIOUS_PATTERNS = List.of(
+            PatternRule.of("ignore-previous-instructions",
+                    "(?i)\\bignore\\s+(all\\s+)?previous\\s+instructions\\b", "ignore", "instructions"),
+            PatternRule.of("you-are-now", "(?i)\\byou\\s+are\\s+now\\b", "you", "are", "now"),
+            PatternRule.of("new-system-prompt", "(?i)\\bnew\\s+system\\s+prompt\\b", "system", "prompt"),
+            PatternRule.of("override-safety", "(?i)\\boverride\\s+(system|safety)\\b", "override"),
+            PatternRule.of("jailbreak", "(?i)\\b(jailbreak|DAN|do\\s+anything\\s+now)\\b",
+                    "jailbreak|dan|anything"),
+            PatternRule.of("system-tag", "(?i)<\\s*system\\s*>", "system"),
+            PatternRule.of("inst-tag", "(?i)\\[INST\\]", "[inst]"),
+            PatternRule.of("no-restrictions",
+                    "(?i)\\bact\\s+as\\s+if\\s+you\\s+have\\s+no\\s+restrictions\\b", "act", "restrictions")
     );
 
+    private static final MultiPatternMatcher MATCHER =
+            MultiPatternMatcher.forRules("PatternDetector", SUSPICIOUS_PATTERNS);
+
     @Override
     public String name() { return "PatternDetector"; }
 
+    @Override
+    public List<PatternRule> rules() { return SUSPICIOUS_PATTERNS; }
+
+    @Override
+    public String rejectReason() { return "Suspicious pattern detected in message"; }
+
     @Override
     public FilterResult filter(InboundMessage message, AgentContext context) {
-        String content = message.content();
-        for (Pattern pattern : SUSPICIOUS_PATTERNS) {
-            if (pattern.matcher(content).find()) {
-                return FilterResult.reject("Suspicious pattern detected in message");
-            }
+        if (MATCHER.findFirst(message.content()) != null) {
+            return FilterResult.reject(rejectReason());
         }
         return FilterResult.pass();
     }
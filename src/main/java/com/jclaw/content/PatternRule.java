@@ -0,0 +1,34 @@
+package com.jclaw.content;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.regex.Pattern;
+
+/**
+ * A detection rule: a confirmation regex plus the literal keywords any match must contain.
+ *
+ * <p>{@code requiredKeywords} is a list of groups; every group needs at least one of its
+ * alternatives present (ASCII case-insensitive) before the regex is run. Keywords must be
+ * ASCII and must genuinely be implied by the regex, otherwise matches are missed.
+ */
+public record PatternRule(String id, Pattern pattern, List<List<String>> requiredKeywords) {
+
+    public PatternRule {
+        if (requiredKeywords.isEmpty()) {
+            throw new IllegalArgumentException("Rule " + id + " needs at least one keyword group");
+        }
+        requiredKeywords = requiredKeywords.stream()
+                .map(group -> group.stream().map(k -> k.toLowerCase(Locale.ROOT)).toList())
+                .toList();
+    }
+
+    /**
+     * @param keywordGroups one entry per required group, alternatives separated by '|'
+     */
+    public static PatternRule of(String id, String regex, String... keywordGroups) {
+        return new PatternRule(id, Pattern.compile(regex), Arrays.stream(keywordGroups)
+                .map(group -> List.of(group.split("\\|")))
+                .toList());
+    }
+}
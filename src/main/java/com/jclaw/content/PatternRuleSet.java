@@ -0,0 +1,15 @@
+package com.jclaw.content;
+
+import java.util.List;
+
+/**
+ * Implemented by regex-based filters so ContentFilterChain can fold their rules into
+ * one {@link MultiPatternMatcher} and scan a message once for all of them.
+ */
+public interface PatternRuleSet {
+
+    List<PatternRule> rules();
+
+    /** Reason reported when any rule of this set matches. */
+    String rejectReason();
+}
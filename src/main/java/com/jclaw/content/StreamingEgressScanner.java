@@ -0,0 +1,122 @@
+package com.jclaw.content;
+
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+
+/**
+ * Incremental egress check for streamed LLM output.
+ *
+ * <p>Instead of re-scanning the whole accumulated response on every chunk, only a
+ * sliding window is kept: the current (unterminated) line plus the last non-blank
+ * line before it. EgressGuard patterns can only span a line break through a
+ * whitespace run, so text before that window can no longer take part in a new
+ * match. The window is additionally capped at {@link #DEFAULT_MAX_WINDOW_CHARS}
+ * so a single very long line cannot make the scan quadratic again.
+ *
+ * <p>The cap is applied at a whitespace boundary, so the window never starts mid-word
+ * and cannot produce a {@code \b} match the full text would not. The cap does change
+ * detection in one case. A pattern with {@code .*} can span a whole line, and a match
+ * longer than the cap on a single line is not seen. Every match that fits in the cap
+ * is still found, including one that straddles an earlier cut. A word longer than the
+ * cap with no whitespace in reach is cut hard.
+ *
+ * <p>Not shared between streams; one instance per response.
+ */
+public class StreamingEgressScanner {
+
+    static final int DEFAULT_MAX_WINDOW_CHARS = 8192;
+
+    private final Predicate<CharSequence> violationDetector;
+    private final Consumer<String> onViolation;
+    private final int maxWindowChars;
+    private final StringBuilder window = new StringBuilder();
+    private boolean violated;
+
+    /**
+     * @param violationDetector returns true if the given text contains an egress violation
+     * @param onViolation invoked once with the offending window; expected to throw
+     */
+    public StreamingEgressScanner(Predicate<CharSequence> violationDetector, Consumer<String> onViolation) {
+        this(violationDetector, onViolation, DEFAULT_MAX_WINDOW_CHARS);
+    }
+
+    StreamingEgressScanner(Predicate<CharSequence> violationDetector, Consumer<String> onViolation,
+                           int maxWindowChars) {
+        this.violationDetector = violationDetector;
+        this.onViolation = onViolation;
+        this.maxWindowChars = maxWindowChars;
+    }
+
+    /** Scanner that never reports a violation (egress guard disabled by policy). */
+    public static StreamingEgressScanner disabled() {
+        return new StreamingEgressScanner(text -> false, text -> { }, 0);
+    }
+
+    /**
+     * Appends a streamed chunk and checks the live window for violations.
+     */
+    public synchronized void append(String chunk) {
+        if (chunk == null || chunk.isEmpty() || maxWindowChars <= 0) return;
+
+        window.append(chunk);
+        if (!violated && violationDetector.test(window)) {
+            violated = true;
+            onViolation.accept(window.toString());
+            return;
+        }
+        trimWindow();
+    }
+
+    public synchronized boolean isViolated() {
+        return violated;
+    }
+
+    int windowLength() {
+        return window.length();
+    }
+
+    private void trimWindow() {
+        int currentLineStart = lineStart(window.length());
+        int keepFrom = currentLineStart;
+        if (currentLineStart > 0) {
+            // Keep the previous non-blank line: "send\n  all my ..." still matches via \s+
+            int i = currentLineStart - 1;
+            while (i >= 0 && Character.isWhitespace(window.charAt(i))) i--;
+            keepFrom = i < 0 ? 0 : lineStart(i + 1);
+        }
+        int capFrom = window.length() - maxWindowChars;
+        if (keepFrom < capFrom) {
+            keepFrom = wordStart(Math.max(keepFrom, capFrom - maxWindowChars), capFrom);
+        }
+        if (keepFrom > 0) {
+            window.delete(0, keepFrom);
+        }
+    }
+
+    /**
+     * Start of the word at or before {@code at}, not looking back past {@code floor}. If
+     * there is no whitespace in that range, the start of the next word; a hard cut at
+     * {@code at} if there is none.
+     */
+    private int wordStart(int floor, int at) {
+        for (int i = at; i > floor; i--) {
+            if (Character.isWhitespace(window.charAt(i - 1))) return i;
+        }
+        for (int i = at; i < window.length(); i++) {
+            if (Character.isWhitespace(window.charAt(i))) return i + 1;
+        }
+        return at;
+    }
+
+    private int lineStart(int end) {
+        for (int i = end - 1; i >= 0; i--) {
+            if (isLineTerminator(window.charAt(i))) return i + 1;
+        }
+        return 0;
+    }
+
+    // Same set java.util.regex treats as line terminators for '.'
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
+    }
+}
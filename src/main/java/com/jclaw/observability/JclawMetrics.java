@@ -1,11 +1,17 @@
 package com.jclaw.observability;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Component;
 
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
 
 /**
  * Centralized Micrometer metrics for jclaw subsystems.
@@ -73,6 +79,13 @@ public class JclawMetrics {
                 .register(registry));
     }
 
+    /** Provider-reported / locally counted tokens for models whose tokenizer is approximated. */
+    public void recordTokenEstimateRatio(String model, double ratio) {
+        DistributionSummary.builder("jclaw.llm.tokens.estimate.ratio")
+                .tag("model", model)
+                .register(registry).record(ratio);
+    }
+
     // --- Tool metrics ---
 
     public void recordToolInvocation(String tool, String agent, String outcome) {
@@ -100,6 +113,73 @@ public class JclawMetrics {
                 .register(registry).increment();
     }
 
+    // --- Dispatch metrics ---
+
+    public void registerDispatchQueue(String channel, Supplier<Number> depth) {
+        Gauge.builder("jclaw.channel.dispatch.queue.depth", depth)
+                .tag("channel", channel)
+                .register(registry);
+    }
+
+    public void registerDispatchActive(Supplier<Number> active) {
+        Gauge.builder("jclaw.channel.dispatch.active", active)
+                .register(registry);
+    }
+
+    public void recordDispatchWait(String channel, long waitNanos) {
+        Timer.builder("jclaw.channel.dispatch.wait")
+                .tag("channel", channel)
+                .register(registry).record(waitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void recordDispatchDropped(String channel, String policy) {
+        Counter.builder("jclaw.channel.dispatch.dropped")
+                .tag("channel", channel)
+                .tag("policy", policy)
+                .register(registry).increment();
+    }
+
+    public void recordStreamingFirstEdit(String channel, long elapsedNanos) {
+        Timer.builder("jclaw.channel.stream.first.edit")
+                .tag("channel", channel)
+                .register(registry).record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // --- Cache metrics ---
+
+    public void recordCacheAccess(String cache, boolean hit) {
+        Counter.builder("jclaw.cache.requests")
+                .tag("cache", cache)
+                .tag("result", hit ? "hit" : "miss")
+                .register(registry).increment();
+    }
+
+    // --- Audit writer metrics ---
+
+    public void registerAuditQueue(Collection<?> queue) {
+        registry.gaugeCollectionSize("jclaw.audit.queue.depth", Tags.empty(), queue);
+    }
+
+    public void recordAuditBatch(int size, long elapsedNanos, String outcome) {
+        Timer.builder("jclaw.audit.batch.latency")
+                .tag("outcome", outcome)
+                .register(registry).record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if ("success".equals(outcome)) {
+            Counter.builder("jclaw.audit.events.written")
+                    .register(registry).increment(size);
+        }
+    }
+
+    public void recordAuditEventsSpilled(int count) {
+        Counter.builder("jclaw.audit.events.spilled")
+                .register(registry).increment(count);
+    }
+
+    public void recordAuditEventsDropped(int count) {
+        Counter.builder("jclaw.audit.events.dropped")
+                .register(registry).increment(count);
+    }
+
     // --- Session metrics ---
 
     public void sessionOpened() {
@@ -110,6 +190,70 @@ public class JclawMetrics {
         activeSessions.decrementAndGet();
     }
 
+    public void registerCompactionQueue(Collection<?> queue) {
+        registry.gaugeCollectionSize("jclaw.session.compaction.queue.depth", Tags.empty(), queue);
+    }
+
+    public void recordCompactionDropped() {
+        Counter.builder("jclaw.session.compaction.dropped")
+                .register(registry).increment();
+    }
+
+    public void recordCompaction(String outcome, long elapsedNanos) {
+        Timer.builder("jclaw.session.compaction.latency")
+                .tag("outcome", outcome)
+                .register(registry).record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void registerSessionWriteQueue(Collection<?> queue) {
+        registry.gaugeCollectionSize("jclaw.session.write.queue.depth", Tags.empty(), queue);
+    }
+
+    public void recordSessionWriteBatch(int size, long elapsedNanos, String outcome) {
+        Timer.builder("jclaw.session.write.batch.latency")
+                .tag("outcome", outcome)
+                .register(registry).record(elapsedNanos, TimeUnit.NANOSECONDS);
+        if ("success".equals(outcome)) {
+            Counter.builder("jclaw.session.write.messages")
+                    .register(registry).increment(size);
+        }
+    }
+
+    public void recordSessionWritesDropped(int count) {
+        Counter.builder("jclaw.session.write.dropped")
+                .register(registry).increment(count);
+    }
+
+    // --- Rate limit metrics ---
+
+    public void recordRateLimitSync(int principals, long elapsedNanos, String outcome) {
+        Timer.builder("jclaw.rate_limit.sync.latency")
+                .tag("outcome", outcome)
+                .register(registry).record(elapsedNanos, TimeUnit.NANOSECONDS);
+        Counter.builder("jclaw.rate_limit.sync.principals")
+                .tag("outcome", outcome)
+                .register(registry).increment(principals);
+    }
+
+    public void registerRateLimitBreaker(Supplier<Number> open) {
+        Gauge.builder("jclaw.rate_limit.breaker.open", open)
+                .register(registry);
+    }
+
+    // --- Inbound queue metrics ---
+
+    /** {@code event}: appended, append_failed, acked, reclaimed, dead_lettered. */
+    public void recordInboundQueue(String event, int count) {
+        Counter.builder("jclaw.inbound.queue.messages")
+                .tag("event", event)
+                .register(registry).increment(count);
+    }
+
+    public void registerInboundQueueInFlight(Supplier<Number> inFlight) {
+        Gauge.builder("jclaw.inbound.queue.in_flight", inFlight)
+                .register(registry);
+    }
+
     public MeterRegistry getRegistry() {
         return registry;
     }
@@ -10,28 +10,9 @@ import org.slf4j.LoggerFactory;
 import org.springframework.web.filter.OncePerRequestFilter;
 import org.springframework.web.util.ContentCachingRequestWrapper;
 
-import javax.crypto.Mac;
-import javax.crypto.spec.SecretKeySpec;
 import java.io.IOException;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
-import java.nio.charset.StandardCharsets;
-import java.security.*;
-import java.security.spec.NamedParameterSpec;
-import java.util.Base64;
-import java.util.HexFormat;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
-
-import com.nimbusds.jose.JWSAlgorithm;
-import com.nimbusds.jose.jwk.JWKSet;
-import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
-import com.nimbusds.jose.proc.JWSVerificationKeySelector;
-import com.nimbusds.jose.proc.SecurityContext;
+
 import com.nimbusds.jwt.JWTClaimsSet;
-import com.nimbusds.jwt.proc.DefaultJWTProcessor;
 
 /**
  * Authenticates inbound channel webhook requests using channel-specific
@@ -50,12 +31,17 @@ public class ChannelWebhookAuthFilter extends OncePerRequestFilter {
 
     private final SecretsConfig secretsConfig;
     private final com.jclaw.audit.AuditService auditService;
-    private final Map<String, CachedJwkSet> jwksCache = new ConcurrentHashMap<>();
+    private final JwksKeyManager jwksKeyManager;
+    private final WebhookSignatureVerifier signatureVerifier;
 
     public ChannelWebhookAuthFilter(SecretsConfig secretsConfig,
-                                    com.jclaw.audit.AuditService auditService) {
+                                    com.jclaw.audit.AuditService auditService,
+                                    JwksKeyManager jwksKeyManager,
+                                    WebhookSignatureVerifier signatureVerifier) {
         this.secretsConfig = secretsConfig;
         this.auditService = auditService;
+        this.jwksKeyManager = jwksKeyManager;
+        this.signatureVerifier = signatureVerifier;
     }
 
     @Override
@@ -103,12 +89,6 @@ public class ChannelWebhookAuthFilter extends OncePerRequestFilter {
     }
 
     private boolean verifySlackSignature(HttpServletRequest request, byte[] body) {
-        String signingSecret = secretsConfig.getSlackSigningSecret();
-        if (signingSecret == null || signingSecret.isEmpty()) {
-            log.warn("Slack signing secret not configured, rejecting webhook");
-            return false;
-        }
-
         String timestamp = request.getHeader("X-Slack-Request-Timestamp");
         String signature = request.getHeader("X-Slack-Signature");
         if (timestamp == null || signature == null) return false;
@@ -124,9 +104,7 @@ public class ChannelWebhookAuthFilter extends OncePerRequestFilter {
             return false;
         }
 
-        String baseString = "v0:" + timestamp + ":" + new String(body, StandardCharsets.UTF_8);
-        String computed = "v0=" + hmacSha256(signingSecret, baseString);
-        return constantTimeEquals(signature, computed);
+        return signatureVerifier.verifySlack(timestamp, body, signature);
     }
 
     /**
@@ -140,12 +118,7 @@ public class ChannelWebhookAuthFilter extends OncePerRequestFilter {
         if (token.isEmpty()) return false;
 
         try {
-            JWKSet jwkSet = fetchJwkSet(TEAMS_JWKS_URL);
-            DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
-            processor.setJWSKeySelector(new JWSVerificationKeySelector<>(
-                    JWSAlgorithm.RS256, new ImmutableJWKSet<>(jwkSet)));
-
-            JWTClaimsSet claims = processor.process(token, null);
+            JWTClaimsSet claims = jwksKeyManager.verify(TEAMS_JWKS_URL, token);
 
             // Verify issuer
             String issuer = claims.getIssuer();
@@ -191,12 +164,7 @@ public class ChannelWebhookAuthFilter extends OncePerRequestFilter {
         if (token.isEmpty()) return false;
 
         try {
-            JWKSet jwkSet = fetchJwkSet(GOOGLE_JWKS_URL);
-            DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
-            processor.setJWSKeySelector(new JWSVerificationKeySelector<>(
-                    JWSAlgorithm.RS256, new ImmutableJWKSet<>(jwkSet)));
-
-            JWTClaimsSet claims = processor.process(token, null);
+            JWTClaimsSet claims = jwksKeyManager.verify(GOOGLE_JWKS_URL, token);
 
             // Verify issuer
             String issuer = claims.getIssuer();
@@ -233,15 +201,8 @@ public class ChannelWebhookAuthFilter extends OncePerRequestFilter {
 
     /**
      * Verifies Discord Ed25519 signature using the application's public key.
-     * Uses Java 15+ native EdDSA support.
      */
     private boolean verifyDiscordSignature(HttpServletRequest request, byte[] body) {
-        String publicKeyHex = secretsConfig.getDiscordPublicKey();
-        if (publicKeyHex == null || publicKeyHex.isEmpty()) {
-            log.warn("Discord public key not configured, rejecting webhook");
-            return false;
-        }
-
         String signatureHex = request.getHeader("X-Signature-Ed25519");
         String timestamp = request.getHeader("X-Signature-Timestamp");
         if (signatureHex == null || timestamp == null) return false;
@@ -258,91 +219,7 @@ public class ChannelWebhookAuthFilter extends OncePerRequestFilter {
             return false;
         }
 
-        try {
-            // Decode the public key from hex
-            byte[] publicKeyBytes = HexFormat.of().parseHex(publicKeyHex);
-
-            // Build the message to verify: timestamp + body
-            byte[] timestampBytes = timestamp.getBytes(StandardCharsets.UTF_8);
-            byte[] message = new byte[timestampBytes.length + body.length];
-            System.arraycopy(timestampBytes, 0, message, 0, timestampBytes.length);
-            System.arraycopy(body, 0, message, timestampBytes.length, body.length);
-
-            // Decode the signature from hex
-            byte[] signatureBytes = HexFormat.of().parseHex(signatureHex);
-
-            // Verify using Java EdDSA
-            KeyFactory keyFactory = KeyFactory.getInstance("EdDSA");
-            java.security.spec.EdECPublicKeySpec keySpec = decodeEd25519PublicKey(publicKeyBytes);
-            PublicKey pubKey = keyFactory.generatePublic(keySpec);
-
-            Signature verifier = Signature.getInstance("Ed25519");
-            verifier.initVerify(pubKey);
-            verifier.update(message);
-            return verifier.verify(signatureBytes);
-        } catch (Exception e) {
-            log.warn("Discord Ed25519 verification failed: {}", e.getMessage());
-            return false;
-        }
-    }
-
-    private java.security.spec.EdECPublicKeySpec decodeEd25519PublicKey(byte[] publicKeyBytes) {
-        // Ed25519 public keys are 32 bytes. Decode the y coordinate and sign bit.
-        if (publicKeyBytes.length != 32) {
-            throw new IllegalArgumentException("Ed25519 public key must be 32 bytes");
-        }
-
-        // The last byte's MSB is the sign bit of x
-        boolean xOdd = (publicKeyBytes[31] & 0x80) != 0;
-
-        // Clear the sign bit for y decoding
-        byte[] yBytes = publicKeyBytes.clone();
-        yBytes[31] &= 0x7F;
-
-        // Reverse bytes (Ed25519 is little-endian)
-        byte[] reversed = new byte[yBytes.length];
-        for (int i = 0; i < yBytes.length; i++) {
-            reversed[i] = yBytes[yBytes.length - 1 - i];
-        }
-
-        java.math.BigInteger y = new java.math.BigInteger(1, reversed);
-        java.security.spec.EdECPoint point = new java.security.spec.EdECPoint(xOdd, y);
-        return new java.security.spec.EdECPublicKeySpec(NamedParameterSpec.ED25519, point);
-    }
-
-    private JWKSet fetchJwkSet(String url) throws Exception {
-        CachedJwkSet cached = jwksCache.get(url);
-        long now = System.currentTimeMillis();
-
-        // Cache JWKS for 1 hour
-        if (cached != null && (now - cached.fetchedAt) < 3_600_000) {
-            return cached.jwkSet;
-        }
-
-        JWKSet jwkSet = JWKSet.load(URI.create(url).toURL());
-        jwksCache.put(url, new CachedJwkSet(jwkSet, now));
-        return jwkSet;
-    }
-
-    private String hmacSha256(String secret, String data) {
-        try {
-            Mac mac = Mac.getInstance("HmacSHA256");
-            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
-            byte[] hash = mac.doFinal(data.getBytes(StandardCharsets.UTF_8));
-            return HexFormat.of().formatHex(hash);
-        } catch (NoSuchAlgorithmException | InvalidKeyException e) {
-            log.error("HMAC computation failed", e);
-            return "";
-        }
-    }
-
-    private boolean constantTimeEquals(String a, String b) {
-        if (a == null || b == null || a.length() != b.length()) return false;
-        int result = 0;
-        for (int i = 0; i < a.length(); i++) {
-            result |= a.charAt(i) ^ b.charAt(i);
-        }
-        return result == 0;
+        return signatureVerifier.verifyDiscord(timestamp, body, signatureHex);
     }
 
     private String extractChannelType(String path) {
@@ -351,6 +228,4 @@ public class ChannelWebhookAuthFilter extends OncePerRequestFilter {
         // Sanitize: only allow alphanumeric and hyphens to prevent audit log injection
         return raw.replaceAll("[^a-zA-Z0-9\\-]", "");
     }
-
-    private record CachedJwkSet(JWKSet jwkSet, long fetchedAt) {}
 }
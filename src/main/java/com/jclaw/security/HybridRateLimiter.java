@@ -0,0 +1,270 @@
+package com.jclaw.security;
+
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.github.bucket4j.BucketConfiguration;
+import io.github.bucket4j.ConsumptionProbe;
+import io.github.bucket4j.distributed.ExpirationAfterWriteStrategy;
+import io.github.bucket4j.distributed.proxy.ProxyManager;
+import io.github.bucket4j.redis.lettuce.Bucket4jLettuce;
+import io.lettuce.core.RedisClient;
+import io.lettuce.core.api.StatefulRedisConnection;
+import io.lettuce.core.codec.ByteArrayCodec;
+import io.lettuce.core.codec.RedisCodec;
+import io.lettuce.core.codec.StringCodec;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Per-principal rate limits (per minute and per hour) decided entirely in-process by local
+ * bucket4j token buckets. A background thread reconciles each local bucket with a shared
+ * bucket in Redis (a bucket4j Lettuce proxy): it reports the requests admitted locally
+ * since the last sync and pulls the bucket down to what is left cluster-wide.
+ *
+ * <p>A principal that takes {@code maxUnsyncedRequests} locally queues an immediate
+ * reconcile, so over-admission across N instances is bounded by roughly N times that
+ * many requests per window. After {@code breakerFailureThreshold} consecutive Redis
+ * failures the breaker opens for {@code breakerOpenSeconds} and each instance enforces
+ * the limits on its own traffic only.
+ */
+@Component
+public class HybridRateLimiter {
+
+    private static final Logger log = LoggerFactory.getLogger(HybridRateLimiter.class);
+
+    private static final String KEY_PREFIX = "jclaw:ratelimit:";
+    // Principals idle this long lose their local buckets
+    private static final long IDLE_EVICT_MILLIS = Duration.ofHours(1).toMillis();
+
+    /** Outcome of one request; {@code window} and {@code retryAfterSeconds} are set when rejected. */
+    public record Decision(boolean allowed, String window, long retryAfterSeconds,
+                           long remainingMinute, long remainingHour) {}
+
+    /** One window of one principal: the local bucket and the admissions Redis has not seen yet. */
+    static final class Window {
+        final String key;
+        final BucketConfiguration configuration;
+        final Bucket local;
+        final AtomicLong unsynced = new AtomicLong();
+
+        Window(String key, long limit, Duration period) {
+            this.key = key;
+            Bandwidth bandwidth = Bandwidth.builder().capacity(limit).refillGreedy(limit, period).build();
+            this.configuration = BucketConfiguration.builder().addLimit(bandwidth).build();
+            this.local = Bucket.builder().addLimit(bandwidth).build();
+        }
+    }
+
+    static final class PrincipalLimits {
+        final Window minute;
+        final Window hour;
+        final AtomicBoolean syncQueued = new AtomicBoolean();
+        volatile long lastUsedMillis = System.currentTimeMillis();
+        volatile long lastSyncedMillis;
+
+        PrincipalLimits(String principal, long perMinute, long perHour) {
+            this.minute = new Window(KEY_PREFIX + principal + ":min", perMinute, Duration.ofMinutes(1));
+            this.hour = new Window(KEY_PREFIX + principal + ":hour", perHour, Duration.ofHours(1));
+        }
+
+        boolean dirty() {
+            return lastUsedMillis > lastSyncedMillis || minute.unsynced.get() > 0 || hour.unsynced.get() > 0;
+        }
+    }
+
+    private final Supplier<ProxyManager<String>> remoteFactory;
+    private final JclawMetrics metrics;
+    private final JclawProperties.RateLimitProperties properties;
+    private final Map<String, PrincipalLimits> limits = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService syncExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread t = new Thread(r, "rate-limit-sync");
+        t.setDaemon(true);
+        return t;
+    });
+
+    // Only touched on the sync thread
+    private ProxyManager<String> remote;
+    private int consecutiveFailures;
+    private volatile long breakerOpenUntil;
+
+    @Autowired
+    public HybridRateLimiter(ObjectProvider<LettuceConnectionFactory> connectionFactory,
+                             JclawMetrics metrics, JclawProperties properties) {
+        this(metrics, properties, new LettuceRemote(connectionFactory));
+    }
+
+    HybridRateLimiter(JclawMetrics metrics, JclawProperties properties,
+                      Supplier<ProxyManager<String>> remoteFactory) {
+        this.remoteFactory = remoteFactory;
+        this.metrics = metrics;
+        this.properties = properties.getSecurity().getRateLimit();
+        metrics.registerRateLimitBreaker(() -> breakerOpen() ? 1 : 0);
+    }
+
+    @PostConstruct
+    public void start() {
+        long interval = Math.max(10, properties.getSyncIntervalMs());
+        syncExecutor.scheduleWithFixedDelay(this::syncRound, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        syncExecutor.shutdownNow();
+        if (remoteFactory instanceof LettuceRemote lettuce) lettuce.close();
+    }
+
+    /** Takes one request from the principal's buckets; never touches the network. */
+    public Decision tryAcquire(String principal, boolean service) {
+        PrincipalLimits p = limits.computeIfAbsent(principal, k -> new PrincipalLimits(k,
+                service ? properties.getServicePerMinute() : properties.getUserPerMinute(),
+                service ? properties.getServicePerHour() : properties.getUserPerHour()));
+        p.lastUsedMillis = System.currentTimeMillis();
+
+        ConsumptionProbe minute = p.minute.local.tryConsumeAndReturnRemaining(1);
+        if (!minute.isConsumed()) {
+            return new Decision(false, "per-minute", retryAfterSeconds(minute), 0,
+                    p.hour.local.getAvailableTokens());
+        }
+        ConsumptionProbe hour = p.hour.local.tryConsumeAndReturnRemaining(1);
+        if (!hour.isConsumed()) {
+            // Hand the minute token back so a request rejected by the hourly cap costs nothing
+            p.minute.local.addTokens(1);
+            return new Decision(false, "per-hour", retryAfterSeconds(hour), minute.getRemainingTokens() + 1, 0);
+        }
+
+        long unsynced = Math.max(p.minute.unsynced.incrementAndGet(), p.hour.unsynced.incrementAndGet());
+        if (unsynced >= properties.getMaxUnsyncedRequests() && !breakerOpen()
+                && p.syncQueued.compareAndSet(false, true)) {
+            syncExecutor.execute(() -> {
+                p.syncQueued.set(false);
+                syncAll(List.of(p));
+            });
+        }
+        return new Decision(true, null, 0, minute.getRemainingTokens(), hour.getRemainingTokens());
+    }
+
+    boolean breakerOpen() {
+        return System.currentTimeMillis() < breakerOpenUntil;
+    }
+
+    /** One periodic round: reconcile up to syncBatchSize principals used since their last sync. */
+    void syncRound() {
+        try {
+            long now = System.currentTimeMillis();
+            limits.entrySet().removeIf(e -> now - e.getValue().lastUsedMillis > IDLE_EVICT_MILLIS
+                    && !e.getValue().dirty());
+
+            List<PrincipalLimits> batch = new ArrayList<>();
+            for (PrincipalLimits p : limits.values()) {
+                if (p.dirty()) batch.add(p);
+                if (batch.size() >= Math.max(1, properties.getSyncBatchSize())) break;
+            }
+            if (!batch.isEmpty()) syncAll(batch);
+        } catch (RuntimeException e) {
+            // Never let an exception cancel the periodic task
+            log.warn("Rate limit sync round failed: {}", e.getMessage());
+        }
+    }
+
+    private void syncAll(List<PrincipalLimits> batch) {
+        if (breakerOpen()) return;
+        long start = System.nanoTime();
+        int synced = 0;
+        try {
+            if (remote == null) remote = remoteFactory.get();
+            for (PrincipalLimits p : batch) {
+                long syncStarted = System.currentTimeMillis();
+                sync(p.minute);
+                sync(p.hour);
+                p.lastSyncedMillis = syncStarted;
+                synced++;
+            }
+            consecutiveFailures = 0;
+            metrics.recordRateLimitSync(synced, System.nanoTime() - start, "success");
+        } catch (RuntimeException e) {
+            metrics.recordRateLimitSync(batch.size() - synced, System.nanoTime() - start, "failure");
+            if (++consecutiveFailures >= Math.max(1, properties.getBreakerFailureThreshold())) {
+                breakerOpenUntil = System.currentTimeMillis() + properties.getBreakerOpenSeconds() * 1000L;
+                consecutiveFailures = 0;
+                log.warn("Rate limit sync failing, using local limits only for {}s: {}",
+                        properties.getBreakerOpenSeconds(), e.getMessage());
+            } else {
+                log.debug("Rate limit sync failed: {}", e.getMessage());
+            }
+        }
+    }
+
+    private void sync(Window window) {
+        Bucket shared = remote.builder().build(window.key, () -> window.configuration);
+        long admitted = window.unsynced.getAndSet(0);
+        long available;
+        try {
+            if (admitted > 0) shared.consumeIgnoringRateLimits(admitted);
+            available = Math.max(0, shared.getAvailableTokens());
+        } catch (RuntimeException e) {
+            // Report these again next time
+            window.unsynced.addAndGet(admitted);
+            throw e;
+        }
+
+        // Requests admitted while we were talking to Redis are not in its count yet
+        long target = Math.max(0, available - window.unsynced.get());
+        long local = window.local.getAvailableTokens();
+        if (local > target) {
+            window.local.tryConsumeAsMuchAsPossible(local - target);
+        } else if (local < target) {
+            window.local.addTokens(target - local);
+        }
+    }
+
+    /** Connects on first use, from the sync thread, once Spring's Lettuce client is running. */
+    private static final class LettuceRemote implements Supplier<ProxyManager<String>> {
+        private final ObjectProvider<LettuceConnectionFactory> connectionFactory;
+        private volatile StatefulRedisConnection<String, byte[]> connection;
+
+        LettuceRemote(ObjectProvider<LettuceConnectionFactory> connectionFactory) {
+            this.connectionFactory = connectionFactory;
+        }
+
+        @Override
+        public ProxyManager<String> get() {
+            LettuceConnectionFactory factory = connectionFactory.getIfAvailable();
+            if (factory == null || !(factory.getNativeClient() instanceof RedisClient client)) {
+                throw new IllegalStateException("Rate limit sync needs a standalone Lettuce Redis client");
+            }
+            connection = client.connect(RedisCodec.of(StringCodec.UTF8, ByteArrayCodec.INSTANCE));
+            return Bucket4jLettuce.casBasedBuilder(connection)
+                    .expirationAfterWrite(ExpirationAfterWriteStrategy
+                            .basedOnTimeForRefillingBucketUpToMax(Duration.ofMinutes(5)))
+                    .build();
+        }
+
+        void close() {
+            if (connection != null) connection.close();
+        }
+    }
+
+    private static long retryAfterSeconds(ConsumptionProbe probe) {
+        return Math.max(1, TimeUnit.NANOSECONDS.toSeconds(probe.getNanosToWaitForRefill() + 999_999_999L));
+    }
+}
@@ -1,48 +1,120 @@
 package com.jclaw.security;
 
 import com.jclaw.audit.AuditService;
+import com.jclaw.config.CacheInvalidationBus;
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Channel user to jclaw principal mappings.
+ *
+ * <p>Approved mappings are cached in memory and evicted on every instance through the
+ * {@link CacheInvalidationBus} when a mapping is approved; lookups that find no approved
+ * mapping are cached for a few seconds so a flood from an unknown user reaches the table
+ * (and the queueing insert) once. {@code last_seen_at} is collected in memory and written
+ * by {@link #flushLastSeen} as one UPDATE per interval.
+ */
 @Service
 public class IdentityMappingService {
 
     private static final Logger log = LoggerFactory.getLogger(IdentityMappingService.class);
 
+    static final String CACHE_NAME = "identity-mapping";
+    private static final int MAX_ENTRIES = 100_000;
+
+    private static final String FLUSH_LAST_SEEN_SQL = """
+            UPDATE identity_mappings m SET last_seen_at = v.seen
+            FROM unnest(?::uuid[], ?::timestamptz[]) AS v(id, seen)
+            WHERE m.id = v.id AND (m.last_seen_at IS NULL OR m.last_seen_at < v.seen)
+            """;
+
+    private record CachedPrincipal(UUID mappingId, String principal, long loadedAtMillis) {}
+
+    /** {@code queued}: a pending mapping row already exists, so there is nothing to insert. */
+    private record CachedMiss(boolean queued, long loadedAtMillis) {}
+
     private final IdentityMappingRepository repository;
     private final AuditService auditService;
     private final ObjectMapper objectMapper;
+    private final JdbcTemplate jdbcTemplate;
+    private final CacheInvalidationBus invalidationBus;
+    private final JclawMetrics metrics;
+    private final long ttlMillis;
+    private final long unmappedTtlMillis;
+    private final Map<String, CachedPrincipal> principals = new ConcurrentHashMap<>();
+    private final Map<String, CachedMiss> misses = new ConcurrentHashMap<>();
+    private final Map<UUID, Instant> pendingLastSeen = new ConcurrentHashMap<>();
+    // Bumped on every eviction so a lookup that raced with an approval is not cached
+    private final AtomicLong cacheEpoch = new AtomicLong();
 
     public IdentityMappingService(IdentityMappingRepository repository,
                                   AuditService auditService,
-                                  ObjectMapper objectMapper) {
+                                  ObjectMapper objectMapper,
+                                  JdbcTemplate jdbcTemplate,
+                                  CacheInvalidationBus invalidationBus,
+                                  JclawMetrics metrics,
+                                  JclawProperties properties) {
         this.repository = repository;
         this.auditService = auditService;
         this.objectMapper = objectMapper;
+        this.jdbcTemplate = jdbcTemplate;
+        this.invalidationBus = invalidationBus;
+        this.metrics = metrics;
+        this.ttlMillis = properties.getCache().getIdentityTtlSeconds() * 1000L;
+        this.unmappedTtlMillis = properties.getCache().getUnmappedIdentityTtlSeconds() * 1000L;
+        invalidationBus.register(CACHE_NAME, this::evictLocal, this::evictAllLocal);
     }
 
-    @Transactional
     public String resolvePrincipal(String channelType, String channelUserId) {
-        return repository.findByChannelTypeAndChannelUserId(channelType, channelUserId)
-                .filter(m -> m.isApproved() && m.getJclawPrincipal() != null
-                        && !m.getJclawPrincipal().isBlank())
-                .map(mapping -> {
-                    mapping.setLastSeenAt(Instant.now());
-                    repository.save(mapping);
-                    return mapping.getJclawPrincipal();
-                })
-                .orElseThrow(() -> {
-                    log.debug("No approved mapping for {}:{}", channelType, channelUserId);
-                    return new UnmappedIdentityException("No approved identity mapping found");
-                });
+        String key = cacheKey(channelType, channelUserId);
+        long now = System.currentTimeMillis();
+
+        CachedPrincipal cached = principals.get(key);
+        if (cached != null && now - cached.loadedAtMillis() < ttlMillis) {
+            metrics.recordCacheAccess(CACHE_NAME, true);
+            markSeen(cached.mappingId());
+            return cached.principal();
+        }
+        CachedMiss miss = misses.get(key);
+        if (miss != null && now - miss.loadedAtMillis() < unmappedTtlMillis) {
+            metrics.recordCacheAccess(CACHE_NAME, true);
+            throw new UnmappedIdentityException("No approved identity mapping found", miss.queued());
+        }
+        metrics.recordCacheAccess(CACHE_NAME, false);
+
+        long epoch = cacheEpoch.get();
+        IdentityMapping mapping = repository.findByChannelTypeAndChannelUserId(channelType, channelUserId)
+                .orElse(null);
+        if (mapping == null || !mapping.isApproved() || mapping.getJclawPrincipal() == null
+                || mapping.getJclawPrincipal().isBlank()) {
+            log.debug("No approved mapping for {}:{}", channelType, channelUserId);
+            boolean queued = mapping != null;
+            cache(misses, key, new CachedMiss(queued, now), epoch);
+            throw new UnmappedIdentityException("No approved identity mapping found", queued);
+        }
+
+        cache(principals, key, new CachedPrincipal(mapping.getId(), mapping.getJclawPrincipal(), now), epoch);
+        markSeen(mapping.getId());
+        return mapping.getJclawPrincipal();
     }
 
     @Transactional
@@ -55,6 +127,80 @@ public class IdentityMappingService {
         return saved;
     }
 
+    /**
+     * Remembers that a pending mapping exists for this user (just created, or lost the insert
+     * race to another instance), so further messages skip the insert until the miss expires.
+     */
+    public void markQueued(String channelType, String channelUserId) {
+        if (unmappedTtlMillis <= 0) return;
+        misses.put(cacheKey(channelType, channelUserId), new CachedMiss(true, System.currentTimeMillis()));
+    }
+
+    /** Writes the collected last-seen times in one statement. */
+    @Scheduled(fixedDelayString = "${jclaw.cache.identity-last-seen-flush-ms:30000}")
+    public void flushLastSeen() {
+        if (pendingLastSeen.isEmpty()) return;
+        List<UUID> ids = new ArrayList<>();
+        List<Timestamp> seen = new ArrayList<>();
+        for (UUID id : pendingLastSeen.keySet()) {
+            Instant at = pendingLastSeen.remove(id);
+            if (at == null) continue;
+            ids.add(id);
+            seen.add(Timestamp.from(at));
+        }
+        if (ids.isEmpty()) return;
+        try {
+            jdbcTemplate.update(con -> {
+                PreparedStatement ps = con.prepareStatement(FLUSH_LAST_SEEN_SQL);
+                ps.setArray(1, con.createArrayOf("uuid", ids.toArray()));
+                ps.setArray(2, con.createArrayOf("timestamptz", seen.toArray()));
+                return ps;
+            });
+        } catch (RuntimeException e) {
+            // Put them back unless a newer time arrived meanwhile; retried next interval
+            for (int i = 0; i < ids.size(); i++) {
+                pendingLastSeen.merge(ids.get(i), seen.get(i).toInstant(),
+                        (current, failed) -> current.isAfter(failed) ? current : failed);
+            }
+            log.warn("Failed to flush last-seen for {} identity mappings: {}", ids.size(), e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    void flushOnShutdown() {
+        flushLastSeen();
+    }
+
+    private void markSeen(UUID mappingId) {
+        if (mappingId != null) pendingLastSeen.put(mappingId, Instant.now());
+    }
+
+    private <V> void cache(Map<String, V> cache, String key, V value, long epoch) {
+        if ((cache == principals ? ttlMillis : unmappedTtlMillis) <= 0) return;
+        if (cache.size() >= MAX_ENTRIES) cache.clear();
+        cache.put(key, value);
+        if (cacheEpoch.get() != epoch) {
+            // An approval happened while we were looking up; our copy may be stale
+            cache.remove(key);
+        }
+    }
+
+    private void evictLocal(String key) {
+        cacheEpoch.incrementAndGet();
+        principals.remove(key);
+        misses.remove(key);
+    }
+
+    private void evictAllLocal() {
+        cacheEpoch.incrementAndGet();
+        principals.clear();
+        misses.clear();
+    }
+
+    private static String cacheKey(String channelType, String channelUserId) {
+        return channelType + ":" + channelUserId;
+    }
+
     @Transactional
     @PreAuthorize("hasAnyAuthority('SCOPE_jclaw.operator', 'SCOPE_jclaw.admin')")
     public IdentityMapping approveMapping(UUID mappingId, String approvedBy, String jclawPrincipal) {
@@ -67,6 +213,8 @@ public class IdentityMappingService {
         mapping.setApproved(true);
         mapping.setApprovedBy(approvedBy);
         IdentityMapping saved = repository.save(mapping);
+        // After commit, on every instance
+        invalidationBus.publish(CACHE_NAME, cacheKey(mapping.getChannelType(), mapping.getChannelUserId()));
         auditService.logConfigChange(approvedBy, null, "IDENTITY_MAPPING_APPROVED",
                 serializeSafe(java.util.Map.of("mappingId", mappingId.toString(),
                         "principal", mapping.getJclawPrincipal())));
@@ -93,6 +241,16 @@ public class IdentityMappingService {
     }
 
     public static class UnmappedIdentityException extends RuntimeException {
-        public UnmappedIdentityException(String message) { super(message); }
+        private final boolean queued;
+
+        public UnmappedIdentityException(String message) { this(message, false); }
+
+        public UnmappedIdentityException(String message, boolean queued) {
+            super(message);
+            this.queued = queued;
+        }
+
+        /** True when a pending mapping is known to exist already, so nothing needs queueing. */
+        public boolean isQueued() { return queued; }
     }
 }
@@ -0,0 +1,200 @@
+package com.jclaw.security;
+
+import com.jclaw.observability.JclawMetrics;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.KeySourceException;
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+
+/**
+ * JWKS-backed JWT verification for the channel webhooks (Teams, Google Chat).
+ *
+ * <p>Key sets are fetched on first use and then refreshed by a scheduled task before they
+ * go stale, so requests never wait on the identity provider in steady state. A token whose
+ * {@code kid} is not in the current set triggers one immediate refresh (single-flight, and
+ * at most once per {@link #FORCED_REFRESH_COOLDOWN_MILLIS}) that concurrent requests wait
+ * on together. One {@link DefaultJWTProcessor} is kept per key set, and verified tokens are
+ * cached by SHA-256 until their {@code exp}.
+ */
+@Component
+public class JwksKeyManager {
+
+    private static final Logger log = LoggerFactory.getLogger(JwksKeyManager.class);
+
+    static final String CACHE_NAME = "webhook-jwt";
+    private static final long REFRESH_INTERVAL_MILLIS = TimeUnit.MINUTES.toMillis(45);
+    // Keys this old are not trusted any more, even if refreshing keeps failing
+    private static final long MAX_STALE_MILLIS = TimeUnit.HOURS.toMillis(24);
+    static final long FORCED_REFRESH_COOLDOWN_MILLIS = TimeUnit.SECONDS.toMillis(30);
+    private static final long FETCH_WAIT_MILLIS = 10_000;
+    private static final int MAX_CACHED_TOKENS = 10_000;
+
+    /** Fetches a JWKS document; the default loads it over HTTP with bounded timeouts. */
+    interface Loader {
+        JWKSet load(String url) throws Exception;
+    }
+
+    private record VerifiedToken(JWTClaimsSet claims, long expiresAtMillis) {}
+
+    private final class KeySet implements JWKSource<SecurityContext> {
+        final String url;
+        final DefaultJWTProcessor<SecurityContext> processor = new DefaultJWTProcessor<>();
+        final AtomicReference<CompletableFuture<JWKSet>> inFlight = new AtomicReference<>();
+        volatile JWKSet keys;
+        volatile long fetchedAt;
+        volatile long lastForcedRefresh;
+
+        KeySet(String url) {
+            this.url = url;
+            processor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256, this));
+        }
+
+        @Override
+        public List<JWK> get(JWKSelector selector, SecurityContext context) throws KeySourceException {
+            List<JWK> matches = selector.select(current(this));
+            if (!matches.isEmpty()) return matches;
+
+            // Unknown kid: the provider has probably rotated keys. Join a fetch already under
+            // way; otherwise start one unless the set was fetched moments ago (possibly by a
+            // request that raced us), so bogus kids can't hammer the provider.
+            long now = clock.getAsLong();
+            if (inFlight.get() == null
+                    && now - Math.max(fetchedAt, lastForcedRefresh) < FORCED_REFRESH_COOLDOWN_MILLIS) {
+                return selector.select(keys);
+            }
+            lastForcedRefresh = now;
+            log.info("No matching key in {}, refreshing", url);
+            return selector.select(refresh(this));
+        }
+    }
+
+    private final Loader loader;
+    private final JclawMetrics metrics;
+    private final LongSupplier clock;
+    private final Map<String, KeySet> keySets = new ConcurrentHashMap<>();
+    private final Map<String, VerifiedToken> verified = new ConcurrentHashMap<>();
+
+    @Autowired
+    public JwksKeyManager(JclawMetrics metrics) {
+        this(url -> JWKSet.load(URI.create(url).toURL(), 5_000, 5_000, 512 * 1024), metrics,
+                System::currentTimeMillis);
+    }
+
+    JwksKeyManager(Loader loader, JclawMetrics metrics, LongSupplier clock) {
+        this.loader = loader;
+        this.metrics = metrics;
+        this.clock = clock;
+    }
+
+    /**
+     * Verifies the token's RS256 signature against the key set at {@code jwksUrl} and its
+     * expiry; issuer and audience are left to the caller.
+     */
+    public JWTClaimsSet verify(String jwksUrl, String token) throws Exception {
+        String cacheKey = jwksUrl + "|" + sha256(token);
+        VerifiedToken cached = verified.get(cacheKey);
+        long now = clock.getAsLong();
+        boolean hit = cached != null && now < cached.expiresAtMillis();
+        metrics.recordCacheAccess(CACHE_NAME, hit);
+        if (hit) return cached.claims();
+
+        KeySet keySet = keySets.computeIfAbsent(jwksUrl, KeySet::new);
+        JWTClaimsSet claims = keySet.processor.process(token, null);
+
+        Date exp = claims.getExpirationTime();
+        if (exp != null && exp.getTime() > now) {
+            if (verified.size() >= MAX_CACHED_TOKENS) pruneVerified(now);
+            verified.put(cacheKey, new VerifiedToken(claims, exp.getTime()));
+        }
+        return claims;
+    }
+
+    /** Refreshes key sets ahead of expiry; a failed refresh keeps the current keys. */
+    @Scheduled(fixedDelay = 60_000, initialDelay = 60_000)
+    public void refreshDueKeySets() {
+        long now = clock.getAsLong();
+        for (KeySet keySet : keySets.values()) {
+            if (keySet.keys != null && now - keySet.fetchedAt < REFRESH_INTERVAL_MILLIS) continue;
+            try {
+                refresh(keySet);
+            } catch (KeySourceException e) {
+                log.warn("Background JWKS refresh failed for {}: {}", keySet.url, e.getMessage());
+            }
+        }
+        pruneVerified(now);
+    }
+
+    private JWKSet current(KeySet keySet) throws KeySourceException {
+        JWKSet keys = keySet.keys;
+        if (keys != null && clock.getAsLong() - keySet.fetchedAt < MAX_STALE_MILLIS) return keys;
+        return refresh(keySet);
+    }
+
+    /** Fetches the key set; concurrent callers share one fetch. */
+    private JWKSet refresh(KeySet keySet) throws KeySourceException {
+        CompletableFuture<JWKSet> mine = new CompletableFuture<>();
+        CompletableFuture<JWKSet> running = keySet.inFlight.compareAndExchange(null, mine);
+        if (running != null) {
+            try {
+                return running.get(FETCH_WAIT_MILLIS, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new KeySourceException("Interrupted waiting for JWKS from " + keySet.url, e);
+            } catch (Exception e) {
+                throw new KeySourceException("JWKS fetch from " + keySet.url + " failed", e);
+            }
+        }
+
+        try {
+            JWKSet loaded = loader.load(keySet.url);
+            keySet.keys = loaded;
+            keySet.fetchedAt = clock.getAsLong();
+            mine.complete(loaded);
+            return loaded;
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+            throw new KeySourceException("JWKS fetch from " + keySet.url + " failed: " + e.getMessage(), e);
+        } finally {
+            keySet.inFlight.set(null);
+        }
+    }
+
+    private void pruneVerified(long now) {
+        verified.values().removeIf(v -> v.expiresAtMillis() <= now);
+        if (verified.size() >= MAX_CACHED_TOKENS) verified.clear();
+    }
+
+    private static String sha256(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.jclaw.security;
+
+import com.jclaw.config.SecretsConfig;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.KeyFactory;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.Signature;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.HexFormat;
+import java.util.Objects;
+
+/**
+ * Slack (HMAC-SHA256) and Discord (Ed25519) webhook signature checks.
+ *
+ * <p>Keys are decoded once and re-decoded only when the configured secret changes, and each
+ * thread keeps its own initialised {@link Mac} / {@link Signature}, so a request costs one
+ * MAC or one signature verification. The body bytes are fed to the MAC/verifier as-is;
+ * nothing is copied into a {@code String}.
+ */
+@Component
+public class WebhookSignatureVerifier {
+
+    private static final Logger log = LoggerFactory.getLogger(WebhookSignatureVerifier.class);
+
+    private static final String HMAC_SHA256 = "HmacSHA256";
+    private static final String SLACK_VERSION = "v0";
+    // SubjectPublicKeyInfo header for a raw 32-byte Ed25519 key (RFC 8410)
+    private static final byte[] ED25519_X509_PREFIX = HexFormat.of().parseHex("302a300506032b6570032100");
+
+    /** Decoded key material, tagged with the raw secrets it was derived from. */
+    private record Keys(String slackSecret, SecretKeySpec slackKey,
+                        String discordPublicKeyHex, PublicKey discordKey) {}
+
+    private static final class MacHolder {
+        final Mac mac;
+        SecretKeySpec key;
+
+        MacHolder() {
+            try {
+                mac = Mac.getInstance(HMAC_SHA256);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private static final class SignatureHolder {
+        final Signature signature;
+        PublicKey key;
+
+        SignatureHolder() {
+            try {
+                signature = Signature.getInstance("Ed25519");
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+
+    private final SecretsConfig secretsConfig;
+    private final ThreadLocal<MacHolder> macs = ThreadLocal.withInitial(MacHolder::new);
+    private final ThreadLocal<SignatureHolder> signatures = ThreadLocal.withInitial(SignatureHolder::new);
+    private volatile Keys keys;
+
+    public WebhookSignatureVerifier(SecretsConfig secretsConfig) {
+        this.secretsConfig = secretsConfig;
+        this.keys = decode(secretsConfig.getSlackSigningSecret(), secretsConfig.getDiscordPublicKey());
+    }
+
+    /**
+     * Checks {@code X-Slack-Signature} ({@code v0=<hex>}) against HMAC-SHA256 of
+     * {@code v0:<timestamp>:<body>}. Timestamp freshness is the caller's concern.
+     */
+    public boolean verifySlack(String timestamp, byte[] body, String signature) {
+        SecretKeySpec key = currentKeys().slackKey();
+        if (key == null) {
+            log.warn("Slack signing secret not configured, rejecting webhook");
+            return false;
+        }
+        if (signature == null || !signature.startsWith(SLACK_VERSION + "=")) return false;
+
+        byte[] expected;
+        try {
+            expected = HexFormat.of().parseHex(signature, SLACK_VERSION.length() + 1, signature.length());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+
+        MacHolder holder = macs.get();
+        try {
+            if (holder.key != key) {
+                holder.mac.init(key);
+                holder.key = key;
+            }
+            Mac mac = holder.mac;
+            mac.update((SLACK_VERSION + ":" + timestamp + ":").getBytes(StandardCharsets.UTF_8));
+            mac.update(body);
+            // doFinal resets the Mac for the next request on this thread
+            return MessageDigest.isEqual(mac.doFinal(), expected);
+        } catch (GeneralSecurityException | RuntimeException e) {
+            macs.remove();
+            log.error("HMAC computation failed", e);
+            return false;
+        }
+    }
+
+    /**
+     * Checks {@code X-Signature-Ed25519} (hex) against {@code <timestamp><body>} with the
+     * application's public key. Timestamp freshness is the caller's concern.
+     */
+    public boolean verifyDiscord(String timestamp, byte[] body, String signatureHex) {
+        Keys current = currentKeys();
+        if (current.discordKey() == null) {
+            log.warn("Discord public key not configured, rejecting webhook");
+            return false;
+        }
+
+        SignatureHolder holder = signatures.get();
+        try {
+            byte[] signatureBytes = HexFormat.of().parseHex(signatureHex);
+            if (holder.key != current.discordKey()) {
+                holder.signature.initVerify(current.discordKey());
+                holder.key = current.discordKey();
+            }
+            Signature verifier = holder.signature;
+            verifier.update(timestamp.getBytes(StandardCharsets.UTF_8));
+            verifier.update(body);
+            // verify resets the Signature to its initVerify state for the next request
+            return verifier.verify(signatureBytes);
+        } catch (IllegalArgumentException e) {
+            return false;
+        } catch (GeneralSecurityException e) {
+            // Leave no half-fed state behind for the next request on this thread
+            signatures.remove();
+            log.warn("Discord Ed25519 verification failed: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /** Current keys, re-decoded if the configured secrets have been rotated since. */
+    private Keys currentKeys() {
+        Keys current = keys;
+        String slackSecret = secretsConfig.getSlackSigningSecret();
+        String discordKey = secretsConfig.getDiscordPublicKey();
+        if (Objects.equals(current.slackSecret(), slackSecret)
+                && Objects.equals(current.discordPublicKeyHex(), discordKey)) {
+            return current;
+        }
+        log.info("Webhook signing secrets changed, re-decoding keys");
+        current = decode(slackSecret, discordKey);
+        keys = current;
+        return current;
+    }
+
+    private static Keys decode(String slackSecret, String discordPublicKeyHex) {
+        SecretKeySpec slackKey = slackSecret == null || slackSecret.isEmpty() ? null
+                : new SecretKeySpec(slackSecret.getBytes(StandardCharsets.UTF_8), HMAC_SHA256);
+        return new Keys(slackSecret, slackKey, discordPublicKeyHex, decodeEd25519(discordPublicKeyHex));
+    }
+
+    private static PublicKey decodeEd25519(String publicKeyHex) {
+        if (publicKeyHex == null || publicKeyHex.isEmpty()) return null;
+        try {
+            byte[] raw = HexFormat.of().parseHex(publicKeyHex);
+            if (raw.length != 32) {
+                throw new IllegalArgumentException("Ed25519 public key must be 32 bytes");
+            }
+            byte[] encoded = new byte[ED25519_X509_PREFIX.length + raw.length];
+            System.arraycopy(ED25519_X509_PREFIX, 0, encoded, 0, ED25519_X509_PREFIX.length);
+            System.arraycopy(raw, 0, encoded, ED25519_X509_PREFIX.length, raw.length);
+            return KeyFactory.getInstance("Ed25519").generatePublic(new X509EncodedKeySpec(encoded));
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            log.error("Invalid Discord public key, Discord webhooks will be rejected: {}", e.getMessage());
+            return null;
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.jclaw.session;
+
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * De-duplicated work queue of sessions due for compaction, drained by a small fixed pool.
+ *
+ * <p>A session is queued at most once: it stays in {@code pending} until its compaction
+ * finishes, so repeated triggers while it waits or runs are ignored. Sessions whose
+ * compaction failed, was blocked, lost a race or found nothing to compact are held back
+ * with exponential backoff, since every message added while they stay over the
+ * threshold triggers them again.
+ * When the queue is full the trigger is dropped; the periodic sweep picks it up later.
+ */
+@Component
+public class CompactionQueue {
+
+    private static final Logger log = LoggerFactory.getLogger(CompactionQueue.class);
+
+    private record Backoff(int attempts, long notBeforeMillis) {}
+
+    private final JclawMetrics metrics;
+    private final ThreadPoolExecutor executor;
+    private final Duration baseBackoff;
+    private final Duration maxBackoff;
+    private final Set<UUID> pending = ConcurrentHashMap.newKeySet();
+    private final Map<UUID, Backoff> backoff = new ConcurrentHashMap<>();
+    private volatile Function<UUID, CompactionService.Outcome> worker;
+
+    public CompactionQueue(JclawProperties properties, JclawMetrics metrics) {
+        JclawProperties.SessionProperties session = properties.getSession();
+        this.metrics = metrics;
+        this.baseBackoff = Duration.ofSeconds(Math.max(1, session.getCompactionBackoffSeconds()));
+        this.maxBackoff = Duration.ofSeconds(Math.max(1, session.getCompactionMaxBackoffSeconds()));
+        int workers = Math.max(1, session.getCompactionWorkers());
+        AtomicInteger threadIds = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(Math.max(1, session.getCompactionQueueCapacity())),
+                r -> {
+                    Thread t = new Thread(r, "compaction-" + threadIds.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                });
+        metrics.registerCompactionQueue(executor.getQueue());
+    }
+
+    /** Installed by {@link CompactionService}; kept out of the constructor to avoid a bean cycle. */
+    void setWorker(Function<UUID, CompactionService.Outcome> worker) {
+        this.worker = worker;
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Queues a session for compaction. Returns false if it is already queued or running,
+     * backing off after a failed attempt, or the queue is full.
+     */
+    public boolean submit(UUID sessionId) {
+        Backoff held = backoff.get(sessionId);
+        if (held != null && System.currentTimeMillis() < held.notBeforeMillis()) return false;
+        if (!pending.add(sessionId)) return false;
+        try {
+            executor.execute(() -> run(sessionId));
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(sessionId);
+            metrics.recordCompactionDropped();
+            log.debug("Compaction queue full, deferring session {} to the next sweep", sessionId);
+            return false;
+        }
+    }
+
+    int size() {
+        return pending.size();
+    }
+
+    private void run(UUID sessionId) {
+        CompactionService.Outcome outcome = null;
+        try {
+            Function<UUID, CompactionService.Outcome> w = worker;
+            if (w != null) outcome = w.apply(sessionId);
+        } catch (Exception e) {
+            log.warn("Compaction failed for session {}", sessionId, e);
+        } finally {
+            if (outcome == CompactionService.Outcome.COMMITTED) {
+                backoff.remove(sessionId);
+            } else {
+                backOff(sessionId);
+            }
+            pending.remove(sessionId);
+        }
+    }
+
+    private void backOff(UUID sessionId) {
+        Backoff next = backoff.compute(sessionId, (id, prev) -> {
+            int attempts = prev != null ? prev.attempts() + 1 : 1;
+            long delay = Math.min(maxBackoff.toMillis(),
+                    baseBackoff.toMillis() << Math.min(attempts - 1, 20));
+            return new Backoff(attempts, System.currentTimeMillis() + delay);
+        });
+        log.debug("Compaction of session {} backing off until {} (attempt {})",
+                sessionId, next.notBeforeMillis(), next.attempts());
+    }
+
+    /** Forgets backoff entries that expired long ago so the map only holds failing sessions. */
+    void pruneBackoff() {
+        long cutoff = System.currentTimeMillis() - maxBackoff.toMillis();
+        backoff.values().removeIf(b -> b.notBeforeMillis() < cutoff);
+    }
+}
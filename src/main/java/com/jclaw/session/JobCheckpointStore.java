@@ -0,0 +1,69 @@
+package com.jclaw.session;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Keyset checkpoints of the chunked retention jobs (job_checkpoints, V12). Saves join the
+ * caller's transaction so a checkpoint commits together with the chunk it describes.
+ */
+@Component
+public class JobCheckpointStore {
+
+    private static final UUID NIL = new UUID(0, 0);
+
+    private static final String FIND_OPEN_SQL = """
+            SELECT job_name, cutoff, last_active_at, last_id, processed FROM job_checkpoints
+            WHERE job_name = ? AND completed_at IS NULL
+            """;
+
+    private static final String SAVE_SQL = """
+            INSERT INTO job_checkpoints (job_name, cutoff, last_active_at, last_id, processed, updated_at)
+            VALUES (?, ?, ?, ?, ?, now())
+            ON CONFLICT (job_name) DO UPDATE SET cutoff = EXCLUDED.cutoff,
+                last_active_at = EXCLUDED.last_active_at, last_id = EXCLUDED.last_id,
+                processed = EXCLUDED.processed, updated_at = now(), completed_at = NULL
+            """;
+
+    /** Position after the last session handled: rows are visited in (lastActiveAt, id) order. */
+    public record Checkpoint(String jobName, Instant cutoff, Instant lastActiveAt, UUID lastId, long processed) {
+
+        static Checkpoint start(String jobName, Instant cutoff) {
+            return new Checkpoint(jobName, cutoff, Instant.EPOCH, NIL, 0);
+        }
+
+        Checkpoint advance(Instant lastActiveAt, UUID lastId, int handled) {
+            return new Checkpoint(jobName, cutoff, lastActiveAt, lastId, processed + handled);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public JobCheckpointStore(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    /** The checkpoint of an unfinished run of {@code jobName}, if any. */
+    public Optional<Checkpoint> findOpen(String jobName) {
+        List<Checkpoint> found = jdbcTemplate.query(FIND_OPEN_SQL, (rs, row) -> new Checkpoint(
+                rs.getString(1), rs.getTimestamp(2).toInstant(), rs.getTimestamp(3).toInstant(),
+                rs.getObject(4, UUID.class), rs.getLong(5)), jobName);
+        return found.stream().findFirst();
+    }
+
+    public void save(Checkpoint checkpoint) {
+        jdbcTemplate.update(SAVE_SQL, checkpoint.jobName(), Timestamp.from(checkpoint.cutoff()),
+                Timestamp.from(checkpoint.lastActiveAt()), checkpoint.lastId(), checkpoint.processed());
+    }
+
+    public void complete(String jobName) {
+        jdbcTemplate.update("UPDATE job_checkpoints SET completed_at = now(), updated_at = now() WHERE job_name = ?",
+                jobName);
+    }
+}
@@ -0,0 +1,143 @@
+package com.jclaw.session;
+
+import com.jclaw.config.JclawProperties;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.YearMonth;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Maintains the monthly range partitions of {@code session_messages} and {@code audit_log}
+ * (see V11): creates them ahead of time and applies retention by detaching and dropping
+ * partitions that lie entirely before a cutoff. Rows in the partition spanning the cutoff
+ * are left to the callers' row-level deletes.
+ */
+@Component
+public class PartitionManager {
+
+    private static final Logger log = LoggerFactory.getLogger(PartitionManager.class);
+
+    static final String SESSION_MESSAGES = "session_messages";
+    static final String AUDIT_LOG = "audit_log";
+    private static final Pattern MONTHLY = Pattern.compile("^[a-z_]+_p(\\d{6})$");
+    private static final DateTimeFormatter MONTH = DateTimeFormatter.ofPattern("yyyyMM");
+
+    private static final String LIST_PARTITIONS_SQL = """
+            SELECT c.relname FROM pg_inherits i
+            JOIN pg_class c ON c.oid = i.inhrelid
+            JOIN pg_class p ON p.oid = i.inhparent
+            WHERE p.relname = ? AND p.relnamespace = to_regnamespace(current_schema())
+            """;
+
+    // A message partition is kept while it holds live history of a session that is not expired
+    private static final String LIVE_MESSAGES_SQL = """
+            SELECT EXISTS (SELECT 1 FROM "%s" m JOIN sessions s ON s.id = m.session_id
+                WHERE m.is_compacted = false
+                  AND s.status <> 'PURGED'
+                  AND NOT (s.status = 'ARCHIVED' AND s.last_active_at < ?))
+            """;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final int monthsAhead;
+
+    public PartitionManager(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                            JclawProperties properties) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // DDL takes an exclusive lock on the parent; never hold it for a caller's transaction
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.monthsAhead = Math.max(1, properties.getSecurity().getDataRetention().getPartitionMonthsAhead());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    @Scheduled(cron = "${jclaw.partitions.maintain-cron:0 15 2 * * *}")
+    public void createFuturePartitions() {
+        YearMonth current = YearMonth.now(ZoneOffset.UTC);
+        for (String table : List.of(SESSION_MESSAGES, AUDIT_LOG)) {
+            try {
+                for (int i = 0; i <= monthsAhead; i++) {
+                    jdbcTemplate.queryForObject("SELECT jclaw_create_monthly_partition(?, ?)", String.class,
+                            table, Date.valueOf(current.plusMonths(i).atDay(1)));
+                }
+            } catch (DataAccessException e) {
+                // Rows for the month already in the DEFAULT partition block its creation
+                log.error("Failed to create monthly partitions for {}: {}", table, e.getMessage());
+            }
+        }
+    }
+
+    /** Drops audit partitions that end on or before {@code cutoff}; returns how many. */
+    public int dropAuditPartitionsBefore(Instant cutoff) {
+        return dropPartitionsBefore(AUDIT_LOG, cutoff, null);
+    }
+
+    /**
+     * Drops message partitions that end on or before {@code cutoff}, except those still
+     * holding non-compacted messages of sessions that are not yet expired (archived and
+     * idle since before {@code cutoff}). Returns how many were dropped.
+     */
+    public int dropSessionMessagePartitionsBefore(Instant cutoff) {
+        return dropPartitionsBefore(SESSION_MESSAGES, cutoff, LIVE_MESSAGES_SQL);
+    }
+
+    private int dropPartitionsBefore(String table, Instant cutoff, String liveRowsSql) {
+        List<String> partitions;
+        try {
+            partitions = jdbcTemplate.queryForList(LIST_PARTITIONS_SQL, String.class, table);
+        } catch (DataAccessException e) {
+            log.warn("Could not list partitions of {}: {}", table, e.getMessage());
+            return 0;
+        }
+
+        int dropped = 0;
+        for (String partition : partitions) {
+            Matcher m = MONTHLY.matcher(partition);
+            if (!m.matches() || !partition.startsWith(table + "_p")) continue;
+            YearMonth month = YearMonth.parse(m.group(1), MONTH);
+            Instant end = month.plusMonths(1).atDay(1).atStartOfDay(ZoneOffset.UTC).toInstant();
+            if (end.isAfter(cutoff)) continue;
+
+            try {
+                // The live-row check runs in the same transaction as the drop: a lock it left in
+                // a caller's transaction would block the DETACH until the timeout
+                boolean droppedPartition = Boolean.TRUE.equals(transactionTemplate.execute(status -> {
+                    // Give up rather than queue writers behind us if a long query holds the parent
+                    jdbcTemplate.execute("SET LOCAL lock_timeout = '5s'");
+                    if (liveRowsSql != null && Boolean.TRUE.equals(jdbcTemplate.queryForObject(
+                            liveRowsSql.formatted(partition), Boolean.class, Timestamp.from(cutoff)))) {
+                        log.info("Keeping partition {}: it still holds live messages of retained sessions", partition);
+                        return false;
+                    }
+                    jdbcTemplate.execute("ALTER TABLE " + table + " DETACH PARTITION \"" + partition + "\"");
+                    jdbcTemplate.execute("DROP TABLE \"" + partition + "\"");
+                    return true;
+                }));
+                if (droppedPartition) {
+                    dropped++;
+                    log.info("Dropped partition {} (ended {}, retention cutoff {})", partition, end, cutoff);
+                }
+            } catch (DataAccessException e) {
+                log.warn("Could not drop partition {}, will retry next run: {}", partition, e.getMessage());
+            }
+        }
+        return dropped;
+    }
+}
@@ -1,32 +1,132 @@
 package com.jclaw.session;
 
-import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.jclaw.agent.AgentContext;
+import com.jclaw.agent.TokenCounter;
 import com.jclaw.audit.AuditService;
 import com.jclaw.channel.InboundMessage;
+import com.jclaw.config.CacheInvalidationBus;
 import com.jclaw.config.JclawProperties;
 import com.jclaw.observability.JclawMetrics;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
 import io.micrometer.observation.annotation.Observed;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
 
 import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.BooleanSupplier;
 
 @Service
 public class SessionManager {
 
     private static final Logger log = LoggerFactory.getLogger(SessionManager.class);
-    private static final String HISTORY_CACHE_PREFIX = "jclaw:session:history:";
+    /**
+     * {@link CacheInvalidationBus} name under which in-process caches built from a session's
+     * history register; keyed by session id, evicted when an append to the list fails.
+     */
+    public static final String HISTORY_CACHE_NAME = "session-history";
+    // Redis list per session, one JSON entry per non-compacted message in createdAt order.
+    // The list may hold only the newest messages; a "complete" marker key says it holds all
+    // of them. Both keys share a hash tag so the scripts below stay single-slot.
+    private static final String HISTORY_CACHE_PREFIX = "jclaw:session:history-list:";
+    private static final String COMPLETE_SUFFIX = ":complete";
+    // Hash of two counters: "appends" (messages added) and "resets" (compactions and dropped
+    // lists). In-process prompt caches compare against it to pick up only the new messages.
+    private static final String VERSION_SUFFIX = ":version";
     private static final Duration HISTORY_CACHE_TTL = Duration.ofMinutes(30);
+    // Outlives any in-process cache entry, so an expired counter can't restart and collide
+    private static final Duration HISTORY_VERSION_TTL = Duration.ofDays(1);
+    private static final int HISTORY_PAGE_SIZE = 32;
 
-    private static final TypeReference<List<CachedMessage>> CACHED_MSG_LIST_TYPE =
-            new TypeReference<>() {};
+    // Append only to an existing list: a missing list is seeded from the DB on next read
+    private static final String APPEND_SCRIPT = """
+            local len = redis.call('RPUSHX', KEYS[1], ARGV[1])
+            if len > 0 then
+                redis.call('PEXPIRE', KEYS[1], ARGV[2])
+                redis.call('PEXPIRE', KEYS[2], ARGV[2])
+            end
+            redis.call('HINCRBY', KEYS[3], 'appends', 1)
+            redis.call('PEXPIRE', KEYS[3], ARGV[3])
+            return len
+            """;
+
+    // ARGV[2] is 1 when the entries are the session's whole live history, 0 for a tail
+    private static final String SEED_SCRIPT = """
+            redis.call('DEL', KEYS[1], KEYS[2])
+            for i = 3, #ARGV do
+                redis.call('RPUSH', KEYS[1], ARGV[i])
+            end
+            redis.call('PEXPIRE', KEYS[1], ARGV[1])
+            if ARGV[2] == '1' then
+                redis.call('SET', KEYS[2], '1', 'PX', ARGV[1])
+            end
+            return #ARGV - 2
+            """;
+
+    // Drop the compacted head and append the summary; if the list is only a tail or no
+    // longer lines up with what compaction saw, drop it so the next read reseeds from the DB
+    private static final String COMPACT_SCRIPT = """
+            redis.call('HINCRBY', KEYS[3], 'resets', 1)
+            redis.call('PEXPIRE', KEYS[3], ARGV[5])
+            local len = redis.call('LLEN', KEYS[1])
+            if len == 0 then
+                return 0
+            end
+            if redis.call('EXISTS', KEYS[2]) == 0 or len - tonumber(ARGV[1]) ~= tonumber(ARGV[2]) then
+                redis.call('DEL', KEYS[1], KEYS[2])
+                return -1
+            end
+            redis.call('LTRIM', KEYS[1], ARGV[1], -1)
+            redis.call('RPUSH', KEYS[1], ARGV[3])
+            redis.call('PEXPIRE', KEYS[1], ARGV[4])
+            redis.call('PEXPIRE', KEYS[2], ARGV[4])
+            return 1
+            """;
+
+    private static final String INVALIDATE_SCRIPT = """
+            redis.call('DEL', KEYS[1], KEYS[2])
+            redis.call('HINCRBY', KEYS[3], 'resets', 1)
+            redis.call('PEXPIRE', KEYS[3], ARGV[1])
+            return 1
+            """;
+
+    // Returns resets, appends and the entries appended since ARGV[1] (at most ARGV[2] of them)
+    // as newline-separated lines; entries are single-line JSON, so the split is unambiguous.
+    // Fewer entries than the delta means the list no longer holds them all.
+    private static final String DELTA_SCRIPT = """
+            local v = redis.call('HMGET', KEYS[2], 'resets', 'appends')
+            local appends = tonumber(v[2]) or 0
+            local out = (tonumber(v[1]) or 0) .. '\\n' .. appends
+            local delta = appends - tonumber(ARGV[1])
+            if delta > 0 and delta <= tonumber(ARGV[2]) then
+                local entries = redis.call('LRANGE', KEYS[1], -delta, -1)
+                if #entries > 0 then
+                    out = out .. '\\n' .. table.concat(entries, '\\n')
+                end
+            end
+            return out
+            """;
+
+    private final DefaultRedisScript<Long> appendScript = new DefaultRedisScript<>(APPEND_SCRIPT, Long.class);
+    private final DefaultRedisScript<Long> seedScript = new DefaultRedisScript<>(SEED_SCRIPT, Long.class);
+    private final DefaultRedisScript<Long> compactScript = new DefaultRedisScript<>(COMPACT_SCRIPT, Long.class);
+    private final DefaultRedisScript<Long> invalidateScript = new DefaultRedisScript<>(INVALIDATE_SCRIPT, Long.class);
+    private final DefaultRedisScript<String> deltaScript = new DefaultRedisScript<>(DELTA_SCRIPT, String.class);
 
     private final SessionRepository sessionRepository;
     private final SessionMessageRepository messageRepository;
@@ -35,6 +135,11 @@ public class SessionManager {
     private final JclawMetrics metrics;
     private final ReactiveRedisTemplate<String, String> redisTemplate;
     private final ObjectMapper objectMapper;
+    private final TokenCounter tokenCounter;
+    private final CompactionQueue compactionQueue;
+    private final SessionMessageWriter messageWriter;
+    private final SessionResolutionCache resolutionCache;
+    private final CacheInvalidationBus invalidationBus;
 
     public SessionManager(SessionRepository sessionRepository,
                          SessionMessageRepository messageRepository,
@@ -42,7 +147,12 @@ public class SessionManager {
                          JclawProperties properties,
                          JclawMetrics metrics,
                          ReactiveRedisTemplate<String, String> redisTemplate,
-                         ObjectMapper objectMapper) {
+                         ObjectMapper objectMapper,
+                         TokenCounter tokenCounter,
+                         CompactionQueue compactionQueue,
+                         SessionMessageWriter messageWriter,
+                         SessionResolutionCache resolutionCache,
+                         CacheInvalidationBus invalidationBus) {
         this.sessionRepository = sessionRepository;
         this.messageRepository = messageRepository;
         this.auditService = auditService;
@@ -50,20 +160,41 @@ public class SessionManager {
         this.metrics = metrics;
         this.redisTemplate = redisTemplate;
         this.objectMapper = objectMapper;
+        this.tokenCounter = tokenCounter;
+        this.compactionQueue = compactionQueue;
+        this.messageWriter = messageWriter;
+        this.resolutionCache = resolutionCache;
+        this.invalidationBus = invalidationBus;
+        messageWriter.setListener(this::onMessagesWritten);
     }
 
+    /**
+     * Finds or creates the session for a message's routing identity. Repeat lookups are
+     * served from {@link SessionResolutionCache}; not transactional itself, so cache hits
+     * don't open a transaction. The returned session is shared and must not be modified.
+     */
     @Observed(name = "jclaw.session.resolve", contextualName = "session-resolve")
-    @Transactional
     public Session resolveSession(AgentContext context, InboundMessage message) {
         SessionScope scope = resolveScope(message);
+        SessionResolutionCache.RouteKey key = routeKey(context, message, scope);
+        Session cached = resolutionCache.get(key);
+        if (cached != null) return cached;
+
+        long epoch = resolutionCache.epoch();
+        Session session = findSession(context, message, scope)
+                .orElseGet(() -> createSession(context, message, scope));
+        resolutionCache.put(key, session, epoch);
+        return session;
+    }
+
+    private Optional<Session> findSession(AgentContext context, InboundMessage message, SessionScope scope) {
         var activeStatuses = List.of(SessionStatus.ACTIVE, SessionStatus.COMPACTED);
 
         if (scope == SessionScope.GROUP && message.conversationId() != null) {
             return sessionRepository
                     .findByAgentIdAndChannelTypeAndChannelConversationIdAndStatusIn(
                             context.agentId(), message.channelType(),
-                            message.conversationId(), activeStatuses)
-                    .orElseGet(() -> createSession(context, message, scope));
+                            message.conversationId(), activeStatuses);
         }
 
         // DM scope: per-user-per-channel-per-agent (spec §7.2)
@@ -71,15 +202,27 @@ public class SessionManager {
             return sessionRepository
                     .findByAgentIdAndPrincipalAndChannelTypeAndScopeAndStatusIn(
                             context.agentId(), context.principal(), message.channelType(),
-                            scope, activeStatuses)
-                    .orElseGet(() -> createSession(context, message, scope));
+                            scope, activeStatuses);
         }
 
         // MAIN/API scope: per-user-per-agent (cross-channel)
         return sessionRepository
                 .findByAgentIdAndPrincipalAndScopeAndStatusIn(
-                        context.agentId(), context.principal(), scope, activeStatuses)
-                .orElseGet(() -> createSession(context, message, scope));
+                        context.agentId(), context.principal(), scope, activeStatuses);
+    }
+
+    // Only the fields findSession matches on, so e.g. a MAIN session is a hit from any channel
+    private static SessionResolutionCache.RouteKey routeKey(AgentContext context, InboundMessage message,
+                                                            SessionScope scope) {
+        if (scope == SessionScope.GROUP && message.conversationId() != null) {
+            return new SessionResolutionCache.RouteKey(context.agentId(), null, message.channelType(),
+                    scope, message.conversationId());
+        }
+        if (scope == SessionScope.DM) {
+            return new SessionResolutionCache.RouteKey(context.agentId(), context.principal(),
+                    message.channelType(), scope, null);
+        }
+        return new SessionResolutionCache.RouteKey(context.agentId(), context.principal(), null, scope, null);
     }
 
     private Session createSession(AgentContext context, InboundMessage message, SessionScope scope) {
@@ -114,28 +257,53 @@ public class SessionManager {
         }
     }
 
+    /**
+     * Persists a message. A null {@code tokenCount} is counted here with the default
+     * model's tokenizer, so every stored message carries its count. With write-behind on,
+     * the message is queued for the batch writer and this session's next read flushes it.
+     */
     @Transactional
     public void addMessage(UUID sessionId, MessageRole role, String content, Integer tokenCount) {
+        if (tokenCount == null) tokenCount = tokenCounter.count(content);
         SessionMessage msg = new SessionMessage(sessionId, role, content);
         msg.setTokenCount(tokenCount);
+        if (messageWriter.submit(msg)) return;
+
         messageRepository.save(msg);
+        // One atomic UPDATE instead of loading and re-saving the session row
+        SessionMessageWriter.SessionTotals totals = messageWriter.addCounters(
+                sessionId, 1, tokenCount, msg.getCreatedAt());
+        if (totals == null) throw new NoSuchElementException("Session not found: " + sessionId);
 
-        Session session = sessionRepository.findById(sessionId).orElseThrow();
-        session.incrementMessageCount();
-        if (tokenCount != null) session.addTokens(tokenCount);
-        session.touch();
-        sessionRepository.save(session);
+        // Append to the cached history list once the message is committed
+        afterCommit(() -> appendToHistoryCache(msg));
+        afterCommit(() -> queueCompactionIfDue(totals));
+    }
 
-        // Invalidate Redis cache for this session's history
-        invalidateHistoryCache(sessionId);
+    private void onMessagesWritten(List<SessionMessage> messages, List<SessionMessageWriter.SessionTotals> totals) {
+        messages.forEach(this::appendToHistoryCache);
+        totals.forEach(this::queueCompactionIfDue);
     }
 
-    public List<SessionMessage> getHistory(UUID sessionId) {
-        String cacheKey = HISTORY_CACHE_PREFIX + sessionId;
+    // Queue compaction once the live history is over the threshold; the queue de-duplicates
+    private void queueCompactionIfDue(SessionMessageWriter.SessionTotals totals) {
+        if (CompactionService.COMPACTABLE.contains(totals.status())
+                && totals.totalTokens() > properties.getSession().getCompactionThresholdTokens()) {
+            compactionQueue.submit(totals.sessionId());
+        }
+    }
 
-        // Try to read cached history from Redis
+    /**
+     * Full non-compacted history, oldest first. Served from the Redis list when present,
+     * otherwise loaded from the DB and used to seed the list.
+     */
+    public List<SessionMessage> getHistory(UUID sessionId) {
+        messageWriter.flush(sessionId);
         try {
-            String cached = redisTemplate.opsForValue().get(cacheKey).block();
+            // A tail-only list can't answer for the full history
+            List<String> cached = Boolean.TRUE.equals(redisTemplate.hasKey(completeKey(sessionId)).block())
+                    ? redisTemplate.opsForList().range(listKey(sessionId), 0, -1).collectList().block()
+                    : null;
             if (cached != null && !cached.isEmpty()) {
                 List<SessionMessage> fromCache = deserializeHistory(sessionId, cached);
                 if (fromCache != null) {
@@ -147,23 +315,116 @@ public class SessionManager {
             log.debug("Redis unavailable for session history cache, using DB directly");
         }
 
-        List<SessionMessage> history = messageRepository
-                .findBySessionIdAndCompactedFalseOrderByCreatedAtAsc(sessionId);
+        return loadAndSeedHistory(sessionId);
+    }
+
+    /**
+     * Most recent non-compacted messages, oldest first, whose token total stays within
+     * {@code tokenBudget}, plus the message that crosses it so callers can apply their own
+     * exact cut. Read page by page from the tail of the cached list; on a miss, or when a
+     * tail-only list runs out before the budget does, only that tail is read from the DB.
+     */
+    public List<SessionMessage> getRecentHistory(UUID sessionId, int tokenBudget) {
+        messageWriter.flush(sessionId);
+        String cacheKey = listKey(sessionId);
 
-        // Cache serialized history in Redis with TTL
         try {
-            String serialized = serializeHistory(history);
-            redisTemplate.opsForValue()
-                    .set(cacheKey, serialized, HISTORY_CACHE_TTL)
-                    .subscribe();
+            List<CachedMessage> tail = new ArrayList<>();
+            int tokens = 0;
+            long end = -1;
+            boolean exhausted = false;
+            while (tokens <= tokenBudget) {
+                List<String> page = redisTemplate.opsForList()
+                        .range(cacheKey, end - HISTORY_PAGE_SIZE + 1, end)
+                        .collectList().block();
+                if (page == null || page.isEmpty()) {
+                    exhausted = true;
+                    break;
+                }
+                for (int i = page.size() - 1; i >= 0 && tokens <= tokenBudget; i--) {
+                    CachedMessage c = objectMapper.readValue(page.get(i), CachedMessage.class);
+                    tail.add(c);
+                    tokens += c.tokenCount() != null ? c.tokenCount() : tokenCounter.count(c.content());
+                }
+                if (page.size() < HISTORY_PAGE_SIZE) {
+                    exhausted = tokens <= tokenBudget;
+                    break;
+                }
+                end -= HISTORY_PAGE_SIZE;
+            }
+            boolean usable = !tail.isEmpty() && (!exhausted
+                    || Boolean.TRUE.equals(redisTemplate.hasKey(completeKey(sessionId)).block()));
+            if (usable) {
+                Collections.reverse(tail);
+                List<SessionMessage> fromCache = toMessages(sessionId, tail);
+                log.debug("Session history tail hit for {} ({} messages)", sessionId, fromCache.size());
+                return fromCache;
+            }
         } catch (Exception e) {
-            // Redis unavailable, continue without cache
+            log.debug("Redis unavailable for session history cache, using DB directly");
         }
 
-        return history;
+        return loadAndSeedTail(sessionId, tokenBudget);
     }
 
+    /**
+     * Applies a compaction to the cached list after the compaction transaction commits:
+     * drops the {@code compactedCount} oldest entries and appends the summary message.
+     */
+    public void onHistoryCompacted(UUID sessionId, int compactedCount, int keptCount,
+                                   SessionMessage summary) {
+        // Compaction moved the session to COMPACTED
+        resolutionCache.evict(sessionId);
+        afterCommit(() -> {
+            try {
+                String entry = serializeMessage(summary);
+                if (entry == null) {
+                    invalidateHistoryCache(sessionId);
+                    return;
+                }
+                redisTemplate.execute(compactScript,
+                                List.of(listKey(sessionId), completeKey(sessionId), versionKey(sessionId)),
+                                List.of(String.valueOf(compactedCount), String.valueOf(keptCount),
+                                        entry, String.valueOf(HISTORY_CACHE_TTL.toMillis()),
+                                        String.valueOf(HISTORY_VERSION_TTL.toMillis())))
+                        .subscribe(r -> { }, e -> log.debug("Failed to trim history cache for {}", sessionId));
+            } catch (Exception e) {
+                // Redis unavailable
+            }
+        });
+    }
+
+    /**
+     * Version of a session's history plus the messages appended since {@code sinceAppends}.
+     * {@code resets} changes whenever history is rewritten (compaction) or the cached list is
+     * dropped; between resets, history only grows by {@code appends}. {@code appended} holds
+     * the new messages, oldest first, only when there are at most {@code maxDelta} of them and
+     * the list still has them all; otherwise it is shorter than the delta. Null if Redis is
+     * unavailable, in which case nothing about the history can be assumed.
+     */
+    public HistoryVersion getHistoryDelta(UUID sessionId, long sinceAppends, int maxDelta) {
+        messageWriter.flush(sessionId);
+        try {
+            String result = redisTemplate.execute(deltaScript,
+                            List.of(listKey(sessionId), versionKey(sessionId)),
+                            List.of(String.valueOf(sinceAppends), String.valueOf(maxDelta)))
+                    .blockFirst(Duration.ofSeconds(1));
+            if (result == null) return null;
+            String[] parts = result.split("\n");
+            List<String> entries = List.of(parts).subList(2, parts.length);
+            List<SessionMessage> appended = entries.isEmpty() ? List.of() : deserializeHistory(sessionId, entries);
+            if (appended == null) return null;
+            return new HistoryVersion(Long.parseLong(parts[0]), Long.parseLong(parts[1]), appended);
+        } catch (Exception e) {
+            log.debug("Redis unavailable for session history version of {}", sessionId);
+            return null;
+        }
+    }
+
+    public record HistoryVersion(long resets, long appends, List<SessionMessage> appended) {}
+
     public int getTokenCount(UUID sessionId) {
+        messageWriter.flush(sessionId);
         return messageRepository.sumTokensBySessionId(sessionId);
     }
 
@@ -192,50 +453,177 @@ public class SessionManager {
             auditService.logSessionEvent("SESSION_ARCHIVE", session.getPrincipal(),
                     session.getAgentId(), sessionId, "Session archived");
             invalidateHistoryCache(sessionId);
+            resolutionCache.evict(sessionId);
         });
     }
 
+    /**
+     * Cache and gauge upkeep for sessions archived in bulk by {@link SessionPurgeScheduler},
+     * which updates the rows and writes the audit record itself. Call after the commit.
+     */
+    public void onSessionsArchived(Collection<UUID> sessionIds) {
+        for (UUID sessionId : sessionIds) {
+            metrics.sessionClosed();
+            invalidateHistoryCache(sessionId);
+            resolutionCache.evict(sessionId);
+        }
+    }
+
     private void invalidateHistoryCache(UUID sessionId) {
         try {
-            redisTemplate.delete(HISTORY_CACHE_PREFIX + sessionId).subscribe();
+            redisTemplate.execute(invalidateScript,
+                            List.of(listKey(sessionId), completeKey(sessionId), versionKey(sessionId)),
+                            List.of(String.valueOf(HISTORY_VERSION_TTL.toMillis())))
+                    .subscribe(r -> { }, e -> log.debug("Failed to invalidate history cache for {}", sessionId));
         } catch (Exception e) {
             // Redis unavailable
         }
     }
 
-    private String serializeHistory(List<SessionMessage> messages) {
+    private void appendToHistoryCache(SessionMessage msg) {
         try {
-            List<CachedMessage> cached = messages.stream()
-                    .map(m -> new CachedMessage(m.getId().toString(), m.getRole().name(),
-                            m.getContent(), m.getTokenCount(),
-                            m.getToolCalls(), m.getToolResults(), m.getMetadata(),
-                            m.getCreatedAt() != null ? m.getCreatedAt().toString() : null))
-                    .toList();
-            return objectMapper.writeValueAsString(cached);
+            String entry = serializeMessage(msg);
+            if (entry == null) {
+                invalidateHistoryCache(msg.getSessionId());
+                return;
+            }
+            UUID sessionId = msg.getSessionId();
+            redisTemplate.execute(appendScript,
+                            List.of(listKey(sessionId), completeKey(sessionId), versionKey(sessionId)),
+                            List.of(entry, String.valueOf(HISTORY_CACHE_TTL.toMillis()),
+                                    String.valueOf(HISTORY_VERSION_TTL.toMillis())))
+                    .subscribe(r -> { }, e -> onAppendFailed(sessionId, e));
         } catch (Exception e) {
-            log.debug("Failed to serialize session history for cache", e);
+            onAppendFailed(msg.getSessionId(), e);
+        }
+    }
+
+    // A list missing a committed message would be served as complete; drop it and bump the
+    // version so it is reseeded from the DB. The version bump itself may fail too, so the
+    // in-process caches keyed on it are evicted directly as well.
+    private void onAppendFailed(UUID sessionId, Throwable e) {
+        log.debug("Failed to append to history cache for {}: {}", sessionId, e.getMessage());
+        invalidateHistoryCache(sessionId);
+        invalidationBus.publish(HISTORY_CACHE_NAME, sessionId.toString());
+    }
+
+    private List<SessionMessage> loadAndSeedHistory(UUID sessionId) {
+        List<SessionMessage> history = messageRepository
+                .findBySessionIdAndCompactedFalseOrderByCreatedAtAsc(sessionId);
+        if (history.isEmpty()) return history;
+
+        // A message committed after our DB read but appended before the seed would be
+        // missing from the list; anything committed later appends onto the seeded list
+        seedHistoryCache(sessionId, history, true,
+                () -> messageRepository.countBySessionIdAndCompactedFalse(sessionId) != history.size());
+        return history;
+    }
+
+    private List<SessionMessage> loadAndSeedTail(UUID sessionId, int tokenBudget) {
+        List<SessionMessage> tail = messageRepository.findTailWithinTokenBudget(sessionId, tokenBudget);
+        if (tail.isEmpty()) return tail;
+
+        // Nothing crossed the budget, so the tail is the whole live history
+        int tokens = 0;
+        for (SessionMessage m : tail) {
+            tokens += m.getTokenCount() != null ? m.getTokenCount() : 0;
+        }
+        Instant newest = tail.get(tail.size() - 1).getCreatedAt();
+        seedHistoryCache(sessionId, tail, tokens <= tokenBudget,
+                () -> messageRepository.existsBySessionIdAndCompactedFalseAndCreatedAtAfter(sessionId, newest));
+        return tail;
+    }
+
+    private void seedHistoryCache(UUID sessionId, List<SessionMessage> messages, boolean complete,
+                                  BooleanSupplier missedAppend) {
+        try {
+            List<String> args = new ArrayList<>(messages.size() + 2);
+            args.add(String.valueOf(HISTORY_CACHE_TTL.toMillis()));
+            args.add(complete ? "1" : "0");
+            for (SessionMessage m : messages) {
+                String entry = serializeMessage(m);
+                if (entry == null) return;
+                args.add(entry);
+            }
+            redisTemplate.execute(seedScript, List.of(listKey(sessionId), completeKey(sessionId)), args)
+                    .blockLast(Duration.ofSeconds(1));
+
+            if (missedAppend.getAsBoolean()) {
+                invalidateHistoryCache(sessionId);
+            }
+        } catch (Exception e) {
+            // Redis unavailable, continue without cache
+        }
+    }
+
+    private static String listKey(UUID sessionId) {
+        return HISTORY_CACHE_PREFIX + "{" + sessionId + "}";
+    }
+
+    private static String completeKey(UUID sessionId) {
+        return listKey(sessionId) + COMPLETE_SUFFIX;
+    }
+
+    private static String versionKey(UUID sessionId) {
+        return listKey(sessionId) + VERSION_SUFFIX;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private String serializeMessage(SessionMessage m) {
+        try {
+            return objectMapper.writeValueAsString(new CachedMessage(
+                    m.getId() != null ? m.getId().toString() : null, m.getRole().name(),
+                    m.getContent(), m.getTokenCount(),
+                    m.getToolCalls(), m.getToolResults(), m.getMetadata(),
+                    m.getCreatedAt() != null ? m.getCreatedAt().toString() : null));
+        } catch (Exception e) {
+            log.debug("Failed to serialize session message for cache", e);
             return null;
         }
     }
 
-    private List<SessionMessage> deserializeHistory(UUID sessionId, String json) {
+    private List<SessionMessage> deserializeHistory(UUID sessionId, List<String> entries) {
         try {
-            List<CachedMessage> cached = objectMapper.readValue(json, CACHED_MSG_LIST_TYPE);
-            return cached.stream().map(c -> {
-                SessionMessage msg = new SessionMessage(sessionId,
-                        MessageRole.valueOf(c.role()), c.content());
-                msg.setTokenCount(c.tokenCount());
-                msg.setToolCalls(c.toolCalls());
-                msg.setToolResults(c.toolResults());
-                msg.setMetadata(c.metadata());
-                return msg;
-            }).toList();
+            List<CachedMessage> cached = new ArrayList<>(entries.size());
+            for (String entry : entries) {
+                cached.add(objectMapper.readValue(entry, CachedMessage.class));
+            }
+            return toMessages(sessionId, cached);
         } catch (Exception e) {
             log.debug("Failed to deserialize session history from cache", e);
             return null;
         }
     }
 
+    private static List<SessionMessage> toMessages(UUID sessionId, List<CachedMessage> cached) {
+        List<SessionMessage> messages = new ArrayList<>(cached.size());
+        Set<String> seenIds = new HashSet<>();
+        for (CachedMessage c : cached) {
+            // A message can be appended twice if it raced with seeding; keep the first copy
+            if (c.id() != null && !seenIds.add(c.id())) continue;
+            SessionMessage msg = new SessionMessage(sessionId, MessageRole.valueOf(c.role()), c.content());
+            if (c.id() != null) msg.setId(UUID.fromString(c.id()));
+            msg.setTokenCount(c.tokenCount());
+            msg.setToolCalls(c.toolCalls());
+            msg.setToolResults(c.toolResults());
+            msg.setMetadata(c.metadata());
+            messages.add(msg);
+        }
+        return messages;
+    }
+
     private record CachedMessage(String id, String role, String content,
                                   Integer tokenCount, String toolCalls,
                                   String toolResults, String metadata,
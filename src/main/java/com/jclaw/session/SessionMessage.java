@@ -1,5 +1,6 @@
 package com.jclaw.session;
 
+import com.jclaw.config.UuidV7Id;
 import jakarta.persistence.*;
 import java.time.Instant;
 import java.util.UUID;
@@ -9,7 +10,7 @@ import java.util.UUID;
 public class SessionMessage {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.UUID)
+    @UuidV7Id
     private UUID id;
 
     @Column(name = "session_id", nullable = false)
@@ -40,6 +41,10 @@ public class SessionMessage {
     @Column(name = "is_compacted", nullable = false)
     private boolean compacted = false;
 
+    // Rolling compaction summary; folded into the next summary instead of re-read as chat
+    @Column(name = "is_summary", nullable = false)
+    private boolean summary = false;
+
     public SessionMessage() {}
 
     public SessionMessage(UUID sessionId, MessageRole role, String content) {
@@ -76,4 +81,7 @@ public class SessionMessage {
 
     public boolean isCompacted() { return compacted; }
     public void setCompacted(boolean compacted) { this.compacted = compacted; }
+
+    public boolean isSummary() { return summary; }
+    public void setSummary(boolean summary) { this.summary = summary; }
 }
@@ -2,10 +2,12 @@ package com.jclaw.session;
 
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -16,12 +18,48 @@ public interface SessionMessageRepository extends JpaRepository<SessionMessage,
 
     List<SessionMessage> findBySessionIdOrderByCreatedAtDesc(UUID sessionId, Pageable pageable);
 
+    /**
+     * Newest non-compacted messages whose running token total, counted from the newest,
+     * stays within {@code tokenBudget}, plus the message that crosses it; oldest first.
+     * The running sum is computed over idx_messages_live_tail alone, so message content
+     * is only read for the rows returned, and joining on created_at too keeps that read to
+     * the partitions the tail falls in.
+     */
+    @Query(value = """
+            SELECT m.* FROM session_messages m
+            JOIN (
+                SELECT id, created_at FROM (
+                    SELECT id, created_at, token_count,
+                           SUM(COALESCE(token_count, 0))
+                               OVER (ORDER BY created_at DESC, id DESC ROWS UNBOUNDED PRECEDING) AS running
+                    FROM session_messages
+                    WHERE session_id = ?1 AND is_compacted = false
+                ) w
+                WHERE w.running - COALESCE(w.token_count, 0) <= ?2
+            ) t ON t.id = m.id AND t.created_at = m.created_at
+            ORDER BY m.created_at ASC, m.id ASC
+            """, nativeQuery = true)
+    List<SessionMessage> findTailWithinTokenBudget(UUID sessionId, int tokenBudget);
+
+    boolean existsBySessionIdAndCompactedFalseAndCreatedAtAfter(UUID sessionId, Instant after);
+
     @Query("SELECT COALESCE(SUM(m.tokenCount), 0) FROM SessionMessage m WHERE m.sessionId = ?1 AND m.compacted = false")
     int sumTokensBySessionId(UUID sessionId);
 
+    // Single UPDATE for the whole batch; returns how many were still uncompacted
+    @Modifying
+    @Query("UPDATE SessionMessage m SET m.compacted = true " +
+            "WHERE m.sessionId = ?1 AND m.id IN ?2 AND m.compacted = false")
+    int markCompacted(UUID sessionId, Collection<UUID> messageIds);
+
     long deleteBySessionIdAndCreatedAtBefore(UUID sessionId, Instant cutoff);
 
-    long deleteBySessionId(UUID sessionId);
+    // Bulk DELETE rather than the derived load-then-remove of every message entity
+    @Modifying
+    @Query("DELETE FROM SessionMessage m WHERE m.sessionId = ?1")
+    int deleteBySessionId(UUID sessionId);
 
     int countBySessionId(UUID sessionId);
+
+    long countBySessionIdAndCompactedFalse(UUID sessionId);
 }
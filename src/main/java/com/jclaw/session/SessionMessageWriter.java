@@ -0,0 +1,315 @@
+package com.jclaw.session;
+
+import com.jclaw.config.JclawProperties;
+import com.jclaw.config.UuidV7;
+import com.jclaw.observability.JclawMetrics;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.BiConsumer;
+
+/**
+ * Write path for session messages and the session counters they move.
+ *
+ * <p>Counters are applied with one atomic {@code UPDATE ... RETURNING} instead of a
+ * read-modify-write of the {@link Session} entity. With {@code jclaw.session.write-behind}
+ * on, messages are also queued and written by a background flusher every
+ * {@code write-flush-interval-ms}: a JDBC batch insert plus a single counter UPDATE for all
+ * sessions in the batch, each session's counters coalesced. Session reads call
+ * {@link #flush(UUID)} first, so a session's own pending writes are visible to its next
+ * read on this instance. Only on this instance: with the shared inbound queue
+ * ({@code jclaw.channel.queue.enabled}) a session's next turn may run elsewhere, so the two
+ * can't be enabled together. A message submitted inside a transaction is queued only once that
+ * transaction commits, so a rolled-back turn writes nothing; until then it is not visible
+ * even to reads in the same transaction.
+ */
+@Component
+public class SessionMessageWriter {
+
+    private static final Logger log = LoggerFactory.getLogger(SessionMessageWriter.class);
+
+    private static final String INSERT_SQL = """
+            INSERT INTO session_messages (id, session_id, role, content, token_count, tool_calls,
+                tool_results, metadata, created_at, is_compacted, is_summary)
+            VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, false, ?)
+            """;
+
+    // One statement for any number of sessions; RETURNING feeds the compaction trigger
+    private static final String COUNTERS_SQL = """
+            UPDATE sessions s SET message_count = s.message_count + v.messages,
+                total_tokens = s.total_tokens + v.tokens,
+                last_active_at = GREATEST(s.last_active_at, v.last_active)
+            FROM unnest(?::uuid[], ?::int[], ?::int[], ?::timestamptz[]) AS v(id, messages, tokens, last_active)
+            WHERE s.id = v.id
+            RETURNING s.id, s.status, s.total_tokens
+            """;
+
+    /** A session's status and live token total right after its counters were applied. */
+    public record SessionTotals(UUID sessionId, SessionStatus status, int totalTokens) {}
+
+    record Counters(int messages, int tokens, Instant lastActive) {
+        Counters plus(Counters other) {
+            return new Counters(messages + other.messages, tokens + other.tokens,
+                    lastActive.isAfter(other.lastActive) ? lastActive : other.lastActive);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JclawMetrics metrics;
+    private final boolean writeBehind;
+    private final int batchSize;
+    private final long flushIntervalMs;
+    private final BlockingQueue<SessionMessage> queue;
+    // Queued-but-unwritten messages per session; flush(id) is a no-op for sessions not in here
+    private final Map<UUID, Integer> pending = new ConcurrentHashMap<>();
+    private final ReentrantLock writeLock = new ReentrantLock();
+    private volatile BiConsumer<List<SessionMessage>, List<SessionTotals>> listener = (m, t) -> { };
+
+    private volatile boolean running;
+    private Thread flusher;
+
+    public SessionMessageWriter(JdbcTemplate jdbcTemplate, PlatformTransactionManager transactionManager,
+                                JclawProperties properties, JclawMetrics metrics) {
+        JclawProperties.SessionProperties session = properties.getSession();
+        if (session.isWriteBehind() && properties.getChannel().getQueue().isEnabled()) {
+            throw new IllegalStateException("jclaw.session.write-behind requires "
+                    + "jclaw.channel.queue.enabled=false: queued messages are only visible on the "
+                    + "instance that wrote them, and the shared queue may run a session's next turn elsewhere");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // flush() runs on reader threads; a batch must never join or roll back with their transaction
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.metrics = metrics;
+        this.writeBehind = session.isWriteBehind();
+        this.batchSize = Math.max(1, session.getWriteBatchSize());
+        this.flushIntervalMs = Math.max(1, session.getWriteFlushIntervalMs());
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, session.getWriteQueueCapacity()));
+        metrics.registerSessionWriteQueue(queue);
+    }
+
+    @PostConstruct
+    void start() {
+        if (!writeBehind) return;
+        running = true;
+        flusher = new Thread(this::flushLoop, "session-writer");
+        flusher.setDaemon(true);
+        flusher.start();
+        log.info("Session write-behind started: batchSize={} flushIntervalMs={}", batchSize, flushIntervalMs);
+    }
+
+    @PreDestroy
+    void stop() {
+        if (!running) return;
+        running = false;
+        flusher.interrupt();
+        try {
+            flusher.join(10_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        drain();
+    }
+
+    /**
+     * Installed by {@link SessionManager}: called after each batch commits with the written
+     * messages, in submission order, and the resulting session totals.
+     */
+    void setListener(BiConsumer<List<SessionMessage>, List<SessionTotals>> listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Queues a message for the next batch. Returns false when write-behind is off or the
+     * queue is full; the caller then writes the message itself. Inside a transaction the
+     * message is queued after commit and dropped on rollback; if the queue is full by then
+     * it is written right away in its own transaction.
+     */
+    public boolean submit(SessionMessage msg) {
+        if (!running) return false;
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            msg.setId(UuidV7.next());
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    if (!enqueue(msg)) writeSession(List.of(msg));
+                }
+            });
+            return true;
+        }
+        if (!enqueue(msg)) {
+            msg.setId(null);
+            return false;
+        }
+        return true;
+    }
+
+    private boolean enqueue(SessionMessage msg) {
+        UUID sessionId = msg.getSessionId();
+        if (msg.getId() == null) msg.setId(UuidV7.next());
+        pending.merge(sessionId, 1, Integer::sum);
+        if (!running || !queue.offer(msg)) {
+            release(sessionId, 1);
+            return false;
+        }
+        return true;
+    }
+
+    /** Writes everything queued if the session has pending messages; returns once they are committed. */
+    public void flush(UUID sessionId) {
+        if (pending.containsKey(sessionId)) drain();
+    }
+
+    /**
+     * Applies one session's counters in the caller's transaction. Returns null when the
+     * session does not exist.
+     */
+    public SessionTotals addCounters(UUID sessionId, int messages, int tokens, Instant lastActive) {
+        List<SessionTotals> totals = addCounters(Map.of(sessionId, new Counters(messages, tokens, lastActive)));
+        return totals.isEmpty() ? null : totals.get(0);
+    }
+
+    int pendingSessions() {
+        return pending.size();
+    }
+
+    private void flushLoop() {
+        while (running) {
+            try {
+                // Counters of messages arriving within one interval are coalesced into one update
+                Thread.sleep(flushIntervalMs);
+                drain();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (Exception e) {
+                log.error("Session writer loop failed", e);
+            }
+        }
+    }
+
+    private void drain() {
+        writeLock.lock();
+        try {
+            List<SessionMessage> batch = new ArrayList<>(batchSize);
+            while (queue.drainTo(batch, batchSize) > 0) {
+                write(batch);
+                batch = new ArrayList<>(batchSize);
+            }
+        } finally {
+            writeLock.unlock();
+        }
+    }
+
+    private void write(List<SessionMessage> batch) {
+        long start = System.nanoTime();
+        try {
+            List<SessionTotals> totals = transactionTemplate.execute(status -> insertAndCount(batch));
+            metrics.recordSessionWriteBatch(batch.size(), System.nanoTime() - start, "success");
+            listener.accept(batch, totals);
+        } catch (Exception e) {
+            metrics.recordSessionWriteBatch(batch.size(), System.nanoTime() - start, "failure");
+            log.warn("Session message batch of {} failed, retrying per session: {}", batch.size(), e.getMessage());
+            // One bad session (e.g. purged meanwhile) must not sink the others' messages
+            for (List<SessionMessage> group : bySession(batch).values()) {
+                writeSession(group);
+            }
+        } finally {
+            for (SessionMessage m : batch) {
+                release(m.getSessionId(), 1);
+            }
+        }
+    }
+
+    private void writeSession(List<SessionMessage> messages) {
+        try {
+            List<SessionTotals> totals = transactionTemplate.execute(status -> insertAndCount(messages));
+            listener.accept(messages, totals);
+        } catch (Exception e) {
+            metrics.recordSessionWritesDropped(messages.size());
+            log.error("Dropped {} messages for session {}", messages.size(), messages.get(0).getSessionId(), e);
+        }
+    }
+
+    private List<SessionTotals> insertAndCount(List<SessionMessage> messages) {
+        jdbcTemplate.batchUpdate(INSERT_SQL, messages, messages.size(), (ps, m) -> {
+            ps.setObject(1, m.getId());
+            ps.setObject(2, m.getSessionId());
+            ps.setString(3, m.getRole().name());
+            ps.setString(4, m.getContent());
+            ps.setObject(5, m.getTokenCount());
+            // jsonb from text relies on stringtype=unspecified, same as the JPA mapping
+            ps.setString(6, m.getToolCalls());
+            ps.setString(7, m.getToolResults());
+            ps.setString(8, m.getMetadata() != null ? m.getMetadata() : "{}");
+            ps.setTimestamp(9, Timestamp.from(m.getCreatedAt()));
+            ps.setBoolean(10, m.isSummary());
+        });
+
+        Map<UUID, Counters> counters = new LinkedHashMap<>();
+        for (SessionMessage m : messages) {
+            int tokens = m.getTokenCount() != null ? m.getTokenCount() : 0;
+            counters.merge(m.getSessionId(), new Counters(1, tokens, m.getCreatedAt()), Counters::plus);
+        }
+        return addCounters(counters);
+    }
+
+    private List<SessionTotals> addCounters(Map<UUID, Counters> counters) {
+        int n = counters.size();
+        UUID[] ids = new UUID[n];
+        Integer[] messages = new Integer[n];
+        Integer[] tokens = new Integer[n];
+        Timestamp[] lastActive = new Timestamp[n];
+        int i = 0;
+        for (Map.Entry<UUID, Counters> e : counters.entrySet()) {
+            ids[i] = e.getKey();
+            messages[i] = e.getValue().messages();
+            tokens[i] = e.getValue().tokens();
+            lastActive[i] = Timestamp.from(e.getValue().lastActive());
+            i++;
+        }
+        return jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement(COUNTERS_SQL);
+            ps.setArray(1, con.createArrayOf("uuid", ids));
+            ps.setArray(2, con.createArrayOf("int4", messages));
+            ps.setArray(3, con.createArrayOf("int4", tokens));
+            ps.setArray(4, con.createArrayOf("timestamptz", lastActive));
+            return ps;
+        }, (rs, row) -> new SessionTotals(rs.getObject(1, UUID.class),
+                SessionStatus.valueOf(rs.getString(2)), rs.getInt(3)));
+    }
+
+    private static Map<UUID, List<SessionMessage>> bySession(List<SessionMessage> batch) {
+        Map<UUID, List<SessionMessage>> groups = new LinkedHashMap<>();
+        for (SessionMessage m : batch) {
+            groups.computeIfAbsent(m.getSessionId(), id -> new ArrayList<>()).add(m);
+        }
+        return groups;
+    }
+
+    private void release(UUID sessionId, int count) {
+        pending.computeIfPresent(sessionId, (id, n) -> n > count ? n - count : null);
+    }
+}
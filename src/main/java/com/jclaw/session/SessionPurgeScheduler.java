@@ -1,76 +1,157 @@
 package com.jclaw.session;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jclaw.audit.AuditEvent;
 import com.jclaw.audit.AuditRepository;
+import com.jclaw.audit.AuditService;
 import com.jclaw.config.JclawProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
 import java.time.Instant;
 import java.time.temporal.ChronoUnit;
 import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
 
+/**
+ * Retention jobs. Archiving idle sessions and purging expired ones walk the matching
+ * sessions in (last_active_at, id) keyset order, {@code retentionChunkSize} at a time: each
+ * chunk is a few set-based statements in its own transaction, committed together with a
+ * {@link JobCheckpointStore} checkpoint, so an interrupted run resumes where it stopped.
+ */
 @Component
 public class SessionPurgeScheduler {
 
     private static final Logger log = LoggerFactory.getLogger(SessionPurgeScheduler.class);
 
-    private final SessionRepository sessionRepository;
-    private final SessionMessageRepository messageRepository;
+    static final String ARCHIVE_JOB = "archive-idle-sessions";
+    static final String PURGE_JOB = "purge-expired-sessions";
+
+    // SKIP LOCKED: a chunk never waits on a session that is mid-turn or claimed by another instance
+    private static final String IDLE_CHUNK_SQL = """
+            SELECT id, last_active_at FROM sessions
+            WHERE status IN ('ACTIVE', 'COMPACTED') AND last_active_at < ?
+              AND (last_active_at, id) > (?, ?)
+            ORDER BY last_active_at, id
+            LIMIT ?
+            FOR UPDATE SKIP LOCKED
+            """;
+
+    private static final String ARCHIVE_SQL = """
+            UPDATE sessions SET status = 'ARCHIVED'
+            WHERE id = ANY(?::uuid[]) AND status IN ('ACTIVE', 'COMPACTED')
+            RETURNING id
+            """;
+
+    private static final String EXPIRED_CHUNK_SQL = """
+            SELECT id, last_active_at FROM sessions
+            WHERE status = 'ARCHIVED' AND last_active_at < ?
+              AND (last_active_at, id) > (?, ?)
+            ORDER BY last_active_at, id
+            LIMIT ?
+            FOR UPDATE SKIP LOCKED
+            """;
+
+    private static final String DELETE_MESSAGES_SQL = "DELETE FROM session_messages WHERE session_id = ANY(?::uuid[])";
+
+    private static final String PURGE_SQL = """
+            UPDATE sessions SET status = 'PURGED'
+            WHERE id = ANY(?::uuid[]) AND status = 'ARCHIVED'
+            RETURNING id
+            """;
+
+    private record SessionKey(UUID id, Instant lastActiveAt) {}
+
+    /** Applies a chunk's statements to the selected sessions; returns the ids it changed. */
+    private interface ChunkAction {
+        List<UUID> apply(UUID[] sessionIds);
+    }
+
+    private record ChunkResult(JobCheckpointStore.Checkpoint next, List<UUID> changed, boolean last) {}
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final JobCheckpointStore checkpoints;
     private final SessionManager sessionManager;
     private final AuditRepository auditRepository;
+    private final AuditService auditService;
+    private final SessionResolutionCache resolutionCache;
+    private final PartitionManager partitionManager;
+    private final ObjectMapper objectMapper;
     private final JclawProperties properties;
 
-    public SessionPurgeScheduler(SessionRepository sessionRepository,
-                                SessionMessageRepository messageRepository,
+    public SessionPurgeScheduler(JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                JobCheckpointStore checkpoints,
                                 SessionManager sessionManager,
                                 AuditRepository auditRepository,
+                                AuditService auditService,
+                                SessionResolutionCache resolutionCache,
+                                PartitionManager partitionManager,
+                                ObjectMapper objectMapper,
                                 JclawProperties properties) {
-        this.sessionRepository = sessionRepository;
-        this.messageRepository = messageRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.checkpoints = checkpoints;
         this.sessionManager = sessionManager;
         this.auditRepository = auditRepository;
+        this.auditService = auditService;
+        this.resolutionCache = resolutionCache;
+        this.partitionManager = partitionManager;
+        this.objectMapper = objectMapper;
         this.properties = properties;
     }
 
     @Scheduled(cron = "${jclaw.session.purge-cron:0 0 3 * * *}")
-    @Transactional
     public void purgeExpiredSessions() {
         int retentionDays = properties.getSecurity().getDataRetention().getSessionTranscriptsDays();
-        Instant cutoff = Instant.now().minus(retentionDays, ChronoUnit.DAYS);
+        JobCheckpointStore.Checkpoint checkpoint = startOrResume(PURGE_JOB,
+                Instant.now().minus(retentionDays, ChronoUnit.DAYS));
 
-        List<Session> expiredSessions = sessionRepository
-                .findByStatusAndLastActiveAtBefore(SessionStatus.ARCHIVED, cutoff);
+        // Whole months past retention go first; the per-session deletes below then only
+        // touch rows in the partitions that are kept
+        int droppedPartitions = partitionManager.dropSessionMessagePartitionsBefore(checkpoint.cutoff());
 
-        for (Session session : expiredSessions) {
-            // Delete session messages before purging the session
-            messageRepository.deleteBySessionId(session.getId());
-            session.setStatus(SessionStatus.PURGED);
-            sessionRepository.save(session);
-        }
+        long purged = runChunked(checkpoint, EXPIRED_CHUNK_SQL, ids -> {
+            jdbcTemplate.update(con -> arrayStatement(con, DELETE_MESSAGES_SQL, ids));
+            return jdbcTemplate.query(con -> arrayStatement(con, PURGE_SQL, ids),
+                    (rs, row) -> rs.getObject(1, UUID.class));
+        }, AuditEvent.TYPE_SESSION_PURGE, "Purged expired sessions",
+                changed -> changed.forEach(resolutionCache::evict));
 
-        log.info("Purged {} expired sessions (cutoff: {} days)", expiredSessions.size(), retentionDays);
+        log.info("Purged {} expired sessions and dropped {} message partitions (cutoff: {} days)",
+                purged, droppedPartitions, retentionDays);
     }
 
     @Scheduled(cron = "${jclaw.session.archive-idle-cron:0 0 * * * *}")
-    @Transactional
     public void archiveIdleSessions() {
         int idleMinutes = properties.getSession().getIdleTimeoutMinutes();
-        Instant cutoff = Instant.now().minus(idleMinutes, ChronoUnit.MINUTES);
+        JobCheckpointStore.Checkpoint checkpoint = startOrResume(ARCHIVE_JOB,
+                Instant.now().minus(idleMinutes, ChronoUnit.MINUTES));
 
-        // Archive both ACTIVE and COMPACTED sessions that have gone idle
-        List<Session> idleSessions = sessionRepository
-                .findByStatusInAndLastActiveAtBefore(
-                        List.of(SessionStatus.ACTIVE, SessionStatus.COMPACTED), cutoff);
-
-        for (Session session : idleSessions) {
-            sessionManager.archiveSession(session.getId());
-        }
+        // Both ACTIVE and COMPACTED sessions that have gone idle
+        long archived = runChunked(checkpoint, IDLE_CHUNK_SQL,
+                ids -> jdbcTemplate.query(con -> arrayStatement(con, ARCHIVE_SQL, ids),
+                        (rs, row) -> rs.getObject(1, UUID.class)),
+                AuditEvent.TYPE_SESSION_ARCHIVE, "Archived idle sessions", sessionManager::onSessionsArchived);
 
-        if (!idleSessions.isEmpty()) {
-            log.info("Archived {} idle sessions (idle > {} min)", idleSessions.size(), idleMinutes);
+        if (archived > 0) {
+            log.info("Archived {} idle sessions (idle > {} min)", archived, idleMinutes);
         }
     }
 
@@ -80,9 +161,11 @@ public class SessionPurgeScheduler {
         int retentionDays = properties.getSecurity().getDataRetention().getAuditLogDays();
         Instant cutoff = Instant.now().minus(retentionDays, ChronoUnit.DAYS);
 
+        int droppedPartitions = partitionManager.dropAuditPartitionsBefore(cutoff);
         long deleted = auditRepository.deleteByTimestampBefore(cutoff);
-        if (deleted > 0) {
-            log.info("Purged {} audit events older than {} days", deleted, retentionDays);
+        if (deleted > 0 || droppedPartitions > 0) {
+            log.info("Purged {} audit events and dropped {} partitions older than {} days",
+                    deleted, droppedPartitions, retentionDays);
         }
     }
 
@@ -97,4 +180,80 @@ public class SessionPurgeScheduler {
             log.info("Purged {} content filter events older than {} days", deleted, retentionDays);
         }
     }
+
+    private JobCheckpointStore.Checkpoint startOrResume(String job, Instant cutoff) {
+        return checkpoints.findOpen(job)
+                .map(open -> {
+                    log.info("Resuming {} after {} sessions (cutoff {})", job, open.processed(), open.cutoff());
+                    return open;
+                })
+                .orElseGet(() -> JobCheckpointStore.Checkpoint.start(job, cutoff));
+    }
+
+    /**
+     * Runs {@code action} chunk by chunk from {@code checkpoint} until the keyset is exhausted,
+     * then marks the job complete. {@code afterCommit} and one aggregated audit record follow
+     * each committed chunk. Returns the number of sessions changed.
+     */
+    private long runChunked(JobCheckpointStore.Checkpoint checkpoint, String chunkSql, ChunkAction action,
+                            String auditType, String auditAction, Consumer<List<UUID>> afterCommit) {
+        int chunkSize = Math.max(1, properties.getSession().getRetentionChunkSize());
+        long pauseMs = properties.getSession().getRetentionChunkPauseMs();
+        long changed = 0;
+
+        while (true) {
+            JobCheckpointStore.Checkpoint from = checkpoint;
+            ChunkResult result = transactionTemplate.execute(status -> {
+                List<SessionKey> keys = jdbcTemplate.query(chunkSql,
+                        (rs, row) -> new SessionKey(rs.getObject(1, UUID.class), rs.getTimestamp(2).toInstant()),
+                        Timestamp.from(from.cutoff()), Timestamp.from(from.lastActiveAt()), from.lastId(), chunkSize);
+                if (keys.isEmpty()) return new ChunkResult(from, List.of(), true);
+
+                List<UUID> done = action.apply(keys.stream().map(SessionKey::id).toArray(UUID[]::new));
+                SessionKey lastKey = keys.get(keys.size() - 1);
+                JobCheckpointStore.Checkpoint next = from.advance(lastKey.lastActiveAt(), lastKey.id(), done.size());
+                checkpoints.save(next);
+                return new ChunkResult(next, done, keys.size() < chunkSize);
+            });
+
+            checkpoint = result.next();
+            if (!result.changed().isEmpty()) {
+                changed += result.changed().size();
+                afterCommit.accept(result.changed());
+                auditChunk(auditType, auditAction, checkpoint.cutoff(), result.changed());
+            }
+            if (result.last()) break;
+
+            if (pauseMs > 0) {
+                try {
+                    Thread.sleep(pauseMs);
+                } catch (InterruptedException e) {
+                    // Shutting down; the open checkpoint resumes the job on the next run
+                    Thread.currentThread().interrupt();
+                    return changed;
+                }
+            }
+        }
+        checkpoints.complete(checkpoint.jobName());
+        return changed;
+    }
+
+    private void auditChunk(String eventType, String action, Instant cutoff, List<UUID> sessionIds) {
+        String details;
+        try {
+            details = objectMapper.writeValueAsString(Map.of(
+                    "count", sessionIds.size(), "cutoff", cutoff.toString(), "sessionIds", sessionIds));
+        } catch (JsonProcessingException e) {
+            details = "{\"count\": " + sessionIds.size() + "}";
+        }
+        auditService.log(AuditEvent.of(eventType, action)
+                .withPrincipal("system")
+                .withDetails(details));
+    }
+
+    private static PreparedStatement arrayStatement(Connection con, String sql, UUID[] ids) throws SQLException {
+        PreparedStatement ps = con.prepareStatement(sql);
+        ps.setArray(1, con.createArrayOf("uuid", ids));
+        return ps;
+    }
 }
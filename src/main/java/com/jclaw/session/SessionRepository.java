@@ -1,6 +1,9 @@
 package com.jclaw.session;
 
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.stereotype.Repository;
 
 import java.time.Instant;
@@ -38,4 +41,23 @@ public interface SessionRepository extends JpaRepository<Session, UUID> {
 
     List<Session> findByStatusInAndLastActiveAtBefore(
             java.util.Collection<SessionStatus> statuses, Instant cutoff);
+
+    // Served by idx_sessions_status_tokens; total_tokens counts only non-compacted messages
+    @Query("SELECT s.id FROM Session s WHERE s.status IN ?1 AND s.totalTokens > ?2")
+    List<UUID> findIdsByStatusInAndTotalTokensGreaterThan(
+            java.util.Collection<SessionStatus> statuses, int tokens, Pageable pageable);
+
+    /**
+     * Claims a compaction: moves the session from one of {@code expected} to {@code next} and
+     * bumps its compaction version, but only if the version still equals {@code version}.
+     * {@code tokensRemoved} (compacted minus summary tokens) is taken off the live total.
+     * Returns 0 when another compaction or a status change got there first.
+     */
+    @Modifying
+    @Query("UPDATE Session s SET s.compactionVersion = s.compactionVersion + 1, s.status = ?4, " +
+            "s.totalTokens = s.totalTokens - ?5 " +
+            "WHERE s.id = ?1 AND s.compactionVersion = ?2 AND s.status IN ?3")
+    int advanceCompaction(UUID id, long version, java.util.Collection<SessionStatus> expected,
+                          SessionStatus next,
+                          int tokensRemoved);
 }
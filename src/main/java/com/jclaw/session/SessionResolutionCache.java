@@ -0,0 +1,102 @@
+package com.jclaw.session;
+
+import com.jclaw.config.CacheInvalidationBus;
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Short-TTL near-cache from routing identity to the session {@link SessionManager#resolveSession}
+ * found or created for it, so repeat turns skip the lookup query.
+ *
+ * <p>Entries are evicted by session id on every instance through the
+ * {@link CacheInvalidationBus} whenever the session's status changes (archive, compaction,
+ * purge). Cached sessions are shared and must not be modified.
+ */
+@Component
+public class SessionResolutionCache {
+
+    static final String CACHE_NAME = "session-route";
+    private static final int MAX_ENTRIES = 100_000;
+
+    /** Fields that are not part of the lookup for a scope are null. */
+    record RouteKey(String agentId, String principal, String channelType, SessionScope scope,
+                    String conversationId) {}
+
+    private record CachedSession(Session session, long loadedAtMillis) {}
+
+    private final CacheInvalidationBus invalidationBus;
+    private final JclawMetrics metrics;
+    private final long ttlMillis;
+    private final Map<RouteKey, CachedSession> routes = new ConcurrentHashMap<>();
+    private final Map<UUID, RouteKey> keysBySession = new ConcurrentHashMap<>();
+    // Bumped on every eviction so a lookup that raced with a status change is not cached
+    private final AtomicLong cacheEpoch = new AtomicLong();
+
+    public SessionResolutionCache(CacheInvalidationBus invalidationBus, JclawMetrics metrics,
+                                  JclawProperties properties) {
+        this.invalidationBus = invalidationBus;
+        this.metrics = metrics;
+        this.ttlMillis = properties.getCache().getSessionRouteTtlSeconds() * 1000L;
+        invalidationBus.register(CACHE_NAME, this::evictLocal, this::evictAllLocal);
+    }
+
+    Session get(RouteKey key) {
+        CachedSession cached = routes.get(key);
+        boolean hit = cached != null && System.currentTimeMillis() - cached.loadedAtMillis() < ttlMillis;
+        metrics.recordCacheAccess(CACHE_NAME, hit);
+        return hit ? cached.session() : null;
+    }
+
+    /** Epoch to pass to {@link #put}; read before the lookup it guards. */
+    long epoch() {
+        return cacheEpoch.get();
+    }
+
+    void put(RouteKey key, Session session, long epoch) {
+        if (ttlMillis <= 0) return;
+        if (routes.size() >= MAX_ENTRIES) prune();
+        routes.put(key, new CachedSession(session, System.currentTimeMillis()));
+        keysBySession.put(session.getId(), key);
+        if (cacheEpoch.get() != epoch) {
+            // An eviction happened while we were looking up; our copy may be stale
+            routes.remove(key);
+            keysBySession.remove(session.getId());
+        }
+    }
+
+    /**
+     * Drops the session's route on every instance (after commit when called inside a
+     * transaction).
+     */
+    public void evict(UUID sessionId) {
+        invalidationBus.publish(CACHE_NAME, sessionId.toString());
+    }
+
+    private void evictLocal(String sessionId) {
+        cacheEpoch.incrementAndGet();
+        RouteKey key = keysBySession.remove(UUID.fromString(sessionId));
+        if (key != null) routes.remove(key);
+    }
+
+    private void evictAllLocal() {
+        cacheEpoch.incrementAndGet();
+        routes.clear();
+        keysBySession.clear();
+    }
+
+    private void prune() {
+        long now = System.currentTimeMillis();
+        routes.entrySet().removeIf(e -> {
+            boolean expired = now - e.getValue().loadedAtMillis() >= ttlMillis;
+            if (expired) keysBySession.remove(e.getValue().session().getId());
+            return expired;
+        });
+        if (routes.size() >= MAX_ENTRIES) evictAllLocal();
+    }
+}
@@ -18,6 +18,7 @@ import jakarta.annotation.PostConstruct;
 import java.util.*;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.stream.Collectors;
 
 @Component
@@ -26,6 +27,8 @@ public class ToolRegistry {
     private static final Logger log = LoggerFactory.getLogger(ToolRegistry.class);
 
     private final Map<String, ToolEntry> tools = new ConcurrentHashMap<>();
+    // Bumped on every registration so compiled agent profiles know their tool list is stale
+    private final AtomicLong version = new AtomicLong();
     private final ToolPolicy toolPolicy;
     private final AgentConfigService agentConfigService;
     private final AuditService auditService;
@@ -61,19 +64,40 @@ public class ToolRegistry {
                             RiskLevel riskLevel, boolean requiresApproval,
                             ToolCallback callback) {
         tools.put(name, new ToolEntry(name, description, riskLevel, requiresApproval, callback));
+        version.incrementAndGet();
         log.info("Registered tool: {} (risk={}, requiresApproval={})", name, riskLevel, requiresApproval);
     }
 
     public List<ToolCallback> resolveTools(AgentContext context) {
         AgentConfig config = agentConfigService.getAgentConfig(context.agentId());
+        return bindTools(allowedTools(config), context);
+    }
+
+    /**
+     * Tools the policy permits for the given config, without per-request wrapping.
+     */
+    public List<ToolEntry> allowedTools(AgentConfig config) {
         return tools.values().stream()
                 .filter(entry -> toolPolicy.isToolAllowed(
                         entry.name(), entry.riskLevel(), entry.requiresApproval(), config))
-                .map(entry -> new AuditedToolCallback(
+                .toList();
+    }
+
+    /**
+     * Wraps already-permitted tools with audit attribution for one request.
+     */
+    public List<ToolCallback> bindTools(List<ToolEntry> entries, AgentContext context) {
+        return entries.stream()
+                .map(entry -> (ToolCallback) new AuditedToolCallback(
                         entry.callback(), entry.name(), auditService, metrics, context))
                 .collect(Collectors.toList());
     }
 
+    /** Changes whenever a tool is registered. */
+    public long version() {
+        return version.get();
+    }
+
     public Optional<ToolEntry> getTool(String name) {
         return Optional.ofNullable(tools.get(name));
     }
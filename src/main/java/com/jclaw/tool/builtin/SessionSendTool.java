@@ -81,8 +81,8 @@ public class SessionSendTool implements ToolCallback {
                 return "{\"error\": \"Message blocked by content filter\"}";
             }
 
-            int tokens = labeledMessage.length() / 4;
-            sessionManager.addMessage(sessionId, MessageRole.USER, labeledMessage, tokens);
+            // Token count is computed by SessionManager when the message is stored
+            sessionManager.addMessage(sessionId, MessageRole.USER, labeledMessage, null);
             log.info("Cross-session message sent to session={} from agent={}", sessionId, senderAgent);
             return String.format("{\"status\":\"delivered\",\"sessionId\":\"%s\"}", sessionId);
         } catch (IllegalArgumentException e) {
@@ -0,0 +1,6 @@
+-- V10__session_history_tail_index.sql
+-- Covers the token-budgeted history tail query: the running token sum over a session's
+-- live messages is an index-only scan, newest first.
+
+CREATE INDEX idx_messages_live_tail ON session_messages(session_id, created_at DESC, id DESC)
+    INCLUDE (token_count) WHERE is_compacted = false;
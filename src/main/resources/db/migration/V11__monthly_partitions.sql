@@ -0,0 +1,111 @@
+-- V11__monthly_partitions.sql
+-- session_messages and audit_log become range-partitioned by month, so retention can
+-- detach and drop whole partitions instead of running large DELETEs. PartitionManager
+-- creates partitions ahead of time through jclaw_create_monthly_partition; the DEFAULT
+-- partitions only catch rows outside every monthly range and should stay empty.
+-- Primary keys must include the partition key. Existing rows are copied in this
+-- migration's transaction, so large installations should run it in a maintenance window.
+
+-- Creates the UTC month partition starting at month_start if missing; returns its name
+CREATE FUNCTION jclaw_create_monthly_partition(parent TEXT, month_start DATE) RETURNS TEXT AS $$
+DECLARE
+    partition_name TEXT := parent || '_p' || to_char(month_start, 'YYYYMM');
+BEGIN
+    EXECUTE format('CREATE TABLE IF NOT EXISTS %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+        partition_name, parent,
+        month_start::timestamp AT TIME ZONE 'UTC',
+        (month_start + INTERVAL '1 month')::timestamp AT TIME ZONE 'UTC');
+    RETURN partition_name;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Partitions from the month of the oldest row through three months ahead
+CREATE FUNCTION jclaw_create_partitions_since(parent TEXT, oldest TIMESTAMPTZ) RETURNS VOID AS $$
+DECLARE
+    m DATE := date_trunc('month', COALESCE(oldest, now()) AT TIME ZONE 'UTC')::date;
+BEGIN
+    WHILE m <= (date_trunc('month', now() AT TIME ZONE 'UTC') + INTERVAL '3 months')::date LOOP
+        PERFORM jclaw_create_monthly_partition(parent, m);
+        m := (m + INTERVAL '1 month')::date;
+    END LOOP;
+END;
+$$ LANGUAGE plpgsql;
+
+-- session_messages
+
+ALTER TABLE session_messages RENAME TO session_messages_unpartitioned;
+ALTER INDEX session_messages_pkey RENAME TO session_messages_unpartitioned_pkey;
+DROP INDEX idx_messages_session;
+DROP INDEX idx_messages_live_tail;
+
+CREATE TABLE session_messages (
+    id              UUID NOT NULL DEFAULT gen_random_uuid(),
+    session_id      UUID NOT NULL REFERENCES sessions(id) ON DELETE CASCADE,
+    role            VARCHAR(16) NOT NULL,
+    content         TEXT NOT NULL,
+    token_count     INT,
+    tool_calls      JSONB,
+    tool_results    JSONB,
+    metadata        JSONB DEFAULT '{}',
+    created_at      TIMESTAMPTZ NOT NULL DEFAULT now(),
+    is_compacted    BOOLEAN NOT NULL DEFAULT false,
+    is_summary      BOOLEAN NOT NULL DEFAULT false,
+    PRIMARY KEY (id, created_at)
+) PARTITION BY RANGE (created_at);
+
+CREATE TABLE session_messages_default PARTITION OF session_messages DEFAULT;
+SELECT jclaw_create_partitions_since('session_messages',
+    (SELECT min(created_at) FROM session_messages_unpartitioned));
+
+INSERT INTO session_messages (id, session_id, role, content, token_count, tool_calls,
+        tool_results, metadata, created_at, is_compacted, is_summary)
+SELECT id, session_id, role, content, token_count, tool_calls,
+        tool_results, metadata, created_at, is_compacted, is_summary
+FROM session_messages_unpartitioned;
+
+DROP TABLE session_messages_unpartitioned;
+
+CREATE INDEX idx_messages_session ON session_messages(session_id, created_at);
+CREATE INDEX idx_messages_live_tail ON session_messages(session_id, created_at DESC, id DESC)
+    INCLUDE (token_count) WHERE is_compacted = false;
+
+-- audit_log
+
+ALTER TABLE audit_log RENAME TO audit_log_unpartitioned;
+ALTER INDEX audit_log_pkey RENAME TO audit_log_unpartitioned_pkey;
+DROP INDEX idx_audit_timestamp;
+DROP INDEX idx_audit_principal;
+DROP INDEX idx_audit_event_type;
+
+CREATE TABLE audit_log (
+    id              UUID NOT NULL DEFAULT gen_random_uuid(),
+    timestamp       TIMESTAMPTZ NOT NULL DEFAULT now(),
+    event_type      VARCHAR(64) NOT NULL,
+    principal       VARCHAR(256),
+    agent_id        VARCHAR(64),
+    session_id      UUID,
+    channel_type    VARCHAR(32),
+    action          VARCHAR(256) NOT NULL,
+    resource_type   VARCHAR(64),
+    resource_id     VARCHAR(256),
+    details         JSONB DEFAULT '{}',
+    source_ip       VARCHAR(45),
+    outcome         VARCHAR(16) NOT NULL DEFAULT 'SUCCESS',
+    PRIMARY KEY (id, timestamp)
+) PARTITION BY RANGE (timestamp);
+
+CREATE TABLE audit_log_default PARTITION OF audit_log DEFAULT;
+SELECT jclaw_create_partitions_since('audit_log',
+    (SELECT min(timestamp) FROM audit_log_unpartitioned));
+
+INSERT INTO audit_log (id, timestamp, event_type, principal, agent_id, session_id, channel_type,
+        action, resource_type, resource_id, details, source_ip, outcome)
+SELECT id, timestamp, event_type, principal, agent_id, session_id, channel_type,
+        action, resource_type, resource_id, details, source_ip, outcome
+FROM audit_log_unpartitioned;
+
+DROP TABLE audit_log_unpartitioned;
+
+CREATE INDEX idx_audit_timestamp ON audit_log(timestamp DESC);
+CREATE INDEX idx_audit_principal ON audit_log(principal, timestamp DESC);
+CREATE INDEX idx_audit_event_type ON audit_log(event_type, timestamp DESC);
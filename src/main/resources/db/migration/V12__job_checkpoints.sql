@@ -0,0 +1,17 @@
+-- V12__job_checkpoints.sql
+-- Progress of the chunked retention jobs (archive idle / purge expired sessions). A job
+-- commits its checkpoint with every chunk; a row without completed_at is resumed with
+-- its original cutoff after a crash or restart.
+
+CREATE TABLE job_checkpoints (
+    job_name        VARCHAR(64) PRIMARY KEY,
+    cutoff          TIMESTAMPTZ NOT NULL,
+    last_active_at  TIMESTAMPTZ NOT NULL,
+    last_id         UUID NOT NULL,
+    processed       BIGINT NOT NULL DEFAULT 0,
+    updated_at      TIMESTAMPTZ NOT NULL DEFAULT now(),
+    completed_at    TIMESTAMPTZ
+);
+
+-- Keyset order of the retention jobs: (last_active_at, id) within a status
+CREATE INDEX idx_sessions_status_last_active ON sessions(status, last_active_at, id);
@@ -0,0 +1,26 @@
+-- V13__uuid_v7_defaults.sql
+-- New ids of sessions, session_messages and audit_log are UUIDv7 (time-ordered, see
+-- UuidV7), generated by the application. The column defaults follow suit so rows
+-- inserted by SQL alone are time-ordered as well.
+--
+-- Existing random ids are kept: they are referenced from other tables and exported in
+-- audit records, and once inserts stop scattering across the index the old keys no
+-- longer cost anything. The primary key indexes built up under random inserts stay
+-- half-empty; reclaim that outside a migration with
+--   REINDEX INDEX CONCURRENTLY sessions_pkey;
+-- (and per partition for session_messages and audit_log).
+
+-- Millisecond timestamp over the first 48 bits of a random UUID, version nibble set to 7
+CREATE FUNCTION jclaw_uuid_v7() RETURNS UUID AS $$
+    SELECT encode(
+        set_bit(set_bit(
+            overlay(uuid_send(gen_random_uuid())
+                    PLACING substring(int8send(floor(extract(epoch FROM clock_timestamp()) * 1000)::bigint) FROM 3)
+                    FROM 1 FOR 6),
+            52, 1), 53, 1),
+        'hex')::uuid;
+$$ LANGUAGE sql VOLATILE;
+
+ALTER TABLE sessions ALTER COLUMN id SET DEFAULT jclaw_uuid_v7();
+ALTER TABLE session_messages ALTER COLUMN id SET DEFAULT jclaw_uuid_v7();
+ALTER TABLE audit_log ALTER COLUMN id SET DEFAULT jclaw_uuid_v7();
@@ -0,0 +1,5 @@
+-- V7__session_compaction_version.sql
+-- Optimistic guard for compaction: the commit phase only applies if the session's
+-- compaction_version still matches the snapshot the summary was generated from.
+
+ALTER TABLE sessions ADD COLUMN compaction_version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,10 @@
+-- V8__session_live_tokens.sql
+-- total_tokens now tracks the tokens of non-compacted messages (compaction subtracts
+-- what it folds into the summary), so the compaction sweep can find sessions over
+-- the threshold with one indexed query instead of a SUM per session.
+
+UPDATE sessions s SET total_tokens = COALESCE((
+    SELECT SUM(m.token_count) FROM session_messages m
+    WHERE m.session_id = s.id AND m.is_compacted = false), 0);
+
+CREATE INDEX idx_sessions_status_tokens ON sessions(status, total_tokens);
@@ -0,0 +1,11 @@
+-- V9__rolling_summaries.sql
+-- Compaction folds new messages into the previous summary instead of re-summarizing
+-- the whole history, so summary messages are flagged; agents can name a cheaper
+-- summarizer model.
+
+ALTER TABLE session_messages ADD COLUMN is_summary BOOLEAN NOT NULL DEFAULT false;
+
+UPDATE session_messages SET is_summary = true
+WHERE role = 'ASSISTANT' AND content LIKE 'Previous conversation summary:%';
+
+ALTER TABLE agent_configs ADD COLUMN summary_model VARCHAR(128);
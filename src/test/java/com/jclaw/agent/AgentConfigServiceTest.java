@@ -0,0 +1,97 @@
+package com.jclaw.agent;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jclaw.audit.AuditService;
+import com.jclaw.config.CacheInvalidationBus;
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class AgentConfigServiceTest {
+
+    @Mock private AgentConfigRepository repository;
+    @Mock private AuditService auditService;
+    @Mock private CacheInvalidationBus invalidationBus;
+
+    private AgentConfigService service;
+    private Consumer<String> remoteEvict;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        service = new AgentConfigService(repository, auditService, new ObjectMapper(),
+                invalidationBus, new JclawMetrics(new SimpleMeterRegistry()), new JclawProperties());
+
+        ArgumentCaptor<Consumer<String>> evictCaptor = ArgumentCaptor.forClass(Consumer.class);
+        verify(invalidationBus).register(eq(AgentConfigService.CACHE_NAME), evictCaptor.capture(), any());
+        remoteEvict = evictCaptor.getValue();
+        // Bus publishes are applied locally as well
+        doAnswer(inv -> { remoteEvict.accept(inv.getArgument(1)); return null; })
+                .when(invalidationBus).publish(eq(AgentConfigService.CACHE_NAME), anyString());
+    }
+
+    @Test
+    void repeatedReadsHitDatabaseOnce() {
+        AgentConfig config = new AgentConfig("ops", "Ops");
+        config.setAllowedTools(Set.of("web_search"));
+        when(repository.findById("ops")).thenReturn(Optional.of(config));
+
+        AgentConfig first = service.getAgentConfig("ops");
+        AgentConfig second = service.getAgentConfig("ops");
+
+        assertSame(first, second);
+        assertNotSame(config, first);
+        assertThrows(UnsupportedOperationException.class, () -> first.getAllowedTools().add("x"));
+        verify(repository, times(1)).findById("ops");
+    }
+
+    @Test
+    void missingAgentIsCachedNegatively() {
+        when(repository.findById("ghost")).thenReturn(Optional.empty());
+
+        assertNull(service.getAgentConfig("ghost"));
+        assertNull(service.getAgentConfig("ghost"));
+        verify(repository, times(1)).findById("ghost");
+    }
+
+    @Test
+    void invalidationMessageForcesReload() {
+        when(repository.findById("ops"))
+                .thenReturn(Optional.of(new AgentConfig("ops", "Old")))
+                .thenReturn(Optional.of(new AgentConfig("ops", "New")));
+
+        assertEquals("Old", service.getAgentConfig("ops").getDisplayName());
+        remoteEvict.accept("ops");
+        assertEquals("New", service.getAgentConfig("ops").getDisplayName());
+    }
+
+    @Test
+    void getOrCreateDefaultCachesCreatedConfig() {
+        when(repository.findById("fresh")).thenReturn(Optional.empty());
+        when(repository.save(any(AgentConfig.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        AgentConfig created = service.getOrCreateDefault("fresh");
+        assertEquals("fresh", created.getAgentId());
+
+        assertSame(created, service.getAgentConfig("fresh"));
+        verify(repository, times(1)).save(any(AgentConfig.class));
+    }
+}
@@ -0,0 +1,110 @@
+package com.jclaw.agent;
+
+import com.jclaw.config.CacheInvalidationBus;
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import com.jclaw.tool.ToolRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.ai.chat.client.ChatClient;
+import org.springframework.ai.chat.model.ChatModel;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class AgentProfileServiceTest {
+
+    @Mock private AgentConfigService agentConfigService;
+    @Mock private ModelRouter modelRouter;
+    @Mock private ToolRegistry toolRegistry;
+    @Mock private PromptTemplateService promptService;
+    @Mock private TokenCounter tokenCounter;
+    @Mock private CacheInvalidationBus invalidationBus;
+    @Mock private ChatModel defaultModel;
+    @Mock private ChatModel otherModel;
+
+    private AgentProfileService service;
+    private Consumer<String> configEvicted;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        when(modelRouter.getDefaultModel()).thenReturn(defaultModel);
+        when(modelRouter.resolveModel(anyString(), any())).thenAnswer(inv -> {
+            AgentConfig config = inv.getArgument(1);
+            return "other".equals(config.getModel()) ? otherModel : defaultModel;
+        });
+        when(agentConfigService.getOrCreateDefault("ops")).thenReturn(new AgentConfig("ops", "Ops"));
+        when(toolRegistry.allowedTools(any())).thenReturn(List.of());
+        when(promptService.resolveSystemPrompt(eq("ops"), any())).thenReturn("system");
+
+        service = new AgentProfileService(agentConfigService, modelRouter, toolRegistry,
+                promptService, tokenCounter, invalidationBus, new JclawMetrics(new SimpleMeterRegistry()),
+                new JclawProperties(), ChatClient.builder(defaultModel));
+
+        ArgumentCaptor<Consumer<String>> evictCaptor = ArgumentCaptor.forClass(Consumer.class);
+        verify(invalidationBus).register(eq(AgentConfigService.CACHE_NAME), evictCaptor.capture(), any());
+        configEvicted = evictCaptor.getValue();
+    }
+
+    @Test
+    void profileIsCompiledOnce() {
+        AgentProfile first = service.getProfile("ops");
+        AgentProfile second = service.getProfile("ops");
+
+        assertSame(first, second);
+        assertEquals("system", first.systemPrompt());
+        assertEquals("default", first.modelLabel());
+        verify(promptService, times(1)).resolveSystemPrompt(eq("ops"), any());
+        verify(toolRegistry, times(1)).allowedTools(any());
+    }
+
+    @Test
+    void configEvictionRebuildsProfile() {
+        AgentProfile first = service.getProfile("ops");
+        configEvicted.accept("ops");
+
+        assertNotSame(first, service.getProfile("ops"));
+    }
+
+    @Test
+    void toolRegistryChangeRebuildsProfile() {
+        AgentProfile first = service.getProfile("ops");
+        when(toolRegistry.version()).thenReturn(1L);
+
+        assertNotSame(first, service.getProfile("ops"));
+    }
+
+    @Test
+    void optionsAreCopiedPerRequest() {
+        AgentProfile profile = service.getProfile("ops");
+
+        assertNotSame(profile.options(), profile.options());
+        assertEquals(profile.defaultOptions().getMaxTokens(), profile.options().getMaxTokens());
+    }
+
+    @Test
+    void modelOverrideIsNotCached() {
+        AgentProfile base = service.getProfile("ops");
+        AgentProfile overridden = service.getProfile("ops", "other");
+
+        assertEquals("other", overridden.modelName());
+        assertEquals("other", overridden.options().getModel());
+        assertNotSame(base.chatClient(), overridden.chatClient());
+        assertSame(base, service.getProfile("ops"));
+        assertSame(overridden.chatClient(), service.getProfile("ops", "other").chatClient());
+    }
+}
@@ -16,6 +16,7 @@ import org.mockito.junit.jupiter.MockitoSettings;
 import org.mockito.quality.Strictness;
 import org.springframework.ai.chat.client.ChatClient;
 import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.openai.OpenAiChatOptions;
 
 import java.util.List;
 import java.util.UUID;
@@ -28,13 +29,13 @@ import static org.mockito.Mockito.*;
 @MockitoSettings(strictness = Strictness.LENIENT)
 class AgentRuntimeTest {
 
-    @Mock private ModelRouter modelRouter;
+    @Mock private AgentProfileService profileService;
     @Mock private ToolRegistry toolRegistry;
     @Mock private SessionManager sessionManager;
     @Mock private PromptTemplateService promptService;
     @Mock private ContentFilterChain contentFilterChain;
-    @Mock private AgentConfigService agentConfigService;
     @Mock private AuditService auditService;
+    @Mock private TokenCounter tokenCounter;
     @Mock private ChatModel chatModel;
 
     private final JclawMetrics metrics = new JclawMetrics(new SimpleMeterRegistry());
@@ -43,10 +44,15 @@ class AgentRuntimeTest {
 
     @BeforeEach
     void setUp() {
-        ChatClient.Builder builder = ChatClient.builder(chatModel);
         agentRuntime = new AgentRuntime(
-                modelRouter, toolRegistry, sessionManager, promptService,
-                contentFilterChain, agentConfigService, auditService, metrics, builder);
+                profileService, toolRegistry, sessionManager, promptService,
+                contentFilterChain, auditService, tokenCounter, metrics);
+    }
+
+    private AgentProfile profile(String agentId) {
+        return new AgentProfile(agentId, new AgentConfig(agentId, "Test"), null,
+                ChatClient.builder(chatModel).build(), OpenAiChatOptions.builder().build(),
+                List.of(), "system", 1, 0, System.currentTimeMillis());
     }
 
     @Test
@@ -58,8 +64,8 @@ class AgentRuntimeTest {
 
         when(contentFilterChain.filterInbound(message, context)).thenReturn(message);
         when(sessionManager.resolveSession(any(), any())).thenReturn(mockSession);
-        when(agentConfigService.getOrCreateDefault("agent1")).thenReturn(new AgentConfig("agent1", "Test"));
-        when(toolRegistry.resolveTools(any())).thenReturn(List.of());
+        when(profileService.getProfile("agent1")).thenReturn(profile("agent1"));
+        when(toolRegistry.bindTools(any(), any())).thenReturn(List.of());
 
         // The LLM call will fail in test since no real model, but session resolution should work
         var responses = agentRuntime.processMessage(context, message).collectList().block();
@@ -78,8 +84,8 @@ class AgentRuntimeTest {
 
         when(contentFilterChain.filterInbound(message, context)).thenReturn(message);
         when(sessionManager.resolveSession(any(), any())).thenReturn(mockSession);
-        when(agentConfigService.getOrCreateDefault("agent1")).thenReturn(new AgentConfig("agent1", "Test"));
-        when(toolRegistry.resolveTools(any())).thenReturn(List.of());
+        when(profileService.getProfile("agent1")).thenReturn(profile("agent1"));
+        when(toolRegistry.bindTools(any(), any())).thenReturn(List.of());
 
         agentRuntime.processMessage(context, message).collectList().block();
 
@@ -0,0 +1,191 @@
+package com.jclaw.agent;
+
+import com.jclaw.config.CacheInvalidationBus;
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import com.jclaw.session.MessageRole;
+import com.jclaw.session.SessionManager;
+import com.jclaw.session.SessionManager.HistoryVersion;
+import com.jclaw.session.SessionMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PromptHistoryCacheTest {
+
+    @Mock private SessionManager sessionManager;
+    @Mock private TokenCounter tokenCounter;
+    @Mock private CacheInvalidationBus invalidationBus;
+
+    private JclawProperties properties;
+    private PromptHistoryCache cache;
+    private final UUID sessionId = UUID.randomUUID();
+    private final AtomicLong clock = new AtomicLong(1_000_000);
+
+    @BeforeEach
+    void setUp() {
+        properties = new JclawProperties();
+        cache = new PromptHistoryCache(sessionManager, tokenCounter, properties,
+                new JclawMetrics(new SimpleMeterRegistry()), invalidationBus, clock::get);
+    }
+
+    @Test
+    void newTurnsAreAppendedWithoutReloading() {
+        List<SessionMessage> history = messages(0, 4);
+        when(sessionManager.getHistoryDelta(sessionId, Long.MAX_VALUE, 0)).thenReturn(version(0, 4));
+        when(sessionManager.getRecentHistory(sessionId, 100)).thenReturn(history);
+        assertEquals(contents(history), texts(cache.history(sessionId, 100, "gpt-4o")));
+
+        List<SessionMessage> next = messages(4, 2);
+        when(sessionManager.getHistoryDelta(eq(sessionId), eq(4L), anyInt()))
+                .thenReturn(new HistoryVersion(0, 6, next));
+
+        List<PromptHistoryCache.Item> items = cache.history(sessionId, 100, "gpt-4o");
+
+        assertEquals(List.of("m0", "m1", "m2", "m3", "m4", "m5"), texts(items));
+        verify(sessionManager, times(1)).getRecentHistory(any(), anyInt());
+    }
+
+    @Test
+    void windowSlidesPastBudget() {
+        when(sessionManager.getHistoryDelta(sessionId, Long.MAX_VALUE, 0)).thenReturn(version(0, 3));
+        when(sessionManager.getRecentHistory(sessionId, 35)).thenReturn(messages(0, 3));
+        cache.history(sessionId, 35, "gpt-4o");
+
+        when(sessionManager.getHistoryDelta(eq(sessionId), eq(3L), anyInt()))
+                .thenReturn(new HistoryVersion(0, 4, messages(3, 1)));
+
+        assertEquals(List.of("m1", "m2", "m3"), texts(cache.history(sessionId, 35, "gpt-4o")));
+    }
+
+    @Test
+    void replayedMessageIsNotDuplicated() {
+        List<SessionMessage> history = messages(0, 3);
+        when(sessionManager.getHistoryDelta(sessionId, Long.MAX_VALUE, 0)).thenReturn(version(0, 2));
+        when(sessionManager.getRecentHistory(sessionId, 100)).thenReturn(history);
+        cache.history(sessionId, 100, "gpt-4o");
+
+        // m2 was appended between the version read and the history read
+        when(sessionManager.getHistoryDelta(eq(sessionId), eq(2L), anyInt()))
+                .thenReturn(new HistoryVersion(0, 3, history.subList(2, 3)));
+
+        assertEquals(List.of("m0", "m1", "m2"), texts(cache.history(sessionId, 100, "gpt-4o")));
+    }
+
+    @Test
+    void compactionRebuildsFromSessionManager() {
+        when(sessionManager.getHistoryDelta(sessionId, Long.MAX_VALUE, 0)).thenReturn(version(0, 4));
+        when(sessionManager.getRecentHistory(sessionId, 100)).thenReturn(messages(0, 4));
+        cache.history(sessionId, 100, "gpt-4o");
+
+        List<SessionMessage> compacted = messages(10, 2);
+        when(sessionManager.getHistoryDelta(eq(sessionId), eq(4L), anyInt())).thenReturn(version(1, 5));
+        when(sessionManager.getRecentHistory(sessionId, 100)).thenReturn(compacted);
+
+        assertEquals(contents(compacted), texts(cache.history(sessionId, 100, "gpt-4o")));
+        verify(sessionManager, times(2)).getRecentHistory(any(), anyInt());
+    }
+
+    @Test
+    void nothingIsCachedWithoutVersion() {
+        when(sessionManager.getRecentHistory(sessionId, 100)).thenReturn(messages(0, 2));
+
+        cache.history(sessionId, 100, "gpt-4o");
+        cache.history(sessionId, 100, "gpt-4o");
+
+        verify(sessionManager, times(2)).getRecentHistory(any(), anyInt());
+        assertEquals(0, cache.cachedTokens());
+    }
+
+    @Test
+    void leastRecentlyUsedSessionIsEvicted() {
+        properties.getSession().setPromptCacheMaxTokens(50);
+        cache = new PromptHistoryCache(sessionManager, tokenCounter, properties,
+                new JclawMetrics(new SimpleMeterRegistry()), invalidationBus, clock::get);
+        UUID other = UUID.randomUUID();
+        when(sessionManager.getHistoryDelta(any(), eq(Long.MAX_VALUE), eq(0))).thenReturn(version(0, 3));
+        when(sessionManager.getRecentHistory(any(), anyInt())).thenReturn(messages(0, 3));
+
+        cache.history(sessionId, 100, "gpt-4o");
+        cache.history(other, 100, "gpt-4o");
+
+        assertEquals(30, cache.cachedTokens());
+        when(sessionManager.getHistoryDelta(eq(other), eq(3L), anyInt())).thenReturn(version(0, 3));
+        cache.history(other, 100, "gpt-4o");
+        verify(sessionManager, times(1)).getRecentHistory(eq(other), anyInt());
+    }
+
+    @Test
+    void entryIsRebuiltOnceOldEvenIfHitEveryTurn() {
+        when(sessionManager.getHistoryDelta(sessionId, Long.MAX_VALUE, 0)).thenReturn(version(0, 2));
+        when(sessionManager.getHistoryDelta(eq(sessionId), eq(2L), anyInt())).thenReturn(version(0, 2));
+        when(sessionManager.getRecentHistory(sessionId, 100)).thenReturn(messages(0, 2));
+        cache.history(sessionId, 100, "gpt-4o");
+
+        long step = PromptHistoryCache.ENTRY_TTL.toMillis() / 2;
+        clock.addAndGet(step);
+        cache.history(sessionId, 100, "gpt-4o");
+        verify(sessionManager, times(1)).getRecentHistory(any(), anyInt());
+
+        clock.addAndGet(step + 1);
+        cache.history(sessionId, 100, "gpt-4o");
+        verify(sessionManager, times(2)).getRecentHistory(any(), anyInt());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void failedAppendEvictsSession() {
+        ArgumentCaptor<Consumer<String>> evict = ArgumentCaptor.forClass(Consumer.class);
+        verify(invalidationBus).register(eq(SessionManager.HISTORY_CACHE_NAME), evict.capture(), any());
+        when(sessionManager.getHistoryDelta(sessionId, Long.MAX_VALUE, 0)).thenReturn(version(0, 2));
+        when(sessionManager.getRecentHistory(sessionId, 100)).thenReturn(messages(0, 2));
+        cache.history(sessionId, 100, "gpt-4o");
+        assertEquals(20, cache.cachedTokens());
+
+        evict.getValue().accept(sessionId.toString());
+
+        assertEquals(0, cache.cachedTokens());
+    }
+
+    private List<SessionMessage> messages(int from, int count) {
+        List<SessionMessage> messages = new ArrayList<>();
+        for (int i = from; i < from + count; i++) {
+            SessionMessage m = new SessionMessage(sessionId,
+                    i % 2 == 0 ? MessageRole.USER : MessageRole.ASSISTANT, "m" + i);
+            m.setId(UUID.randomUUID());
+            m.setTokenCount(10);
+            messages.add(m);
+        }
+        return messages;
+    }
+
+    private static HistoryVersion version(long resets, long appends) {
+        return new HistoryVersion(resets, appends, List.of());
+    }
+
+    private static List<String> texts(List<PromptHistoryCache.Item> items) {
+        return items.stream().map(item -> item.message().getText()).toList();
+    }
+
+    private static List<String> contents(List<SessionMessage> messages) {
+        return messages.stream().map(SessionMessage::getContent).toList();
+    }
+}
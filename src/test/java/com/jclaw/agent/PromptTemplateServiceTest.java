@@ -0,0 +1,90 @@
+package com.jclaw.agent;
+
+import com.jclaw.channel.InboundMessage;
+import com.jclaw.config.CacheInvalidationBus;
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import com.jclaw.session.MessageRole;
+import com.jclaw.session.Session;
+import com.jclaw.session.SessionManager;
+import com.jclaw.session.SessionMessage;
+import com.jclaw.session.SessionScope;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.ai.chat.messages.Message;
+import org.springframework.ai.chat.prompt.Prompt;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PromptTemplateServiceTest {
+
+    @Mock private SessionManager sessionManager;
+    @Mock private TokenCounter tokenCounter;
+
+    private PromptTemplateService service;
+    private Session session;
+    private AgentProfile profile;
+
+    @BeforeEach
+    void setUp() {
+        JclawProperties properties = new JclawProperties();
+        PromptHistoryCache historyCache = new PromptHistoryCache(sessionManager, tokenCounter, properties,
+                new JclawMetrics(new SimpleMeterRegistry()), mock(CacheInvalidationBus.class));
+        service = new PromptTemplateService(historyCache, tokenCounter, properties);
+        session = new Session("agent1", "slack", "user@test.com", SessionScope.MAIN);
+        session.setId(UUID.randomUUID());
+
+        AgentConfig config = new AgentConfig("agent1", "Agent");
+        config.setMaxHistoryTokens(100);
+        profile = new AgentProfile("agent1", config, null, null, null, List.of(),
+                "system", 10, 0, System.currentTimeMillis());
+        when(tokenCounter.count(eq("now"), any())).thenReturn(10);
+    }
+
+    @Test
+    void historyIsTrimmedToBudgetWithoutCurrentMessage() {
+        // Budget: 100 - 10 system - 10 current = 80 tokens of history
+        List<SessionMessage> tail = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            tail.add(message(i % 2 == 0 ? MessageRole.USER : MessageRole.ASSISTANT, "m" + i, 30));
+        }
+        tail.add(message(MessageRole.USER, "now", 10));
+        when(sessionManager.getRecentHistory(session.getId(), 100)).thenReturn(tail);
+
+        Prompt prompt = service.buildPrompt(profile, session,
+                new InboundMessage("slack", "u1", "c1", "now"));
+
+        List<String> texts = prompt.getInstructions().stream().map(Message::getText).toList();
+        assertEquals(List.of("system", "m3", "m4", "now"), texts);
+    }
+
+    @Test
+    void emptyHistoryYieldsSystemAndCurrentMessage() {
+        when(sessionManager.getRecentHistory(any(), anyInt())).thenReturn(List.of());
+
+        Prompt prompt = service.buildPrompt(profile, session,
+                new InboundMessage("slack", "u1", "c1", "now"));
+
+        assertEquals(2, prompt.getInstructions().size());
+    }
+
+    private SessionMessage message(MessageRole role, String content, int tokens) {
+        SessionMessage m = new SessionMessage(session.getId(), role, content);
+        m.setTokenCount(tokens);
+        return m;
+    }
+}
@@ -0,0 +1,88 @@
+package com.jclaw.agent;
+
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TokenCounterTest {
+
+    private static final String TEXT = "The quarterly report shows revenue growth across all regions, "
+            + "with particularly strong results in the northern markets and steady demand elsewhere.";
+
+    private TokenCounter counter;
+
+    @BeforeEach
+    void setUp() {
+        counter = new TokenCounter(new JclawProperties(), new JclawMetrics(new SimpleMeterRegistry()));
+    }
+
+    @Test
+    void openAiModelsAreCountedExactly() {
+        assertTrue(counter.tokenizer("gpt-4o-mini").exact());
+        assertEquals("o200k_base", counter.tokenizer("gpt-4.1").name());
+        assertEquals("cl100k_base", counter.tokenizer("gpt-4").name());
+        assertEquals(0, counter.count("", "gpt-4o"));
+        assertTrue(counter.count(TEXT, "gpt-4o") > 0);
+    }
+
+    @Test
+    void exactTokenizerIgnoresObservedUsage() {
+        int before = counter.count(TEXT, "gpt-4o");
+        counter.observe("gpt-4o", TEXT, before * 2L);
+
+        assertEquals(before, counter.count(TEXT, "gpt-4o"));
+        assertEquals(1.0, counter.correction("gpt-4o"));
+    }
+
+    @Test
+    void approximateCountConvergesToReportedUsage() {
+        String model = "claude-sonnet-4-20250514";
+        assertFalse(counter.tokenizer(model).exact());
+        int raw = counter.count(TEXT, model);
+
+        for (int i = 0; i < 100; i++) {
+            counter.observe(model, TEXT, Math.round(raw * 1.2));
+        }
+
+        assertEquals(1.2, counter.correction(model), 0.05);
+        assertEquals((int) Math.ceil(raw * counter.correction(model)), counter.count(TEXT, model));
+    }
+
+    @Test
+    void outliersAndShortSamplesAreIgnored() {
+        String model = "claude-sonnet-4-20250514";
+        int raw = counter.count(TEXT, model);
+
+        counter.observe(model, TEXT, raw * 10L);
+        counter.observe(model, "ok", 40);
+
+        assertEquals(1.0, counter.correction(model));
+    }
+
+    @Test
+    void nullModelUsesConfiguredDefault() {
+        assertEquals(counter.count(TEXT, new JclawProperties().getGenai().getModel()),
+                counter.count(TEXT));
+    }
+
+    @Test
+    void registeredTokenizerTakesPrecedence() {
+        counter.register("llama", new Tokenizer() {
+            @Override
+            public String name() { return "words"; }
+
+            @Override
+            public int count(String text) { return text.split("\\s+").length; }
+
+            @Override
+            public boolean exact() { return true; }
+        });
+
+        assertEquals("words", counter.tokenizer("llama-3.1-70b").name());
+        assertEquals(3, counter.count("one two three", "llama-3.1-70b"));
+    }
+}
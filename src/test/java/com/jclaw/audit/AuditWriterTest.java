@@ -0,0 +1,127 @@
+package com.jclaw.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class AuditWriterTest {
+
+    @TempDir
+    Path tempDir;
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private JclawProperties properties;
+    private Path spillFile;
+
+    @BeforeEach
+    void setUp() {
+        spillFile = tempDir.resolve("audit-spill.jsonl");
+        properties = new JclawProperties();
+        properties.getAudit().setSpillFile(spillFile.toString());
+        properties.getAudit().setFlushIntervalMs(20);
+        properties.getAudit().setBatchSize(10);
+    }
+
+    private AuditWriter newWriter() {
+        return new AuditWriter(jdbcTemplate, mock(PlatformTransactionManager.class),
+                objectMapper, new JclawMetrics(registry), properties);
+    }
+
+    @Test
+    void writesQueuedEventsInBatches() throws Exception {
+        AuditWriter writer = newWriter();
+        writer.start();
+        for (int i = 0; i < 25; i++) {
+            writer.submit(AuditEvent.of(AuditEvent.TYPE_TOOL_CALL, "tool-" + i));
+        }
+        writer.stop();
+
+        verify(jdbcTemplate, atLeast(3)).batchUpdate(anyString(), anyList(), anyInt(), any());
+        assertEquals(25.0, registry.get("jclaw.audit.events.written").counter().count());
+        assertFalse(Files.exists(spillFile));
+    }
+
+    @Test
+    void spillsWhenNotRunningAndReplaysLater() throws Exception {
+        properties.getAudit().setQueueCapacity(1);
+        AuditWriter stopped = newWriter();
+        stopped.submit(AuditEvent.of(AuditEvent.TYPE_AUTH_FAILURE, "login").withPrincipal("alice"));
+        stopped.submit(AuditEvent.of(AuditEvent.TYPE_AUTH_FAILURE, "login").withPrincipal("bob"));
+
+        List<String> lines = Files.readAllLines(spillFile);
+        assertEquals(2, lines.size());
+        assertTrue(lines.get(0).contains("alice"));
+        assertEquals(2.0, registry.get("jclaw.audit.events.spilled").counter().count());
+
+        // A fresh writer replays the spill file once idle
+        AuditWriter writer = newWriter();
+        writer.start();
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (Files.exists(spillFile) && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        writer.stop();
+
+        assertFalse(Files.exists(spillFile));
+        verify(jdbcTemplate).batchUpdate(anyString(), argThat((List<?> batch) -> batch.size() == 2),
+                anyInt(), any());
+    }
+
+    @Test
+    void failedBatchIsSpilled() throws Exception {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any()))
+                .thenThrow(new org.springframework.dao.DataAccessResourceFailureException("db down"));
+        AuditWriter writer = newWriter();
+        writer.start();
+        writer.submit(AuditEvent.of(AuditEvent.TYPE_CONFIG_CHANGE, "update"));
+        writer.stop();
+
+        assertTrue(Files.readString(spillFile).contains("update"));
+    }
+
+    @Test
+    void rejectedRowIsDeadLetteredWithoutHoldingBackTheBatch() throws Exception {
+        String poison = "x".repeat(300);
+        List<String> written = Collections.synchronizedList(new ArrayList<>());
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), anyInt(), any())).thenAnswer(inv -> {
+            List<AuditWriter.AuditRecord> batch = inv.getArgument(1);
+            if (batch.stream().anyMatch(r -> poison.equals(r.principal()))) {
+                throw new DataIntegrityViolationException("value too long for type character varying(256)");
+            }
+            batch.forEach(r -> written.add(r.principal()));
+            return new int[0][];
+        });
+        AuditWriter writer = newWriter();
+        writer.start();
+        writer.submit(AuditEvent.of(AuditEvent.TYPE_AUTH_FAILURE, "login").withPrincipal("alice"));
+        writer.submit(AuditEvent.of(AuditEvent.TYPE_AUTH_FAILURE, "login").withPrincipal(poison));
+        writer.submit(AuditEvent.of(AuditEvent.TYPE_AUTH_FAILURE, "login").withPrincipal("bob"));
+        writer.stop();
+
+        assertEquals(List.of("alice", "bob"), written);
+        assertFalse(Files.exists(spillFile));
+        List<String> dead = Files.readAllLines(tempDir.resolve("audit-spill.jsonl.dead"));
+        assertEquals(1, dead.size());
+        assertTrue(dead.get(0).contains(poison));
+        assertEquals(1.0, registry.get("jclaw.audit.events.dropped").counter().count());
+    }
+}
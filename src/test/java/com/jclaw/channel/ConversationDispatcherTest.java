@@ -0,0 +1,118 @@
+package com.jclaw.channel;
+
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConversationDispatcherTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final List<String> started = new ArrayList<>();
+    private final Map<String, Sinks.Empty<Void>> running = new HashMap<>();
+
+    private ConversationDispatcher dispatcher(int maxConcurrency, int queueCapacity, String policy) {
+        JclawProperties.DispatchProperties props = new JclawProperties.DispatchProperties();
+        props.setMaxConcurrency(maxConcurrency);
+        props.setQueueCapacity(queueCapacity);
+        props.setOverflowPolicy(policy);
+        return new ConversationDispatcher(props, new JclawMetrics(registry), Schedulers.immediate());
+    }
+
+    private boolean submit(ConversationDispatcher dispatcher, String key, String id) {
+        return dispatcher.submit("slack", key, () -> {
+            started.add(id);
+            Sinks.Empty<Void> sink = Sinks.empty();
+            running.put(id, sink);
+            return sink.asMono();
+        });
+    }
+
+    private void finish(String id) {
+        running.remove(id).tryEmitEmpty();
+    }
+
+    @Test
+    void sameConversationRunsInOrderOneAtATime() {
+        ConversationDispatcher dispatcher = dispatcher(4, 10, "DROP_OLDEST");
+        submit(dispatcher, "c1", "a");
+        submit(dispatcher, "c1", "b");
+        submit(dispatcher, "c1", "c");
+
+        assertEquals(List.of("a"), started);
+        finish("a");
+        assertEquals(List.of("a", "b"), started);
+        finish("b");
+        assertEquals(List.of("a", "b", "c"), started);
+    }
+
+    @Test
+    void differentConversationsShareGlobalLimit() {
+        ConversationDispatcher dispatcher = dispatcher(2, 10, "DROP_OLDEST");
+        submit(dispatcher, "c1", "a");
+        submit(dispatcher, "c2", "b");
+        submit(dispatcher, "c3", "c");
+
+        assertEquals(List.of("a", "b"), started);
+        assertEquals(2, dispatcher.activeCount());
+        assertEquals(1, dispatcher.queueDepth("slack"));
+        finish("b");
+        assertEquals(List.of("a", "b", "c"), started);
+    }
+
+    @Test
+    void dropOldestDiscardsLongestWaiting() {
+        ConversationDispatcher dispatcher = dispatcher(1, 2, "DROP_OLDEST");
+        submit(dispatcher, "c1", "running");
+        submit(dispatcher, "c2", "old");
+        submit(dispatcher, "c3", "mid");
+        assertTrue(submit(dispatcher, "c4", "new"));
+
+        finish("running");
+        finish("mid");
+        assertEquals(List.of("running", "mid", "new"), started);
+        assertEquals(1.0, registry.get("jclaw.channel.dispatch.dropped")
+                .tag("policy", "drop_oldest").counter().count());
+    }
+
+    @Test
+    void droppedTaskIsReported() {
+        ConversationDispatcher dispatcher = dispatcher(1, 1, "DROP_OLDEST");
+        List<String> dropped = new ArrayList<>();
+        submit(dispatcher, "c1", "running");
+        dispatcher.submit("slack", "c2", () -> Mono.empty(), () -> dropped.add("old"));
+        dispatcher.submit("slack", "c3", () -> Mono.empty(), () -> dropped.add("new"));
+
+        assertEquals(List.of("old"), dropped);
+    }
+
+    @Test
+    void dropNewestRejectsIncoming() {
+        ConversationDispatcher dispatcher = dispatcher(1, 1, "DROP_NEWEST");
+        submit(dispatcher, "c1", "running");
+        submit(dispatcher, "c2", "queued");
+        assertFalse(submit(dispatcher, "c3", "rejected"));
+
+        finish("running");
+        assertEquals(List.of("running", "queued"), started);
+    }
+
+    @Test
+    void failedTaskReleasesLane() {
+        ConversationDispatcher dispatcher = dispatcher(1, 10, "DROP_OLDEST");
+        dispatcher.submit("slack", "c1", () -> { throw new IllegalStateException("boom"); });
+        submit(dispatcher, "c1", "next");
+
+        assertEquals(List.of("next"), started);
+    }
+}
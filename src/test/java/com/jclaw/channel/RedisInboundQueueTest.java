@@ -0,0 +1,291 @@
+package com.jclaw.channel;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jclaw.agent.AgentResponse;
+import com.jclaw.agent.AgentRuntime;
+import com.jclaw.audit.AuditService;
+import com.jclaw.channel.webchat.WebChatChannelAdapter;
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import com.jclaw.security.IdentityMappingService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.connection.stream.Consumer;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.core.ReactiveStreamOperations;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/** Runs against a throwaway Redis in Docker; skipped when Docker is unavailable. */
+@Testcontainers(disabledWithoutDocker = true)
+class RedisInboundQueueTest {
+
+    @Container
+    static final GenericContainer<?> redis = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private LettuceConnectionFactory connectionFactory;
+    private ReactiveRedisTemplate<String, String> template;
+    private ReactiveStreamOperations<String, String, String> streams;
+    private JclawProperties properties;
+    private RedisInboundQueue queue;
+    private final List<RedisInboundQueue> extraQueues = new ArrayList<>();
+    private final ObjectMapper objectMapper = new ObjectMapper().findAndRegisterModules();
+    private final List<InboundMessage> routed = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(redis.getHost(), redis.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        template = new ReactiveRedisTemplate<>(connectionFactory, RedisSerializationContext.string());
+        streams = template.opsForStream();
+
+        properties = new JclawProperties();
+        JclawProperties.InboundQueueProperties queueProperties = properties.getChannel().getQueue();
+        queueProperties.setEnabled(true);
+        queueProperties.setStreamKey("test:inbound:" + UUID.randomUUID());
+        queueProperties.setClaimIdleMs(1000);
+        // Maintenance is driven by the tests
+        queueProperties.setReclaimIntervalMs(3_600_000);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (queue != null) queue.stop();
+        extraQueues.forEach(RedisInboundQueue::stop);
+        connectionFactory.destroy();
+    }
+
+    private RedisInboundQueue startQueue() {
+        JclawMetrics metrics = new JclawMetrics(new SimpleMeterRegistry());
+        ConversationDispatcher dispatcher = new ConversationDispatcher(
+                properties.getChannel().getDispatch(), metrics, Schedulers.immediate());
+        queue = new RedisInboundQueue(connectionFactory, template, dispatcher,
+                objectMapper, metrics, properties);
+        queue.start(message -> Mono.fromRunnable(() -> routed.add(message)));
+        return queue;
+    }
+
+    private static InboundMessage message(String user, String text) {
+        return new InboundMessage("slack", user, "C1", text);
+    }
+
+    private long pendingCount() {
+        JclawProperties.InboundQueueProperties q = properties.getChannel().getQueue();
+        return streams.pending(q.getStreamKey(), q.getConsumerGroup()).block().getTotalPendingMessages();
+    }
+
+    /** An entry delivered to a consumer that never acknowledges it. */
+    private void deliverToDeadConsumer() {
+        JclawProperties.InboundQueueProperties q = properties.getChannel().getQueue();
+        streams.createGroup(q.getStreamKey(), ReadOffset.from("0"), q.getConsumerGroup()).block();
+        streams.read(Consumer.from(q.getConsumerGroup(), "dead"), StreamReadOptions.empty().count(10),
+                StreamOffset.create(q.getStreamKey(), ReadOffset.lastConsumed())).blockLast();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean()) {
+            if (System.nanoTime() > deadline) fail("Condition not met within 10s");
+            Thread.sleep(50);
+        }
+    }
+
+    @Test
+    void appendedMessagesAreRoutedAndAcknowledged() throws Exception {
+        startQueue();
+        for (int i = 0; i < 3; i++) queue.append(message("U" + i, "hello " + i)).block();
+
+        await(() -> routed.size() == 3);
+        assertEquals("hello 0", routed.get(0).content());
+        assertEquals("C1", routed.get(0).conversationId());
+        await(() -> pendingCount() == 0);
+        assertEquals(0, queue.inFlight());
+    }
+
+    @Test
+    void pendingEntryOfDeadConsumerIsReclaimed() throws Exception {
+        streams.add(properties.getChannel().getQueue().getStreamKey(), Map.of(RedisInboundQueue.PAYLOAD_FIELD,
+                objectMapper.writeValueAsString(message("U1", "orphaned")))).block();
+        deliverToDeadConsumer();
+
+        startQueue();
+        Thread.sleep(1100);
+        queue.maintain().block();
+
+        await(() -> routed.size() == 1);
+        assertEquals("orphaned", routed.get(0).content());
+        await(() -> pendingCount() == 0);
+    }
+
+    @Test
+    void slowEntryIsNotClaimedBackWhileStillRunning() throws Exception {
+        JclawMetrics metrics = new JclawMetrics(new SimpleMeterRegistry());
+        ConversationDispatcher dispatcher = new ConversationDispatcher(
+                properties.getChannel().getDispatch(), metrics, Schedulers.immediate());
+        queue = new RedisInboundQueue(connectionFactory, template, dispatcher, objectMapper, metrics, properties);
+        // Outlives claimIdleMs
+        queue.start(message -> Mono.fromRunnable(() -> routed.add(message))
+                .then(Mono.delay(Duration.ofMillis(2000)))
+                .then());
+        queue.append(message("U1", "slow")).block();
+        await(() -> routed.size() == 1);
+
+        Thread.sleep(1200);
+        queue.maintain().block();
+
+        await(() -> pendingCount() == 0);
+        Thread.sleep(300);
+        assertEquals(1, routed.size());
+    }
+
+    /** Another instance's consumer on the same stream and group. */
+    private RedisInboundQueue startConsumer(String consumerName, Function<InboundMessage, Mono<Void>> router) {
+        JclawProperties instanceProperties = new JclawProperties();
+        JclawProperties.InboundQueueProperties q = instanceProperties.getChannel().getQueue();
+        JclawProperties.InboundQueueProperties shared = properties.getChannel().getQueue();
+        q.setEnabled(true);
+        q.setStreamKey(shared.getStreamKey());
+        q.setClaimIdleMs(shared.getClaimIdleMs());
+        q.setReclaimIntervalMs(shared.getReclaimIntervalMs());
+        q.setConsumerName(consumerName);
+        JclawMetrics metrics = new JclawMetrics(new SimpleMeterRegistry());
+        ConversationDispatcher dispatcher = new ConversationDispatcher(
+                instanceProperties.getChannel().getDispatch(), metrics, Schedulers.immediate());
+        RedisInboundQueue consumer = new RedisInboundQueue(connectionFactory, template, dispatcher,
+                objectMapper, metrics, instanceProperties);
+        extraQueues.add(consumer);
+        consumer.start(router);
+        return consumer;
+    }
+
+    @Test
+    void slowEntryIsNotClaimedByAnotherInstance() throws Exception {
+        List<String> handledBy = new CopyOnWriteArrayList<>();
+        RedisInboundQueue a = startConsumer("a", message -> Mono.fromRunnable(() -> handledBy.add("a"))
+                .then(Mono.delay(Duration.ofMillis(3000)))
+                .then());
+        a.append(message("U1", "slow")).block();
+        await(() -> handledBy.size() == 1);
+
+        // Well past claimIdleMs while "a" is still running
+        RedisInboundQueue b = startConsumer("b", message -> Mono.fromRunnable(() -> handledBy.add("b")));
+        for (int i = 0; i < 5; i++) {
+            Thread.sleep(500);
+            b.maintain().block();
+        }
+
+        await(() -> pendingCount() == 0);
+        assertEquals(List.of("a"), handledBy);
+    }
+
+    @Test
+    void trimKeepsEntriesNotYetAcknowledged() throws Exception {
+        String key = properties.getChannel().getQueue().getStreamKey();
+        properties.getChannel().getQueue().setMaxLength(2);
+        for (int i = 0; i < 5; i++) {
+            streams.add(key, Map.of(RedisInboundQueue.PAYLOAD_FIELD,
+                    objectMapper.writeValueAsString(message("U" + i, "m" + i)))).block();
+        }
+        deliverToDeadConsumer();
+        startQueue();
+
+        queue.maintain().block();
+        assertEquals(5L, streams.size(key).block());
+
+        Thread.sleep(1100);
+        queue.maintain().block();
+        await(() -> routed.size() == 5);
+        await(() -> pendingCount() == 0);
+        queue.maintain().block();
+        assertEquals(1L, streams.size(key).block());
+    }
+
+    @Test
+    void entryDeliveredTooOftenIsDropped() throws Exception {
+        properties.getChannel().getQueue().setMaxDeliveries(1);
+        streams.add(properties.getChannel().getQueue().getStreamKey(),
+                Map.of(RedisInboundQueue.PAYLOAD_FIELD, "not json")).block();
+        deliverToDeadConsumer();
+
+        startQueue();
+        Thread.sleep(1100);
+        queue.maintain().block();
+
+        assertEquals(0, pendingCount());
+        assertTrue(routed.isEmpty());
+    }
+
+    /** One instance: its own webchat adapter, dispatcher, queue consumer and router. */
+    private record Instance(WebChatChannelAdapter webchat, AgentRuntime agentRuntime) {}
+
+    @SuppressWarnings("unchecked")
+    private Instance startInstance(String consumerName) {
+        JclawProperties instanceProperties = new JclawProperties();
+        JclawProperties.InboundQueueProperties q = instanceProperties.getChannel().getQueue();
+        q.setEnabled(true);
+        q.setStreamKey(properties.getChannel().getQueue().getStreamKey());
+        q.setConsumerName(consumerName);
+        JclawMetrics metrics = new JclawMetrics(new SimpleMeterRegistry());
+        ConversationDispatcher dispatcher = new ConversationDispatcher(
+                instanceProperties.getChannel().getDispatch(), metrics, Schedulers.immediate());
+        RedisInboundQueue instanceQueue = new RedisInboundQueue(connectionFactory, template, dispatcher,
+                objectMapper, metrics, instanceProperties);
+        extraQueues.add(instanceQueue);
+
+        AgentRuntime agentRuntime = mock(AgentRuntime.class);
+        when(agentRuntime.processMessage(any(), any())).thenReturn(Flux.just(
+                new AgentResponse("hi", null, Map.of()), new AgentResponse(" there", "stop", Map.of())));
+        when(agentRuntime.callMessage(any(), any())).thenReturn(Mono.just(new AgentResponse("hi there")));
+        ObjectProvider<RedisInboundQueue> queueProvider = mock(ObjectProvider.class);
+        when(queueProvider.getIfAvailable()).thenReturn(instanceQueue);
+
+        WebChatChannelAdapter webchat = new WebChatChannelAdapter();
+        new ChannelRouter(List.of(webchat), agentRuntime, mock(IdentityMappingService.class),
+                mock(AuditService.class), instanceProperties, metrics, dispatcher,
+                new StreamingReplyDelivery(metrics), queueProvider).startRouting();
+        return new Instance(webchat, agentRuntime);
+    }
+
+    @Test
+    void webchatTurnStaysOnTheInstanceHoldingTheClientConnection() throws Exception {
+        Instance connected = startInstance("a");
+        Instance other = startInstance("b");
+        List<OutboundMessage> received = new CopyOnWriteArrayList<>();
+        connected.webchat().subscribeClient("conv1").subscribe(received::add);
+
+        connected.webchat().publishMessage("user@test.com", "conv1", "hello");
+
+        await(() -> received.stream().anyMatch(m -> !"typing".equals(m.metadata().get("type"))));
+        Thread.sleep(500);
+        verify(other.agentRuntime(), never()).processMessage(any(), any());
+        verify(other.agentRuntime(), never()).callMessage(any(), any());
+        // Never went through the shared stream
+        assertEquals(0L, streams.size(properties.getChannel().getQueue().getStreamKey()).block());
+    }
+}
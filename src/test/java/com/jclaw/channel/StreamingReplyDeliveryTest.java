@@ -0,0 +1,146 @@
+package com.jclaw.channel;
+
+import com.jclaw.agent.AgentResponse;
+import com.jclaw.observability.JclawMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingReplyDeliveryTest {
+
+    private final StreamingReplyDelivery delivery =
+            new StreamingReplyDelivery(new JclawMetrics(new SimpleMeterRegistry()));
+    private final InboundMessage origin = new InboundMessage("slack", "U1", "C1", "hi");
+
+    /** Records the latest content of every posted message, in post order. */
+    private static class EditingAdapter implements ChannelAdapter {
+        final Map<String, String> messages = new LinkedHashMap<>();
+        final List<String> sent = new ArrayList<>();
+        final int maxLen;
+        final boolean returnsIds;
+        Duration editInterval = Duration.ofMillis(1);
+        int edits;
+
+        EditingAdapter(int maxLen, boolean returnsIds) {
+            this.maxLen = maxLen;
+            this.returnsIds = returnsIds;
+        }
+
+        @Override public String channelType() { return "slack"; }
+        @Override public Flux<InboundMessage> receiveMessages() { return Flux.empty(); }
+        @Override public Mono<Void> sendTypingIndicator(String conversationId) { return Mono.empty(); }
+        @Override public boolean supportsThreading() { return false; }
+        @Override public boolean supportsReactions() { return false; }
+        @Override public int maxMessageLength() { return maxLen; }
+        @Override public boolean supportsMessageEdits() { return true; }
+        @Override public Duration minEditInterval() { return editInterval; }
+
+        @Override
+        public Mono<Void> sendMessage(OutboundMessage msg) {
+            sent.add(msg.content());
+            return Mono.empty();
+        }
+
+        @Override
+        public synchronized Mono<String> postMessage(OutboundMessage msg) {
+            if (!returnsIds) return Mono.empty();
+            String id = "m" + messages.size();
+            messages.put(id, msg.content());
+            return Mono.just(id);
+        }
+
+        @Override
+        public synchronized Mono<Void> editMessage(OutboundMessage msg, String messageId) {
+            edits++;
+            messages.put(messageId, msg.content());
+            return Mono.empty();
+        }
+    }
+
+    private static Flux<AgentResponse> tokens(String... tokens) {
+        return Flux.fromArray(tokens).map(AgentResponse::new);
+    }
+
+    @Test
+    void editsPlaceholderUntilFullReplyIsShown() {
+        EditingAdapter adapter = new EditingAdapter(0, true);
+
+        delivery.deliver(adapter, origin, tokens("Hello", ", ", "world"), text -> Mono.empty())
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(Map.of("m0", "Hello, world"), adapter.messages);
+        assertTrue(adapter.edits >= 1);
+    }
+
+    @Test
+    void continuesInNewMessageWhenLimitReached() {
+        EditingAdapter adapter = new EditingAdapter(12, true);
+
+        delivery.deliver(adapter, origin, tokens("alpha beta ", "gamma delta ", "epsilon"),
+                text -> Mono.empty()).block(Duration.ofSeconds(5));
+
+        List<String> contents = new ArrayList<>(adapter.messages.values());
+        assertEquals("alpha beta gamma delta epsilon", String.join("", contents));
+        assertTrue(contents.size() > 1);
+        contents.forEach(c -> assertTrue(c.length() <= 12, c));
+    }
+
+    @Test
+    void emptyReplyReplacesPlaceholder() {
+        EditingAdapter adapter = new EditingAdapter(0, true);
+
+        delivery.deliver(adapter, origin, Flux.empty(), text -> Mono.empty()).block(Duration.ofSeconds(5));
+
+        assertEquals(Map.of("m0", StreamingReplyDelivery.EMPTY_REPLY), adapter.messages);
+    }
+
+    @Test
+    void fallsBackWhenMessagesCannotBeEdited() {
+        EditingAdapter adapter = new EditingAdapter(0, false);
+
+        delivery.deliver(adapter, origin, tokens("one ", "two"),
+                text -> adapter.sendMessage(new OutboundMessage("slack", "C1", text)))
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(List.of("one two"), adapter.sent);
+        assertEquals(0, adapter.edits);
+    }
+
+    @Test
+    void errorReplacesPartialReply() {
+        EditingAdapter adapter = new EditingAdapter(0, true);
+
+        delivery.deliver(adapter, origin,
+                Flux.just(new AgentResponse("Half an ans"), AgentResponse.error("Something went wrong.")),
+                text -> Mono.empty()).block(Duration.ofSeconds(5));
+
+        assertEquals(Map.of("m0", "Something went wrong."), adapter.messages);
+    }
+
+    @Test
+    void finalEditIsNotHeldBackByEditInterval() {
+        EditingAdapter adapter = new EditingAdapter(0, true);
+        adapter.editInterval = Duration.ofSeconds(30);
+
+        delivery.deliver(adapter, origin, tokens("Hello", ", ", "world"), text -> Mono.empty())
+                .block(Duration.ofSeconds(5));
+
+        assertEquals(Map.of("m0", "Hello, world"), adapter.messages);
+    }
+
+    @Test
+    void chunkEndPrefersWhitespace() {
+        assertEquals(6, StreamingReplyDelivery.chunkEnd("hello world", 0, 8));
+        assertEquals(8, StreamingReplyDelivery.chunkEnd("abcdefghijkl", 0, 8));
+        assertEquals(5, StreamingReplyDelivery.chunkEnd("short", 0, 8));
+    }
+}
@@ -0,0 +1,69 @@
+package com.jclaw.channel;
+
+import com.jclaw.agent.AgentResponse;
+import com.jclaw.channel.webchat.WebChatChannelAdapter;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class WebChatChannelAdapterTest {
+
+    @Test
+    void streamReplyEmitsDeltasThenDone() {
+        WebChatChannelAdapter adapter = new WebChatChannelAdapter();
+        InboundMessage origin = new InboundMessage("webchat", "user", "conv1", "hi");
+
+        var events = adapter.subscribeClient("conv1")
+                .takeUntil(msg -> "done".equals(msg.metadata().get("type")))
+                .collectList();
+        var received = events.toFuture();
+
+        adapter.streamReply(origin, Flux.just(
+                new AgentResponse("Hel"),
+                new AgentResponse("lo"),
+                new AgentResponse("", "length", Map.of())))
+                .block(Duration.ofSeconds(5));
+
+        List<OutboundMessage> messages = received.join();
+        OutboundMessage done = messages.get(messages.size() - 1);
+        assertEquals("done", done.metadata().get("type"));
+        assertEquals("length", done.content());
+
+        String text = messages.stream()
+                .filter(m -> "delta".equals(m.metadata().get("type")))
+                .map(OutboundMessage::content)
+                .collect(Collectors.joining());
+        assertEquals("Hello", text);
+    }
+
+    @Test
+    void failedReplyEndsWithErrorMessage() {
+        WebChatChannelAdapter adapter = new WebChatChannelAdapter();
+        InboundMessage origin = new InboundMessage("webchat", "user", "conv1", "hi");
+
+        var received = adapter.subscribeClient("conv1")
+                .takeUntil(msg -> "done".equals(msg.metadata().get("type")))
+                .collectList()
+                .toFuture();
+
+        adapter.streamReply(origin, Flux.just(
+                new AgentResponse("Hel"),
+                AgentResponse.error("Something went wrong.")))
+                .block(Duration.ofSeconds(5));
+
+        List<OutboundMessage> messages = received.join();
+        OutboundMessage done = messages.get(messages.size() - 1);
+        assertEquals(AgentResponse.FINISH_ERROR, done.content());
+        OutboundMessage error = messages.get(messages.size() - 2);
+        assertEquals("message", error.metadata().get("type"));
+        assertEquals("Something went wrong.", error.content());
+        assertTrue(messages.stream().noneMatch(m -> "delta".equals(m.metadata().get("type"))
+                && m.content().contains("wrong")));
+    }
+}
@@ -0,0 +1,44 @@
+package com.jclaw.channel;
+
+import com.jclaw.agent.AgentResponse;
+import com.jclaw.audit.AuditService;
+import com.jclaw.channel.webchat.WebChatChannelAdapter;
+import com.jclaw.channel.webchat.WebChatController;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.ServerSentEvent;
+import org.springframework.security.core.Authentication;
+import reactor.core.publisher.Flux;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class WebChatControllerTest {
+
+    @Test
+    void streamedTokensAreSentAsJsonSoWhitespaceSurvives() {
+        WebChatChannelAdapter adapter = new WebChatChannelAdapter();
+        WebChatController controller = new WebChatController(adapter, mock(AuditService.class));
+        Authentication auth = mock(Authentication.class);
+        when(auth.getName()).thenReturn("user@test.com");
+        String conversationId = controller.sendMessage(Map.of("message", "hi"), auth).get("conversationId");
+
+        var received = controller.streamMessages(conversationId, auth)
+                .takeUntil(event -> "done".equals(event.event()))
+                .collectList()
+                .toFuture();
+        adapter.streamReply(new InboundMessage("webchat", "user@test.com", conversationId, "hi"),
+                        Flux.just(new AgentResponse("Hello"), new AgentResponse(" world\nbye")))
+                .block(Duration.ofSeconds(5));
+
+        List<ServerSentEvent<Object>> events = received.join();
+        ServerSentEvent<Object> delta = events.get(0);
+        assertEquals("delta", delta.event());
+        assertEquals(Map.of("text", "Hello world\nbye"), delta.data());
+        ServerSentEvent<Object> done = events.get(events.size() - 1);
+        assertEquals(Map.of("finishReason", "stop"), done.data());
+    }
+}
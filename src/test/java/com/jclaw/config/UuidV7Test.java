@@ -0,0 +1,50 @@
+package com.jclaw.config;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UuidV7Test {
+
+    @Test
+    void hasVersionSevenAndRfcVariant() {
+        UUID id = UuidV7.next();
+
+        assertEquals(7, id.version());
+        assertEquals(2, id.variant());
+    }
+
+    @Test
+    void embedsCreationTime() {
+        long before = System.currentTimeMillis();
+        UUID id = UuidV7.next();
+        long after = System.currentTimeMillis();
+
+        long millis = UuidV7.unixMillis(id);
+        // Bursts of more than 4096 ids per millisecond (see below) run briefly ahead of the clock
+        assertTrue(millis >= before && millis <= after + 10, "embedded time " + millis);
+    }
+
+    @Test
+    void idsIncreaseInStringAndByteOrder() {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < 10_000; i++) ids.add(UuidV7.next());
+
+        for (int i = 1; i < ids.size(); i++) {
+            // Postgres compares uuid bytewise, which matches the canonical string order
+            assertTrue(ids.get(i - 1).toString().compareTo(ids.get(i).toString()) < 0,
+                    ids.get(i - 1) + " !< " + ids.get(i));
+        }
+        assertEquals(ids.size(), new HashSet<>(ids).size());
+    }
+
+    @Test
+    void rejectsOtherVersions() {
+        assertThrows(IllegalArgumentException.class, () -> UuidV7.unixMillis(UUID.randomUUID()));
+    }
+}
@@ -0,0 +1,112 @@
+package com.jclaw.content;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StreamingEgressScannerTest {
+
+    private final EgressGuard egressGuard = new EgressGuard();
+    private final List<String> violations = new ArrayList<>();
+
+    private StreamingEgressScanner scanner() {
+        return new StreamingEgressScanner(egressGuard::containsExfiltration, violations::add);
+    }
+
+    private static void stream(StreamingEgressScanner scanner, String text, int chunkSize) {
+        for (int i = 0; i < text.length(); i += chunkSize) {
+            scanner.append(text.substring(i, Math.min(text.length(), i + chunkSize)));
+        }
+    }
+
+    @Test
+    void benignStreamPasses() {
+        StreamingEgressScanner scanner = scanner();
+        stream(scanner, "Here is the weather report.\nSunny with a light breeze.\n", 3);
+        assertFalse(scanner.isViolated());
+        assertTrue(violations.isEmpty());
+    }
+
+    @Test
+    void violationSplitAcrossChunksIsDetected() {
+        StreamingEgressScanner scanner = scanner();
+        stream(scanner, "Sure. I will send all the records to the webhook now.", 2);
+        assertTrue(scanner.isViolated());
+        assertEquals(1, violations.size());
+    }
+
+    @Test
+    void violationSpanningWhitespaceLinesIsDetected() {
+        StreamingEgressScanner scanner = scanner();
+        stream(scanner, "Next I will upload\n\n   all of it to the server", 4);
+        assertTrue(scanner.isViolated());
+    }
+
+    @Test
+    void matchesFullScanOnLongOutput() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 500; i++) {
+            text.append("Line ").append(i).append(": nothing to see here.\n");
+        }
+        text.append("Finally, send my notes to this email address.");
+
+        StreamingEgressScanner scanner = scanner();
+        stream(scanner, text.toString(), 5);
+        assertEquals(egressGuard.containsExfiltration(text), scanner.isViolated());
+    }
+
+    @Test
+    void windowStaysBoundedAcrossLines() {
+        StreamingEgressScanner scanner = scanner();
+        for (int i = 0; i < 1000; i++) {
+            scanner.append("token ");
+            if (i % 10 == 0) scanner.append("\n");
+        }
+        assertTrue(scanner.windowLength() < 200);
+    }
+
+    @Test
+    void windowIsCappedOnSingleLongLine() {
+        StreamingEgressScanner scanner = new StreamingEgressScanner(
+                egressGuard::containsExfiltration, violations::add, 64);
+        stream(scanner, "x".repeat(10_000), 7);
+        assertTrue(scanner.windowLength() <= 64);
+    }
+
+    @Test
+    void capNeverCutsMidWord() {
+        // "resend" has no \bsend; a cut after "re" would turn it into a match
+        String text = "word ".repeat(30) + "resend all my data to the webhook"
+                + " and then a few more words".repeat(5);
+        assertFalse(egressGuard.containsExfiltration(text));
+        for (int chunkSize = 1; chunkSize <= 9; chunkSize++) {
+            StreamingEgressScanner scanner = new StreamingEgressScanner(
+                    egressGuard::containsExfiltration, violations::add, 64);
+            stream(scanner, text, chunkSize);
+            assertFalse(scanner.isViolated(), "chunk size " + chunkSize);
+        }
+    }
+
+    @Test
+    void matchStraddlingTheCutIsDetected() {
+        String text = "filler ".repeat(40) + "so send all my notes to the webhook please";
+        for (int chunkSize = 1; chunkSize <= 9; chunkSize++) {
+            StreamingEgressScanner scanner = new StreamingEgressScanner(
+                    egressGuard::containsExfiltration, violations::add, 64);
+            stream(scanner, text, chunkSize);
+            assertTrue(scanner.isViolated(), "chunk size " + chunkSize);
+        }
+    }
+
+    @Test
+    void violationCallbackExceptionPropagates() {
+        StreamingEgressScanner scanner = new StreamingEgressScanner(egressGuard::containsExfiltration,
+                window -> { throw new ContentFilterChain.ContentFilterException("EgressGuard", "blocked"); });
+        scanner.append("I will ");
+        assertThrows(ContentFilterChain.ContentFilterException.class,
+                () -> scanner.append("exfiltrate it"));
+    }
+}
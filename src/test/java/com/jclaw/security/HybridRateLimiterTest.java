@@ -0,0 +1,96 @@
+package com.jclaw.security;
+
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import io.github.bucket4j.distributed.proxy.ProxyManager;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class HybridRateLimiterTest {
+
+    private JclawProperties properties;
+    private ProxyManager<String> remote;
+    private final AtomicInteger connects = new AtomicInteger();
+    private HybridRateLimiter limiter;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        properties = new JclawProperties();
+        properties.getSecurity().getRateLimit().setUserPerMinute(5);
+        // Syncs are driven by the tests
+        properties.getSecurity().getRateLimit().setMaxUnsyncedRequests(1000);
+        properties.getSecurity().getRateLimit().setBreakerFailureThreshold(2);
+        remote = mock(ProxyManager.class, RETURNS_DEEP_STUBS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (limiter != null) limiter.stop();
+    }
+
+    private HybridRateLimiter limiter(Supplier<ProxyManager<String>> remoteFactory) {
+        limiter = new HybridRateLimiter(new JclawMetrics(new SimpleMeterRegistry()), properties, () -> {
+            connects.incrementAndGet();
+            return remoteFactory.get();
+        });
+        return limiter;
+    }
+
+    @Test
+    void enforcesMinuteCapLocallyWithoutRedis() {
+        limiter(() -> remote);
+
+        for (int i = 0; i < 5; i++) {
+            assertTrue(limiter.tryAcquire("user@test.com", false).allowed());
+        }
+        HybridRateLimiter.Decision rejected = limiter.tryAcquire("user@test.com", false);
+
+        assertFalse(rejected.allowed());
+        assertEquals("per-minute", rejected.window());
+        assertTrue(rejected.retryAfterSeconds() >= 1);
+        assertEquals(0, connects.get());
+        // Other principals have their own buckets
+        assertTrue(limiter.tryAcquire("other@test.com", false).allowed());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void syncReportsLocalAdmissionsAndAdoptsClusterRemaining() {
+        // Other instances have used up the shared minute bucket
+        when(remote.builder().build(anyString(), any(Supplier.class)).getAvailableTokens()).thenReturn(0L);
+        limiter(() -> remote);
+        limiter.tryAcquire("user@test.com", false);
+        limiter.tryAcquire("user@test.com", false);
+
+        limiter.syncRound();
+
+        verify(remote.builder().build(anyString(), any(Supplier.class)), times(2)).consumeIgnoringRateLimits(2);
+        assertFalse(limiter.tryAcquire("user@test.com", false).allowed());
+    }
+
+    @Test
+    void breakerOpensAfterRepeatedFailuresAndLimitsStayLocal() {
+        limiter(() -> { throw new IllegalStateException("redis down"); });
+        limiter.tryAcquire("user@test.com", false);
+
+        limiter.syncRound();
+        limiter.syncRound();
+        assertTrue(limiter.breakerOpen());
+
+        limiter.tryAcquire("user@test.com", false);
+        limiter.syncRound();
+
+        assertEquals(2, connects.get());
+        assertTrue(limiter.tryAcquire("user@test.com", false).allowed());
+    }
+}
@@ -0,0 +1,117 @@
+package com.jclaw.security;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jclaw.audit.AuditService;
+import com.jclaw.config.CacheInvalidationBus;
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class IdentityMappingServiceTest {
+
+    @Mock private IdentityMappingRepository repository;
+    @Mock private AuditService auditService;
+    @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private CacheInvalidationBus invalidationBus;
+
+    private IdentityMappingService service;
+    private IdentityMapping mapping;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        service = new IdentityMappingService(repository, auditService, new ObjectMapper(), jdbcTemplate,
+                invalidationBus, new JclawMetrics(new SimpleMeterRegistry()), new JclawProperties());
+
+        ArgumentCaptor<Consumer<String>> evictCaptor = ArgumentCaptor.forClass(Consumer.class);
+        verify(invalidationBus).register(eq(IdentityMappingService.CACHE_NAME), evictCaptor.capture(), any());
+        Consumer<String> evict = evictCaptor.getValue();
+        doAnswer(inv -> { evict.accept(inv.getArgument(1)); return null; })
+                .when(invalidationBus).publish(eq(IdentityMappingService.CACHE_NAME), anyString());
+
+        mapping = new IdentityMapping("slack", "U123", "user@test.com");
+        mapping.setId(UUID.randomUUID());
+        mapping.setApproved(true);
+    }
+
+    @Test
+    void approvedMappingIsServedFromMemoryWithoutWrites() {
+        when(repository.findByChannelTypeAndChannelUserId("slack", "U123")).thenReturn(Optional.of(mapping));
+
+        assertEquals("user@test.com", service.resolvePrincipal("slack", "U123"));
+        assertEquals("user@test.com", service.resolvePrincipal("slack", "U123"));
+
+        verify(repository, times(1)).findByChannelTypeAndChannelUserId("slack", "U123");
+        verify(repository, never()).save(any());
+    }
+
+    @Test
+    void unmappedLookupIsNegativelyCachedUntilApproval() {
+        IdentityMapping pending = new IdentityMapping("slack", "U123", null);
+        pending.setId(mapping.getId());
+        when(repository.findByChannelTypeAndChannelUserId("slack", "U123")).thenReturn(Optional.empty());
+
+        var first = assertThrows(IdentityMappingService.UnmappedIdentityException.class,
+                () -> service.resolvePrincipal("slack", "U123"));
+        assertFalse(first.isQueued());
+        service.markQueued("slack", "U123");
+        var second = assertThrows(IdentityMappingService.UnmappedIdentityException.class,
+                () -> service.resolvePrincipal("slack", "U123"));
+        assertTrue(second.isQueued());
+        verify(repository, times(1)).findByChannelTypeAndChannelUserId("slack", "U123");
+
+        when(repository.findById(mapping.getId())).thenReturn(Optional.of(pending));
+        when(repository.save(pending)).thenReturn(pending);
+        service.approveMapping(mapping.getId(), "admin@test.com", "user@test.com");
+        when(repository.findByChannelTypeAndChannelUserId("slack", "U123")).thenReturn(Optional.of(pending));
+
+        assertEquals("user@test.com", service.resolvePrincipal("slack", "U123"));
+        verify(invalidationBus).publish(IdentityMappingService.CACHE_NAME, "slack:U123");
+    }
+
+    @Test
+    void lastSeenTimesAreFlushedInOneStatement() {
+        when(repository.findByChannelTypeAndChannelUserId("slack", "U123")).thenReturn(Optional.of(mapping));
+        for (int i = 0; i < 5; i++) service.resolvePrincipal("slack", "U123");
+
+        service.flushLastSeen();
+        service.flushLastSeen();
+
+        verify(jdbcTemplate, times(1)).update(any(PreparedStatementCreator.class));
+    }
+
+    @Test
+    void failedFlushIsRetried() {
+        when(repository.findByChannelTypeAndChannelUserId("slack", "U123")).thenReturn(Optional.of(mapping));
+        when(jdbcTemplate.update(any(PreparedStatementCreator.class)))
+                .thenThrow(new org.springframework.dao.QueryTimeoutException("timeout"))
+                .thenReturn(1);
+        service.resolvePrincipal("slack", "U123");
+
+        service.flushLastSeen();
+        service.flushLastSeen();
+        service.flushLastSeen();
+
+        verify(jdbcTemplate, times(2)).update(any(PreparedStatementCreator.class));
+    }
+}
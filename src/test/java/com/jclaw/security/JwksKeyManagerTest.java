@@ -0,0 +1,126 @@
+package com.jclaw.security;
+
+import com.jclaw.observability.JclawMetrics;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JwksKeyManagerTest {
+
+    private static final String URL = "https://issuer.test/keys";
+
+    private RSAKey oldKey;
+    private RSAKey newKey;
+    private final AtomicReference<JWKSet> published = new AtomicReference<>();
+    private final AtomicInteger fetches = new AtomicInteger();
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private SimpleMeterRegistry registry;
+    private JwksKeyManager manager;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        oldKey = new RSAKeyGenerator(2048).keyID("old").generate();
+        newKey = new RSAKeyGenerator(2048).keyID("new").generate();
+        published.set(new JWKSet(oldKey.toPublicJWK()));
+        registry = new SimpleMeterRegistry();
+        manager = new JwksKeyManager(url -> {
+            fetches.incrementAndGet();
+            return published.get();
+        }, new JclawMetrics(registry), now::get);
+    }
+
+    private String token(RSAKey key, String subject) throws Exception {
+        SignedJWT jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(),
+                new JWTClaimsSet.Builder().issuer("https://api.botframework.com").subject(subject)
+                        .expirationTime(new Date(System.currentTimeMillis() + 600_000)).build());
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+
+    @Test
+    void verifiedTokenIsServedFromCacheUntilExpiry() throws Exception {
+        String token = token(oldKey, "bot");
+
+        assertEquals("bot", manager.verify(URL, token).getSubject());
+        assertEquals("bot", manager.verify(URL, token).getSubject());
+
+        assertEquals(1, fetches.get());
+        assertEquals(1, registry.get("jclaw.cache.requests")
+                .tag("cache", JwksKeyManager.CACHE_NAME).tag("result", "hit").counter().count());
+    }
+
+    @Test
+    void unknownKidRefreshesOnceAfterCooldown() throws Exception {
+        manager.verify(URL, token(oldKey, "before"));
+        published.set(new JWKSet(List.of(oldKey.toPublicJWK(), newKey.toPublicJWK())));
+
+        // Fetched moments ago: the unknown kid is rejected without another fetch
+        assertThrows(Exception.class, () -> manager.verify(URL, token(newKey, "too-soon")));
+        assertEquals(1, fetches.get());
+
+        now.addAndGet(JwksKeyManager.FORCED_REFRESH_COOLDOWN_MILLIS);
+        assertEquals("rotated", manager.verify(URL, token(newKey, "rotated")).getSubject());
+        assertEquals(2, fetches.get());
+    }
+
+    @Test
+    void concurrentRequestsShareOneFetch() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        manager = new JwksKeyManager(url -> {
+            fetches.incrementAndGet();
+            release.await(5, TimeUnit.SECONDS);
+            return published.get();
+        }, new JclawMetrics(registry), now::get);
+
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<JWTClaimsSet>> results = new ArrayList<>();
+            for (int i = 0; i < 8; i++) {
+                String token = token(oldKey, "req" + i);
+                results.add(pool.submit(() -> manager.verify(URL, token)));
+            }
+            Thread.sleep(200);
+            release.countDown();
+            for (Future<JWTClaimsSet> result : results) assertNotNull(result.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+        assertEquals(1, fetches.get());
+    }
+
+    @Test
+    void backgroundRefreshPicksUpNewKeysBeforeTheyAreUsed() throws Exception {
+        manager.verify(URL, token(oldKey, "before"));
+        published.set(new JWKSet(List.of(oldKey.toPublicJWK(), newKey.toPublicJWK())));
+
+        now.addAndGet(TimeUnit.MINUTES.toMillis(45));
+        manager.refreshDueKeySets();
+        int fetchesAfterRefresh = fetches.get();
+
+        assertEquals("rotated", manager.verify(URL, token(newKey, "rotated")).getSubject());
+        assertEquals(2, fetchesAfterRefresh);
+        assertEquals(2, fetches.get());
+    }
+}
@@ -0,0 +1,106 @@
+package com.jclaw.security;
+
+import com.jclaw.config.SecretsConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Signature;
+import java.util.Arrays;
+import java.util.HexFormat;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+class WebhookSignatureVerifierTest {
+
+    private static final String TIMESTAMP = "1700000000";
+    private static final byte[] BODY = "{\"type\":\"event_callback\",\"text\":\"héllo\"}".getBytes(StandardCharsets.UTF_8);
+
+    private SecretsConfig secrets;
+    private KeyPair discordKeys;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        secrets = mock(SecretsConfig.class);
+        discordKeys = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+        when(secrets.getSlackSigningSecret()).thenReturn("slack-secret");
+        when(secrets.getDiscordPublicKey()).thenReturn(rawPublicKeyHex(discordKeys));
+    }
+
+    private static String slackSignature(String secret, String timestamp, byte[] body) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        mac.update(("v0:" + timestamp + ":").getBytes(StandardCharsets.UTF_8));
+        return "v0=" + HexFormat.of().formatHex(mac.doFinal(body));
+    }
+
+    private static String discordSignature(KeyPair keys, String timestamp, byte[] body) throws Exception {
+        Signature signer = Signature.getInstance("Ed25519");
+        signer.initSign(keys.getPrivate());
+        signer.update(timestamp.getBytes(StandardCharsets.UTF_8));
+        signer.update(body);
+        return HexFormat.of().formatHex(signer.sign());
+    }
+
+    private static String rawPublicKeyHex(KeyPair keys) {
+        // The X.509 encoding ends with the 32-byte raw key Discord publishes
+        byte[] encoded = keys.getPublic().getEncoded();
+        return HexFormat.of().formatHex(Arrays.copyOfRange(encoded, encoded.length - 32, encoded.length));
+    }
+
+    @Test
+    void slackSignatureOverRawBodyIsAcceptedRepeatedly() throws Exception {
+        WebhookSignatureVerifier verifier = new WebhookSignatureVerifier(secrets);
+        String signature = slackSignature("slack-secret", TIMESTAMP, BODY);
+
+        assertTrue(verifier.verifySlack(TIMESTAMP, BODY, signature));
+        // The per-thread Mac is reset between requests
+        assertTrue(verifier.verifySlack(TIMESTAMP, BODY, signature));
+        assertFalse(verifier.verifySlack("1700000001", BODY, signature));
+        assertFalse(verifier.verifySlack(TIMESTAMP, "{}".getBytes(StandardCharsets.UTF_8), signature));
+        assertFalse(verifier.verifySlack(TIMESTAMP, BODY, "v0=zz"));
+        assertFalse(verifier.verifySlack(TIMESTAMP, BODY, signature.substring(3)));
+    }
+
+    @Test
+    void discordSignatureIsVerifiedWithDecodedKey() throws Exception {
+        WebhookSignatureVerifier verifier = new WebhookSignatureVerifier(secrets);
+        String signature = discordSignature(discordKeys, TIMESTAMP, BODY);
+
+        assertTrue(verifier.verifyDiscord(TIMESTAMP, BODY, signature));
+        assertTrue(verifier.verifyDiscord(TIMESTAMP, BODY, signature));
+        assertFalse(verifier.verifyDiscord("1700000001", BODY, signature));
+        assertFalse(verifier.verifyDiscord(TIMESTAMP, BODY, "not-hex"));
+        assertFalse(verifier.verifyDiscord(TIMESTAMP, BODY,
+                discordSignature(KeyPairGenerator.getInstance("Ed25519").generateKeyPair(), TIMESTAMP, BODY)));
+    }
+
+    @Test
+    void rotatedSecretsAreDecodedOnNextRequest() throws Exception {
+        WebhookSignatureVerifier verifier = new WebhookSignatureVerifier(secrets);
+        KeyPair rotated = KeyPairGenerator.getInstance("Ed25519").generateKeyPair();
+
+        when(secrets.getSlackSigningSecret()).thenReturn("rotated-secret");
+        when(secrets.getDiscordPublicKey()).thenReturn(rawPublicKeyHex(rotated));
+
+        assertFalse(verifier.verifySlack(TIMESTAMP, BODY, slackSignature("slack-secret", TIMESTAMP, BODY)));
+        assertTrue(verifier.verifySlack(TIMESTAMP, BODY, slackSignature("rotated-secret", TIMESTAMP, BODY)));
+        assertFalse(verifier.verifyDiscord(TIMESTAMP, BODY, discordSignature(discordKeys, TIMESTAMP, BODY)));
+        assertTrue(verifier.verifyDiscord(TIMESTAMP, BODY, discordSignature(rotated, TIMESTAMP, BODY)));
+    }
+
+    @Test
+    void missingOrInvalidKeysRejectEverything() throws Exception {
+        when(secrets.getSlackSigningSecret()).thenReturn(null);
+        when(secrets.getDiscordPublicKey()).thenReturn("abcd");
+        WebhookSignatureVerifier verifier = new WebhookSignatureVerifier(secrets);
+
+        assertFalse(verifier.verifySlack(TIMESTAMP, BODY, slackSignature("slack-secret", TIMESTAMP, BODY)));
+        assertFalse(verifier.verifyDiscord(TIMESTAMP, BODY, discordSignature(discordKeys, TIMESTAMP, BODY)));
+    }
+}
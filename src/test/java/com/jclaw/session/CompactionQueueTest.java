@@ -0,0 +1,115 @@
+package com.jclaw.session;
+
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactionQueueTest {
+
+    private CompactionQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        JclawProperties properties = new JclawProperties();
+        properties.getSession().setCompactionWorkers(1);
+        properties.getSession().setCompactionQueueCapacity(1);
+        queue = new CompactionQueue(properties, new JclawMetrics(new SimpleMeterRegistry()));
+    }
+
+    @AfterEach
+    void tearDown() {
+        queue.stop();
+    }
+
+    @Test
+    void sessionIsQueuedOnceWhileRunning() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger runs = new AtomicInteger();
+        queue.setWorker(id -> {
+            runs.incrementAndGet();
+            started.countDown();
+            await(release);
+            return CompactionService.Outcome.COMMITTED;
+        });
+        UUID sessionId = UUID.randomUUID();
+
+        assertTrue(queue.submit(sessionId));
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        assertFalse(queue.submit(sessionId));
+
+        release.countDown();
+        waitUntilIdle();
+        assertEquals(1, runs.get());
+        assertTrue(queue.submit(sessionId));
+    }
+
+    @Test
+    void fullQueueDropsTrigger() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        queue.setWorker(id -> {
+            await(release);
+            return CompactionService.Outcome.COMMITTED;
+        });
+
+        assertTrue(queue.submit(UUID.randomUUID()));  // running
+        assertTrue(queue.submit(UUID.randomUUID()));  // queued
+        assertFalse(queue.submit(UUID.randomUUID())); // capacity 1
+        release.countDown();
+    }
+
+    @Test
+    void failedSessionBacksOff() throws Exception {
+        queue.setWorker(id -> CompactionService.Outcome.CONFLICT);
+        UUID sessionId = UUID.randomUUID();
+
+        assertTrue(queue.submit(sessionId));
+        waitUntilIdle();
+
+        assertFalse(queue.submit(sessionId));
+        assertTrue(queue.submit(UUID.randomUUID()));
+    }
+
+    @Test
+    void skippedSessionBacksOff() throws Exception {
+        AtomicInteger runs = new AtomicInteger();
+        queue.setWorker(id -> {
+            runs.incrementAndGet();
+            return CompactionService.Outcome.SKIPPED;
+        });
+        UUID sessionId = UUID.randomUUID();
+
+        assertTrue(queue.submit(sessionId));
+        waitUntilIdle();
+
+        // Still over the threshold, so the next message triggers it again
+        assertFalse(queue.submit(sessionId));
+        assertEquals(1, runs.get());
+    }
+
+    private void waitUntilIdle() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (queue.size() > 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, queue.size());
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
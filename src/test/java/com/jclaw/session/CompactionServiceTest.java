@@ -0,0 +1,175 @@
+package com.jclaw.session;
+
+import com.jclaw.agent.AgentConfigService;
+import com.jclaw.agent.ModelRouter;
+import com.jclaw.agent.TokenCounter;
+import com.jclaw.audit.AuditService;
+import com.jclaw.config.JclawProperties;
+import com.jclaw.content.ContentFilterChain;
+import com.jclaw.observability.JclawMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.ai.chat.messages.AssistantMessage;
+import org.springframework.ai.chat.model.ChatModel;
+import org.springframework.ai.chat.model.ChatResponse;
+import org.springframework.ai.chat.model.Generation;
+import org.springframework.ai.chat.prompt.Prompt;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class CompactionServiceTest {
+
+    @Mock private SessionManager sessionManager;
+    @Mock private SessionRepository sessionRepository;
+    @Mock private SessionMessageRepository messageRepository;
+    @Mock private ChatModel chatModel;
+    @Mock private ModelRouter modelRouter;
+    @Mock private AgentConfigService agentConfigService;
+    @Mock private ContentFilterChain contentFilterChain;
+    @Mock private AuditService auditService;
+    @Mock private TokenCounter tokenCounter;
+    @Mock private CompactionQueue compactionQueue;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private CompactionService service;
+    private Session session;
+    private List<SessionMessage> messages;
+    private final List<SimpleTransactionStatus> transactions = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        when(transactionManager.getTransaction(any())).thenAnswer(inv -> {
+            SimpleTransactionStatus status = new SimpleTransactionStatus();
+            transactions.add(status);
+            return status;
+        });
+        service = new CompactionService(sessionManager, sessionRepository, messageRepository,
+                new JclawProperties(), modelRouter, agentConfigService, contentFilterChain, auditService, tokenCounter, compactionQueue,
+                new JclawMetrics(new SimpleMeterRegistry()), transactionManager);
+
+        when(modelRouter.resolveSummaryModel(eq("agent1"), any())).thenReturn(chatModel);
+
+        session = new Session("agent1", "slack", "user@test.com", SessionScope.MAIN);
+        session.setId(UUID.randomUUID());
+        when(sessionRepository.findById(session.getId())).thenReturn(Optional.of(session));
+
+        messages = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            SessionMessage m = new SessionMessage(session.getId(), MessageRole.USER, "message " + i);
+            m.setId(UUID.randomUUID());
+            m.setTokenCount(10);
+            messages.add(m);
+        }
+        when(messageRepository.findBySessionIdAndCompactedFalseOrderByCreatedAtAsc(session.getId()))
+                .thenReturn(messages);
+        when(chatModel.call(any(Prompt.class))).thenReturn(
+                new ChatResponse(List.of(new Generation(new AssistantMessage("summary")))));
+    }
+
+    @Test
+    void summaryIsGeneratedBetweenTransactions() {
+        when(tokenCounter.count("Previous conversation summary:\nsummary")).thenReturn(4);
+        when(sessionRepository.advanceCompaction(session.getId(), 0L,
+                CompactionService.COMPACTABLE, SessionStatus.COMPACTED, 6 * 10 - 4)).thenReturn(1);
+        when(messageRepository.markCompacted(eq(session.getId()), anyCollection())).thenReturn(6);
+
+        assertEquals(CompactionService.Outcome.COMMITTED, service.compactSession(session.getId()));
+
+        InOrder order = inOrder(transactionManager, chatModel, messageRepository);
+        order.verify(transactionManager).getTransaction(any());
+        order.verify(transactionManager).commit(any());
+        order.verify(chatModel).call(any(Prompt.class));
+        order.verify(transactionManager).getTransaction(any());
+        order.verify(messageRepository).markCompacted(session.getId(),
+                messages.subList(0, 6).stream().map(SessionMessage::getId).toList());
+        order.verify(messageRepository).save(any(SessionMessage.class));
+        order.verify(transactionManager).commit(any());
+        verify(sessionManager).onHistoryCompacted(eq(session.getId()), eq(6), eq(2), any());
+    }
+
+    @Test
+    void previousSummaryIsFoldedNotResummarized() {
+        SessionMessage previous = messages.get(0);
+        previous.setContent("Previous conversation summary:\nuser likes tea");
+        previous.setSummary(true);
+        when(sessionRepository.advanceCompaction(any(), anyLong(), any(), any(), anyInt())).thenReturn(1);
+        when(messageRepository.markCompacted(eq(session.getId()), anyCollection())).thenReturn(6);
+
+        service.compactSession(session.getId());
+
+        ArgumentCaptor<Prompt> prompt = ArgumentCaptor.forClass(Prompt.class);
+        verify(chatModel).call(prompt.capture());
+        String request = prompt.getValue().getInstructions().get(1).getText();
+        assertTrue(request.contains("<summary>\nuser likes tea\n</summary>"));
+        assertFalse(request.contains("[ASSISTANT]"));
+        assertTrue(request.contains("[USER]: message 5"));
+        assertFalse(request.contains("message 6"));
+
+        ArgumentCaptor<SessionMessage> saved = ArgumentCaptor.forClass(SessionMessage.class);
+        verify(messageRepository).save(saved.capture());
+        assertTrue(saved.getValue().isSummary());
+    }
+
+    @Test
+    void versionConflictDiscardsSummary() {
+        when(sessionRepository.advanceCompaction(any(), anyLong(), any(), any(), anyInt())).thenReturn(0);
+
+        assertEquals(CompactionService.Outcome.CONFLICT, service.compactSession(session.getId()));
+
+        verify(messageRepository, never()).markCompacted(any(), any());
+        verify(messageRepository, never()).save(any());
+        verify(sessionManager, never()).onHistoryCompacted(any(), anyInt(), anyInt(), any());
+    }
+
+    @Test
+    void changedMessagesRollBackCommit() {
+        when(sessionRepository.advanceCompaction(any(), anyLong(), any(), any(), anyInt())).thenReturn(1);
+        when(messageRepository.markCompacted(eq(session.getId()), anyCollection())).thenReturn(5);
+
+        assertEquals(CompactionService.Outcome.CONFLICT, service.compactSession(session.getId()));
+
+        assertEquals(2, transactions.size());
+        assertTrue(transactions.get(1).isRollbackOnly());
+        verify(messageRepository, never()).save(any());
+    }
+
+    @Test
+    void sweepQueuesSessionsOverThreshold() {
+        UUID due = UUID.randomUUID();
+        when(sessionRepository.findIdsByStatusInAndTotalTokensGreaterThan(
+                eq(CompactionService.COMPACTABLE), eq(96000), any())).thenReturn(List.of(due));
+
+        service.checkAndCompact();
+
+        verify(compactionQueue).submit(due);
+        verify(sessionRepository, never()).findByStatus(any());
+    }
+
+    @Test
+    void inactiveSessionIsNotSummarized() {
+        session.setStatus(SessionStatus.ARCHIVED);
+
+        assertEquals(CompactionService.Outcome.SKIPPED, service.compactSession(session.getId()));
+
+        verifyNoInteractions(chatModel);
+    }
+}
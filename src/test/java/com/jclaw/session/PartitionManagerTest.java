@@ -0,0 +1,90 @@
+package com.jclaw.session;
+
+import com.jclaw.config.JclawProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Date;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class PartitionManagerTest {
+
+    @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private PlatformTransactionManager transactionManager;
+
+    private PartitionManager partitionManager;
+    private final Instant cutoff = Instant.parse("2026-03-15T00:00:00Z");
+
+    @BeforeEach
+    void setUp() {
+        partitionManager = new PartitionManager(jdbcTemplate, transactionManager, new JclawProperties());
+    }
+
+    @Test
+    void dropsOnlyPartitionsEndingBeforeCutoff() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq("audit_log"))).thenReturn(List.of(
+                "audit_log_default", "audit_log_p202601", "audit_log_p202602", "audit_log_p202603"));
+
+        assertEquals(2, partitionManager.dropAuditPartitionsBefore(cutoff));
+
+        verify(jdbcTemplate).execute("ALTER TABLE audit_log DETACH PARTITION \"audit_log_p202601\"");
+        verify(jdbcTemplate).execute("DROP TABLE \"audit_log_p202602\"");
+        // March spans the cutoff and the default partition has no range; both are left to row deletes
+        verify(jdbcTemplate, never()).execute(contains("audit_log_p202603"));
+        verify(jdbcTemplate, never()).execute(contains("audit_log_default"));
+    }
+
+    @Test
+    void keepsMessagePartitionWithLiveHistory() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq("session_messages")))
+                .thenReturn(List.of("session_messages_p202601", "session_messages_p202602"));
+        when(jdbcTemplate.queryForObject(contains("\"session_messages_p202601\""), eq(Boolean.class),
+                any(Timestamp.class))).thenReturn(true);
+        when(jdbcTemplate.queryForObject(contains("\"session_messages_p202602\""), eq(Boolean.class),
+                any(Timestamp.class))).thenReturn(false);
+
+        assertEquals(1, partitionManager.dropSessionMessagePartitionsBefore(cutoff));
+
+        verify(jdbcTemplate, never()).execute(contains("DROP TABLE \"session_messages_p202601\""));
+        verify(jdbcTemplate).execute("DROP TABLE \"session_messages_p202602\"");
+    }
+
+    @Test
+    void lockTimeoutSkipsPartitionWithoutFailingRun() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq("audit_log")))
+                .thenReturn(List.of("audit_log_p202601", "audit_log_p202602"));
+        doThrow(new QueryTimeoutException("lock timeout"))
+                .when(jdbcTemplate).execute("ALTER TABLE audit_log DETACH PARTITION \"audit_log_p202601\"");
+
+        assertEquals(1, partitionManager.dropAuditPartitionsBefore(cutoff));
+
+        verify(jdbcTemplate).execute("DROP TABLE \"audit_log_p202602\"");
+    }
+
+    @Test
+    void createsCurrentAndUpcomingMonths() {
+        partitionManager.createFuturePartitions();
+
+        // Current month plus the default three ahead, for both tables
+        verify(jdbcTemplate, times(4)).queryForObject(anyString(), eq(String.class), eq("session_messages"),
+                any(Date.class));
+        verify(jdbcTemplate, times(4)).queryForObject(anyString(), eq(String.class), eq("audit_log"),
+                any(Date.class));
+    }
+}
@@ -0,0 +1,250 @@
+package com.jclaw.session;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jclaw.agent.TokenCounter;
+import com.jclaw.audit.AuditService;
+import com.jclaw.config.CacheInvalidationBus;
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.redis.connection.lettuce.LettuceConnectionFactory;
+import org.springframework.data.redis.core.ReactiveRedisTemplate;
+import org.springframework.data.redis.serializer.RedisSerializationContext;
+import org.testcontainers.containers.GenericContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * The Redis history list behind {@link SessionManager}, against a throwaway Redis in Docker;
+ * skipped when Docker is unavailable. The database side is mocked.
+ */
+@Testcontainers(disabledWithoutDocker = true)
+class SessionHistoryCacheTest {
+
+    @Container
+    static final GenericContainer<?> redis = new GenericContainer<>("redis:7-alpine").withExposedPorts(6379);
+
+    private static final String LIST_PREFIX = "jclaw:session:history-list:";
+
+    private LettuceConnectionFactory connectionFactory;
+    private ReactiveRedisTemplate<String, String> template;
+    private final SessionRepository sessionRepository = mock(SessionRepository.class);
+    private final SessionMessageRepository messageRepository = mock(SessionMessageRepository.class);
+    private final SessionMessageWriter messageWriter = mock(SessionMessageWriter.class);
+    private final CacheInvalidationBus invalidationBus = mock(CacheInvalidationBus.class);
+    private final UUID sessionId = UUID.randomUUID();
+    // What the mocked database holds for the session, oldest first
+    private final List<SessionMessage> stored = new ArrayList<>();
+    private SessionManager sessionManager;
+
+    @BeforeEach
+    void setUp() {
+        connectionFactory = new LettuceConnectionFactory(redis.getHost(), redis.getMappedPort(6379));
+        connectionFactory.afterPropertiesSet();
+        connectionFactory.start();
+        template = new ReactiveRedisTemplate<>(connectionFactory, RedisSerializationContext.string());
+
+        when(messageRepository.findBySessionIdAndCompactedFalseOrderByCreatedAtAsc(sessionId))
+                .thenAnswer(inv -> List.copyOf(stored));
+        when(messageRepository.countBySessionIdAndCompactedFalse(sessionId))
+                .thenAnswer(inv -> (long) stored.size());
+        when(messageRepository.save(any(SessionMessage.class))).thenAnswer(inv -> {
+            SessionMessage msg = inv.getArgument(0);
+            msg.setId(UUID.randomUUID());
+            stored.add(msg);
+            return msg;
+        });
+        when(messageWriter.addCounters(eq(sessionId), anyInt(), anyInt(), any()))
+                .thenReturn(new SessionMessageWriter.SessionTotals(sessionId, SessionStatus.ACTIVE, 0));
+
+        JclawProperties properties = new JclawProperties();
+        JclawMetrics metrics = new JclawMetrics(new SimpleMeterRegistry());
+        sessionManager = new SessionManager(sessionRepository, messageRepository, mock(AuditService.class),
+                properties, metrics, template, new ObjectMapper().findAndRegisterModules(),
+                mock(TokenCounter.class), mock(CompactionQueue.class), messageWriter,
+                mock(SessionResolutionCache.class), invalidationBus);
+    }
+
+    @AfterEach
+    void tearDown() {
+        connectionFactory.destroy();
+    }
+
+    private SessionMessage storedMessage(String content) {
+        SessionMessage msg = new SessionMessage(sessionId, MessageRole.USER, content);
+        msg.setId(UUID.randomUUID());
+        msg.setTokenCount(1);
+        stored.add(msg);
+        return msg;
+    }
+
+    private void addMessage(String content) {
+        sessionManager.addMessage(sessionId, MessageRole.USER, content, 1);
+    }
+
+    private String listKey() {
+        return LIST_PREFIX + "{" + sessionId + "}";
+    }
+
+    private List<String> cachedContents() {
+        return template.opsForList().range(listKey(), 0, -1)
+                .map(entry -> entry.replaceAll(".*\"content\":\"([^\"]*)\".*", "$1"))
+                .collectList().block();
+    }
+
+    private static List<String> contents(List<SessionMessage> messages) {
+        return messages.stream().map(SessionMessage::getContent).toList();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(condition.getAsBoolean());
+    }
+
+    @Test
+    void coldListIsSeededFromDatabaseThenAppendedTo() throws Exception {
+        storedMessage("one");
+        storedMessage("two");
+
+        assertEquals(List.of("one", "two"), contents(sessionManager.getHistory(sessionId)));
+        assertEquals(List.of("one", "two"), cachedContents());
+        assertTrue(template.hasKey(listKey() + ":complete").block());
+
+        addMessage("three");
+        await(() -> cachedContents().size() == 3);
+
+        assertEquals(List.of("one", "two", "three"), contents(sessionManager.getHistory(sessionId)));
+        verify(messageRepository, times(1)).findBySessionIdAndCompactedFalseOrderByCreatedAtAsc(sessionId);
+    }
+
+    @Test
+    void appendToColdListLeavesItForTheNextSeed() throws Exception {
+        storedMessage("one");
+        addMessage("two");
+        await(() -> template.opsForHash().get(listKey() + ":version", "appends").block() != null);
+
+        assertFalse(template.hasKey(listKey()).block());
+        assertEquals(List.of("one", "two"), contents(sessionManager.getHistory(sessionId)));
+    }
+
+    @Test
+    void listWithoutCompleteMarkerFallsBackToDatabase() {
+        storedMessage("one");
+        storedMessage("two");
+        sessionManager.getHistory(sessionId);
+        // The marker expires or was never set (a tail-only seed): the list can't answer for all of it
+        template.delete(listKey() + ":complete").block();
+        // ...so a message it missed must still be read
+        storedMessage("three");
+
+        assertEquals(List.of("one", "two", "three"), contents(sessionManager.getHistory(sessionId)));
+        verify(messageRepository, times(2)).findBySessionIdAndCompactedFalseOrderByCreatedAtAsc(sessionId);
+        assertTrue(template.hasKey(listKey() + ":complete").block());
+    }
+
+    @Test
+    void compactionDropsCompactedEntriesAndAppendsSummary() throws Exception {
+        storedMessage("one");
+        storedMessage("two");
+        storedMessage("three");
+        storedMessage("four");
+        sessionManager.getHistory(sessionId);
+
+        SessionMessage summary = new SessionMessage(sessionId, MessageRole.ASSISTANT, "summary");
+        summary.setId(UUID.randomUUID());
+        summary.setSummary(true);
+        sessionManager.onHistoryCompacted(sessionId, 2, 2, summary);
+        await(() -> cachedContents().size() == 3 && cachedContents().get(0).equals("three"));
+
+        assertEquals(List.of("three", "four", "summary"), contents(sessionManager.getHistory(sessionId)));
+        verify(messageRepository, times(1)).findBySessionIdAndCompactedFalseOrderByCreatedAtAsc(sessionId);
+        assertEquals(1, sessionManager.getHistoryDelta(sessionId, 0, 10).resets());
+    }
+
+    @Test
+    void compactionThatNoLongerLinesUpDropsTheList() throws Exception {
+        storedMessage("one");
+        storedMessage("two");
+        storedMessage("three");
+        sessionManager.getHistory(sessionId);
+
+        // Compaction saw two kept messages, but the list has one after the compacted head
+        SessionMessage summary = new SessionMessage(sessionId, MessageRole.ASSISTANT, "summary");
+        sessionManager.onHistoryCompacted(sessionId, 2, 2, summary);
+        await(() -> !template.hasKey(listKey()).block());
+
+        assertFalse(template.hasKey(listKey() + ":complete").block());
+    }
+
+    @Test
+    void failedAppendInvalidatesListAndVersion() throws Exception {
+        storedMessage("one");
+        sessionManager.getHistory(sessionId);
+        // Make the append script fail: RPUSHX on a key of the wrong type
+        template.opsForValue().set(listKey(), "not a list").block();
+
+        addMessage("two");
+        await(() -> !template.hasKey(listKey()).block());
+
+        assertFalse(template.hasKey(listKey() + ":complete").block());
+        await(() -> sessionManager.getHistoryDelta(sessionId, 0, 10).resets() == 1);
+        verify(invalidationBus).publish(SessionManager.HISTORY_CACHE_NAME, sessionId.toString());
+        assertEquals(List.of("one", "two"), contents(sessionManager.getHistory(sessionId)));
+    }
+
+    @Test
+    void deltaReturnsAppendsSinceVersionAcrossReset() throws Exception {
+        storedMessage("one");
+        storedMessage("two");
+        sessionManager.getHistory(sessionId);
+        addMessage("three");
+        addMessage("four");
+        await(() -> cachedContents().size() == 4);
+
+        SessionManager.HistoryVersion v = sessionManager.getHistoryDelta(sessionId, 0, 10);
+        assertEquals(0, v.resets());
+        assertEquals(2, v.appends());
+        assertEquals(List.of("three", "four"), contents(v.appended()));
+
+        SessionMessage summary = new SessionMessage(sessionId, MessageRole.ASSISTANT, "summary");
+        summary.setId(UUID.randomUUID());
+        sessionManager.onHistoryCompacted(sessionId, 2, 2, summary);
+        await(() -> sessionManager.getHistoryDelta(sessionId, 2, 10).resets() == 1);
+        addMessage("five");
+        await(() -> sessionManager.getHistoryDelta(sessionId, 2, 10).appends() == 3);
+
+        // Between resets only appends are returned; a caller seeing resets change reloads instead
+        v = sessionManager.getHistoryDelta(sessionId, 2, 10);
+        assertEquals(1, v.resets());
+        assertEquals(List.of("five"), contents(v.appended()));
+    }
+
+    @Test
+    void deltaIsShortWhenTheListLostAppends() throws Exception {
+        storedMessage("one");
+        sessionManager.getHistory(sessionId);
+        template.delete(listKey(), listKey() + ":complete").block();
+
+        addMessage("two");
+        await(() -> sessionManager.getHistoryDelta(sessionId, 0, 10).appends() == 1);
+
+        // The append counted but had no list to land in, so the delta can't be served
+        SessionManager.HistoryVersion v = sessionManager.getHistoryDelta(sessionId, 0, 10);
+        assertTrue(v.appended().size() < v.appends());
+    }
+}
@@ -0,0 +1,174 @@
+package com.jclaw.session;
+
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ParameterizedPreparedStatementSetter;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class SessionMessageWriterTest {
+
+    @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private Connection connection;
+
+    private SessionMessageWriter writer;
+    private final List<List<SessionMessage>> written = new ArrayList<>();
+    private final UUID sessionA = UUID.randomUUID();
+    private final UUID sessionB = UUID.randomUUID();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        when(transactionManager.getTransaction(any())).thenAnswer(inv -> new SimpleTransactionStatus());
+        when(connection.prepareStatement(anyString())).thenReturn(mock(PreparedStatement.class));
+        when(connection.createArrayOf(anyString(), any())).thenReturn(mock(Array.class));
+        when(jdbcTemplate.query(any(PreparedStatementCreator.class), any(RowMapper.class))).thenReturn(List.of());
+
+        JclawProperties properties = new JclawProperties();
+        properties.getSession().setWriteBehind(true);
+        // Long enough that the flusher never runs during a test; flush() drains synchronously
+        properties.getSession().setWriteFlushIntervalMs(60_000);
+        writer = new SessionMessageWriter(jdbcTemplate, transactionManager, properties,
+                new JclawMetrics(new SimpleMeterRegistry()));
+        writer.setListener((messages, totals) -> written.add(List.copyOf(messages)));
+        writer.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        writer.stop();
+    }
+
+    @Test
+    void flushWritesOneBatchWithCoalescedCounters() throws Exception {
+        assertTrue(writer.submit(message(sessionA, 10)));
+        assertTrue(writer.submit(message(sessionB, 5)));
+        assertTrue(writer.submit(message(sessionA, 20)));
+
+        writer.flush(sessionA);
+
+        verify(jdbcTemplate).batchUpdate(anyString(), argThat((Collection<SessionMessage> c) -> c.size() == 3),
+                eq(3), any(ParameterizedPreparedStatementSetter.class));
+        ArgumentCaptor<PreparedStatementCreator> creator = ArgumentCaptor.forClass(PreparedStatementCreator.class);
+        verify(jdbcTemplate).query(creator.capture(), any(RowMapper.class));
+        creator.getValue().createPreparedStatement(connection);
+        verify(connection).createArrayOf("uuid", new Object[]{sessionA, sessionB});
+        verify(connection).createArrayOf("int4", new Object[]{2, 1});
+        verify(connection).createArrayOf("int4", new Object[]{30, 5});
+
+        assertEquals(1, written.size());
+        assertEquals(0, writer.pendingSessions());
+    }
+
+    @Test
+    void flushWithoutPendingMessagesSkipsDatabase() {
+        writer.flush(sessionA);
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void failedBatchIsRetriedPerSession() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyCollection(), anyInt(), any(ParameterizedPreparedStatementSetter.class)))
+                .thenThrow(new IllegalStateException("session purged"))
+                .thenThrow(new IllegalStateException("session purged"))
+                .thenReturn(new int[][]{{1}});
+        writer.submit(message(sessionA, 10));
+        writer.submit(message(sessionB, 10));
+
+        writer.flush(sessionB);
+
+        // Batch failed, then session A failed again and was dropped; session B landed
+        assertEquals(1, written.size());
+        assertEquals(sessionB, written.get(0).get(0).getSessionId());
+        assertEquals(0, writer.pendingSessions());
+    }
+
+    @Test
+    void messageFromTransactionIsQueuedOnlyOnCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertTrue(writer.submit(message(sessionA, 10)));
+            writer.flush(sessionA);
+            assertTrue(written.isEmpty());
+
+            TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        writer.flush(sessionA);
+
+        assertEquals(1, written.size());
+    }
+
+    @Test
+    void messageFromRolledBackTransactionIsNeverWritten() {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            assertTrue(writer.submit(message(sessionA, 10)));
+        } finally {
+            // Rollback: afterCommit is never invoked
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+        writer.flush(sessionA);
+        writer.stop();
+
+        assertTrue(written.isEmpty());
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyCollection(), anyInt(),
+                any(ParameterizedPreparedStatementSetter.class));
+    }
+
+    @Test
+    void stoppedWriterRejectsMessages() {
+        writer.stop();
+
+        SessionMessage msg = message(sessionA, 10);
+        assertFalse(writer.submit(msg));
+        assertNull(msg.getId());
+    }
+
+    @Test
+    void writeBehindIsRefusedWithSharedInboundQueue() {
+        JclawProperties properties = new JclawProperties();
+        properties.getSession().setWriteBehind(true);
+        properties.getChannel().getQueue().setEnabled(true);
+
+        assertThrows(IllegalStateException.class, () -> new SessionMessageWriter(jdbcTemplate,
+                transactionManager, properties, new JclawMetrics(new SimpleMeterRegistry())));
+    }
+
+    private static SessionMessage message(UUID sessionId, int tokens) {
+        SessionMessage m = new SessionMessage(sessionId, MessageRole.USER, "hello");
+        m.setTokenCount(tokens);
+        return m;
+    }
+}
@@ -0,0 +1,142 @@
+package com.jclaw.session;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.jclaw.audit.AuditEvent;
+import com.jclaw.audit.AuditRepository;
+import com.jclaw.audit.AuditService;
+import com.jclaw.config.JclawProperties;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Array;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class SessionPurgeSchedulerTest {
+
+    @Mock private JdbcTemplate jdbcTemplate;
+    @Mock private PlatformTransactionManager transactionManager;
+    @Mock private JobCheckpointStore checkpoints;
+    @Mock private SessionManager sessionManager;
+    @Mock private AuditRepository auditRepository;
+    @Mock private AuditService auditService;
+    @Mock private SessionResolutionCache resolutionCache;
+    @Mock private PartitionManager partitionManager;
+
+    private SessionPurgeScheduler scheduler;
+    private final List<List<UUID>> chunks = new ArrayList<>();
+    private final List<Object[]> chunkArgs = new ArrayList<>();
+    private final Instant idleSince = Instant.parse("2026-01-01T00:00:00Z");
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        JclawProperties properties = new JclawProperties();
+        properties.getSession().setRetentionChunkSize(2);
+        properties.getSession().setRetentionChunkPauseMs(0);
+        scheduler = new SessionPurgeScheduler(jdbcTemplate, transactionManager, checkpoints, sessionManager,
+                auditRepository, auditService, resolutionCache, partitionManager, new ObjectMapper(), properties);
+        when(checkpoints.findOpen(anyString())).thenReturn(Optional.empty());
+
+        // Keyset select: hands out the next queued chunk through the scheduler's row mapper
+        when(jdbcTemplate.query(anyString(), any(RowMapper.class), any(), any(), any(), any())).thenAnswer(inv -> {
+            chunkArgs.add(Arrays.copyOfRange(inv.getArguments(), 2, 6));
+            List<UUID> ids = chunks.isEmpty() ? List.of() : chunks.remove(0);
+            RowMapper<Object> mapper = inv.getArgument(1);
+            List<Object> rows = new ArrayList<>();
+            for (int i = 0; i < ids.size(); i++) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getObject(1, UUID.class)).thenReturn(ids.get(i));
+                when(rs.getTimestamp(2)).thenReturn(Timestamp.from(idleSince.plusSeconds(i)));
+                rows.add(mapper.mapRow(rs, i));
+            }
+            return rows;
+        });
+
+        // UPDATE ... RETURNING id: every session passed in the array is changed
+        when(jdbcTemplate.query(any(PreparedStatementCreator.class), any(RowMapper.class))).thenAnswer(inv -> {
+            Connection con = mock(Connection.class);
+            when(con.prepareStatement(anyString())).thenReturn(mock(PreparedStatement.class));
+            ArgumentCaptor<Object[]> ids = ArgumentCaptor.forClass(Object[].class);
+            when(con.createArrayOf(eq("uuid"), ids.capture())).thenReturn(mock(Array.class));
+            ((PreparedStatementCreator) inv.getArgument(0)).createPreparedStatement(con);
+            return Arrays.asList(ids.getValue());
+        });
+    }
+
+    @Test
+    void archivesInCheckpointedChunksWithOneAuditRecordEach() {
+        UUID s1 = UUID.randomUUID(), s2 = UUID.randomUUID(), s3 = UUID.randomUUID();
+        chunks.add(List.of(s1, s2));
+        chunks.add(List.of(s3));
+
+        scheduler.archiveIdleSessions();
+
+        ArgumentCaptor<JobCheckpointStore.Checkpoint> saved = ArgumentCaptor.forClass(JobCheckpointStore.Checkpoint.class);
+        verify(checkpoints, times(2)).save(saved.capture());
+        assertEquals(s2, saved.getAllValues().get(0).lastId());
+        assertEquals(3, saved.getAllValues().get(1).processed());
+        // The second chunk continues after the last key of the first
+        assertEquals(s2, chunkArgs.get(1)[2]);
+        verify(checkpoints).complete(SessionPurgeScheduler.ARCHIVE_JOB);
+
+        verify(sessionManager).onSessionsArchived(List.of(s1, s2));
+        verify(sessionManager).onSessionsArchived(List.of(s3));
+        ArgumentCaptor<AuditEvent> audits = ArgumentCaptor.forClass(AuditEvent.class);
+        verify(auditService, times(2)).log(audits.capture());
+        assertEquals(AuditEvent.TYPE_SESSION_ARCHIVE, audits.getAllValues().get(0).getEventType());
+        assertTrue(audits.getAllValues().get(1).getDetails().contains(s3.toString()));
+    }
+
+    @Test
+    void resumesFromOpenCheckpointWithItsCutoff() {
+        UUID lastId = UUID.randomUUID();
+        Instant cutoff = Instant.parse("2025-10-01T00:00:00Z");
+        when(checkpoints.findOpen(SessionPurgeScheduler.PURGE_JOB)).thenReturn(Optional.of(
+                new JobCheckpointStore.Checkpoint(SessionPurgeScheduler.PURGE_JOB, cutoff, idleSince, lastId, 1000)));
+        UUID expired = UUID.randomUUID();
+        chunks.add(List.of(expired));
+
+        scheduler.purgeExpiredSessions();
+
+        verify(partitionManager).dropSessionMessagePartitionsBefore(cutoff);
+        assertEquals(Timestamp.from(cutoff), chunkArgs.get(0)[0]);
+        assertEquals(lastId, chunkArgs.get(0)[2]);
+        verify(resolutionCache).evict(expired);
+        verify(checkpoints).save(argThat(c -> c.processed() == 1001 && expired.equals(c.lastId())));
+        verify(checkpoints).complete(SessionPurgeScheduler.PURGE_JOB);
+    }
+
+    @Test
+    void emptyRunWritesNoCheckpointOrAudit() {
+        scheduler.archiveIdleSessions();
+
+        verify(checkpoints, never()).save(any());
+        verify(auditService, never()).log(any(AuditEvent.class));
+        verify(sessionManager, never()).onSessionsArchived(any());
+    }
+}
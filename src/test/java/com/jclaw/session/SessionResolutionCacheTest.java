@@ -0,0 +1,88 @@
+package com.jclaw.session;
+
+import com.jclaw.config.CacheInvalidationBus;
+import com.jclaw.config.JclawProperties;
+import com.jclaw.observability.JclawMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.mockito.junit.jupiter.MockitoSettings;
+import org.mockito.quality.Strictness;
+
+import java.util.UUID;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@MockitoSettings(strictness = Strictness.LENIENT)
+class SessionResolutionCacheTest {
+
+    @Mock private CacheInvalidationBus invalidationBus;
+
+    private SessionResolutionCache cache;
+    private Consumer<String> remoteEvict;
+    private final SessionResolutionCache.RouteKey key =
+            new SessionResolutionCache.RouteKey("agent1", "user@test.com", null, SessionScope.MAIN, null);
+    private Session session;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() {
+        cache = new SessionResolutionCache(invalidationBus, new JclawMetrics(new SimpleMeterRegistry()),
+                new JclawProperties());
+
+        ArgumentCaptor<Consumer<String>> evictCaptor = ArgumentCaptor.forClass(Consumer.class);
+        verify(invalidationBus).register(eq(SessionResolutionCache.CACHE_NAME), evictCaptor.capture(), any());
+        remoteEvict = evictCaptor.getValue();
+        doAnswer(inv -> { remoteEvict.accept(inv.getArgument(1)); return null; })
+                .when(invalidationBus).publish(eq(SessionResolutionCache.CACHE_NAME), anyString());
+
+        session = new Session("agent1", "slack", "user@test.com", SessionScope.MAIN);
+        session.setId(UUID.randomUUID());
+    }
+
+    @Test
+    void repeatLookupIsServedFromMemory() {
+        assertNull(cache.get(key));
+        cache.put(key, session, cache.epoch());
+
+        assertSame(session, cache.get(key));
+    }
+
+    @Test
+    void evictionBySessionIdDropsRoute() {
+        cache.put(key, session, cache.epoch());
+
+        cache.evict(session.getId());
+
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    void lookupRacingWithEvictionIsNotCached() {
+        long epoch = cache.epoch();
+        remoteEvict.accept(UUID.randomUUID().toString());
+
+        cache.put(key, session, epoch);
+
+        assertNull(cache.get(key));
+    }
+
+    @Test
+    void zeroTtlDisablesCache() {
+        JclawProperties properties = new JclawProperties();
+        properties.getCache().setSessionRouteTtlSeconds(0);
+        cache = new SessionResolutionCache(invalidationBus, new JclawMetrics(new SimpleMeterRegistry()), properties);
+
+        cache.put(key, session, cache.epoch());
+
+        assertNull(cache.get(key));
+    }
+}